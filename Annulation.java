@@ -0,0 +1,137 @@
+package application;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * La classe Annulation permet d'interrompre une opération longue (parcours, extraction des
+ * métadonnées, index des couleurs) : à la demande, par {@link #annuler()}, par exemple depuis
+ * le bouton « Annuler » de l'interface graphique, ou à l'échéance d'un délai global.
+ *
+ * <p>Les opérations consultent l'annulation entre deux fichiers par {@link #verifier()}, qui
+ * lève une {@link CancellationException} ; les attentes passent par {@link #attendre(Future)},
+ * qui se réveille régulièrement pour la consulter. Une annulation est définitive.
+ * Cette classe est utilisable depuis plusieurs threads.</p>
+ *
+ * @author Binome
+ */
+public final class Annulation {
+
+    /** Intervalle maximal entre deux consultations pendant une attente. */
+    private static final long INTERVALLE = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long echeance;
+    private final long delai;
+    private volatile boolean annulee;
+
+    /**
+     * Crée une annulation sans échéance : l'opération ne s'arrête que sur {@link #annuler()}.
+     */
+    public Annulation() {
+        this(0);
+    }
+
+    /**
+     * Crée une annulation avec une échéance.
+     *
+     * @param delai le délai maximal de l'opération, en millisecondes, à compter de maintenant ;
+     *              0 pour aucune échéance.
+     */
+    public Annulation(long delai) {
+        this.delai = Math.max(0, delai);
+        this.echeance = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.delai);
+    }
+
+    /**
+     * Demande l'arrêt de l'opération.
+     */
+    public void annuler() {
+        annulee = true;
+    }
+
+    /**
+     * @return {@code true} si l'opération a été annulée ou si l'échéance est passée.
+     */
+    public boolean estAnnulee() {
+        return annulee || delai > 0 && restant() <= 0;
+    }
+
+    /**
+     * Retourne le temps restant avant l'échéance.
+     *
+     * @return le temps restant en nanosecondes, négatif si l'échéance est passée,
+     *         ou {@link Long#MAX_VALUE} sans échéance.
+     */
+    public long restant() {
+        return delai > 0 ? echeance - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Lève une exception si l'opération doit s'arrêter.
+     *
+     * @throws CancellationException si l'opération a été annulée ou si l'échéance est passée.
+     */
+    public void verifier() {
+        if (annulee) {
+            throw new CancellationException("Opération annulée.");
+        }
+        if (delai > 0 && restant() <= 0) {
+            throw new CancellationException("Délai maximal dépassé (" + delai / 1000.0 + " s).");
+        }
+    }
+
+    /**
+     * Attend le résultat d'une tâche, au plus un délai donné, en consultant l'annulation
+     * au moins tous les dixièmes de seconde. La tâche n'est pas annulée par cette méthode.
+     *
+     * @param tache la tâche.
+     * @param delaiMax le délai maximal d'attente en nanosecondes, ou {@link Long#MAX_VALUE}.
+     * @param <T> le type du résultat.
+     * @return le résultat de la tâche.
+     * @throws TimeoutException si la tâche n'est pas terminée dans le délai.
+     * @throws ExecutionException si la tâche a levé une exception.
+     * @throws InterruptedException si le thread appelant est interrompu.
+     * @throws CancellationException si l'opération est annulée pendant l'attente.
+     */
+    public <T> T attendre(Future<T> tache, long delaiMax) throws TimeoutException, ExecutionException,
+            InterruptedException {
+        long fin = delaiMax == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + delaiMax;
+        while (true) {
+            verifier();
+            long attente = Math.min(INTERVALLE, Math.max(0, restant()));
+            if (fin != Long.MAX_VALUE) {
+                long reste = fin - System.nanoTime();
+                if (reste <= 0) {
+                    throw new TimeoutException();
+                }
+                attente = Math.min(attente, reste);
+            }
+            try {
+                return tache.get(attente, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Réveil périodique : annulation et délai consultés au tour suivant.
+            }
+        }
+    }
+
+    /**
+     * Attend le résultat d'une tâche sans autre limite que l'annulation.
+     *
+     * @param tache la tâche.
+     * @param <T> le type du résultat.
+     * @return le résultat de la tâche.
+     * @throws ExecutionException si la tâche a levé une exception.
+     * @throws InterruptedException si le thread appelant est interrompu.
+     * @throws CancellationException si l'opération est annulée pendant l'attente.
+     */
+    public <T> T attendre(Future<T> tache) throws ExecutionException, InterruptedException {
+        try {
+            return attendre(tache, Long.MAX_VALUE);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package application;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * La classe Archives ouvre les archives ZIP et JAR comme des répertoires virtuels, à l'aide
+ * du {@link java.nio.file.spi.FileSystemProvider} {@code zip} du JDK.
+ *
+ * <p>Une archive ouverte ne lit que son répertoire central ; le contenu d'une entrée n'est
+ * décompressé qu'à la lecture, en flux, et seulement sur la longueur lue. Les archives restent
+ * ouvertes tant qu'une entrée est en cours de lecture ; au-delà de {@value #OUVERTES_MAX} archives
+ * ouvertes, les moins récemment utilisées parmi celles qui ne sont pas lues sont fermées, puis
+ * rouvertes à la demande.</p>
+ *
+ * <p>Une entrée est désignée par le chemin de son archive suivi de {@code !} et de son chemin
+ * dans l'archive, par exemple {@code /photos/lot.zip!/2024/img.jpg}. Les archives contenues dans
+ * une archive ne sont pas ouvertes.</p>
+ *
+ * @author Binome
+ */
+public final class Archives {
+
+    private static final int OUVERTES_MAX = 64;
+
+    /**
+     * Archive ouverte et nombre d'utilisations en cours.
+     */
+    public static final class Ouverte implements Closeable {
+        private final FileSystem systeme;
+        private int utilisations;
+
+        private Ouverte(FileSystem systeme) {
+            this.systeme = systeme;
+        }
+
+        /**
+         * @return le système de fichiers de l'archive.
+         */
+        public FileSystem getSysteme() {
+            return systeme;
+        }
+
+        /**
+         * Rend l'archive : elle peut de nouveau être fermée si elle n'est plus utilisée.
+         */
+        @Override
+        public void close() {
+            synchronized (OUVERTES) {
+                utilisations--;
+                fermerAnciennes();
+            }
+        }
+    }
+
+    private static final Map<Path, Ouverte> OUVERTES = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Archives() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Indique, d'après son nom, si un fichier est une archive ZIP ou JAR.
+     *
+     * @param chemin le chemin du fichier.
+     * @return {@code true} pour une archive.
+     */
+    public static boolean estArchive(Path chemin) {
+        Path nom = chemin.getFileName();
+        if (nom == null) {
+            return false;
+        }
+        String texte = nom.toString().toLowerCase(Locale.ROOT);
+        return texte.endsWith(".zip") || texte.endsWith(".jar");
+    }
+
+    /**
+     * Ouvre une archive, ou réutilise celle qui est déjà ouverte.
+     *
+     * @param archive le chemin de l'archive.
+     * @return l'archive ouverte, à fermer après usage.
+     * @throws IOException si le fichier n'est pas une archive lisible.
+     */
+    public static Ouverte ouvrir(Path archive) throws IOException {
+        synchronized (OUVERTES) {
+            Ouverte ouverte = OUVERTES.get(archive);
+            if (ouverte == null) {
+                try {
+                    ouverte = new Ouverte(FileSystems.newFileSystem(archive, (ClassLoader) null));
+                } catch (ProviderNotFoundException e) {
+                    throw new IOException("Archive illisible : " + archive, e);
+                }
+                OUVERTES.put(archive, ouverte);
+            }
+            ouverte.utilisations++;
+            fermerAnciennes();
+            return ouverte;
+        }
+    }
+
+    /**
+     * Ouvre en lecture une entrée d'une archive ; l'archive reste ouverte jusqu'à la fermeture du flux.
+     *
+     * @param archive le chemin de l'archive.
+     * @param entree le chemin de l'entrée dans l'archive.
+     * @return le flux du contenu décompressé de l'entrée.
+     * @throws IOException si l'archive ou l'entrée ne peut pas être lue.
+     */
+    public static InputStream lire(Path archive, String entree) throws IOException {
+        Ouverte ouverte = ouvrir(archive);
+        try {
+            return new FilterInputStream(Files.newInputStream(ouverte.systeme.getPath(entree))) {
+                private boolean ferme;
+
+                @Override
+                public void close() throws IOException {
+                    if (!ferme) {
+                        ferme = true;
+                        try {
+                            super.close();
+                        } finally {
+                            ouverte.close();
+                        }
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            ouverte.close();
+            throw e;
+        }
+    }
+
+    private static void fermerAnciennes() {
+        Iterator<Ouverte> iterateur = OUVERTES.values().iterator();
+        while (OUVERTES.size() > OUVERTES_MAX && iterateur.hasNext()) {
+            Ouverte ouverte = iterateur.next();
+            if (ouverte.utilisations == 0) {
+                iterateur.remove();
+                try {
+                    ouverte.systeme.close();
+                } catch (IOException e) {
+                    // Archive ouverte en lecture seule : rien à écrire.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * La classe BancEssai mesure de bout en bout les opérations de la CLI
+ * (parcours, statistiques, recherche, sauvegarde et comparaison de snapshots)
+ * sur une arborescence, typiquement produite par {@link GenerateurArborescence}.
+ *
+ * <p>Chaque opération est appliquée à tous les répertoires de l'arborescence.
+ * Par défaut, elle est appelée dans la JVM du banc, sur {@link Repertoire} : la mesure exclut
+ * le démarrage de la JVM et le traitement des options. Avec {@code --jar cli.jar}, chaque
+ * opération lance réellement {@code java -jar cli.jar -d <répertoire> ...} par répertoire,
+ * sortie ignorée, comme en usage réel. Le débit est rapporté en fichiers par seconde et
+ * en Mo par seconde (volume total des fichiers couverts).</p>
+ *
+ * <p>Utilisation :</p>
+ * <pre>
+ * java -cp cli.jar application.BancEssai -d ./arbre [--jar cli.jar] [--repetitions 3] [--search image]
+ *      [--csv resultats.csv]
+ * </pre>
+ *
+ * @author Binome
+ */
+public class BancEssai {
+
+    private Path racine;
+    private int repetitions = 3;
+    private String motCle = "image";
+    private Path csv;
+    private String jar;
+
+    private List<String> repertoires;
+    private long nbFichiers;
+    private long nbOctets;
+    private Path dossierSnapshots;
+
+    /**
+     * Constructeur par défaut de la classe BancEssai.
+     */
+    public BancEssai() {
+        // Constructeur vide par défaut
+    }
+
+    /**
+     * Point d'entrée du banc d'essai.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @throws Exception si l'arborescence ne peut pas être lue.
+     */
+    public static void main(String[] args) throws Exception {
+        BancEssai banc = new BancEssai();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-d": banc.racine = Paths.get(args[++i]); break;
+                case "--repetitions": banc.repetitions = Integer.parseInt(args[++i]); break;
+                case "--search": banc.motCle = args[++i]; break;
+                case "--csv": banc.csv = Paths.get(args[++i]); break;
+                case "--jar": banc.jar = args[++i]; break;
+                default:
+                    System.err.println("Option inconnue : " + args[i]);
+                    return;
+            }
+        }
+        if (banc.racine == null) {
+            System.err.println("Aucun répertoire spécifié.");
+            return;
+        }
+        banc.executer();
+    }
+
+    /**
+     * Exécute toutes les opérations et affiche le tableau des résultats.
+     *
+     * @throws IOException si l'arborescence ne peut pas être lue.
+     */
+    public void executer() throws IOException {
+        // Chemins absolus : cli.jar est lancé depuis le dossier de ses snapshots.
+        try (Stream<Path> flux = Files.walk(racine.toAbsolutePath())) {
+            repertoires = flux.filter(Files::isDirectory).map(Path::toString).collect(Collectors.toList());
+        }
+        for (String repertoire : repertoires) {
+            Repertoire r = new Repertoire(repertoire);
+            r.listerFichiers();
+            for (Fichier fichier : r.getFichiers()) {
+                if (!Files.isDirectory(Paths.get(fichier.getChemin()))) {
+                    nbFichiers++;
+                    nbOctets += fichier.getTaille();
+                }
+            }
+        }
+        dossierSnapshots = Files.createTempDirectory("banc-snapshots-");
+
+        List<String> lignes = new ArrayList<>();
+        lignes.add("operation;duree (ms);fichiers/s;Mo/s");
+        lignes.add(mesurer("scan", this::scanner));
+        lignes.add(mesurer("stat", this::statistiques));
+        lignes.add(mesurer("search", this::rechercher));
+        lignes.add(mesurer("snapshotsave", this::sauvegarderSnapshots));
+        lignes.add(mesurer("snapshotcompare", this::comparerSnapshots));
+
+        System.out.println(repertoires.size() + " répertoires, " + nbFichiers + " fichiers, "
+                + nbOctets / (1024 * 1024) + " Mo" + (jar != null ? ", appels de " + jar : ", appels en mémoire"));
+        for (String ligne : lignes) {
+            System.out.println(ligne);
+        }
+        if (csv != null) {
+            Files.write(csv, lignes);
+        }
+    }
+
+    /**
+     * Opération mesurée par le banc d'essai.
+     */
+    private interface Operation {
+        void executer() throws IOException;
+    }
+
+    /**
+     * Exécute une opération {@code repetitions} fois, sortie standard désactivée,
+     * et retourne la ligne de résultat correspondant à la meilleure exécution.
+     */
+    private String mesurer(String nom, Operation operation) throws IOException {
+        PrintStream sortieOrigine = System.out;
+        long meilleur = Long.MAX_VALUE;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < repetitions; i++) {
+                long debut = System.nanoTime();
+                operation.executer();
+                meilleur = Math.min(meilleur, System.nanoTime() - debut);
+            }
+        } finally {
+            System.setOut(sortieOrigine);
+        }
+        double secondes = meilleur / 1e9;
+        return String.format(Locale.ROOT, "%s;%.1f;%.0f;%.1f", nom, meilleur / 1e6,
+                nbFichiers / secondes, nbOctets / (1024.0 * 1024.0) / secondes);
+    }
+
+    private void scanner() throws IOException {
+        for (String repertoire : repertoires) {
+            if (jar != null) {
+                lancer(null, "-d", repertoire, "--list");
+                continue;
+            }
+            new Repertoire(repertoire).listerFichiers();
+        }
+    }
+
+    private void statistiques() throws IOException {
+        for (String repertoire : repertoires) {
+            if (jar != null) {
+                lancer(null, "-d", repertoire, "--stat");
+                continue;
+            }
+            Repertoire r = new Repertoire(repertoire);
+            r.listerFichiers();
+            r.afficherStatistiques();
+        }
+    }
+
+    private void rechercher() throws IOException {
+        String motCleMinuscule = motCle.toLowerCase();
+        for (String repertoire : repertoires) {
+            if (jar != null) {
+                lancer(null, "-d", repertoire, "--search", motCle);
+                continue;
+            }
+            Repertoire r = new Repertoire(repertoire);
+            r.listerFichiers();
+            for (Fichier fichier : r.getFichiers()) {
+                if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image")
+                        && fichier.getNom().toLowerCase().contains(motCleMinuscule)) {
+                    System.out.println(fichier.getNom());
+                }
+            }
+        }
+    }
+
+    private void sauvegarderSnapshots() throws IOException {
+        for (int i = 0; i < repertoires.size(); i++) {
+            Path dossier = dossierSnapshots.resolve(Integer.toString(i));
+            viderDossier(dossier);
+            if (jar != null) {
+                // cli.jar enregistre le snapshot dans le dossier snapshot.txt du dossier courant.
+                Files.createDirectories(dossier);
+                lancer(dossier, "-d", repertoires.get(i), "--snapshotsave");
+                continue;
+            }
+            Repertoire r = new Repertoire(repertoires.get(i));
+            r.listerFichiers();
+            r.snapshotsave(dossier.toString());
+        }
+    }
+
+    private void comparerSnapshots() throws IOException {
+        for (int i = 0; i < repertoires.size(); i++) {
+            try (Stream<Path> snapshots = Files.walk(dossierSnapshots.resolve(Integer.toString(i)))) {
+                Path snapshot = snapshots.filter(Files::isRegularFile).findFirst()
+                        .orElseThrow(() -> new IOException("Snapshot manquant."));
+                if (jar != null) {
+                    lancer(null, "-d", repertoires.get(i), "--snapshotcompare", snapshot.toString());
+                } else {
+                    new Repertoire(repertoires.get(i)).snapshotCompare(repertoires.get(i), snapshot.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lance {@code cli.jar} dans une nouvelle JVM et attend sa fin, sortie ignorée.
+     *
+     * @param dossier le dossier courant de la JVM, ou {@code null} pour celui du banc.
+     * @param arguments les arguments passés à {@code cli.jar}.
+     */
+    private void lancer(Path dossier, String... arguments) throws IOException {
+        List<String> commande = new ArrayList<>();
+        commande.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        commande.add("-jar");
+        commande.add(Paths.get(jar).toAbsolutePath().toString());
+        commande.addAll(Arrays.asList(arguments));
+        ProcessBuilder constructeur = new ProcessBuilder(commande).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        if (dossier != null) {
+            constructeur.directory(dossier.toFile());
+        }
+        try {
+            constructeur.start().waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Banc d'essai interrompu.");
+        }
+    }
+
+    /**
+     * Supprime les snapshots d'une exécution précédente afin de n'en conserver qu'un par répertoire.
+     */
+    private static void viderDossier(Path dossier) throws IOException {
+        if (Files.isDirectory(dossier)) {
+            try (Stream<Path> contenu = Files.walk(dossier)) {
+                for (Path p : (Iterable<Path>) contenu.sorted(Comparator.reverseOrder())::iterator) {
+                    if (!p.equals(dossier)) {
+                        Files.delete(p);
+                    }
+                }
+            }
+        }
+    }
+}
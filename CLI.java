@@ -1,7 +1,21 @@
 package application;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 
 /**
  * La classe CLI offre une interface en ligne de commande permettant
@@ -11,13 +25,28 @@ import java.util.List;
  * <p>Les options disponibles incluent :</p>
  * <ul>
  *     <li>{@code -h, --help} : Affiche l'aide.</li>
- *     <li>{@code -d, --directory <path>} : Analyse un répertoire.</li>
+ *     <li>{@code -d, --directory <path>} : Analyse un répertoire ; répété, analyse plusieurs répertoires avec {@code --stat}.</li>
  *     <li>{@code -f, --file <file>} : Analyse un fichier.</li>
  *     <li>{@code --stat} : Affiche des statistiques sur le fichier ou répertoire.</li>
  *     <li>{@code --info} : Affiche les métadonnées d'un fichier.</li>
  *     <li>{@code --snapshotsave} : Sauvegarde l'état d'un répertoire dans un fichier snapshot.</li>
  *     <li>{@code --snapshotcompare <snapshot>} : Compare un répertoire avec un fichier snapshot.</li>
+ *     <li>{@code --historique <dossier> [--etat <date> | --diff <date>,<date>]} : Historique de snapshots en base et deltas.</li>
  *     <li>{@code --search <mot-clé>} : Recherche les images dont le nom contient le mot-clé.</li>
+ *     <li>{@code --export <format>} : Exporte le catalogue en NDJSON, CSV ou binaire en colonnes.</li>
+ *     <li>{@code --metrics [fichier.json]} : Affiche les durées de chaque phase et les écrit en JSON.</li>
+ *     <li>{@code --tag [nom,...]} : Affiche des tags EXIF/IPTC quelconques, ou tous les tags d'un fichier.</li>
+ *     <li>{@code -r, --recursif} : Parcourt aussi les sous-répertoires.</li>
+ *     <li>{@code --sans-liens} : Ignore les liens symboliques au lieu de les suivre.</li>
+ *     <li>{@code --archives} : Parcourt le contenu des archives ZIP et JAR comme des répertoires.</li>
+ *     <li>{@code --liens-physiques} : Affiche le bilan du parcours et les fichiers vus sous plusieurs chemins.</li>
+ *     <li>{@code --journal <fichier>} : Consigne l'avancement de {@code --info} pour pouvoir le reprendre.</li>
+ *     <li>{@code --resume} : Reprend l'analyse consignée dans le journal.</li>
+ *     <li>{@code --estimate [erreur]} : Estime les statistiques d'une arborescence par échantillonnage.</li>
+ *     <li>{@code --travailleurs <n>} : Répartit l'analyse d'un répertoire entre plusieurs processus.</li>
+ *     <li>{@code --couleurs <index>} : Indexe les couleurs des images d'un répertoire ; avec {@code -f}, affiche les couleurs d'une image et les images proches.</li>
+ *     <li>{@code --memoire <taille>} : Limite la mémoire de la liste des fichiers et des comparaisons ; au-delà, tri sur disque.</li>
+ *     <li>{@code --delai-max <s>}, {@code --delai-fichier <ms>}, {@code --quarantaine <fichier>} : Bornent la durée de l'analyse et de chaque fichier ; les fichiers trop lents sont mis en quarantaine.</li>
  * </ul>
  * 
  * @author Fariza
@@ -39,13 +68,28 @@ public class CLI {
      *             Options disponibles :
      *             <ul>
      *                 <li>{@code -h, --help} : Affiche l'aide.</li>
-     *                 <li>{@code -d, --directory <path>} : Analyse un répertoire.</li>
+     *                 <li>{@code -d, --directory <path>} : Analyse un répertoire ; répété, analyse plusieurs répertoires avec {@code --stat}.</li>
      *                 <li>{@code -f, --file <file>} : Analyse un fichier.</li>
      *                 <li>{@code --stat} : Affiche des statistiques sur le fichier ou répertoire.</li>
      *                 <li>{@code --info} : Affiche les métadonnées d'un fichier.</li>
      *                 <li>{@code --snapshotsave} : Sauvegarde l'état d'un répertoire dans un fichier snapshot.</li>
      *                 <li>{@code --snapshotcompare <snapshot>} : Compare un répertoire avec un fichier snapshot.</li>
+     *                 <li>{@code --historique <dossier> [--etat <date> | --diff <date>,<date>]} : Historique de snapshots en base et deltas.</li>
      *                 <li>{@code --search <mot-clé>} : Recherche les images dont le nom contient le mot-clé.</li>
+     *                 <li>{@code --export <format>} : Exporte le catalogue en NDJSON, CSV ou binaire en colonnes.</li>
+     *                 <li>{@code --metrics [fichier.json]} : Affiche les durées de chaque phase et les écrit en JSON.</li>
+     *                 <li>{@code --tag [nom,...]} : Affiche des tags EXIF/IPTC quelconques, ou tous les tags d'un fichier.</li>
+     *                 <li>{@code -r, --recursif} : Parcourt aussi les sous-répertoires.</li>
+     *                 <li>{@code --sans-liens} : Ignore les liens symboliques au lieu de les suivre.</li>
+     *                 <li>{@code --archives} : Parcourt le contenu des archives ZIP et JAR comme des répertoires.</li>
+     *                 <li>{@code --liens-physiques} : Affiche le bilan du parcours et les fichiers vus sous plusieurs chemins.</li>
+     *                 <li>{@code --journal <fichier>} : Consigne l'avancement de {@code --info} pour pouvoir le reprendre.</li>
+     *                 <li>{@code --resume} : Reprend l'analyse consignée dans le journal.</li>
+     *                 <li>{@code --estimate [erreur]} : Estime les statistiques d'une arborescence par échantillonnage.</li>
+     *                 <li>{@code --travailleurs <n>} : Répartit l'analyse d'un répertoire entre plusieurs processus.</li>
+     *                 <li>{@code --couleurs <index>} : Indexe les couleurs des images d'un répertoire ; avec {@code -f}, affiche les couleurs d'une image et les images proches.</li>
+     *                 <li>{@code --memoire <taille>} : Limite la mémoire de la liste des fichiers et des comparaisons ; au-delà, tri sur disque.</li>
+     *                 <li>{@code --delai-max <s>}, {@code --delai-fichier <ms>}, {@code --quarantaine <fichier>} : Bornent la durée de l'analyse et de chaque fichier ; les fichiers trop lents sont mis en quarantaine.</li>
      *             </ul>
      */
     public static void main(String[] args) {
@@ -53,78 +97,692 @@ public class CLI {
             afficherErreur("Aucun paramètre fourni. Utilisez -h ou --help pour afficher l'aide.");
             return;
         }
+        boolean mesures = containsOption(args, "--metrics", null);
+        Mesures.activer(mesures);
         try {
             if (containsOption(args, "-h", "--help")) {
                 afficherAide();
             } else if (containsOption(args, "-d", "--directory")) {
-                String chemin = getOptionValue(args, "-d", "--directory");
+                commandeRepertoire(args);
+            } else if (containsOption(args, "-f", "--file")) {
+                commandeFichier(args);
+            } else if (containsOption(args, "--historique", null)) {
+                commandeHistorique(args);
+            } else {
+                afficherErreur("Options non reconnues. Utilisez -h ou --help pour afficher l'aide.");
+            }
+        } catch (Exception e) {
+            afficherErreur("Erreur : " + e.getMessage());
+        }
 
-                if (chemin == null) {
-                    afficherErreur("Aucun répertoire spécifié.");
-                    return;
-                }
+        if (mesures) {
+            afficherMesures(getOptionValue(args, "--metrics", null));
+        }
+    }
 
-                Repertoire repertoire = new Repertoire(chemin);
-                repertoire.listerFichiers();
+    /**
+     * Affiche le résumé des mesures par phase et l'écrit en JSON si un fichier est donné.
+     *
+     * @param fichierJson Le fichier JSON de sortie, ou {@code null}.
+     */
+    private static void afficherMesures(String fichierJson) {
+        Mesures.afficherResume(System.out);
+        if (fichierJson != null) {
+            try {
+                Mesures.ecrireJson(Paths.get(fichierJson));
+            } catch (IOException e) {
+                afficherErreur("Erreur lors de l'écriture des mesures : " + e.getMessage());
+            }
+        }
+    }
 
-                if (containsOption(args, "--list", null)) {
-                    afficherListeImages(repertoire);
-                }
+    /**
+     * Traite les options associées à {@code -d, --directory}.
+     * Le répertoire n'est listé que si une option en a besoin : la comparaison
+     * de snapshots relit elle-même le répertoire.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @throws IOException si le répertoire ne peut pas être lu.
+     * @throws InterruptedException si l'extraction des métadonnées est interrompue.
+     */
+    private static void commandeRepertoire(String[] args) throws IOException, InterruptedException {
+        String chemin = getOptionValue(args, "-d", "--directory");
 
-                if (containsOption(args, "--stat", null)) {
-                    repertoire.afficherStatistiques();
-                }
+        if (chemin == null) {
+            afficherErreur("Aucun répertoire spécifié.");
+            return;
+        }
 
-                if (containsOption(args, "--snapshotsave", null)) {
-                    repertoire.snapshotsave("snapshot.txt");
-                }
+        List<String> racines = getOptionValues(args, "-d", "--directory");
+        if (racines.size() > 1) {
+            commandeRacines(args, racines);
+            return;
+        }
 
-                if (containsOption(args, "--snapshotcompare", null)) {
-                    String capture = getOptionValue(args, "--snapshotcompare", null);
+        String travailleurs = getOptionValue(args, "--travailleurs", null);
+        if (travailleurs != null) {
+            commandeTravailleurs(args, chemin, Integer.parseInt(travailleurs));
+            return;
+        }
 
-                    if (capture == null) {
-                        afficherErreur("Aucun snapshot spécifié pour la comparaison.");
-                        return;
-                    }
+        try (Repertoire repertoire = new Repertoire(chemin);
+             Quarantaine quarantaine = ouvrirQuarantaine(args);
+             Surveillant surveillant = creerSurveillant(args, quarantaine)) {
+            if (surveillant == null) {
+                analyserRepertoire(args, chemin, repertoire);
+                return;
+            }
+            repertoire.setAnnulation(surveillant.getAnnulation());
+            repertoire.setSurveillant(surveillant);
+            try {
+                analyserRepertoire(args, chemin, repertoire);
+            } finally {
+                afficherErreur(surveillant.getBilan() + " ; " + quarantaine.getNombre() + " fichiers en quarantaine.");
+            }
+        }
+    }
 
-                    comparerSnapshots(capture, chemin);
-                }
+    /**
+     * Ouvre la liste des fichiers à ignorer demandée par {@code --quarantaine <fichier>} ;
+     * sans cette option, la quarantaine ne dure que le temps de la commande.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @return La quarantaine.
+     * @throws IOException si la liste ne peut pas être ouverte.
+     */
+    private static Quarantaine ouvrirQuarantaine(String[] args) throws IOException {
+        String chemin = getOptionValue(args, "--quarantaine", null);
+        return chemin != null ? Quarantaine.ouvrir(Paths.get(chemin)) : new Quarantaine();
+    }
 
-                if (containsOption(args, "--search", null)) {
-                    String motCle = getOptionValue(args, "--search", null);
+    /**
+     * Crée le surveillant demandé par {@code --delai-max <secondes>} (durée maximale de la commande),
+     * {@code --delai-fichier <ms>} (durée maximale de l'analyse de chaque fichier) ou
+     * {@code --quarantaine <fichier>}.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @param quarantaine La liste des fichiers à ignorer.
+     * @return Le surveillant, ou {@code null} si aucune de ces options n'est donnée.
+     */
+    private static Surveillant creerSurveillant(String[] args, Quarantaine quarantaine) {
+        String delaiMax = getOptionValue(args, "--delai-max", null);
+        String delaiFichier = getOptionValue(args, "--delai-fichier", null);
+        if (delaiMax == null && delaiFichier == null && !containsOption(args, "--quarantaine", null)) {
+            return null;
+        }
+        Annulation annulation = new Annulation(delaiMax != null ? Math.round(Double.parseDouble(delaiMax) * 1000) : 0);
+        return new Surveillant(delaiFichier != null ? Long.parseLong(delaiFichier) : 0, quarantaine, annulation);
+    }
 
-                    if (motCle == null) {
-                        afficherErreur("Aucun mot-clé de recherche spécifié.");
-                        return;
-                    }
+    /**
+     * Applique au répertoire les options de {@code -d} ; avec {@code --memoire}, la liste des
+     * fichiers et les comparaisons sont triées sur disque au-delà du budget.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @param chemin Le chemin du répertoire.
+     * @param repertoire Le répertoire à analyser.
+     * @throws IOException si le répertoire ne peut pas être lu.
+     * @throws InterruptedException si l'extraction des métadonnées est interrompue.
+     */
+    private static void analyserRepertoire(String[] args, String chemin, Repertoire repertoire)
+            throws IOException, InterruptedException {
+        repertoire.setRecursif(containsOption(args, "-r", "--recursif"));
+        repertoire.setSuivreLiens(!containsOption(args, "--sans-liens", null));
+        repertoire.setArchives(containsOption(args, "--archives", null));
+        repertoire.setPremiersChemins(containsOption(args, "--liens-physiques", null));
+        String memoire = getOptionValue(args, "--memoire", null);
+        if (memoire != null) {
+            repertoire.setMemoireMax(lireTaille(memoire));
+        }
+        boolean liste = containsOption(args, "--list", null)
+                || containsOption(args, "--snapshotsave", null) || containsOption(args, "--search", null)
+                || containsOption(args, "--liens-physiques", null) || containsOption(args, "--couleurs", null);
+        if (liste) {
+            repertoire.listerFichiers();
+        }
+        // Avec --info, les mégapixels sont comptés pendant l'extraction et les statistiques affichées après.
+        StatistiquesArborescence statistiques = containsOption(args, "--stat", null)
+                ? new StatistiquesArborescence() : null;
+        boolean statistiquesApresInfo = statistiques != null && containsOption(args, "--info", "-i")
+                && !containsOption(args, "--export", null);
+        if (statistiquesApresInfo && containsOption(args, "--resume", null)) {
+            // Les fichiers et répertoires repris sont sautés sans être relus : ils manqueraient aux totaux.
+            throw new IOException("--stat avec --info ne peut pas être combiné avec --resume : "
+                    + "les fichiers déjà traités ne seraient pas comptés.");
+        }
+
+        if (containsOption(args, "--list", null)) {
+            afficherListeImages(repertoire);
+        }
+
+        if (statistiques != null && !statistiquesApresInfo) {
+            if (liste) {
+                repertoire.parcourirFichiers(statistiques);
+            } else {
+                repertoire.parcourir(statistiques);
+            }
+            statistiques.getTotal().afficher(System.out);
+        }
+
+        if (containsOption(args, "--liens-physiques", null)) {
+            repertoire.getDernierParcours().afficherBilan();
+        }
+
+        if (containsOption(args, "--couleurs", null)) {
+            String index = getOptionValue(args, "--couleurs", null);
+
+            if (index == null) {
+                afficherErreur("Aucun index de couleurs spécifié.");
+                return;
+            }
+
+            indexerCouleurs(repertoire, index);
+        }
+
+        if (containsOption(args, "--estimate", null)) {
+            String erreur = getOptionValue(args, "--estimate", null);
+            repertoire.estimerStatistiques(erreur != null ? Double.parseDouble(erreur) : 0.05);
+        }
+
+        String historique = getOptionValue(args, "--historique", null);
+        if (containsOption(args, "--snapshotsave", null)) {
+            if (historique != null) {
+                enregistrerHistorique(repertoire, historique);
+            } else {
+                repertoire.snapshotsave("snapshot.txt");
+            }
+        } else if (historique != null) {
+            consulterHistorique(args, historique);
+        }
+
+        if (containsOption(args, "--snapshotcompare", null)) {
+            String capture = getOptionValue(args, "--snapshotcompare", null);
+
+            if (capture == null) {
+                afficherErreur("Aucun snapshot spécifié pour la comparaison.");
+                return;
+            }
+
+            comparerSnapshots(capture, repertoire);
+        }
+
+        if (containsOption(args, "--search", null)) {
+            String motCle = getOptionValue(args, "--search", null);
+
+            if (motCle == null) {
+                afficherErreur("Aucun mot-clé de recherche spécifié.");
+                return;
+            }
+
+            rechercherImage(repertoire, motCle);
+        }
+
+        if (containsOption(args, "--info", "-i")) {
+            repertoire.setJournal(ouvrirJournal(args));
+        }
+        // Le journal est consulté par le répertoire pendant l'analyse, puis fermé ici.
+        Journal journal = repertoire.getJournal();
+        try {
+            if (containsOption(args, "--export", null)) {
+                exporter(repertoire, args);
+            } else if (containsOption(args, "--info", "-i")) {
+                extraireMetadonnees(repertoire, args, statistiquesApresInfo ? statistiques : null);
+            }
+        } finally {
+            repertoire.setJournal(null);
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        if (statistiquesApresInfo) {
+            statistiques.getTotal().afficher(System.out);
+        }
 
-                    rechercherImage(repertoire, motCle);
+        if (containsOption(args, "--tag", null)) {
+            String noms = getOptionValue(args, "--tag", null);
+
+            if (noms == null) {
+                afficherErreur("Aucun tag spécifié.");
+                return;
+            }
+            if (!verifierTags(noms)) {
+                return;
+            }
+
+            afficherTagsRepertoire(repertoire, noms.split(","));
+        }
+    }
+
+    /**
+     * Ouvre le journal demandé par {@code --journal <fichier>}. Avec {@code --resume}, l'analyse
+     * reprend après le dernier point de reprise ; sinon le journal est recommencé.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @return Le journal, ou {@code null} si aucun n'est demandé.
+     * @throws IOException si le journal ne peut pas être ouvert.
+     */
+    private static Journal ouvrirJournal(String[] args) throws IOException {
+        String chemin = getOptionValue(args, "--journal", null);
+        if (chemin == null) {
+            if (containsOption(args, "--resume", null)) {
+                throw new IOException("L'option --resume nécessite --journal <fichier>.");
+            }
+            return null;
+        }
+        Journal journal = Journal.ouvrir(Paths.get(chemin), containsOption(args, "--resume", null),
+                fichier -> fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image"));
+        if (journal.getFichiersRepris() > 0 || journal.getRepertoiresRepris() > 0) {
+            afficherErreur("Reprise : " + journal.getFichiersRepris() + " fichiers et "
+                    + journal.getRepertoiresRepris() + " répertoires déjà traités.");
+        }
+        return journal;
+    }
+
+    /**
+     * Consigne dans le journal du répertoire, s'il y en a un, le traitement d'un fichier.
+     * Appelée après l'affichage ou l'export du résultat : une interruption entre les deux
+     * fait au pire traiter le fichier une seconde fois à la reprise.
+     */
+    private static void consigner(Repertoire repertoire, Fichier fichier) {
+        Journal journal = repertoire.getJournal();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.terminer(fichier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Affiche les tags demandés de chaque image d'un répertoire. Pour chaque image,
+     * seul l'index des tags est construit et seules les valeurs demandées sont décodées.
+     * Avec le surveillant du répertoire, l'indexation de chaque image est bornée dans le temps.
+     * Les entrées d'archive ({@code --archives}) sont signalées sans être indexées : l'index
+     * lit les valeurs par accès direct au fichier, que n'offre pas une entrée compressée.
+     *
+     * @param repertoire Le répertoire à parcourir.
+     * @param noms Les noms ou identifiants des tags.
+     * @throws IOException si le répertoire ne peut pas être lu.
+     */
+    private static void afficherTagsRepertoire(Repertoire repertoire, String[] noms) throws IOException {
+        Surveillant surveillant = repertoire.getSurveillant();
+        repertoire.parcourir(fichier -> {
+            if (fichier.getTypeMime() == null || !fichier.getTypeMime().startsWith("image")) {
+                return;
+            }
+            StringBuilder ligne = new StringBuilder(fichier.getChemin());
+            if (fichier.getArchive() != null) {
+                System.out.println(ligne.append(" | Tags non disponibles pour une entrée d'archive"));
+                return;
+            }
+            try {
+                Path chemin = Paths.get(fichier.getChemin());
+                IndexTags index = surveillant == null ? IndexTags.indexer(chemin)
+                        : surveillant.executer(fichier, () -> IndexTags.indexer(chemin));
+                for (String nom : noms) {
+                    ligne.append(" | ").append(nom.trim()).append(" : ");
+                    String valeur = index.valeur(nom);
+                    ligne.append(valeur != null ? valeur : "Non disponible");
                 }
+            } catch (IOException e) {
+                ligne.append(" | Erreur : ").append(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Opération interrompue.");
+            }
+            System.out.println(ligne);
+        });
+    }
 
-            } else if (containsOption(args, "-f", "--file")) {
-                String cheminFichier = getOptionValue(args, "-f", "--file");
+    /**
+     * Exporte le catalogue du répertoire au format demandé par {@code --export}, au fil
+     * du parcours, vers {@code --sortie <fichier>} ou la sortie standard. Avec {@code --info},
+     * les images sont exportées avec leurs métadonnées.
+     *
+     * @param repertoire Le répertoire à exporter.
+     * @param args Arguments de la ligne de commande.
+     * @throws IOException si le répertoire ne peut pas être lu ou l'export écrit.
+     * @throws InterruptedException si l'extraction des métadonnées est interrompue.
+     */
+    private static void exporter(Repertoire repertoire, String[] args) throws IOException, InterruptedException {
+        String nomFormat = getOptionValue(args, "--export", null);
+        if (nomFormat == null) {
+            afficherErreur("Aucun format d'export spécifié (ndjson, csv ou colonnes).");
+            return;
+        }
+        Exportateur.Format format = Exportateur.Format.depuis(nomFormat);
+        boolean avecMetadonnees = containsOption(args, "--info", "-i");
+        String cheminSortie = getOptionValue(args, "--sortie", null);
+        // Une reprise complète l'export précédent : seul le NDJSON peut être prolongé.
+        boolean reprise = repertoire.getJournal() != null && containsOption(args, "--resume", null);
+        if (reprise && format != Exportateur.Format.NDJSON) {
+            afficherErreur("La reprise d'un export n'est possible qu'au format ndjson.");
+            return;
+        }
+        OutputStream sortie = cheminSortie != null
+                ? (reprise ? Files.newOutputStream(Paths.get(cheminSortie), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND) : Files.newOutputStream(Paths.get(cheminSortie)))
+                : new FileOutputStream(FileDescriptor.out);
 
-                if (cheminFichier == null) {
-                    afficherErreur("Aucun fichier spécifié.");
-                    return;
+        try (Exportateur exportateur = new Exportateur(format, avecMetadonnees, sortie)) {
+            try {
+                if (avecMetadonnees) {
+                    creerPipeline(repertoire, args)
+                            .executer(repertoire::parcourir, resultat -> {
+                                exporterFichier(exportateur, resultat.getFichier(), resultat.getMetadonnees());
+                                consigner(repertoire, resultat.getFichier());
+                            });
+                } else {
+                    repertoire.parcourir(fichier -> exporterFichier(exportateur, fichier, null));
                 }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
 
-                Fichier fichier = new Fichier(cheminFichier);
+    /**
+     * Exporte un fichier depuis un visiteur, qui ne peut pas lever d'exception vérifiée.
+     */
+    private static void exporterFichier(Exportateur exportateur, Fichier fichier, Metadonnees metadonnees) {
+        try {
+            exportateur.exporter(fichier, metadonnees);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                if (containsOption(args, "--stat", null)) {
-                    System.out.println(fichier);
+    /**
+     * Extrait les métadonnées de toutes les images d'un répertoire avec
+     * {@link PipelineMetadonnees}, au fil du parcours.
+     *
+     * @param repertoire Le répertoire à parcourir.
+     * @param args Arguments de la ligne de commande (voir {@link #creerPipeline(Repertoire, String[])}).
+     * @param statistiques Les statistiques à alimenter (fichiers et mégapixels), ou {@code null}.
+     * @throws IOException si le répertoire ne peut pas être lu.
+     * @throws InterruptedException si l'extraction est interrompue.
+     */
+    private static void extraireMetadonnees(Repertoire repertoire, String[] args,
+                                            StatistiquesArborescence statistiques)
+            throws IOException, InterruptedException {
+        PipelineMetadonnees.Source source = statistiques == null ? repertoire::parcourir
+                : visiteur -> repertoire.parcourir(statistiques.andThen(visiteur));
+        try {
+            creerPipeline(repertoire, args).executer(source, resultat -> {
+                System.out.println("Fichier : " + resultat.getChemin());
+                if (resultat.getErreur() != null) {
+                    System.out.println("Erreur lors de l'extraction des métadonnées : " + resultat.getErreur());
+                } else {
+                    System.out.println(resultat.getMetadonnees());
+                    if (statistiques != null) {
+                        statistiques.ajouterPixels(resultat.getFichier(), resultat.getMetadonnees().getPixels());
+                    }
                 }
+                consigner(repertoire, resultat.getFichier());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Crée le pipeline d'extraction des métadonnées d'un répertoire.
+     *
+     * @param repertoire Le répertoire analysé.
+     * @param args Arguments de la ligne de commande ({@code --sans-ordre},
+     *             {@code --threads-es <n>}, {@code --threads-calcul <n>},
+     *             {@code --ordre-disque <aucun|inode|extent>}) ; le surveillant
+     *             du répertoire, s'il y en a un, borne l'analyse de chaque image.
+     * @return Le pipeline.
+     */
+    private static PipelineMetadonnees creerPipeline(Repertoire repertoire, String[] args) {
+        boolean ordonne = !containsOption(args, "--sans-ordre", null);
+        PipelineMetadonnees pipeline = PipelineMetadonnees.pour(Paths.get(repertoire.getChemin()), ordonne);
+        String threadsEs = getOptionValue(args, "--threads-es", null);
+        String threadsCalcul = getOptionValue(args, "--threads-calcul", null);
+        if (threadsEs != null || threadsCalcul != null) {
+            int coeurs = Runtime.getRuntime().availableProcessors();
+            pipeline = new PipelineMetadonnees(
+                    threadsEs != null ? Integer.parseInt(threadsEs) : Peripherique.threadsLecture(Paths.get(repertoire.getChemin())),
+                    threadsCalcul != null ? Integer.parseInt(threadsCalcul) : coeurs, 4 * coeurs, ordonne);
+        }
+        String ordreDisque = getOptionValue(args, "--ordre-disque", null);
+        if (ordreDisque != null) {
+            pipeline.setOrdonnanceur(new OrdonnanceurLectures(OrdonnanceurLectures.Mode.depuis(ordreDisque)));
+        }
+        pipeline.setSurveillant(repertoire.getSurveillant());
+        return pipeline;
+    }
+
+    /**
+     * Traite les options associées à {@code -f, --file}.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @throws Exception si le fichier ou ses métadonnées ne peuvent pas être lus.
+     */
+    private static void commandeFichier(String[] args) throws Exception {
+        String cheminFichier = getOptionValue(args, "-f", "--file");
 
-                if (containsOption(args, "--info", "-i")) {
-                    Metadonnees metadonnees = new Metadonnees(cheminFichier);
-                    System.out.println(metadonnees);
+        if (cheminFichier == null) {
+            afficherErreur("Aucun fichier spécifié.");
+            return;
+        }
+
+        if (containsOption(args, "--stat", null)) {
+            System.out.println(new Fichier(cheminFichier));
+        }
+
+        try (Quarantaine quarantaine = ouvrirQuarantaine(args);
+             Surveillant surveillant = creerSurveillant(args, quarantaine)) {
+            if (containsOption(args, "--info", "-i")) {
+                afficherMetadonnees(cheminFichier, surveillant);
+            }
+
+            String noms = getOptionValue(args, "--tag", null);
+            if (containsOption(args, "--tag", null) && (noms == null || verifierTags(noms))) {
+                afficherTags(cheminFichier, noms, surveillant);
+            }
+
+            if (containsOption(args, "--couleurs", null)) {
+                String proches = getOptionValue(args, "--proches", null);
+                int nombre = containsOption(args, "--proches", null) ? verifierEntierPositif("--proches", proches) : 10;
+                if (nombre > 0) {
+                    afficherCouleurs(cheminFichier, getOptionValue(args, "--couleurs", null), nombre, surveillant);
                 }
+            }
+        }
+    }
 
-            } else {
-                afficherErreur("Options non reconnues. Utilisez -h ou --help pour afficher l'aide.");
+    /**
+     * Analyse un fichier, sous surveillance s'il y a un surveillant ({@code --delai-fichier},
+     * {@code --quarantaine}).
+     *
+     * @param cheminFichier Le chemin du fichier.
+     * @param surveillant Le surveillant, ou {@code null}.
+     * @param analyse L'analyse du fichier.
+     * @param <T> Le type du résultat.
+     * @return Le résultat de l'analyse.
+     * @throws Exception si l'analyse échoue, dépasse le délai ou si le fichier est en quarantaine.
+     */
+    private static <T> T analyserFichier(String cheminFichier, Surveillant surveillant, Callable<T> analyse)
+            throws Exception {
+        if (surveillant == null) {
+            return analyse.call();
+        }
+        return surveillant.executer(new Fichier(cheminFichier), analyse);
+    }
+
+    /**
+     * Affiche les couleurs dominantes d'une image et, si un index est donné, les images
+     * de l'index dont les couleurs sont les plus proches.
+     *
+     * @param cheminFichier Le chemin du fichier image.
+     * @param index Le fichier de l'index des couleurs, ou {@code null}.
+     * @param nombre Le nombre d'images proches à afficher.
+     * @param surveillant Le surveillant du décodage de l'image, ou {@code null}.
+     * @throws Exception si l'image ou l'index ne peut pas être lu.
+     */
+    private static void afficherCouleurs(String cheminFichier, String index, int nombre, Surveillant surveillant)
+            throws Exception {
+        FichierImage image = analyserFichier(cheminFichier, surveillant, () -> new FichierImage(cheminFichier));
+        System.out.println("Couleurs dominantes : " + image.getCouleurs());
+        if (index == null) {
+            return;
+        }
+        IndexCouleurs couleurs = IndexCouleurs.charger(Paths.get(index));
+        System.out.println("Images les plus proches (" + couleurs.getNombre() + " images indexées) :");
+        for (IndexCouleurs.Entree entree : couleurs.rechercher(image.getCouleurs(), nombre, image.getChemin())) {
+            System.out.println(String.format(Locale.ROOT, "  %5.1f %%  %s",
+                    100 - 50 * entree.getDistance(), entree.getChemin()));
+        }
+    }
+
+    /**
+     * Vérifie les noms de tags de {@code --tag} avant toute lecture, et signale le premier
+     * nom mal formé (répertoire inconnu, identifiant non hexadécimal).
+     *
+     * @param noms Les noms ou identifiants des tags séparés par des virgules.
+     * @return {@code true} si tous les noms sont bien formés.
+     */
+    private static boolean verifierTags(String noms) {
+        try {
+            for (String nom : noms.split(",")) {
+                IndexTags.verifier(nom);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            afficherErreur(e.getMessage() + " Utilisez -h ou --help pour afficher l'aide.");
+            return false;
+        }
+    }
+
+    /**
+     * Vérifie la valeur d'une option qui attend un entier strictement positif.
+     *
+     * @param option Le nom de l'option, pour le message d'erreur.
+     * @param valeur La valeur donnée, ou {@code null} si elle manque (une valeur négative
+     *               est prise pour une option par {@link #getOptionValue}).
+     * @return l'entier, ou {@code 0} après avoir signalé une valeur invalide.
+     */
+    private static int verifierEntierPositif(String option, String valeur) {
+        try {
+            int nombre = valeur != null ? Integer.parseInt(valeur.trim()) : 0;
+            if (nombre > 0) {
+                return nombre;
+            }
+        } catch (NumberFormatException e) {
+            // Signalé ci-dessous, comme une valeur négative ou nulle.
+        }
+        afficherErreur(option + " attend un entier strictement positif"
+                + (valeur != null ? " (reçu : " + valeur + ")" : "") + ". Utilisez -h ou --help pour afficher l'aide.");
+        return 0;
+    }
+
+    /**
+     * Affiche des tags EXIF/IPTC d'un fichier image, ou tous ses tags si aucun nom n'est donné.
+     *
+     * @param cheminFichier Le chemin du fichier image.
+     * @param noms Les noms ou identifiants des tags séparés par des virgules, ou {@code null}.
+     * @param surveillant Le surveillant de l'indexation, ou {@code null}.
+     * @throws Exception si le fichier ne peut pas être lu.
+     */
+    private static void afficherTags(String cheminFichier, String noms, Surveillant surveillant) throws Exception {
+        IndexTags index = analyserFichier(cheminFichier, surveillant, () -> IndexTags.indexer(Paths.get(cheminFichier)));
+        if (noms == null) {
+            for (int i = 0; i < index.getNombre(); i++) {
+                System.out.println("[" + index.getDossier(i) + "] " + index.getNom(i) + " : " + index.decoder(i));
+            }
+            return;
+        }
+        for (String nom : noms.split(",")) {
+            String valeur = index.valeur(nom);
+            System.out.println(nom.trim() + " : " + (valeur != null ? valeur : "Non disponible"));
+        }
+    }
+
+    /**
+     * Affiche les métadonnées d'un fichier image.
+     * Seule cette méthode fait référence à {@link Metadonnees} : metadata-extractor
+     * n'est donc chargé que lorsque {@code --info} est demandé.
+     *
+     * @param cheminFichier Le chemin du fichier image.
+     * @param surveillant Le surveillant de l'extraction, ou {@code null}.
+     * @throws Exception si les métadonnées ne peuvent pas être extraites.
+     */
+    private static void afficherMetadonnees(String cheminFichier, Surveillant surveillant) throws Exception {
+        if (!new File(cheminFichier).exists()) {
+            throw new IOException("Le fichier n'existe pas.");
+        }
+        System.out.println(analyserFichier(cheminFichier, surveillant, () -> new Metadonnees(cheminFichier)));
+    }
+
+    /**
+     * Traite plusieurs répertoires {@code -d} : ils sont parcourus en parallèle, avec une file
+     * par périphérique (voir {@link ParcoursRacines}), et leurs statistiques sont réunies.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @param racines Les répertoires à analyser.
+     * @throws IOException si un répertoire ne peut pas être lu.
+     * @throws InterruptedException si le parcours est interrompu.
+     */
+    private static void commandeRacines(String[] args, List<String> racines) throws IOException, InterruptedException {
+        if (!containsOption(args, "--stat", null)) {
+            afficherErreur("Avec plusieurs répertoires, seule l'option --stat est disponible.");
+            return;
+        }
+        List<Path> chemins = new ArrayList<>();
+        for (String racine : racines) {
+            chemins.add(Paths.get(racine));
+        }
+        ParcoursRacines parcours = new ParcoursRacines(containsOption(args, "-r", "--recursif"),
+                !containsOption(args, "--sans-liens", null));
+        parcours.parcourir(chemins);
+        long debut = Mesures.debut();
+        parcours.afficher(System.out);
+        Mesures.fin(Mesures.Phase.SORTIE, debut);
+    }
+
+    /**
+     * Répartit l'analyse d'un répertoire entre plusieurs processus (voir {@link Coordinateur}) :
+     * statistiques ({@code --stat}), snapshot ({@code --snapshotsave}) et catalogue
+     * ({@code --export ndjson|csv}, avec {@code --info} pour les métadonnées).
+     *
+     * @param args Arguments de la ligne de commande.
+     * @param chemin Le répertoire à analyser, parcouru récursivement.
+     * @param nombre Le nombre de processus travailleurs.
+     * @throws IOException si un travailleur échoue ou si les résultats ne peuvent pas être écrits.
+     * @throws InterruptedException si l'attente des travailleurs est interrompue.
+     */
+    private static void commandeTravailleurs(String[] args, String chemin, int nombre)
+            throws IOException, InterruptedException {
+        String nomFormat = getOptionValue(args, "--export", null);
+        try (Coordinateur coordinateur = new Coordinateur(Paths.get(chemin), nombre)) {
+            coordinateur.setSuivreLiens(!containsOption(args, "--sans-liens", null));
+            coordinateur.setMetadonnees(containsOption(args, "--info", "-i"));
+            coordinateur.setCatalogue(nomFormat != null ? Exportateur.Format.depuis(nomFormat) : null);
+            coordinateur.setSnapshot(containsOption(args, "--snapshotsave", null));
+            coordinateur.executer();
+
+            if (nomFormat != null) {
+                String cheminSortie = getOptionValue(args, "--sortie", null);
+                OutputStream sortie = cheminSortie != null ? Files.newOutputStream(Paths.get(cheminSortie))
+                        : new FileOutputStream(FileDescriptor.out);
+                try (sortie) {
+                    coordinateur.copierCatalogue(sortie);
+                }
+            }
+            if (containsOption(args, "--stat", null)) {
+                long debut = Mesures.debut();
+                coordinateur.afficherBilan(System.out);
+                coordinateur.getStatistiques().afficher(System.out);
+                Mesures.fin(Mesures.Phase.SORTIE, debut);
+            }
+            if (containsOption(args, "--snapshotsave", null)) {
+                coordinateur.ecrireSnapshot("snapshot.txt");
             }
-        } catch (Exception e) {
-            afficherErreur("Erreur : " + e.getMessage());
         }
     }
 
@@ -135,14 +793,45 @@ public class CLI {
         System.out.println("Usage : java -jar cli.jar [options]");
         System.out.println("Options disponibles :");
         System.out.println("-h, --help              Afficher cette aide.");
-        System.out.println("-d, --directory <path>  Spécifie un répertoire à analyser.");
+        System.out.println("-d, --directory <path>  Spécifie un répertoire à analyser ; répété, avec --stat, analyse");
+        System.out.println("                        plusieurs répertoires en parallèle (une file par disque).");
         System.out.println("-f, --file <file>       Spécifie un fichier à analyser.");
+        System.out.println("-r, --recursif          Parcourt aussi les sous-répertoires.");
+        System.out.println("--sans-liens            Ignore les liens symboliques au lieu de les suivre.");
+        System.out.println("--archives              (avec -r) Parcourt le contenu des archives ZIP et JAR sans les extraire.");
+        System.out.println("--liens-physiques       Affiche les fichiers vus sous plusieurs chemins (liens, montages).");
+        System.out.println("--memoire <taille>      Limite la mémoire de la liste des fichiers et des comparaisons (ex. 64M) ;");
+        System.out.println("                        au-delà, ils sont triés sur disque et restitués par ordre de chemin.");
+        System.out.println("--delai-max <s>         Durée maximale de la commande ; au-delà, l'analyse s'arrête.");
+        System.out.println("--delai-fichier <ms>    Durée maximale de la lecture et de l'analyse de chaque image (--info,");
+        System.out.println("                        --export, --couleurs, --tag, avec -d ou -f) ; au-delà, l'image est mise en quarantaine.");
+        System.out.println("--quarantaine <fichier> Liste des images en quarantaine, ignorées par les analyses suivantes.");
         System.out.println("--list                  Affiche la liste des fichiers images d'un répertoire.");
-        System.out.println("--stat                  Affiche les statistiques (répertoire ou fichier).");
-        System.out.println("--info                  Affiche les métadonnées d'un fichier.");
+        System.out.println("--stat                  Affiche les statistiques (répertoire ou fichier) ; avec --info, les mégapixels.");
+        System.out.println("--estimate [erreur]     Estime fichiers et volume par type (échantillonnage, erreur relative 0.05 par défaut).");
+        System.out.println("--info                  Affiche les métadonnées d'un fichier ou des images d'un répertoire.");
+        System.out.println("  --sans-ordre          (répertoire) Affiche les résultats dès qu'ils sont prêts.");
+        System.out.println("  --threads-es <n>      (répertoire) Nombre de lectures simultanées.");
+        System.out.println("  --threads-calcul <n>  (répertoire) Nombre de threads d'analyse.");
+        System.out.println("  --ordre-disque <ordre> (répertoire) Ordre des lectures : aucun, inode ou extent.");
+        System.out.println("  --journal <fichier>   (répertoire) Consigne l'avancement pour pouvoir reprendre l'analyse.");
+        System.out.println("  --resume              (répertoire) Reprend l'analyse consignée dans le journal.");
+        System.out.println("--travailleurs <n>      (répertoire) Répartit l'analyse récursive entre n processus ;");
+        System.out.println("                        avec --stat, --snapshotsave et --export ndjson|csv [--info].");
         System.out.println("--snapshotsave          Sauvegarde l'état d'un répertoire.");
         System.out.println("--snapshotcompare       Compare un répertoire à un état précédemment sauvegardé.");
+        System.out.println("--historique <dossier>  Avec --snapshotsave, enregistre l'état dans un historique (base et deltas) ;");
+        System.out.println("                        seul (sans -d), liste les snapshots de l'historique.");
+        System.out.println("  --etat <date>         Affiche l'état au dernier snapshot antérieur à la date (yyyyMMdd[_HHmm[ss]]).");
+        System.out.println("  --diff <date>,<date>  Affiche les fichiers ajoutés, supprimés et modifiés entre deux dates.");
         System.out.println("--search <mot-clé>      Recherche les images dont le nom contient le mot-clé.");
+        System.out.println("--export <format>       Exporte le catalogue (ndjson, csv ou colonnes), avec --info pour les métadonnées.");
+        System.out.println("  --sortie <fichier>    Fichier de destination de l'export (sortie standard par défaut).");
+        System.out.println("--metrics [fichier]     Affiche les durées par phase (et les écrit en JSON).");
+        System.out.println("--tag [nom,...]         Affiche des tags EXIF/IPTC (ex. Model,0x0112), ou tous les tags d'un fichier.");
+        System.out.println("--couleurs [index]      (répertoire) Enregistre l'histogramme des couleurs des images dans l'index ;");
+        System.out.println("                        (fichier) affiche les couleurs dominantes et, avec un index, les images proches.");
+        System.out.println("  --proches <n>         (fichier) Nombre d'images proches à afficher (10 par défaut).");
     }
 
     /**
@@ -187,54 +876,178 @@ public class CLI {
         return null;
     }
 
+    /**
+     * Lit une taille en octets, éventuellement suivie de K, M ou G (par exemple {@code 64M}).
+     * @param texte La taille.
+     * @return La taille en octets.
+     */
+    private static long lireTaille(String texte) {
+        String taille = texte.trim().toUpperCase(Locale.ROOT);
+        int unite = "KMG".indexOf(taille.isEmpty() ? ' ' : taille.charAt(taille.length() - 1));
+        if (unite < 0) {
+            return Long.parseLong(taille);
+        }
+        return Long.parseLong(taille.substring(0, taille.length() - 1)) << (10 * (unite + 1));
+    }
+
+    /**
+     * Récupère toutes les valeurs d'une option répétée, par exemple plusieurs {@code -d}.
+     * @param args Tableau des arguments.
+     * @param shortOpt Option courte.
+     * @param longOpt Option longue.
+     * @return Les valeurs de l'option, dans l'ordre de la ligne de commande.
+     */
+    private static List<String> getOptionValues(String[] args, String shortOpt, String longOpt) {
+        List<String> valeurs = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ((args[i].equals(shortOpt) || (longOpt != null && args[i].equals(longOpt)))
+                    && !args[i + 1].startsWith("-")) {
+                valeurs.add(args[i + 1]);
+            }
+        }
+        return valeurs;
+    }
+
     /**
      * Affiche la liste des fichiers images d'un répertoire.
      * @param repertoire Le répertoire dont les fichiers seront listés.
+     * @throws IOException si la liste des fichiers triée sur disque ne peut pas être relue.
      */
-    private static void afficherListeImages(Repertoire repertoire) {
-        List<Fichier> fichiersImages = repertoire.getFichiers();
+    private static void afficherListeImages(Repertoire repertoire) throws IOException {
+        long debut = Mesures.debut();
         System.out.println("Liste des fichiers images :");
-        for (Fichier fichier : fichiersImages) {
+        repertoire.parcourirFichiers(fichier -> {
             if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image")) {
                 System.out.println(fichier.getNom());
             }
-        }
+        });
+        Mesures.fin(Mesures.Phase.SORTIE, debut);
     }
 
     /**
      * Compare l'état actuel d'un répertoire avec un snapshot sauvegardé.
      * @param capture Le fichier snapshot à utiliser pour la comparaison.
-     * @param cheminRepertoire Le chemin du répertoire à comparer.
+     * @param repertoire Le répertoire à comparer, avec ses options de parcours et son budget mémoire.
      */
-    private static void comparerSnapshots(String capture, String cheminRepertoire) {
+    private static void comparerSnapshots(String capture, Repertoire repertoire) {
         try {
-            Repertoire repertoire = new Repertoire(cheminRepertoire);
-            repertoire.snapshotCompare(cheminRepertoire, capture);
+            repertoire.snapshotCompare(repertoire.getChemin(), capture);
         } catch (IOException e) {
             afficherErreur("Erreur lors de la comparaison des snapshots : " + e.getMessage());
         }
     }
 
+    /**
+     * Met à jour l'index des couleurs avec les images d'un répertoire (voir {@link IndexCouleurs}).
+     * @param repertoire Le répertoire listé.
+     * @param fichier Le fichier de l'index.
+     * @throws IOException si l'index ne peut pas être lu ou écrit.
+     * @throws InterruptedException si l'analyse des images est interrompue.
+     */
+    private static void indexerCouleurs(Repertoire repertoire, String fichier) throws IOException, InterruptedException {
+        Path chemin = Paths.get(fichier);
+        IndexCouleurs index = IndexCouleurs.charger(chemin);
+        System.out.println(index.mettreAJour(repertoire));
+        index.enregistrer(chemin);
+    }
+
+    /**
+     * Enregistre l'état d'un répertoire dans un historique de snapshots.
+     * @param repertoire Le répertoire listé.
+     * @param dossier Le dossier de l'historique.
+     */
+    private static void enregistrerHistorique(Repertoire repertoire, String dossier) {
+        long debut = Mesures.debut();
+        try {
+            HistoriqueSnapshots historique = new HistoriqueSnapshots(Paths.get(dossier));
+            System.out.println(historique.enregistrer(repertoire, new Date()));
+        } catch (IOException e) {
+            afficherErreur("Erreur lors de l'enregistrement du snapshot : " + e.getMessage());
+        } finally {
+            Mesures.fin(Mesures.Phase.SORTIE, debut);
+        }
+    }
+
+    /**
+     * Traite {@code --historique <dossier>} donné sans {@code -d} : l'historique est interrogé
+     * ({@code --etat}, {@code --diff}) ou listé sans lire aucun répertoire.
+     *
+     * @param args Arguments de la ligne de commande.
+     */
+    private static void commandeHistorique(String[] args) {
+        String dossier = getOptionValue(args, "--historique", null);
+        if (dossier == null) {
+            afficherErreur("Aucun dossier d'historique spécifié.");
+            return;
+        }
+        if (containsOption(args, "--snapshotsave", null)) {
+            afficherErreur("--snapshotsave demande le répertoire à enregistrer (-d).");
+            return;
+        }
+        consulterHistorique(args, dossier);
+    }
+
+    /**
+     * Interroge un historique de snapshots : état à une date ({@code --etat}), différences entre
+     * deux dates ({@code --diff}) ou, à défaut, liste des snapshots enregistrés.
+     * @param args Arguments de la ligne de commande.
+     * @param dossier Le dossier de l'historique.
+     */
+    private static void consulterHistorique(String[] args, String dossier) {
+        try {
+            HistoriqueSnapshots historique = new HistoriqueSnapshots(Paths.get(dossier));
+            String etat = getOptionValue(args, "--etat", null);
+            String diff = getOptionValue(args, "--diff", null);
+            if (etat != null) {
+                int numero = historique.rechercher(etat);
+                System.out.println("État au " + historique.getDate(numero) + " (snapshot " + numero + ") :");
+                long[] nombre = new long[1];
+                historique.parcourirEtat(numero, entree -> {
+                    System.out.println(entree);
+                    nombre[0]++;
+                });
+                System.out.println(nombre[0] + " fichiers.");
+            } else if (diff != null) {
+                String[] dates = diff.split(",");
+                if (dates.length != 2) {
+                    afficherErreur("--diff attend deux dates séparées par une virgule.");
+                    return;
+                }
+                int avant = historique.rechercher(dates[0]);
+                int apres = historique.rechercher(dates[1]);
+                System.out.println("Différences entre " + historique.getDate(avant) + " et "
+                        + historique.getDate(apres) + " :");
+                if (historique.comparer(avant, apres, System.out) == 0) {
+                    System.out.println("Aucun changement détecté dans le répertoire.");
+                }
+            } else {
+                historique.afficherIndex(System.out);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            afficherErreur("Erreur lors de la consultation de l'historique : " + e.getMessage());
+        }
+    }
+
     /**
      * Recherche les fichiers images contenant un mot-clé dans leur nom.
      * @param repertoire Le répertoire dans lequel rechercher.
      * @param motCle Le mot-clé à rechercher dans les noms de fichiers.
+     * @throws IOException si la liste des fichiers triée sur disque ne peut pas être relue.
      */
-    private static void rechercherImage(Repertoire repertoire, String motCle) {
-        List<Fichier> fichiersImages = repertoire.getFichiers();
-        boolean trouve = false;
+    private static void rechercherImage(Repertoire repertoire, String motCle) throws IOException {
+        boolean[] trouve = new boolean[1];
 
         System.out.println("Résultats de recherche pour \"" + motCle + "\" :");
 
-        for (Fichier fichier : fichiersImages) {
+        repertoire.parcourirFichiers(fichier -> {
             if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image") &&
                     fichier.getNom().toLowerCase().contains(motCle.toLowerCase())) {
                 System.out.println(fichier.getNom() + " existe dans le répertoire.");
-                trouve = true;
+                trouve[0] = true;
             }
-        }
+        });
 
-        if (!trouve) {
+        if (!trouve[0]) {
             System.out.println("Aucune image trouvée contenant le mot-clé \"" + motCle + "\".");
         }
     }
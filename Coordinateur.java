@@ -0,0 +1,407 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * La classe Coordinateur répartit l'analyse d'une très grande arborescence entre plusieurs
+ * processus {@link Travailleur} lancés sur la même machine, puis réunit leurs résultats.
+ *
+ * <p>L'arborescence est découpée par sous-répertoire de premier niveau : la racine est confiée
+ * à un premier travailleur, qui en compte les fichiers et rend chacun de ses sous-répertoires.
+ * Chaque sous-répertoire rendu devient une unité de travail, attribuée au premier travailleur
+ * libre. Lorsqu'il n'y a plus d'unité en attente et qu'un travailleur est inactif, le coordinateur
+ * envoie une demande {@code FAIM} au travailleur occupé depuis le plus longtemps : celui-ci rend
+ * un sous-répertoire, de préférence peu profond, qui est aussitôt confié au travailleur inactif. Un répertoire
+ * beaucoup plus gros que les autres est ainsi partagé au fil du parcours.</p>
+ *
+ * <p>Chaque travailleur écrit dans un dossier de travail temporaire ses {@link Statistiques},
+ * la liste de ses fichiers pour le snapshot et son catalogue ; le coordinateur fusionne les
+ * statistiques et concatène les listes et les catalogues. Chaque processus a son propre tas :
+ * le ramasse-miettes ne parcourt que la part de chaque travailleur.</p>
+ *
+ * <p>Un fichier accessible depuis deux unités (lien physique, lien symbolique vers un autre
+ * sous-répertoire) peut être compté par deux travailleurs : la déduplication de
+ * {@link ParcoursArborescence} est propre à chaque processus.</p>
+ *
+ * @author Binome
+ */
+public final class Coordinateur implements Closeable {
+
+    /**
+     * Message d'un travailleur ; une ligne {@code null} signale la fin de sa sortie.
+     */
+    private static final class Message {
+        final Processus processus;
+        final String ligne;
+
+        Message(Processus processus, String ligne) {
+            this.processus = processus;
+            this.ligne = ligne;
+        }
+    }
+
+    /**
+     * Processus travailleur et son état.
+     */
+    private static final class Processus {
+        final int numero;
+        final Process processus;
+        final PrintStream commandes;
+        boolean libre;
+        boolean faimEnvoyee;
+        long debutUnite;
+        long unites;
+        long fichiers;
+
+        Processus(int numero, Process processus) {
+            this.numero = numero;
+            this.processus = processus;
+            this.commandes = new PrintStream(processus.getOutputStream(), true, StandardCharsets.UTF_8);
+        }
+
+        void envoyer(String commande) {
+            commandes.println(commande);
+        }
+    }
+
+    private final Path racine;
+    private final int nombre;
+    private final Path dossier;
+    private final List<Processus> travailleurs = new ArrayList<>();
+    private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+    private boolean suivreLiens = true;
+    private boolean avecMetadonnees;
+    private Exportateur.Format format;
+    private boolean snapshot;
+    private long cedes;
+    private Statistiques statistiques;
+
+    /**
+     * Prépare la répartition d'une arborescence.
+     *
+     * @param racine le répertoire à analyser, toujours parcouru récursivement.
+     * @param nombre le nombre de processus travailleurs.
+     * @throws IOException si le dossier de travail ne peut pas être créé.
+     */
+    public Coordinateur(Path racine, int nombre) throws IOException {
+        this.racine = racine.toAbsolutePath();
+        this.nombre = Math.max(1, nombre);
+        this.dossier = Files.createTempDirectory("coordinateur");
+    }
+
+    /**
+     * @param suivreLiens {@code true} pour suivre les liens symboliques (par défaut).
+     */
+    public void setSuivreLiens(boolean suivreLiens) {
+        this.suivreLiens = suivreLiens;
+    }
+
+    /**
+     * @param avecMetadonnees {@code true} pour extraire les métadonnées des images
+     *                        (catalogue et mégapixels).
+     */
+    public void setMetadonnees(boolean avecMetadonnees) {
+        this.avecMetadonnees = avecMetadonnees;
+    }
+
+    /**
+     * @param format le format du catalogue écrit par les travailleurs (ndjson ou csv),
+     *               ou {@code null} pour ne pas en écrire.
+     */
+    public void setCatalogue(Exportateur.Format format) {
+        if (format == Exportateur.Format.COLONNES) {
+            throw new IllegalArgumentException("Le format colonnes ne peut pas être réuni ; utilisez ndjson ou csv.");
+        }
+        this.format = format;
+    }
+
+    /**
+     * @param snapshot {@code true} pour conserver la liste des fichiers en vue d'un snapshot.
+     */
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Lance les travailleurs, distribue les unités jusqu'à épuisement, puis fusionne les statistiques.
+     *
+     * @throws IOException si un travailleur échoue ou si le répertoire n'est pas valide.
+     * @throws InterruptedException si l'attente est interrompue.
+     */
+    public void executer() throws IOException, InterruptedException {
+        if (!Files.isDirectory(racine)) {
+            throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide.");
+        }
+        try {
+            for (int i = 0; i < nombre; i++) {
+                lancer(i);
+            }
+            distribuer();
+            for (Processus p : travailleurs) {
+                p.envoyer("FIN");
+            }
+            for (Processus p : travailleurs) {
+                if (p.processus.waitFor() != 0) {
+                    throw new IOException("Le travailleur " + p.numero + " a échoué.");
+                }
+            }
+        } finally {
+            for (Processus p : travailleurs) {
+                p.processus.destroyForcibly();
+            }
+        }
+        statistiques = new Statistiques();
+        for (Processus p : travailleurs) {
+            try (DataInputStream entree = new DataInputStream(Files.newInputStream(fichier("statistiques", p, "bin")))) {
+                statistiques.fusionner(Statistiques.lire(entree));
+            }
+        }
+    }
+
+    private void lancer(int numero) throws IOException {
+        List<String> commande = new ArrayList<>();
+        commande.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        commande.add("-cp");
+        commande.add(System.getProperty("java.class.path"));
+        commande.add(Travailleur.class.getName());
+        commande.add(dossier.toString());
+        commande.add(Integer.toString(numero));
+        if (!suivreLiens) {
+            commande.add("--sans-liens");
+        }
+        if (avecMetadonnees) {
+            commande.add("--info");
+        }
+        if (format != null) {
+            commande.add("--export");
+            commande.add(format.name());
+        }
+        if (snapshot) {
+            commande.add("--snapshot");
+        }
+        Process process = new ProcessBuilder(commande).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Processus processus = new Processus(numero, process);
+        travailleurs.add(processus);
+        Thread lecteur = new Thread(() -> lire(processus), "coordinateur-" + numero);
+        lecteur.setDaemon(true);
+        lecteur.start();
+    }
+
+    /**
+     * Transmet les lignes d'un travailleur au coordinateur.
+     */
+    private void lire(Processus processus) {
+        try (BufferedReader entree = new BufferedReader(new InputStreamReader(
+                processus.processus.getInputStream(), StandardCharsets.UTF_8))) {
+            String ligne;
+            while ((ligne = entree.readLine()) != null) {
+                messages.add(new Message(processus, ligne));
+            }
+        } catch (IOException e) {
+            // Sortie fermée : signalée comme une fin de processus.
+        }
+        messages.add(new Message(processus, null));
+    }
+
+    /**
+     * Boucle du coordinateur : attribue les unités aux travailleurs libres et demande
+     * du travail aux travailleurs occupés tant que d'autres sont inactifs.
+     */
+    private void distribuer() throws IOException, InterruptedException {
+        Deque<String> unites = new ArrayDeque<>();
+        unites.add("cede " + encoder(racine.toString()));
+        int prets = 0;
+        while (true) {
+            Message message = messages.take();
+            Processus p = message.processus;
+            if (message.ligne == null) {
+                throw new IOException("Le travailleur " + p.numero + " s'est arrêté avant la fin.");
+            }
+            if (message.ligne.equals("PRET")) {
+                p.libre = true;
+                prets++;
+            } else if (message.ligne.startsWith("TERMINE ")) {
+                p.libre = true;
+                p.faimEnvoyee = false;
+                p.fichiers += Long.parseLong(message.ligne.substring("TERMINE ".length()));
+            } else if (message.ligne.startsWith("CEDE ")) {
+                unites.add("complet " + message.ligne.substring("CEDE ".length()));
+                p.faimEnvoyee = false;
+                cedes++;
+            }
+            if (prets < nombre) {
+                continue;
+            }
+            for (Processus t : travailleurs) {
+                if (t.libre && !unites.isEmpty()) {
+                    t.libre = false;
+                    t.debutUnite = System.nanoTime();
+                    t.unites++;
+                    t.envoyer("UNITE " + unites.poll());
+                }
+            }
+            long libres = travailleurs.stream().filter(t -> t.libre).count();
+            if (libres == nombre && unites.isEmpty()) {
+                return;
+            }
+            // Les demandes vont d'abord aux unités commencées depuis le plus longtemps, les plus grosses.
+            long demandes = travailleurs.stream().filter(t -> t.faimEnvoyee).count();
+            List<Processus> occupes = new ArrayList<>(travailleurs);
+            occupes.sort(Comparator.comparingLong(t -> t.debutUnite));
+            for (Processus t : occupes) {
+                if (demandes >= libres) {
+                    break;
+                }
+                if (!t.libre && !t.faimEnvoyee) {
+                    t.faimEnvoyee = true;
+                    t.envoyer("FAIM");
+                    demandes++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return les statistiques réunies de tous les travailleurs.
+     */
+    public Statistiques getStatistiques() {
+        return statistiques;
+    }
+
+    /**
+     * Affiche la répartition du travail entre les processus.
+     *
+     * @param sortie le flux d'affichage.
+     */
+    public void afficherBilan(PrintStream sortie) {
+        sortie.println("Travailleurs : " + nombre + " (" + cedes + " répertoires partagés)");
+        for (Processus p : travailleurs) {
+            sortie.println("  " + p.numero + " : " + p.unites + " unités, " + p.fichiers + " fichiers");
+        }
+    }
+
+    /**
+     * Concatène les catalogues des travailleurs ; l'en-tête CSV n'est écrit qu'une fois.
+     *
+     * @param sortie le flux de destination.
+     * @throws IOException si un catalogue ne peut pas être lu ou écrit.
+     */
+    public void copierCatalogue(OutputStream sortie) throws IOException {
+        boolean premier = true;
+        for (Processus p : travailleurs) {
+            try (InputStream entree = Files.newInputStream(fichier("catalogue", p, "export"))) {
+                if (format == Exportateur.Format.CSV && !premier) {
+                    int octet;
+                    while ((octet = entree.read()) >= 0 && octet != '\n') {
+                        // En-tête déjà écrit par le premier catalogue.
+                    }
+                }
+                entree.transferTo(sortie);
+            }
+            premier = false;
+        }
+        sortie.flush();
+    }
+
+    /**
+     * Écrit un snapshot de toute l'arborescence, au même format que {@link Repertoire#snapshotsave(String)}.
+     *
+     * @param dossierSnapshots le dossier des snapshots.
+     * @throws IOException si le snapshot ne peut pas être écrit.
+     */
+    public void ecrireSnapshot(String dossierSnapshots) throws IOException {
+        Files.createDirectories(Paths.get(dossierSnapshots));
+        String dateStr = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        String cheminSnapshot = dossierSnapshots + File.separator + "snapshot_" + dateStr + ".txt";
+        long debut = Mesures.debut();
+        try (Writer writer = Files.newBufferedWriter(Paths.get(cheminSnapshot))) {
+            writer.write("Snapshot du répertoire : " + racine + "\n");
+            writer.write("Nombre total de fichiers : " + statistiques.nbFichiers + "\n");
+            writer.write("Nombre de fichiers image : " + statistiques.nbImages + "\n");
+            writer.write("Nombre d'images PNG : " + statistiques.nbPNG + "\n");
+            writer.write("Nombre d'images JPEG : " + statistiques.nbJPEG + "\n");
+            writer.write("Nombre d'images WEBP : " + statistiques.nbWEBP + "\n\n");
+            writer.write("Détails des fichiers :\n");
+            writer.flush();
+            for (Processus p : travailleurs) {
+                try (BufferedReader details = Files.newBufferedReader(fichier("details", p, "txt"), StandardCharsets.UTF_8)) {
+                    details.transferTo(writer);
+                }
+            }
+        }
+        Mesures.fin(Mesures.Phase.SORTIE, debut);
+        System.out.println("Snapshot enregistré dans : " + cheminSnapshot);
+    }
+
+    /**
+     * Supprime le dossier de travail.
+     *
+     * @throws IOException si le dossier ne peut pas être supprimé.
+     */
+    @Override
+    public void close() throws IOException {
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(dossier)) {
+            for (Path fichier : flux) {
+                Files.delete(fichier);
+            }
+        }
+        Files.delete(dossier);
+    }
+
+    private Path fichier(String nom, Processus p, String extension) {
+        return dossier.resolve(nom + "_" + p.numero + "." + extension);
+    }
+
+    /**
+     * Encode un chemin sur une ligne du protocole.
+     *
+     * @param chemin le chemin.
+     * @return le chemin, barres obliques inverses et sauts de ligne échappés.
+     */
+    static String encoder(String chemin) {
+        return chemin.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * Décode un chemin écrit par {@link #encoder(String)}.
+     *
+     * @param texte le texte lu.
+     * @return le chemin.
+     */
+    static String decoder(String texte) {
+        StringBuilder sb = new StringBuilder(texte.length());
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c == '\\' && i + 1 < texte.length()) {
+                char suivant = texte.charAt(++i);
+                sb.append(suivant == 'n' ? '\n' : suivant);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
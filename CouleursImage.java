@@ -0,0 +1,198 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * La classe CouleursImage résume les couleurs d'une image par un histogramme compact :
+ * chaque composante rouge, verte et bleue est réduite à ses 2 bits de poids fort, soit
+ * {@value #CLASSES} classes de couleurs, et chaque classe reçoit la part des pixels qui y tombent.
+ *
+ * <p>L'histogramme est calculé sur une image décodée avec sous-échantillonnage (voir
+ * {@link #pas(int, int)}) : environ {@value #COTE} pixels de côté suffisent à estimer la
+ * répartition des couleurs. Les classes des pixels sont calculées plusieurs pixels à la fois avec
+ * l'API Vector du JDK lorsque le module {@code jdk.incubator.vector} est chargé
+ * ({@code java --add-modules jdk.incubator.vector ...}), pixel par pixel sinon ; le résultat
+ * est le même.</p>
+ *
+ * <p>Deux histogrammes se comparent par leur distance L1, comprise entre 0 (mêmes couleurs)
+ * et 2 (aucune couleur commune). Un histogramme s'enregistre sur {@value #CLASSES} entiers
+ * de 16 bits, voir {@link IndexCouleurs}.</p>
+ *
+ * @author Binome
+ */
+public final class CouleursImage {
+
+    /** Nombre de classes de couleurs : 4 niveaux par composante. */
+    public static final int CLASSES = 64;
+    private static final int COTE = 128;
+    private static final int UNITE = 0xFFFF;
+    private static final boolean VECTEUR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final float[] parts;
+
+    private CouleursImage(float[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Pas de sous-échantillonnage à appliquer au décodage d'une image : une ligne et une colonne
+     * sur {@code pas} sont lues, pour garder au moins {@value #COTE} pixels sur le plus grand côté.
+     *
+     * @param largeur la largeur de l'image.
+     * @param hauteur la hauteur de l'image.
+     * @return le pas, au moins 1.
+     */
+    public static int pas(int largeur, int hauteur) {
+        return Math.max(1, Math.max(largeur, hauteur) / COTE);
+    }
+
+    /**
+     * Calcule l'histogramme des couleurs d'une image, en général déjà sous-échantillonnée.
+     * La transparence est ignorée.
+     *
+     * @param image l'image décodée.
+     * @return l'histogramme des couleurs.
+     */
+    public static CouleursImage calculer(BufferedImage image) {
+        long debut = Mesures.debut();
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        int[] classes = new int[pixels.length];
+        int debutScalaire = VECTEUR ? CouleursVecteur.classer(pixels, classes) : 0;
+        classer(pixels, classes, debutScalaire, pixels.length);
+        int[] comptes = new int[CLASSES];
+        for (int classe : classes) {
+            comptes[classe]++;
+        }
+        float[] parts = new float[CLASSES];
+        if (pixels.length > 0) {
+            for (int i = 0; i < CLASSES; i++) {
+                parts[i] = comptes[i] / (float) pixels.length;
+            }
+        }
+        Mesures.fin(Mesures.Phase.COULEURS, debut);
+        return new CouleursImage(parts);
+    }
+
+    /**
+     * Calcule la classe de couleur des pixels {@code ARGB} d'indices {@code debut} à {@code fin} exclu.
+     */
+    static void classer(int[] pixels, int[] classes, int debut, int fin) {
+        for (int i = debut; i < fin; i++) {
+            int p = pixels[i];
+            classes[i] = (p >>> 18) & 0x30 | (p >>> 12) & 0x0C | (p >>> 6) & 0x03;
+        }
+    }
+
+    /**
+     * Retourne la couleur au centre d'une classe.
+     *
+     * @param classe la classe, de 0 à {@value #CLASSES} - 1.
+     * @return la couleur au format {@code 0xRRGGBB}.
+     */
+    public static int couleur(int classe) {
+        int rouge = (classe >> 4 & 3) * 64 + 32;
+        int vert = (classe >> 2 & 3) * 64 + 32;
+        int bleu = (classe & 3) * 64 + 32;
+        return rouge << 16 | vert << 8 | bleu;
+    }
+
+    /**
+     * Retourne la part des pixels d'une classe de couleur.
+     *
+     * @param classe la classe, de 0 à {@value #CLASSES} - 1.
+     * @return la part, entre 0 et 1.
+     */
+    public float getPart(int classe) {
+        return parts[classe];
+    }
+
+    /**
+     * Retourne les classes les plus représentées, de la plus grande part à la plus petite.
+     * Les classes vides ne sont pas retournées.
+     *
+     * @param nombre le nombre maximal de classes.
+     * @return les classes dominantes.
+     */
+    public int[] getDominantes(int nombre) {
+        int[] dominantes = new int[Math.min(nombre, CLASSES)];
+        boolean[] prises = new boolean[CLASSES];
+        int n = 0;
+        while (n < dominantes.length) {
+            int meilleure = -1;
+            for (int i = 0; i < CLASSES; i++) {
+                if (!prises[i] && parts[i] > 0 && (meilleure < 0 || parts[i] > parts[meilleure])) {
+                    meilleure = i;
+                }
+            }
+            if (meilleure < 0) {
+                break;
+            }
+            prises[meilleure] = true;
+            dominantes[n++] = meilleure;
+        }
+        return Arrays.copyOf(dominantes, n);
+    }
+
+    /**
+     * Distance L1 entre deux histogrammes.
+     *
+     * @param autre l'autre histogramme.
+     * @return la distance, entre 0 et 2.
+     */
+    public float distance(CouleursImage autre) {
+        float somme = 0;
+        for (int i = 0; i < CLASSES; i++) {
+            somme += Math.abs(parts[i] - autre.parts[i]);
+        }
+        return somme;
+    }
+
+    /**
+     * Écrit l'histogramme, chaque part sur 16 bits.
+     *
+     * @param sortie le flux de destination.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void ecrire(DataOutput sortie) throws IOException {
+        for (float part : parts) {
+            sortie.writeShort(Math.round(part * UNITE));
+        }
+    }
+
+    /**
+     * Relit un histogramme écrit par {@link #ecrire(DataOutput)}.
+     *
+     * @param entree le flux source.
+     * @return l'histogramme.
+     * @throws IOException en cas d'erreur de lecture.
+     */
+    public static CouleursImage lire(DataInput entree) throws IOException {
+        float[] parts = new float[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            parts[i] = entree.readUnsignedShort() / (float) UNITE;
+        }
+        return new CouleursImage(parts);
+    }
+
+    /**
+     * Retourne les couleurs dominantes, par exemple {@code #2060A0 41 %, #E0E0E0 22 %}.
+     *
+     * @return la liste des trois couleurs dominantes et de leurs parts.
+     */
+    @Override
+    public String toString() {
+        StringBuilder texte = new StringBuilder();
+        for (int classe : getDominantes(3)) {
+            if (texte.length() > 0) {
+                texte.append(", ");
+            }
+            texte.append(String.format(Locale.ROOT, "#%06X %d %%", couleur(classe), Math.round(parts[classe] * 100)));
+        }
+        return texte.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package application;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Calcul des classes de couleur de {@link CouleursImage} avec l'API Vector du JDK : chaque
+ * instruction traite autant de pixels que le permettent les registres du processeur
+ * (8 avec AVX2, 16 avec AVX-512).
+ *
+ * <p>Cette classe n'est chargée que si le module {@code jdk.incubator.vector} est présent
+ * au lancement de la JVM.</p>
+ *
+ * @author Binome
+ */
+final class CouleursVecteur {
+
+    private static final VectorSpecies<Integer> ESPECE = IntVector.SPECIES_PREFERRED;
+
+    private CouleursVecteur() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Calcule la classe de couleur des pixels {@code ARGB}, par vecteurs entiers ; les derniers
+     * pixels, moins nombreux qu'un vecteur, restent à traiter un par un par l'appelant.
+     * Cette classe ne dépend ainsi d'aucune autre et peut être compilée seule avec le module.
+     *
+     * @return l'indice du premier pixel non traité.
+     */
+    static int classer(int[] pixels, int[] classes) {
+        int limite = ESPECE.loopBound(pixels.length);
+        int i = 0;
+        for (; i < limite; i += ESPECE.length()) {
+            IntVector p = IntVector.fromArray(ESPECE, pixels, i);
+            p.lanewise(VectorOperators.LSHR, 18).and(0x30)
+                    .or(p.lanewise(VectorOperators.LSHR, 12).and(0x0C))
+                    .or(p.lanewise(VectorOperators.LSHR, 6).and(0x03))
+                    .intoArray(classes, i);
+        }
+        return i;
+    }
+}
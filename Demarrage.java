@@ -0,0 +1,182 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * La classe Demarrage mesure le temps de démarrage à froid de {@code cli.jar}
+ * et génère l'archive de partage de classes (AppCDS) associée.
+ *
+ * <p>Pour chaque commande, une nouvelle JVM est lancée et le temps écoulé
+ * jusqu'au premier octet écrit sur la sortie standard (ou d'erreur) est mesuré.</p>
+ *
+ * <p>Utilisation :</p>
+ * <pre>
+ * java -cp cli.jar application.Demarrage [--jar cli.jar] [--cds cli.jsa] [--creer-archive]
+ *      [--repetitions N] [-d répertoire] [-f fichier]
+ * </pre>
+ *
+ * @author Binome
+ */
+public class Demarrage {
+
+    private String jar = "cli.jar";
+    private String archive = "cli.jsa";
+    private String repertoire = ".";
+    private String fichier = null;
+    private int repetitions = 10;
+
+    /**
+     * Constructeur par défaut de la classe Demarrage.
+     */
+    public Demarrage() {
+        // Constructeur vide par défaut
+    }
+
+    /**
+     * Point d'entrée de l'outil de mesure.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @throws Exception si une JVM ne peut pas être lancée.
+     */
+    public static void main(String[] args) throws Exception {
+        Demarrage demarrage = new Demarrage();
+        boolean creerArchive = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--jar": demarrage.jar = args[++i]; break;
+                case "--cds": demarrage.archive = args[++i]; break;
+                case "--repetitions": demarrage.repetitions = Integer.parseInt(args[++i]); break;
+                case "-d": demarrage.repertoire = args[++i]; break;
+                case "-f": demarrage.fichier = args[++i]; break;
+                case "--creer-archive": creerArchive = true; break;
+                default:
+                    System.err.println("Option inconnue : " + args[i]);
+                    return;
+            }
+        }
+
+        if (creerArchive) {
+            demarrage.creerArchive();
+        }
+        demarrage.mesurer();
+    }
+
+    /**
+     * Retourne les commandes représentatives utilisées pour l'entraînement
+     * de l'archive CDS et pour les mesures.
+     *
+     * @return la liste des commandes (arguments passés à {@code cli.jar}).
+     */
+    private List<String[]> commandes() {
+        List<String[]> commandes = new ArrayList<>();
+        commandes.add(new String[] {"--help"});
+        commandes.add(new String[] {"-d", repertoire, "--list"});
+        commandes.add(new String[] {"-d", repertoire, "--stat"});
+        if (fichier != null) {
+            commandes.add(new String[] {"-f", fichier, "--stat"});
+            commandes.add(new String[] {"-f", fichier, "--info"});
+        }
+        return commandes;
+    }
+
+    /**
+     * Génère l'archive CDS dynamique à partir de la commande la plus complète,
+     * dont les classes chargées couvrent celles des autres commandes.
+     *
+     * @throws IOException si une JVM ne peut pas être lancée.
+     * @throws InterruptedException si l'attente d'une JVM est interrompue.
+     */
+    public void creerArchive() throws IOException, InterruptedException {
+        List<String[]> commandes = commandes();
+        String[] derniere = commandes.get(commandes.size() - 1);
+        List<String> commande = new ArrayList<>();
+        commande.add(javaExecutable());
+        commande.add("-XX:ArchiveClassesAtExit=" + archive);
+        commande.add("-jar");
+        commande.add(jar);
+        commande.addAll(Arrays.asList(derniere));
+
+        Process process = new ProcessBuilder(commande).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        process.waitFor();
+        System.out.println("Archive CDS générée dans : " + archive);
+    }
+
+    /**
+     * Mesure le temps jusqu'à la première sortie de chaque commande,
+     * sans puis avec l'archive CDS si elle existe.
+     *
+     * @throws IOException si une JVM ne peut pas être lancée.
+     * @throws InterruptedException si l'attente d'une JVM est interrompue.
+     */
+    public void mesurer() throws IOException, InterruptedException {
+        boolean avecArchive = new File(archive).exists();
+        System.out.println("commande;sans CDS (ms);avec CDS (ms)");
+        for (String[] arguments : commandes()) {
+            double sansCds = mediane(arguments, false);
+            String avecCds = avecArchive ? String.format("%.1f", mediane(arguments, true)) : "-";
+            System.out.println(String.join(" ", arguments) + ";" + String.format("%.1f", sansCds) + ";" + avecCds);
+        }
+    }
+
+    /**
+     * Calcule la médiane du temps jusqu'à la première sortie pour une commande.
+     *
+     * @param arguments Les arguments passés à {@code cli.jar}.
+     * @param cds {@code true} pour utiliser l'archive CDS.
+     * @return la médiane en millisecondes.
+     */
+    private double mediane(String[] arguments, boolean cds) throws IOException, InterruptedException {
+        double[] temps = new double[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            temps[i] = tempsPremiereSortie(arguments, cds);
+        }
+        Arrays.sort(temps);
+        return temps[repetitions / 2];
+    }
+
+    /**
+     * Lance une JVM et mesure le temps écoulé jusqu'au premier octet reçu.
+     *
+     * @param arguments Les arguments passés à {@code cli.jar}.
+     * @param cds {@code true} pour utiliser l'archive CDS.
+     * @return le temps en millisecondes.
+     */
+    private double tempsPremiereSortie(String[] arguments, boolean cds) throws IOException, InterruptedException {
+        List<String> commande = new ArrayList<>();
+        commande.add(javaExecutable());
+        if (cds) {
+            commande.add("-XX:SharedArchiveFile=" + archive);
+        }
+        commande.add("-jar");
+        commande.add(jar);
+        commande.addAll(Arrays.asList(arguments));
+
+        long debut = System.nanoTime();
+        Process process = new ProcessBuilder(commande).redirectErrorStream(true).start();
+        double ecoule;
+        try (InputStream sortie = process.getInputStream()) {
+            sortie.read();
+            ecoule = (System.nanoTime() - debut) / 1_000_000.0;
+            sortie.transferTo(OutputStream.nullOutputStream());
+        }
+        process.waitFor();
+        return ecoule;
+    }
+
+    /**
+     * Retourne le chemin de l'exécutable java de la JVM courante.
+     *
+     * @return le chemin de l'exécutable java.
+     */
+    private static String javaExecutable() {
+        return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    }
+}
@@ -0,0 +1,156 @@
+package application;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * La classe EnsembleCles mémorise les identifiants de fichiers (périphérique, inode)
+ * déjà rencontrés lors d'un parcours.
+ *
+ * <p>Les couples sont rangés dans un tableau de {@code long} à adressage ouvert, sans
+ * objet par entrée : un million de fichiers occupent environ 32 Mo au plus. La clé
+ * {@link java.nio.file.attribute.BasicFileAttributes#fileKey()} des systèmes Unix,
+ * de la forme {@code (dev=803,ino=1234)}, est décomposée en ses deux nombres ; les clés
+ * d'une autre forme sont conservées telles quelles dans un {@link HashSet}.</p>
+ *
+ * @author Binome
+ */
+public final class EnsembleCles {
+
+    private static final long VIDE = Long.MIN_VALUE;
+
+    private long[] table;
+    private int taille;
+    private Set<Object> autres;
+
+    /**
+     * Crée un ensemble vide.
+     */
+    public EnsembleCles() {
+        table = new long[2 * 1024];
+        Arrays.fill(table, VIDE);
+    }
+
+    /**
+     * Ajoute la clé d'un fichier.
+     *
+     * @param cle la clé retournée par {@code fileKey()}, non nulle.
+     * @return {@code true} si la clé n'avait pas encore été rencontrée.
+     */
+    public boolean ajouter(Object cle) {
+        long[] couple = decomposer(cle);
+        if (couple != null) {
+            return ajouter(couple[0], couple[1]);
+        }
+        if (autres == null) {
+            autres = new HashSet<>();
+        }
+        return autres.add(cle);
+    }
+
+    /**
+     * Décompose une clé de fichier Unix {@code (dev=803,ino=1234)}.
+     *
+     * @param cle la clé retournée par {@code fileKey()}, éventuellement nulle.
+     * @return le couple (périphérique, inode), ou {@code null} si la clé n'a pas cette forme.
+     */
+    public static long[] decomposer(Object cle) {
+        if (cle == null) {
+            return null;
+        }
+        String texte = cle.toString();
+        int dev = texte.indexOf("dev=");
+        int ino = texte.indexOf(",ino=");
+        if (!texte.startsWith("(") || dev < 0 || ino < dev || !texte.endsWith(")")) {
+            return null;
+        }
+        try {
+            // UnixFileKey : périphérique en hexadécimal, inode en décimal.
+            return new long[]{Long.parseUnsignedLong(texte.substring(dev + 4, ino), 16),
+                    Long.parseUnsignedLong(texte.substring(ino + 5, texte.length() - 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ajoute un couple (périphérique, inode).
+     *
+     * @param peripherique le numéro de périphérique.
+     * @param inode le numéro d'inode.
+     * @return {@code true} si le couple n'avait pas encore été rencontré.
+     */
+    public boolean ajouter(long peripherique, long inode) {
+        if (2 * (taille + 1) > table.length / 2) {
+            agrandir();
+        }
+        if (inserer(table, peripherique, inode)) {
+            taille++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indique si un couple a déjà été ajouté.
+     *
+     * @param premier la première valeur du couple.
+     * @param second la seconde valeur du couple.
+     * @return {@code true} si le couple est présent.
+     */
+    public boolean contient(long premier, long second) {
+        int masque = table.length / 2 - 1;
+        int i = melanger(premier, second) & masque;
+        while (table[2 * i] != VIDE) {
+            if (table[2 * i] == premier && table[2 * i + 1] == second) {
+                return true;
+            }
+            i = (i + 1) & masque;
+        }
+        return false;
+    }
+
+    /**
+     * @return le nombre de clés distinctes.
+     */
+    public int getTaille() {
+        return taille + (autres != null ? autres.size() : 0);
+    }
+
+    private static boolean inserer(long[] table, long peripherique, long inode) {
+        int masque = table.length / 2 - 1;
+        int i = melanger(peripherique, inode) & masque;
+        while (true) {
+            long p = table[2 * i];
+            if (p == VIDE) {
+                table[2 * i] = peripherique;
+                table[2 * i + 1] = inode;
+                return true;
+            }
+            if (p == peripherique && table[2 * i + 1] == inode) {
+                return false;
+            }
+            i = (i + 1) & masque;
+        }
+    }
+
+    private void agrandir() {
+        long[] nouvelle = new long[2 * table.length];
+        Arrays.fill(nouvelle, VIDE);
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] != VIDE) {
+                inserer(nouvelle, table[i], table[i + 1]);
+            }
+        }
+        table = nouvelle;
+    }
+
+    private static int melanger(long peripherique, long inode) {
+        long h = inode * 0x9E3779B97F4A7C15L + peripherique;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
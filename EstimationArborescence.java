@@ -0,0 +1,499 @@
+package application;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * La classe EstimationArborescence estime le nombre de fichiers et le volume d'une arborescence
+ * par type MIME, sans la parcourir entièrement.
+ *
+ * <p>L'estimation repose sur des marches aléatoires de la racine vers une feuille (estimateur
+ * de Knuth) : à chaque répertoire traversé, les fichiers sont comptés et pondérés par le produit
+ * des nombres de sous-répertoires rencontrés depuis le début de la marche, puis la marche descend
+ * dans un sous-répertoire tiré au hasard. Chaque marche donne une estimation sans biais du total ;
+ * leur moyenne converge et leur variance fournit un intervalle de confiance.</p>
+ *
+ * <ul>
+ *     <li>Stratification : les premiers niveaux sont parcourus en largeur et comptés exactement,
+ *     tant que la frontière compte au plus {@value #STRATES_MAX} répertoires ; chaque répertoire
+ *     de la frontière forme alors une strate, estimée par ses propres marches. C'est près de la
+ *     racine que l'arborescence est la plus irrégulière : la variance en est fortement réduite.
+ *     Au-delà de {@value #MARCHES_MIN_STRATE} marches par strate, chaque marche est attribuée à la strate dont la variance
+ *     diminuerait le plus (allocation de Neyman).</li>
+ *     <li>Grands répertoires : au-delà de {@value #ECHANTILLON} entrées, seul un échantillon
+ *     uniforme (réservoir) est examiné et les comptes sont extrapolés. Seuls les noms de toutes
+ *     les entrées sont lus ; les attributs ne sont lus que pour l'échantillon.</li>
+ *     <li>Arrêt : dès que la demi-largeur de l'intervalle à 95 % du nombre de fichiers et du
+ *     volume total est inférieure à l'erreur relative demandée, dès que de nouvelles marches ne
+ *     la réduiraient plus (voir ci-dessous), ou après {@value #DUREE_MAX_S} secondes.</li>
+ * </ul>
+ *
+ * <p>L'échantillon d'un grand répertoire est tiré une seule fois puis gardé en cache ; son erreur
+ * ne varie donc pas d'une marche à l'autre. Comme une marche atteint chaque répertoire avec une
+ * probabilité égale à l'inverse de son poids, cette erreur pèse sur le total avec un poids 1 :
+ * la variance d'échantillonnage (avec correction de population finie) de chaque grand répertoire
+ * visité est ajoutée à celle des marches.</p>
+ *
+ * <p>Les liens symboliques ne sont pas suivis et les liens physiques sont comptés à chaque chemin.
+ * Les répertoires déjà examinés sont gardés en cache pour les marches suivantes ; seuls les
+ * répertoires complets peuvent en être évincés, un grand répertoire relu tirerait un nouvel
+ * échantillon et sa variance serait comptée deux fois.</p>
+ *
+ * @author Binome
+ */
+public final class EstimationArborescence {
+
+    private static final int ECHANTILLON = 1024;
+    private static final int MARCHES_MIN = 100;
+    private static final int MARCHES_MIN_STRATE = 5;
+    private static final int STRATES_MAX = 1024;
+    private static final double PLAFOND = 0.1;
+    private static final int DUREE_MAX_S = 60;
+    private static final int CACHE = 10_000;
+    private static final double Z_95 = 1.96;
+    private static final String TOTAL = "*";
+
+    /**
+     * Contenu d'un répertoire, éventuellement échantillonné.
+     */
+    private static final class Noeud {
+        /** Comptes de fichiers et octets par type MIME, déjà extrapolés. */
+        final Map<String, double[]> fichiers = new TreeMap<>();
+        /** Sous-répertoires de l'échantillon. */
+        final List<Path> sousRepertoires = new ArrayList<>();
+        /** Nombre estimé de sous-répertoires. */
+        double nombreSousRepertoires;
+        /** {@code true} si toutes les entrées ont été examinées. */
+        boolean complet;
+        /** Variance d'échantillonnage des comptes extrapolés, par type MIME (répertoire échantillonné). */
+        Map<String, double[]> variances;
+        /** {@code true} si cette variance a été ajoutée à celle de l'estimation. */
+        boolean varianceAjoutee;
+    }
+
+    /**
+     * Sommes des estimations des marches d'une strate.
+     */
+    private static final class Strate {
+        final Path racine;
+        final Map<String, double[]> sommes = new TreeMap<>();
+        int marches;
+
+        Strate(Path racine) {
+            this.racine = racine;
+        }
+
+        void ajouter(Map<String, double[]> estimation) {
+            for (Map.Entry<String, double[]> entree : estimation.entrySet()) {
+                double[] s = sommes.computeIfAbsent(entree.getKey(), k -> new double[4]);
+                double[] v = entree.getValue();
+                s[0] += v[0];
+                s[1] += v[0] * v[0];
+                s[2] += v[1];
+                s[3] += v[1] * v[1];
+            }
+            marches++;
+        }
+
+        /** Moyenne (indice 0 : fichiers, 1 : octets). */
+        double moyenne(String type, int mesure) {
+            double[] s = sommes.get(type);
+            return s == null || marches == 0 ? 0 : s[2 * mesure] / marches;
+        }
+
+        /** Variance de la moyenne. */
+        double variance(String type, int mesure) {
+            double[] s = sommes.get(type);
+            if (s == null || marches < 2) {
+                return 0;
+            }
+            double moyenne = s[2 * mesure] / marches;
+            double varianceEchantillon = Math.max(0, (s[2 * mesure + 1] - marches * moyenne * moyenne) / (marches - 1));
+            return varianceEchantillon / marches;
+        }
+    }
+
+    private final double erreurCible;
+    private final SplittableRandom hasard;
+    private final Map<Path, Noeud> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Noeud> eldest) {
+            return size() > CACHE;
+        }
+    };
+    /** Répertoires échantillonnés, jamais évincés : leur échantillon est tiré une seule fois. */
+    private final Map<Path, Noeud> echantillonnes = new HashMap<>();
+
+    private final Map<String, double[]> exact = new TreeMap<>();
+    private final Map<String, double[]> variancesEchantillons = new TreeMap<>();
+    private final List<Strate> strates = new ArrayList<>();
+    private int marches;
+    private long repertoiresLus;
+    private long fichiersExamines;
+    private long duree;
+
+    /**
+     * Constructeur de l'estimation.
+     *
+     * @param erreurCible l'erreur relative visée (par exemple 0.05 pour 5 %).
+     * @param graine la graine du tirage aléatoire, pour reproduire une estimation.
+     */
+    public EstimationArborescence(double erreurCible, long graine) {
+        if (!(erreurCible > 0 && erreurCible < 1)) {
+            throw new IllegalArgumentException("L'erreur relative doit être comprise entre 0 et 1 : " + erreurCible);
+        }
+        this.erreurCible = erreurCible;
+        this.hasard = new SplittableRandom(graine);
+    }
+
+    /**
+     * Estime le contenu de l'arborescence.
+     *
+     * @param racine le répertoire racine.
+     * @throws IOException si la racine ne peut pas être lue.
+     */
+    public void estimer(Path racine) throws IOException {
+        long debut = System.nanoTime();
+        long limite = debut + DUREE_MAX_S * 1_000_000_000L;
+        if (examiner(racine) == null) {
+            throw new IOException("Le répertoire spécifié ne peut pas être lu.");
+        }
+        stratifier(racine, limite);
+
+        // Sans strate, l'arborescence a été entièrement comptée.
+        while (!strates.isEmpty() && System.nanoTime() < limite) {
+            Strate strate = choisirStrate();
+            strate.ajouter(marcher(strate.racine));
+            marches++;
+            if (marches >= MARCHES_MIN && toutesStratesAmorcees() && (precisionAtteinte() || plafondAtteint())) {
+                break;
+            }
+        }
+        duree = System.nanoTime() - debut;
+    }
+
+    /**
+     * Compte exactement les premiers niveaux, en largeur, et fait de chaque répertoire
+     * de la frontière une strate. Un répertoire échantillonné n'est pas développé.
+     */
+    private void stratifier(Path racine, long limite) {
+        Deque<Path> frontiere = new ArrayDeque<>();
+        frontiere.add(racine);
+        while (!frontiere.isEmpty()) {
+            Path repertoire = frontiere.poll();
+            Noeud noeud = examiner(repertoire);
+            if (noeud == null) {
+                continue;
+            }
+            if (!noeud.complet || System.nanoTime() >= limite
+                    || strates.size() + frontiere.size() + noeud.sousRepertoires.size() > STRATES_MAX) {
+                strates.add(new Strate(repertoire));
+                continue;
+            }
+            ajouter(exact, noeud.fichiers, 1);
+            frontiere.addAll(noeud.sousRepertoires);
+        }
+    }
+
+    /**
+     * Parcourt une marche aléatoire depuis la racine d'une strate.
+     *
+     * @return l'estimation du contenu de la strate, par type MIME.
+     */
+    private Map<String, double[]> marcher(Path depart) {
+        Map<String, double[]> estimation = new TreeMap<>();
+        Path courant = depart;
+        double poids = 1;
+        while (courant != null) {
+            Noeud noeud = examiner(courant);
+            if (noeud == null) {
+                break;
+            }
+            ajouter(estimation, noeud.fichiers, poids);
+            if (noeud.variances != null && !noeud.varianceAjoutee) {
+                ajouter(variancesEchantillons, noeud.variances, 1);
+                noeud.varianceAjoutee = true;
+            }
+            if (noeud.sousRepertoires.isEmpty()) {
+                break;
+            }
+            poids *= noeud.nombreSousRepertoires;
+            courant = noeud.sousRepertoires.get(hasard.nextInt(noeud.sousRepertoires.size()));
+        }
+        return estimation;
+    }
+
+    /**
+     * Lit un répertoire : tous les noms, mais les attributs d'au plus {@value #ECHANTILLON} entrées
+     * tirées uniformément (échantillonnage par réservoir).
+     *
+     * @return le contenu extrapolé, ou {@code null} si le répertoire est illisible.
+     */
+    private Noeud examiner(Path repertoire) {
+        Noeud noeud = echantillonnes.get(repertoire);
+        if (noeud == null) {
+            noeud = cache.get(repertoire);
+        }
+        if (noeud != null) {
+            return noeud;
+        }
+        List<Path> echantillon = new ArrayList<>(ECHANTILLON);
+        long entrees = 0;
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(repertoire)) {
+            for (Path entree : flux) {
+                entrees++;
+                if (echantillon.size() < ECHANTILLON) {
+                    echantillon.add(entree);
+                } else {
+                    long j = hasard.nextLong(entrees);
+                    if (j < ECHANTILLON) {
+                        echantillon.set((int) j, entree);
+                    }
+                }
+            }
+        } catch (IOException | DirectoryIteratorException | InvalidPathException e) {
+            // Répertoire illisible, ou nom non représentable dans l'encodage du système.
+            return null;
+        }
+        repertoiresLus++;
+
+        noeud = new Noeud();
+        double facteur = echantillon.isEmpty() ? 0 : (double) entrees / echantillon.size();
+        // Par type : nombre de fichiers, somme et somme des carrés des tailles dans l'échantillon.
+        Map<String, double[]> sommes = new TreeMap<>();
+        for (Path entree : echantillon) {
+            BasicFileAttributes attributs;
+            try {
+                attributs = Files.readAttributes(entree, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                continue;
+            }
+            if (attributs.isDirectory()) {
+                noeud.sousRepertoires.add(entree);
+            } else if (attributs.isRegularFile()) {
+                fichiersExamines++;
+                Fichier fichier = new Fichier(entree, attributs);
+                String type = fichier.getTypeMime() != null ? fichier.getTypeMime() : "inconnu";
+                compter(noeud.fichiers, type, facteur, facteur * fichier.getTaille());
+                compter(noeud.fichiers, TOTAL, facteur, facteur * fichier.getTaille());
+                for (String cle : new String[]{type, TOTAL}) {
+                    double[] s = sommes.computeIfAbsent(cle, k -> new double[3]);
+                    s[0]++;
+                    s[1] += fichier.getTaille();
+                    s[2] += (double) fichier.getTaille() * fichier.getTaille();
+                }
+            }
+        }
+        noeud.nombreSousRepertoires = noeud.sousRepertoires.size() * facteur;
+        noeud.complet = entrees <= ECHANTILLON;
+        if (!noeud.complet) {
+            noeud.variances = new TreeMap<>();
+            int k = echantillon.size();
+            double correction = (double) entrees * entrees * (1 - (double) k / entrees) / k;
+            for (Map.Entry<String, double[]> entree : sommes.entrySet()) {
+                double[] s = entree.getValue();
+                noeud.variances.put(entree.getKey(), new double[]{
+                        correction * varianceEchantillon(k, s[0], s[0]),
+                        correction * varianceEchantillon(k, s[1], s[2])});
+            }
+        }
+        (noeud.complet ? cache : echantillonnes).put(repertoire, noeud);
+        return noeud;
+    }
+
+    /**
+     * Variance d'une valeur sur un échantillon de {@code k} entrées, les entrées hors du type valant 0.
+     */
+    private static double varianceEchantillon(int k, double somme, double sommeCarres) {
+        if (k < 2) {
+            return 0;
+        }
+        double moyenne = somme / k;
+        return Math.max(0, (sommeCarres - k * moyenne * moyenne) / (k - 1));
+    }
+
+    /**
+     * Choisit la strate de la prochaine marche : d'abord les strates sans assez de marches,
+     * puis celle dont une marche supplémentaire réduirait le plus la variance du volume total.
+     */
+    private Strate choisirStrate() {
+        Strate choix = null;
+        double gain = -1;
+        for (Strate strate : strates) {
+            if (strate.marches < MARCHES_MIN_STRATE) {
+                return strate;
+            }
+            double v = strate.variance(TOTAL, 1) * strate.marches;
+            double g = v / strate.marches - v / (strate.marches + 1);
+            if (g > gain) {
+                gain = g;
+                choix = strate;
+            }
+        }
+        return choix;
+    }
+
+    private boolean toutesStratesAmorcees() {
+        for (Strate strate : strates) {
+            if (strate.marches < MARCHES_MIN_STRATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean precisionAtteinte() {
+        return erreurRelative(0) <= erreurCible && erreurRelative(1) <= erreurCible;
+    }
+
+    /**
+     * @return {@code true} si la variance des marches est devenue négligeable devant celle,
+     * fixe, des échantillons de grands répertoires : de nouvelles marches n'amélioreraient plus
+     * l'estimation.
+     */
+    private boolean plafondAtteint() {
+        double[] echantillons = variancesEchantillons.get(TOTAL);
+        if (echantillons == null) {
+            return false;
+        }
+        for (int mesure = 0; mesure < 2; mesure++) {
+            double marchesVariance = 0;
+            for (Strate strate : strates) {
+                marchesVariance += strate.variance(TOTAL, mesure);
+            }
+            if (marchesVariance > PLAFOND * echantillons[mesure]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param mesure 0 pour le nombre de fichiers, 1 pour le volume.
+     * @return la demi-largeur relative de l'intervalle de confiance du total.
+     */
+    private double erreurRelative(int mesure) {
+        double total = estimation(TOTAL, mesure);
+        return total == 0 ? 0 : intervalle(TOTAL, mesure) / total;
+    }
+
+    /**
+     * @return l'estimation d'une mesure (0 : fichiers, 1 : octets) pour un type MIME.
+     */
+    private double estimation(String type, int mesure) {
+        double[] e = exact.get(type);
+        double total = e != null ? e[mesure] : 0;
+        for (Strate strate : strates) {
+            total += strate.moyenne(type, mesure);
+        }
+        return total;
+    }
+
+    /**
+     * @return la demi-largeur de l'intervalle de confiance à 95 % d'une mesure.
+     */
+    private double intervalle(String type, int mesure) {
+        double variance = 0;
+        for (Strate strate : strates) {
+            variance += strate.variance(type, mesure);
+        }
+        double[] echantillons = variancesEchantillons.get(type);
+        if (echantillons != null) {
+            variance += echantillons[mesure];
+        }
+        return Z_95 * Math.sqrt(variance);
+    }
+
+    /**
+     * Affiche les estimations par type MIME avec leur intervalle de confiance.
+     *
+     * @param sortie le flux d'affichage.
+     */
+    public void afficher(PrintStream sortie) {
+        Map<String, Boolean> types = new TreeMap<>();
+        exact.keySet().forEach(t -> types.put(t, true));
+        for (Strate strate : strates) {
+            strate.sommes.keySet().forEach(t -> types.put(t, true));
+        }
+        types.remove(TOTAL);
+
+        sortie.println("Estimation des statistiques du répertoire (intervalle de confiance à 95 %) :");
+        sortie.println(String.format(Locale.ROOT,
+                "Marches aléatoires : %d (%d strates), répertoires lus : %d, fichiers examinés : %d, durée : %.1f s",
+                marches, strates.size(), repertoiresLus, fichiersExamines, duree / 1e9));
+        sortie.println(String.format(Locale.ROOT, "Erreur relative : %.1f %% sur les fichiers, %.1f %% sur le volume (cible %.1f %%)",
+                100 * erreurRelative(0), 100 * erreurRelative(1), 100 * erreurCible));
+        sortie.println(String.format(Locale.ROOT, "%-28s %14s %12s %14s %12s",
+                "type", "fichiers", "± IC95", "volume (Mo)", "± IC95"));
+        afficherLigne(sortie, "total", TOTAL);
+        double images = 0;
+        double varianceImages = 0;
+        for (String type : types.keySet()) {
+            afficherLigne(sortie, type, type);
+            if (type.startsWith("image")) {
+                images += estimation(type, 0);
+                double ic = intervalle(type, 0) / Z_95;
+                varianceImages += ic * ic;
+            }
+        }
+        // Intervalle approché : les types sont supposés indépendants.
+        sortie.println(String.format(Locale.ROOT, "Total de fichiers image : %.0f ± %.0f",
+                images, Z_95 * Math.sqrt(varianceImages)));
+    }
+
+    private void afficherLigne(PrintStream sortie, String libelle, String type) {
+        sortie.println(String.format(Locale.ROOT, "%-28s %14.0f %12.0f %14.1f %12.1f", libelle,
+                estimation(type, 0), intervalle(type, 0), estimation(type, 1) / (1024.0 * 1024),
+                intervalle(type, 1) / (1024.0 * 1024)));
+    }
+
+    /**
+     * @return l'estimation du nombre total de fichiers.
+     */
+    public double getFichiers() {
+        return estimation(TOTAL, 0);
+    }
+
+    /**
+     * @return l'estimation du volume total, en octets.
+     */
+    public double getOctets() {
+        return estimation(TOTAL, 1);
+    }
+
+    /**
+     * @return le nombre de marches effectuées.
+     */
+    public int getMarches() {
+        return marches;
+    }
+
+    private static void compter(Map<String, double[]> comptes, String type, double fichiers, double octets) {
+        double[] c = comptes.computeIfAbsent(type, k -> new double[2]);
+        c[0] += fichiers;
+        c[1] += octets;
+    }
+
+    private static void ajouter(Map<String, double[]> cible, Map<String, double[]> source, double poids) {
+        for (Map.Entry<String, double[]> entree : source.entrySet()) {
+            compter(cible, entree.getKey(), poids * entree.getValue()[0], poids * entree.getValue()[1]);
+        }
+    }
+}
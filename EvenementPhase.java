@@ -0,0 +1,32 @@
+package application;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Événement JFR émis par {@link Mesures} à la fin de chaque phase instrumentée.
+ *
+ * @author Binome
+ */
+@Name("application.Phase")
+@Label("Phase d'analyse")
+@Category("Explorateur d'images")
+@Description("Durée d'une phase d'analyse (listage, attributs, type MIME, métadonnées, dimensions, sortie)")
+@StackTrace(false)
+class EvenementPhase extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Durée")
+    @Timespan(Timespan.NANOSECONDS)
+    long duree;
+
+    @Label("Octets lus")
+    long octets;
+}
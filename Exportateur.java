@@ -0,0 +1,502 @@
+package application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * La classe Exportateur écrit le catalogue des fichiers (et éventuellement leurs
+ * métadonnées) dans un format lisible par programme, au fil du parcours.
+ *
+ * <p>Formats disponibles :</p>
+ * <ul>
+ *     <li>{@code ndjson} : un objet JSON par ligne ;</li>
+ *     <li>{@code csv} : une ligne d'en-tête puis une ligne par fichier (RFC 4180) ;</li>
+ *     <li>{@code colonnes} : format binaire en colonnes, décrit ci-dessous.</li>
+ * </ul>
+ *
+ * <p>Les enregistrements sont encodés directement dans un tampon d'octets de 1 Mo,
+ * sans passer par {@code String.format} ni {@code toString()} : la mémoire utilisée
+ * est constante et l'écriture se fait par gros blocs.</p>
+ *
+ * <p>Les métadonnées sont exportées en valeurs numériques séparées (largeur, hauteur,
+ * dpiX, dpiY, latitude, longitude) ; une valeur inconnue vaut {@code null} en ndjson
+ * et reste vide en csv.</p>
+ *
+ * <p>Format {@code colonnes} (entiers gros-boutistes) : l'en-tête {@code "IMEC"}, la version
+ * (entier 2) et un octet indiquant la présence des métadonnées, puis une suite de blocs
+ * d'au plus {@value #TAILLE_BLOC} enregistrements. Chaque bloc contient : le nombre
+ * d'enregistrements ; les nouveaux types MIME du dictionnaire (nombre puis chaînes) ;
+ * les colonnes chemin (chaînes), taille (longs), date de modification (longs), type MIME
+ * (indice dans le dictionnaire, -1 si inconnu) et, le cas échéant, largeur, hauteur, dpiX
+ * et dpiY (entiers, -1 si inconnu) puis latitude et longitude (doubles IEEE 754, NaN si
+ * inconnu). Une chaîne est codée par sa longueur en octets (entier) puis ses octets UTF-8 ;
+ * une chaîne absente a pour longueur -1. Le fichier se termine par un bloc de 0 enregistrement.</p>
+ *
+ * @author Binome
+ */
+public class Exportateur implements Closeable {
+
+    /** Nombre maximal d'enregistrements par bloc du format colonnes. */
+    public static final int TAILLE_BLOC = 16384;
+
+    private static final int TAILLE_TAMPON = 1 << 20;
+
+    /**
+     * Formats d'export disponibles.
+     */
+    public enum Format {
+        /** Un objet JSON par ligne. */
+        NDJSON,
+        /** Valeurs séparées par des virgules. */
+        CSV,
+        /** Format binaire en colonnes. */
+        COLONNES;
+
+        /**
+         * Retourne le format correspondant à un nom.
+         *
+         * @param nom le nom du format ({@code ndjson}, {@code csv} ou {@code colonnes}).
+         * @return le format.
+         * @throws IllegalArgumentException si le format est inconnu.
+         */
+        public static Format depuis(String nom) {
+            try {
+                return valueOf(nom.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Format d'export inconnu : " + nom
+                        + " (ndjson, csv ou colonnes).");
+            }
+        }
+    }
+
+    private final Format format;
+    private final boolean avecMetadonnees;
+    private final OutputStream sortie;
+    private final byte[] tampon = new byte[TAILLE_TAMPON];
+    private int position;
+
+    private final Map<String, Integer> dictionnaire = new HashMap<>();
+    private Bloc bloc;
+
+    /**
+     * Crée un exportateur et écrit l'en-tête du format.
+     *
+     * @param format le format d'export.
+     * @param avecMetadonnees {@code true} pour inclure les colonnes de métadonnées.
+     * @param sortie le flux de destination, fermé par {@link #close()}.
+     * @throws IOException si l'écriture de l'en-tête échoue.
+     */
+    public Exportateur(Format format, boolean avecMetadonnees, OutputStream sortie) throws IOException {
+        this.format = format;
+        this.avecMetadonnees = avecMetadonnees;
+        this.sortie = sortie;
+
+        if (format == Format.CSV) {
+            ecrireAscii("chemin,nom,taille,derniereModification,typeMime");
+            if (avecMetadonnees) {
+                ecrireAscii(",largeur,hauteur,dpiX,dpiY,latitude,longitude");
+            }
+            ecrireOctet('\n');
+        } else if (format == Format.COLONNES) {
+            ecrireAscii("IMEC");
+            ecrireEntier(2);
+            ecrireOctet(avecMetadonnees ? 1 : 0);
+            bloc = new Bloc(avecMetadonnees);
+        }
+    }
+
+    /**
+     * Exporte un fichier sans métadonnées.
+     *
+     * @param fichier le fichier à exporter.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void exporter(Fichier fichier) throws IOException {
+        exporter(fichier, null);
+    }
+
+    /**
+     * Exporte un fichier et ses métadonnées.
+     *
+     * @param fichier le fichier à exporter.
+     * @param metadonnees ses métadonnées, ou {@code null} si elles ne sont pas disponibles.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void exporter(Fichier fichier, Metadonnees metadonnees) throws IOException {
+        long debut = Mesures.debut();
+        switch (format) {
+            case NDJSON: exporterJson(fichier, metadonnees); break;
+            case CSV: exporterCsv(fichier, metadonnees); break;
+            default: exporterColonnes(fichier, metadonnees); break;
+        }
+        Mesures.fin(Mesures.Phase.SORTIE, debut);
+    }
+
+    private void exporterJson(Fichier fichier, Metadonnees metadonnees) throws IOException {
+        ecrireAscii("{\"chemin\":");
+        ecrireJson(fichier.getChemin());
+        ecrireAscii(",\"nom\":");
+        ecrireJson(fichier.getNom());
+        ecrireAscii(",\"taille\":");
+        ecrireLong(fichier.getTaille());
+        ecrireAscii(",\"derniereModification\":");
+        ecrireLong(fichier.getDerniereModification());
+        ecrireAscii(",\"typeMime\":");
+        ecrireJson(fichier.getTypeMime());
+        if (avecMetadonnees) {
+            ecrireAscii(",\"largeur\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getLargeur() : null, "null");
+            ecrireAscii(",\"hauteur\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getHauteur() : null, "null");
+            ecrireAscii(",\"dpiX\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getDpiX() : null, "null");
+            ecrireAscii(",\"dpiY\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getDpiY() : null, "null");
+            ecrireAscii(",\"latitude\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getLatitude() : null, "null");
+            ecrireAscii(",\"longitude\":");
+            ecrireNombre(metadonnees != null ? metadonnees.getLongitude() : null, "null");
+        }
+        ecrireAscii("}\n");
+    }
+
+    private void exporterCsv(Fichier fichier, Metadonnees metadonnees) throws IOException {
+        ecrireCsv(fichier.getChemin());
+        ecrireOctet(',');
+        ecrireCsv(fichier.getNom());
+        ecrireOctet(',');
+        ecrireLong(fichier.getTaille());
+        ecrireOctet(',');
+        ecrireLong(fichier.getDerniereModification());
+        ecrireOctet(',');
+        ecrireCsv(fichier.getTypeMime());
+        if (avecMetadonnees) {
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getLargeur() : null, "");
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getHauteur() : null, "");
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getDpiX() : null, "");
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getDpiY() : null, "");
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getLatitude() : null, "");
+            ecrireOctet(',');
+            ecrireNombre(metadonnees != null ? metadonnees.getLongitude() : null, "");
+        }
+        ecrireOctet('\n');
+    }
+
+    private void exporterColonnes(Fichier fichier, Metadonnees metadonnees) throws IOException {
+        int indiceMime = -1;
+        String typeMime = fichier.getTypeMime();
+        if (typeMime != null) {
+            Integer indice = dictionnaire.get(typeMime);
+            if (indice == null) {
+                indice = dictionnaire.size();
+                dictionnaire.put(typeMime, indice);
+                bloc.nouveauxTypes.add(typeMime);
+            }
+            indiceMime = indice;
+        }
+        int n = bloc.nombre++;
+        bloc.chemins[n] = fichier.getChemin();
+        bloc.tailles[n] = fichier.getTaille();
+        bloc.dates[n] = fichier.getDerniereModification();
+        bloc.types[n] = indiceMime;
+        if (avecMetadonnees) {
+            bloc.largeurs[n] = entier(metadonnees != null ? metadonnees.getLargeur() : null);
+            bloc.hauteurs[n] = entier(metadonnees != null ? metadonnees.getHauteur() : null);
+            bloc.dpiX[n] = entier(metadonnees != null ? metadonnees.getDpiX() : null);
+            bloc.dpiY[n] = entier(metadonnees != null ? metadonnees.getDpiY() : null);
+            bloc.latitudes[n] = reel(metadonnees != null ? metadonnees.getLatitude() : null);
+            bloc.longitudes[n] = reel(metadonnees != null ? metadonnees.getLongitude() : null);
+        }
+        if (bloc.nombre == TAILLE_BLOC) {
+            ecrireBloc();
+        }
+    }
+
+    private static int entier(Integer valeur) {
+        return valeur != null ? valeur : -1;
+    }
+
+    private static double reel(Double valeur) {
+        return valeur != null ? valeur : Double.NaN;
+    }
+
+    /**
+     * Écrit le bloc courant du format colonnes puis le réinitialise.
+     */
+    private void ecrireBloc() throws IOException {
+        int n = bloc.nombre;
+        ecrireEntier(n);
+        ecrireEntier(bloc.nouveauxTypes.size());
+        for (String type : bloc.nouveauxTypes) {
+            ecrireChaineBinaire(type);
+        }
+        for (int i = 0; i < n; i++) {
+            ecrireChaineBinaire(bloc.chemins[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            ecrireLongBinaire(bloc.tailles[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            ecrireLongBinaire(bloc.dates[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            ecrireEntier(bloc.types[i]);
+        }
+        if (avecMetadonnees) {
+            for (int[] colonne : new int[][] {bloc.largeurs, bloc.hauteurs, bloc.dpiX, bloc.dpiY}) {
+                for (int i = 0; i < n; i++) {
+                    ecrireEntier(colonne[i]);
+                }
+            }
+            for (double[] colonne : new double[][] {bloc.latitudes, bloc.longitudes}) {
+                for (int i = 0; i < n; i++) {
+                    ecrireLongBinaire(Double.doubleToLongBits(colonne[i]));
+                }
+            }
+        }
+        bloc.vider();
+    }
+
+    /**
+     * Termine l'export, vide le tampon et ferme le flux de destination.
+     *
+     * @throws IOException si l'écriture échoue.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.COLONNES) {
+                if (bloc.nombre > 0) {
+                    ecrireBloc();
+                }
+                ecrireEntier(0);
+            }
+            vider();
+        } finally {
+            sortie.close();
+        }
+    }
+
+    /**
+     * Écrit le contenu du tampon dans le flux de destination.
+     */
+    private void vider() throws IOException {
+        if (position > 0) {
+            sortie.write(tampon, 0, position);
+            position = 0;
+        }
+    }
+
+    private void reserver(int n) throws IOException {
+        if (position + n > tampon.length) {
+            vider();
+        }
+    }
+
+    private void ecrireOctet(int b) throws IOException {
+        if (position == tampon.length) {
+            vider();
+        }
+        tampon[position++] = (byte) b;
+    }
+
+    private void ecrireAscii(String texte) throws IOException {
+        for (int i = 0; i < texte.length(); i++) {
+            ecrireOctet(texte.charAt(i));
+        }
+    }
+
+    /**
+     * Écrit un entier décimal sans allouer de chaîne.
+     */
+    private void ecrireLong(long valeur) throws IOException {
+        if (valeur == Long.MIN_VALUE) {
+            ecrireAscii(Long.toString(valeur));
+            return;
+        }
+        reserver(20);
+        if (valeur < 0) {
+            tampon[position++] = '-';
+            valeur = -valeur;
+        }
+        int debut = position;
+        do {
+            tampon[position++] = (byte) ('0' + valeur % 10);
+            valeur /= 10;
+        } while (valeur != 0);
+        for (int i = debut, j = position - 1; i < j; i++, j--) {
+            byte t = tampon[i];
+            tampon[i] = tampon[j];
+            tampon[j] = t;
+        }
+    }
+
+    /**
+     * Écrit une chaîne en UTF-8 ; si {@code echappement} vaut 1 les caractères spéciaux JSON
+     * sont échappés, s'il vaut 2 les guillemets sont doublés (CSV).
+     */
+    private void ecrireUtf8(String texte, int echappement) throws IOException {
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c < 0x80) {
+                if (echappement == 1 && (c == '"' || c == '\\')) {
+                    ecrireOctet('\\');
+                    ecrireOctet(c);
+                } else if (echappement == 1 && c < 0x20) {
+                    ecrireAscii("\\u00");
+                    ecrireOctet(Character.forDigit(c >> 4, 16));
+                    ecrireOctet(Character.forDigit(c & 0xF, 16));
+                } else if (echappement == 2 && c == '"') {
+                    ecrireOctet('"');
+                    ecrireOctet('"');
+                } else {
+                    ecrireOctet(c);
+                }
+            } else if (c < 0x800) {
+                ecrireOctet(0xC0 | (c >> 6));
+                ecrireOctet(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < texte.length()
+                    && Character.isLowSurrogate(texte.charAt(i + 1))) {
+                int point = Character.toCodePoint(c, texte.charAt(++i));
+                ecrireOctet(0xF0 | (point >> 18));
+                ecrireOctet(0x80 | ((point >> 12) & 0x3F));
+                ecrireOctet(0x80 | ((point >> 6) & 0x3F));
+                ecrireOctet(0x80 | (point & 0x3F));
+            } else {
+                ecrireOctet(0xE0 | (c >> 12));
+                ecrireOctet(0x80 | ((c >> 6) & 0x3F));
+                ecrireOctet(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Écrit un nombre en texte, ou {@code absent} s'il est inconnu.
+     */
+    private void ecrireNombre(Number valeur, String absent) throws IOException {
+        if (valeur == null) {
+            ecrireAscii(absent);
+        } else if (valeur instanceof Integer) {
+            ecrireLong(valeur.intValue());
+        } else {
+            ecrireAscii(valeur.toString());
+        }
+    }
+
+    private void ecrireJson(String texte) throws IOException {
+        if (texte == null) {
+            ecrireAscii("null");
+            return;
+        }
+        ecrireOctet('"');
+        ecrireUtf8(texte, 1);
+        ecrireOctet('"');
+    }
+
+    private void ecrireCsv(String texte) throws IOException {
+        if (texte == null) {
+            return;
+        }
+        boolean guillemets = false;
+        for (int i = 0; i < texte.length() && !guillemets; i++) {
+            char c = texte.charAt(i);
+            guillemets = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (guillemets) {
+            ecrireOctet('"');
+            ecrireUtf8(texte, 2);
+            ecrireOctet('"');
+        } else {
+            ecrireUtf8(texte, 0);
+        }
+    }
+
+    private void ecrireEntier(int valeur) throws IOException {
+        reserver(4);
+        tampon[position++] = (byte) (valeur >>> 24);
+        tampon[position++] = (byte) (valeur >>> 16);
+        tampon[position++] = (byte) (valeur >>> 8);
+        tampon[position++] = (byte) valeur;
+    }
+
+    private void ecrireLongBinaire(long valeur) throws IOException {
+        ecrireEntier((int) (valeur >>> 32));
+        ecrireEntier((int) valeur);
+    }
+
+    /**
+     * Écrit une chaîne préfixée par sa longueur en octets UTF-8 (-1 si absente).
+     */
+    private void ecrireChaineBinaire(String texte) throws IOException {
+        if (texte == null) {
+            ecrireEntier(-1);
+            return;
+        }
+        reserver(4);
+        int debutLongueur = position;
+        position += 4;
+        int debut = position;
+        if (texte.length() * 4 > tampon.length - position) {
+            // Chaîne trop longue pour le tampon : encodage direct.
+            byte[] octets = texte.getBytes(StandardCharsets.UTF_8);
+            position = debutLongueur;
+            ecrireEntier(octets.length);
+            vider();
+            sortie.write(octets);
+            return;
+        }
+        ecrireUtf8(texte, 0);
+        int longueur = position - debut;
+        tampon[debutLongueur] = (byte) (longueur >>> 24);
+        tampon[debutLongueur + 1] = (byte) (longueur >>> 16);
+        tampon[debutLongueur + 2] = (byte) (longueur >>> 8);
+        tampon[debutLongueur + 3] = (byte) longueur;
+    }
+
+    /**
+     * Enregistrements en attente d'écriture pour le format colonnes.
+     */
+    private static final class Bloc {
+        final List<String> nouveauxTypes = new ArrayList<>();
+        final String[] chemins = new String[TAILLE_BLOC];
+        final long[] tailles = new long[TAILLE_BLOC];
+        final long[] dates = new long[TAILLE_BLOC];
+        final int[] types = new int[TAILLE_BLOC];
+        final int[] largeurs;
+        final int[] hauteurs;
+        final int[] dpiX;
+        final int[] dpiY;
+        final double[] latitudes;
+        final double[] longitudes;
+        int nombre;
+
+        Bloc(boolean avecMetadonnees) {
+            int taille = avecMetadonnees ? TAILLE_BLOC : 0;
+            largeurs = new int[taille];
+            hauteurs = new int[taille];
+            dpiX = new int[taille];
+            dpiY = new int[taille];
+            latitudes = new double[taille];
+            longitudes = new double[taille];
+        }
+
+        void vider() {
+            nouveauxTypes.clear();
+            Arrays.fill(chemins, 0, nombre, null);
+            nombre = 0;
+        }
+    }
+}
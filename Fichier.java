@@ -1,12 +1,25 @@
 package application;
 
-import java.io.File;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * Classe représentant un fichier sur le système avec ses métadonnées (chemin, nom, taille, date de dernière modification, type MIME).
  * 
+ * <p>La taille et la date sont obtenues par une seule lecture des attributs du fichier
+ * (ou reprises du parcours du répertoire). Le type MIME n'est déterminé qu'à la première
+ * demande.</p>
+ * 
+ * <p>Un fichier peut aussi être une entrée d'une archive ZIP ou JAR (voir {@link Archives}) :
+ * son chemin est alors celui de l'archive suivi de {@code !} et du chemin de l'entrée.</p>
+ * 
  * @author Ouardia  
  */
 
@@ -16,6 +29,10 @@ public class Fichier {
     private long taille;
     private long derniereModification;
     private String typeMime;
+    private boolean typeMimeDetermine;
+    private Object cleFichier;
+    private Path archive;
+    private String entree;
     
 
     /**
@@ -25,18 +42,110 @@ public class Fichier {
      * @throws IOException si le fichier spécifié n'existe pas.
      */
     public Fichier(String chemin) throws IOException {
+        this(Paths.get(chemin), lireAttributs(Paths.get(chemin)));
         this.chemin = chemin;
-        File file = new File(chemin);
+    }
 
-        if (!file.exists()) {
-            throw new IOException("Le fichier n'existe pas.");
+    /**
+     * Constructeur à partir des attributs déjà lus, par exemple lors du parcours d'un répertoire.
+     * Aucun accès au système de fichiers n'est effectué.
+     *
+     * @param chemin le chemin du fichier.
+     * @param attributs les attributs du fichier.
+     */
+    public Fichier(Path chemin, BasicFileAttributes attributs) {
+        this.chemin = chemin.toString();
+        Path nomFichier = chemin.getFileName();
+        this.nom = nomFichier != null ? nomFichier.toString() : this.chemin;
+        this.taille = attributs.size();
+        this.derniereModification = attributs.lastModifiedTime().toMillis();
+        this.cleFichier = attributs.fileKey();
+    }
+
+    /**
+     * Constructeur d'une entrée d'archive, à partir des attributs lus dans l'archive.
+     *
+     * @param archive le chemin de l'archive.
+     * @param entree le chemin de l'entrée dans le système de fichiers de l'archive.
+     * @param attributs les attributs de l'entrée (taille décompressée, date).
+     */
+    public Fichier(Path archive, Path entree, BasicFileAttributes attributs) {
+        this.archive = archive;
+        this.entree = entree.toString();
+        this.chemin = archive + "!" + this.entree;
+        Path nomFichier = entree.getFileName();
+        this.nom = nomFichier != null ? nomFichier.toString() : this.chemin;
+        this.taille = attributs.size();
+        this.derniereModification = attributs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Constructeur d'un fichier relu par {@link #lire(DataInput)}.
+     */
+    private Fichier() {
+        // Champs renseignés par lire()
+    }
+
+    /**
+     * Écrit le fichier dans un flux binaire, par exemple un segment de {@link TriExterne}.
+     * Le type MIME est déterminé avant l'écriture ; la clé du fichier n'est pas écrite.
+     *
+     * @param sortie le flux de destination.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    void ecrire(DataOutput sortie) throws IOException {
+        String type = getTypeMime();
+        sortie.writeUTF(chemin);
+        sortie.writeUTF(nom);
+        sortie.writeLong(taille);
+        sortie.writeLong(derniereModification);
+        sortie.writeUTF(type != null ? type : "");
+        sortie.writeBoolean(archive != null);
+        if (archive != null) {
+            sortie.writeUTF(archive.toString());
+            sortie.writeUTF(entree);
+        }
+    }
+
+    /**
+     * Relit un fichier écrit par {@link #ecrire(DataOutput)}, sans accès au système de fichiers.
+     *
+     * @param entree le flux source.
+     * @return le fichier.
+     * @throws IOException en cas d'erreur de lecture.
+     */
+    static Fichier lire(DataInput entree) throws IOException {
+        Fichier fichier = new Fichier();
+        fichier.chemin = entree.readUTF();
+        fichier.nom = entree.readUTF();
+        fichier.taille = entree.readLong();
+        fichier.derniereModification = entree.readLong();
+        String type = entree.readUTF();
+        fichier.typeMime = type.isEmpty() ? null : type;
+        fichier.typeMimeDetermine = true;
+        if (entree.readBoolean()) {
+            fichier.archive = Paths.get(entree.readUTF());
+            fichier.entree = entree.readUTF();
         }
+        return fichier;
+    }
 
-        this.nom = file.getName();
-        this.taille = file.length();
-        this.derniereModification = file.lastModified();
-        this.typeMime = Files.probeContentType(file.toPath());
-        
+    /**
+     * Lit les attributs d'un fichier en un seul appel système.
+     *
+     * @param chemin le chemin du fichier.
+     * @return les attributs du fichier.
+     * @throws IOException si le fichier n'existe pas ou ne peut pas être lu.
+     */
+    private static BasicFileAttributes lireAttributs(Path chemin) throws IOException {
+        long debut = Mesures.debut();
+        try {
+            return Files.readAttributes(chemin, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Le fichier n'existe pas.");
+        } finally {
+            Mesures.fin(Mesures.Phase.ATTRIBUTS, debut);
+        }
     }
 
     /**
@@ -48,6 +157,43 @@ public class Fichier {
         return chemin;
     }
 
+    /**
+     * Retourne l'archive qui contient le fichier.
+     *
+     * @return le chemin de l'archive, ou {@code null} si le fichier n'est pas une entrée d'archive.
+     */
+    public Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * Retourne le fichier physique à lire : le fichier lui-même, ou l'archive qui le contient.
+     *
+     * @return le chemin du fichier physique.
+     */
+    public Path getEmplacement() {
+        return archive != null ? archive : Paths.get(chemin);
+    }
+
+    /**
+     * Ouvre le contenu du fichier en lecture ; une entrée d'archive est décompressée au fil de la lecture.
+     *
+     * @return le flux du contenu.
+     * @throws IOException si le fichier ne peut pas être ouvert.
+     */
+    public InputStream ouvrir() throws IOException {
+        return archive != null ? Archives.lire(archive, entree) : Files.newInputStream(Paths.get(chemin));
+    }
+
+    /**
+     * Retourne la clé du fichier (périphérique et inode sous Unix), voir {@link EnsembleCles}.
+     *
+     * @return la clé du fichier, ou {@code null} si le système ne la fournit pas.
+     */
+    public Object getCleFichier() {
+        return cleFichier;
+    }
+
     /**
      * Retourne le nom du fichier, y compris son extension.
      *
@@ -76,11 +222,21 @@ public class Fichier {
     }
 
     /**
-     * Retourne le type MIME du fichier.
+     * Retourne le type MIME du fichier, déterminé lors du premier appel.
      *
      * @return le type MIME du fichier, ou {@code null} si le type ne peut pas être déterminé.
      */
     public String getTypeMime() {
+        if (!typeMimeDetermine) {
+            long debut = Mesures.debut();
+            try {
+                typeMime = archive != null ? TypeMime.deduire(nom, this::ouvrir) : TypeMime.deduire(Paths.get(chemin));
+            } catch (IOException e) {
+                typeMime = null;
+            }
+            typeMimeDetermine = true;
+            Mesures.fin(Mesures.Phase.TYPE_MIME, debut);
+        }
         return typeMime;
     }
 
@@ -95,6 +251,6 @@ public class Fichier {
                "Chemin : " + chemin + "\n" +
                "Taille : " + taille + " octets\n" +
                "Dernière modification : " + new java.util.Date(derniereModification) + "\n" +
-               "Type MIME : " + (typeMime != null ? typeMime : "Inconnu");
+               "Type MIME : " + (getTypeMime() != null ? getTypeMime() : "Inconnu");
     }
 }
@@ -1,22 +1,33 @@
 package application;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * Classe représentant un fichier image, héritant de la classe {@link Fichier}.
- * Cette classe permet de gérer les dimensions d'une image (largeur et hauteur).
+ * Cette classe permet de gérer les dimensions d'une image (largeur et hauteur)
+ * et ses couleurs dominantes.
+ * 
+ * <p>Les dimensions sont lues dans l'en-tête de l'image ; l'image n'est ensuite décodée
+ * qu'avec sous-échantillonnage, pour calculer l'histogramme de ses couleurs
+ * (voir {@link CouleursImage}).</p>
  * 
  * @author Fariza 
  */
 public class FichierImage extends Fichier {
     private int largeur;
     private int hauteur;
+    private CouleursImage couleurs;
 
     /**
-     * Constructeur qui initialise une instance de FichierImage et extrait les dimensions de l'image.
+     * Constructeur qui initialise une instance de FichierImage et extrait les dimensions et les couleurs de l'image.
      *
      * @param chemin le chemin absolu du fichier image.
      * @throws IOException si le fichier n'existe pas ou n'est pas une image valide.
@@ -27,20 +38,37 @@ public class FichierImage extends Fichier {
     }
 
     /**
-     * Méthode privée qui extrait les dimensions de l'image (largeur et hauteur).
+     * Méthode privée qui extrait les dimensions de l'image (largeur et hauteur), puis décode
+     * l'image sous-échantillonnée pour calculer l'histogramme de ses couleurs.
      *
      * @throws IOException si le fichier n'est pas une image valide.
      */
     private void extraireDimensions() throws IOException {
-        File file = new File(getChemin());
-        BufferedImage image = ImageIO.read(file);
-
-        if (image != null) {
-            this.largeur = image.getWidth();
-            this.hauteur = image.getHeight();
-        } else {
-            throw new IOException("Le fichier n'est pas une image valide.");
+        long debut = Mesures.debut();
+        BufferedImage image;
+        try (Mesures.FluxCompte flux = new Mesures.FluxCompte(new BufferedInputStream(ouvrir()));
+             // Cache en mémoire : ImageIO.createImageInputStream recopierait le flux dans un
+             // fichier temporaire pour chaque image (cache disque activé par défaut).
+             ImageInputStream entree = new MemoryCacheImageInputStream(flux)) {
+            Iterator<ImageReader> lecteurs = ImageIO.getImageReaders(entree);
+            if (!lecteurs.hasNext()) {
+                throw new IOException("Le fichier n'est pas une image valide.");
+            }
+            ImageReader lecteur = lecteurs.next();
+            try {
+                lecteur.setInput(entree, true, true);
+                this.largeur = lecteur.getWidth(0);
+                this.hauteur = lecteur.getHeight(0);
+                ImageReadParam parametres = lecteur.getDefaultReadParam();
+                int pas = CouleursImage.pas(largeur, hauteur);
+                parametres.setSourceSubsampling(pas, pas, 0, 0);
+                image = lecteur.read(0, parametres);
+            } finally {
+                lecteur.dispose();
+            }
+            Mesures.fin(Mesures.Phase.DIMENSIONS, debut, flux.getOctets());
         }
+        this.couleurs = CouleursImage.calculer(image);
     }
 
     /**
@@ -51,7 +79,8 @@ public class FichierImage extends Fichier {
     @Override
     public String toString() {
         return super.toString() + "\n" +
-               "Dimensions : " + largeur + " x " + hauteur;
+               "Dimensions : " + largeur + " x " + hauteur + "\n" +
+               "Couleurs dominantes : " + couleurs;
     }
 
     /**
@@ -71,4 +100,13 @@ public class FichierImage extends Fichier {
     public int getHauteur() {
         return hauteur;
     }
+
+    /**
+     * Retourne l'histogramme des couleurs de l'image.
+     *
+     * @return les couleurs de l'image.
+     */
+    public CouleursImage getCouleurs() {
+        return couleurs;
+    }
 }
@@ -10,12 +10,19 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Classe GUI pour fournir une interface graphique permettant de gérer
  * et d'explorer des fichiers et répertoires. Cette application offre
  * des fonctionnalités pour afficher des fichiers, sauvegarder des snapshots,
  * et comparer des snapshots.
+ *
+ * <p>Les opérations longues s'exécutent en arrière-plan ({@link SwingWorker}) ; le bouton
+ * « Annuler » les arrête aussitôt (voir {@link Annulation}). L'analyse d'un fichier est
+ * limitée à {@value #DELAI_FICHIER} ms par un {@link Surveillant} ; un fichier qui dépasse ce délai
+ * est mis en quarantaine jusqu'à la fermeture de l'application.</p>
  * @author Ouardia
  */
 public class GUI {
@@ -27,6 +34,14 @@ public class GUI {
     private JFileChooser fileChooser;
     private JLabel imageLabel;
     private ImageIcon imageIcon;
+    private JButton annulerButton;
+
+    /** Délai accordé à l'analyse d'un fichier, en millisecondes. */
+    private static final long DELAI_FICHIER = 10_000;
+
+    private final Quarantaine quarantaine = new Quarantaine();
+    private Annulation annulation;
+    private SwingWorker<?, ?> tacheEnCours;
 
     
     public GUI() {
@@ -51,6 +66,7 @@ public class GUI {
                 int result = JOptionPane.showConfirmDialog(frame, "Voulez-vous vraiment quitter ?", "Confirmation",
                         JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
                 if (result == JOptionPane.YES_OPTION) {
+                    annuler();
                     frame.dispose();
                 }
             }
@@ -65,6 +81,8 @@ public class GUI {
         JPanel buttonPanel = new JPanel();
         JButton saveSnapshotButton = new JButton("Sauvegarder Snapshot");
         JButton compareSnapshotButton = new JButton("Comparer Snapshot");
+        annulerButton = new JButton("Annuler");
+        annulerButton.setEnabled(false);
 
         saveSnapshotButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -80,6 +98,12 @@ public class GUI {
 
         buttonPanel.add(saveSnapshotButton);
         buttonPanel.add(compareSnapshotButton);
+        annulerButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                annuler();
+            }
+        });
+        buttonPanel.add(annulerButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         
@@ -121,19 +145,31 @@ public class GUI {
         if (returnValue == JFileChooser.APPROVE_OPTION) {
             File directory = fileChooser.getSelectedFile();
             if (directory.isDirectory()) {
-                try {
-                    Repertoire repertoire = new Repertoire(directory.getAbsolutePath());
-                    repertoire.listerFichiers();
-                    textArea.setText("Liste des fichiers dans : " + directory.getAbsolutePath() + "\n");
+                textArea.setText("Liste des fichiers dans : " + directory.getAbsolutePath() + "\n");
+                Annulation annulationListe = new Annulation();
+                demarrer(new SwingWorker<Void, String>() {
+                    @Override
+                    protected Void doInBackground() throws IOException {
+                        try (Repertoire repertoire = new Repertoire(directory.getAbsolutePath())) {
+                            repertoire.setAnnulation(annulationListe);
+                            // Les noms sont affichés au fil du parcours.
+                            repertoire.parcourir(fichier -> publish(fichier.getNom()));
+                        }
+                        return null;
+                    }
 
-                    List<Fichier> fichiers = repertoire.getFichiers();
-                    for (Fichier fichier : fichiers) {
-                        textArea.append(fichier.getNom() + "\n");
+                    @Override
+                    protected void process(List<String> noms) {
+                        for (String nom : noms) {
+                            textArea.append(nom + "\n");
+                        }
                     }
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(frame, "Erreur lors de l'ouverture du répertoire : " + ex.getMessage(),
-                            "Erreur", JOptionPane.ERROR_MESSAGE);
-                }
+
+                    @Override
+                    protected void done() {
+                        terminer(this, "Erreur lors de l'ouverture du répertoire : ");
+                    }
+                }, annulationListe);
             } else {
                 JOptionPane.showMessageDialog(frame, "Veuillez sélectionner un répertoire.", "Erreur", JOptionPane.ERROR_MESSAGE);
             }
@@ -141,7 +177,8 @@ public class GUI {
     }
 
     /**
-     * Affiche les informations détaillées sur un fichier sélectionné.
+     * Affiche les informations détaillées sur un fichier sélectionné. Les métadonnées et
+     * l'aperçu sont lus en arrière-plan, chacun dans la limite de {@value #DELAI_FICHIER} ms.
      *
      * @throws IOException si une erreur d'E/S se produit.
      */
@@ -154,29 +191,59 @@ public class GUI {
                 textArea.setText("Informations sur le fichier : " + file.getName() + "\n");
                 textArea.append("Taille : " + fichier.getTaille() + " Ko\n");
                 textArea.append("Date de dernière modification : " + fichier.getDerniereModification() + "\n");
+                boolean image = file.getName().endsWith(".png") || file.getName().endsWith(".webp") || file.getName().endsWith(".jpeg") || file.getName().endsWith(".jpg");
+                imageLabel.setIcon(null);
+                imageLabel.setText(image ? "Chargement..." : "Aucune image à afficher.");
+
+                Annulation annulationInfos = new Annulation();
+                Surveillant surveillant = new Surveillant(DELAI_FICHIER, quarantaine, annulationInfos);
+                demarrer(new SwingWorker<Void, Void>() {
+                    private String texte;
+                    private ImageIcon apercu;
+
+                    @Override
+                    protected Void doInBackground() throws InterruptedException {
+                        try {
+                            Metadonnees metadonnees = surveillant.executer(fichier, () -> new Metadonnees(file.getAbsolutePath()));
+                            texte = "\nMétadonnées :\n" + metadonnees;
+                        } catch (CancellationException e) {
+                            throw e;
+                        } catch (IOException | RuntimeException e) {
+                            texte = "\nErreur lors de l'extraction des métadonnées : " + e.getMessage() + "\n";
+                        }
+                        if (image) {
+                            try {
+                                apercu = surveillant.executer(fichier, () -> {
+                                    Image originalImage = new ImageIcon(file.getAbsolutePath()).getImage();
+
+                                    int width = 400;
+                                    int height = (int) (originalImage.getHeight(null) * ((double) width / originalImage.getWidth(null)));
+                                    return new ImageIcon(originalImage.getScaledInstance(width, height, Image.SCALE_SMOOTH));
+                                });
+                            } catch (IOException e) {
+                                apercu = null;
+                            }
+                        }
+                        return null;
+                    }
 
-                try {
-                    Metadonnees metadonnees = new Metadonnees(file.getAbsolutePath());
-                    textArea.append("\nMétadonnées :\n" + metadonnees);
-                } catch (Exception e) {
-                    textArea.append("\nErreur lors de l'extraction des métadonnées : " + e.getMessage() + "\n");
-                }
-
-                if (file.getName().endsWith(".png") || file.getName().endsWith(".webp") || file.getName().endsWith(".jpeg") || file.getName().endsWith(".jpg")) {
-                    ImageIcon originalIcon = new ImageIcon(file.getAbsolutePath());
-                    Image originalImage = originalIcon.getImage();
-
-                    int width = 400;
-                    int height = (int) (originalImage.getHeight(null) * ((double) width / originalImage.getWidth(null)));
-                    Image resizedImage = originalImage.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-
-                    imageIcon = new ImageIcon(resizedImage);
-                    imageLabel.setIcon(imageIcon);
-                    imageLabel.setText("");
-                } else {
-                    imageLabel.setIcon(null);
-                    imageLabel.setText("Aucune image à afficher.");
-                }
+                    @Override
+                    protected void done() {
+                        surveillant.close();
+                        if (!terminer(this, "Erreur lors de l'analyse du fichier : ")) {
+                            imageLabel.setText("");
+                            return;
+                        }
+                        textArea.append(texte);
+                        if (apercu != null) {
+                            imageIcon = apercu;
+                            imageLabel.setIcon(imageIcon);
+                            imageLabel.setText("");
+                        } else if (image) {
+                            imageLabel.setText("Aperçu indisponible.");
+                        }
+                    }
+                }, annulationInfos);
             } else {
                 JOptionPane.showMessageDialog(frame, "Veuillez sélectionner un fichier valide.", "Erreur", JOptionPane.ERROR_MESSAGE);
             }
@@ -193,16 +260,26 @@ public class GUI {
             String saveFolder = JOptionPane.showInputDialog(frame, "Entrez le chemin pour sauvegarder le snapshot :");
 
             if (saveFolder != null && !saveFolder.isEmpty()) {
-                try {
-                    Repertoire repertoire = new Repertoire(directory.getAbsolutePath());
-                    repertoire.listerFichiers();
-                    repertoire.snapshotsave(saveFolder);
-                    JOptionPane.showMessageDialog(frame, "Snapshot sauvegardé avec succès dans : " + saveFolder,
-                            "Succès", JOptionPane.INFORMATION_MESSAGE);
-                } catch (IOException e) {
-                    JOptionPane.showMessageDialog(frame, "Erreur lors de la sauvegarde du snapshot : " + e.getMessage(),
-                            "Erreur", JOptionPane.ERROR_MESSAGE);
-                }
+                Annulation annulationSnapshot = new Annulation();
+                demarrer(new SwingWorker<Void, Void>() {
+                    @Override
+                    protected Void doInBackground() throws IOException {
+                        try (Repertoire repertoire = new Repertoire(directory.getAbsolutePath())) {
+                            repertoire.setAnnulation(annulationSnapshot);
+                            repertoire.listerFichiers();
+                            repertoire.snapshotsave(saveFolder);
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    protected void done() {
+                        if (terminer(this, "Erreur lors de la sauvegarde du snapshot : ")) {
+                            JOptionPane.showMessageDialog(frame, "Snapshot sauvegardé avec succès dans : " + saveFolder,
+                                    "Succès", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    }
+                }, annulationSnapshot);
             } else {
                 JOptionPane.showMessageDialog(frame, "Chemin de sauvegarde invalide.", "Erreur", JOptionPane.ERROR_MESSAGE);
             }
@@ -291,6 +368,72 @@ public class GUI {
     }
 
 
+    /**
+     * Lance une opération en arrière-plan, annulable par le bouton « Annuler ».
+     * L'opération précédente, si elle n'est pas terminée, est annulée.
+     *
+     * @param tache l'opération.
+     * @param annulationTache l'annulation consultée par l'opération.
+     */
+    private void demarrer(SwingWorker<?, ?> tache, Annulation annulationTache) {
+        annuler();
+        annulation = annulationTache;
+        tacheEnCours = tache;
+        annulerButton.setEnabled(true);
+        tache.execute();
+    }
+
+    /**
+     * Annule l'opération en cours : elle s'arrête au prochain fichier, et le thread
+     * qui l'exécute est interrompu.
+     */
+    private void annuler() {
+        if (annulation != null) {
+            annulation.annuler();
+        }
+        if (tacheEnCours != null) {
+            tacheEnCours.cancel(true);
+        }
+    }
+
+    /**
+     * Termine une opération en arrière-plan depuis {@code done()} : signale une annulation
+     * ou affiche l'erreur survenue. L'annulation d'une opération remplacée par une autre
+     * n'est pas signalée.
+     *
+     * @param tache l'opération terminée.
+     * @param messageErreur le début du message d'erreur.
+     * @return {@code true} si l'opération a réussi.
+     */
+    private boolean terminer(SwingWorker<?, ?> tache, String messageErreur) {
+        boolean courante = tache == tacheEnCours;
+        if (courante) {
+            annulerButton.setEnabled(false);
+            tacheEnCours = null;
+            annulation = null;
+        }
+        try {
+            tache.get();
+            return true;
+        } catch (CancellationException e) {
+            if (courante) {
+                textArea.append("\nOpération annulée.\n");
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                if (courante) {
+                    textArea.append("\nOpération annulée.\n");
+                }
+            } else {
+                JOptionPane.showMessageDialog(frame, messageErreur + e.getCause().getMessage(),
+                        "Erreur", JOptionPane.ERROR_MESSAGE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
     /**
      * Affiche la fenêtre principale de l'application.
      */
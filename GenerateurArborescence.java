@@ -0,0 +1,430 @@
+package application;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * La classe GenerateurArborescence crée des arborescences synthétiques d'images
+ * reproductibles pour les tests de charge de bout en bout.
+ *
+ * <p>Le contenu généré ne dépend que de la graine et des paramètres : le fichier
+ * numéro {@code i} est toujours identique, quel que soit le nombre de threads.
+ * Les images sont de petites images valides (PNG, JPEG, WEBP) complétées par des
+ * octets de remplissage après leur marqueur de fin pour atteindre la taille tirée,
+ * et peuvent contenir des champs EXIF (GPS, DPI, date).</p>
+ *
+ * <p>Utilisation :</p>
+ * <pre>
+ * java -cp cli.jar application.GenerateurArborescence --sortie ./arbre --fichiers 1000000
+ *      [--graine 42] [--profondeur 3] [--largeur 10] [--png 0.4] [--jpeg 0.4] [--webp 0.1]
+ *      [--autres 0.1] [--taille-mediane 200] [--dispersion 1.0] [--gps 0.3] [--dpi 0.5]
+ *      [--date 0.9] [--threads N]
+ * </pre>
+ *
+ * @author Binome
+ */
+public class GenerateurArborescence {
+
+    /** Image WEBP sans perte de 1x1 pixel (flux VP8L). */
+    private static final byte[] VP8L_1X1 = Base64.getDecoder().decode("LwAAABAHEBERiIj+BwA=");
+
+    private Path sortie = Paths.get("arborescence");
+    private long nbFichiers = 1000;
+    private long graine = 42;
+    private int profondeur = 3;
+    private int largeur = 10;
+    private double partPng = 0.4;
+    private double partJpeg = 0.4;
+    private double partWebp = 0.1;
+    private double partAutres = 0.1;
+    private double tailleMediane = 200 * 1024;
+    private double dispersion = 1.0;
+    private double partGps = 0.3;
+    private double partDpi = 0.5;
+    private double partDate = 0.9;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private byte[] modelePng;
+    private byte[] modeleJpeg;
+    private List<Path> repertoires;
+
+    /**
+     * Constructeur par défaut de la classe GenerateurArborescence.
+     */
+    public GenerateurArborescence() {
+        // Constructeur vide par défaut
+    }
+
+    /**
+     * Point d'entrée du générateur.
+     *
+     * @param args Arguments de la ligne de commande.
+     * @throws Exception si l'arborescence ne peut pas être générée.
+     */
+    public static void main(String[] args) throws Exception {
+        GenerateurArborescence generateur = new GenerateurArborescence();
+        for (int i = 0; i < args.length; i++) {
+            String valeur = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--sortie": generateur.sortie = Paths.get(valeur); break;
+                case "--fichiers": generateur.nbFichiers = Long.parseLong(valeur); break;
+                case "--graine": generateur.graine = Long.parseLong(valeur); break;
+                case "--profondeur": generateur.profondeur = Integer.parseInt(valeur); break;
+                case "--largeur": generateur.largeur = Integer.parseInt(valeur); break;
+                case "--png": generateur.partPng = Double.parseDouble(valeur); break;
+                case "--jpeg": generateur.partJpeg = Double.parseDouble(valeur); break;
+                case "--webp": generateur.partWebp = Double.parseDouble(valeur); break;
+                case "--autres": generateur.partAutres = Double.parseDouble(valeur); break;
+                case "--taille-mediane": generateur.tailleMediane = Double.parseDouble(valeur) * 1024; break;
+                case "--dispersion": generateur.dispersion = Double.parseDouble(valeur); break;
+                case "--gps": generateur.partGps = Double.parseDouble(valeur); break;
+                case "--dpi": generateur.partDpi = Double.parseDouble(valeur); break;
+                case "--date": generateur.partDate = Double.parseDouble(valeur); break;
+                case "--threads": generateur.threads = Integer.parseInt(valeur); break;
+                default:
+                    System.err.println("Option inconnue : " + args[i]);
+                    return;
+            }
+            i++;
+        }
+        long debut = System.nanoTime();
+        generateur.generer();
+        System.out.println(generateur.nbFichiers + " fichiers générés dans " + generateur.sortie
+                + " en " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Génère l'arborescence complète.
+     *
+     * @throws IOException si un fichier ou un répertoire ne peut pas être créé.
+     * @throws InterruptedException si la génération est interrompue.
+     */
+    public void generer() throws IOException, InterruptedException {
+        modelePng = encoder("png");
+        modeleJpeg = encoder("jpg");
+        repertoires = new ArrayList<>();
+        creerRepertoires(sortie, 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> taches = new ArrayList<>();
+            long tranche = Math.max(1, nbFichiers / (threads * 8L));
+            for (long debut = 0; debut < nbFichiers; debut += tranche) {
+                long d = debut;
+                long f = Math.min(nbFichiers, debut + tranche);
+                taches.add(pool.submit(() -> {
+                    for (long i = d; i < f; i++) {
+                        genererFichier(i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tache : taches) {
+                try {
+                    tache.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Erreur lors de la génération : " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Crée récursivement les répertoires de l'arborescence ({@code largeur}
+     * sous-répertoires par niveau, sur {@code profondeur} niveaux).
+     */
+    private void creerRepertoires(Path repertoire, int niveau) throws IOException {
+        Files.createDirectories(repertoire);
+        repertoires.add(repertoire);
+        if (niveau < profondeur) {
+            for (int i = 0; i < largeur; i++) {
+                creerRepertoires(repertoire.resolve(String.format("dossier_%02d", i)), niveau + 1);
+            }
+        }
+    }
+
+    /**
+     * Génère le fichier numéro {@code index}. Le générateur aléatoire est dérivé
+     * de la graine et de l'index, ce qui rend chaque fichier indépendant de l'ordre
+     * de génération.
+     */
+    private void genererFichier(long index) throws IOException {
+        SplittableRandom aleatoire = new SplittableRandom(graine * 0x9E3779B97F4A7C15L + index);
+        Path repertoire = repertoires.get(aleatoire.nextInt(repertoires.size()));
+        long taille = (long) (tailleMediane * Math.exp(dispersion * gaussienne(aleatoire)));
+
+        double tirage = aleatoire.nextDouble() * (partPng + partJpeg + partWebp + partAutres);
+        byte[] exif = tirerExif(aleatoire);
+        byte[] contenu;
+        String nom;
+        if (tirage < partPng) {
+            nom = "image_" + index + ".png";
+            contenu = png(exif);
+        } else if (tirage < partPng + partJpeg) {
+            nom = "photo_" + index + ".jpg";
+            contenu = jpeg(exif);
+        } else if (tirage < partPng + partJpeg + partWebp) {
+            nom = "image_" + index + ".webp";
+            contenu = webp(exif);
+        } else {
+            nom = "document_" + index + ".txt";
+            contenu = ("Document synthétique " + index + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (OutputStream sortieFichier = Files.newOutputStream(repertoire.resolve(nom))) {
+            sortieFichier.write(contenu);
+            long reste = taille - contenu.length;
+            byte[] remplissage = new byte[8192];
+            while (reste > 0) {
+                int n = (int) Math.min(reste, remplissage.length);
+                sortieFichier.write(remplissage, 0, n);
+                reste -= n;
+            }
+        }
+    }
+
+    /**
+     * Tire une valeur selon une loi normale centrée réduite (méthode de Box-Muller).
+     */
+    private static double gaussienne(SplittableRandom aleatoire) {
+        double u = 1.0 - aleatoire.nextDouble();
+        double v = aleatoire.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+
+    /**
+     * Construit un bloc EXIF (en-tête TIFF) selon les proportions GPS, DPI et date,
+     * ou retourne {@code null} si aucun champ n'est tiré.
+     */
+    private byte[] tirerExif(SplittableRandom aleatoire) {
+        boolean gps = aleatoire.nextDouble() < partGps;
+        boolean dpi = aleatoire.nextDouble() < partDpi;
+        boolean date = aleatoire.nextDouble() < partDate;
+        if (!gps && !dpi && !date) {
+            return null;
+        }
+        int resolution = 72 * (1 + aleatoire.nextInt(4));
+        double latitude = aleatoire.nextDouble() * 180 - 90;
+        double longitude = aleatoire.nextDouble() * 360 - 180;
+        String dateStr = String.format("%04d:%02d:%02d %02d:%02d:%02d", 2000 + aleatoire.nextInt(25),
+                1 + aleatoire.nextInt(12), 1 + aleatoire.nextInt(28), aleatoire.nextInt(24),
+                aleatoire.nextInt(60), aleatoire.nextInt(60));
+        return ExifSynthetique.construire(dpi ? resolution : 0, date ? dateStr : null,
+                gps ? latitude : Double.NaN, longitude);
+    }
+
+    /**
+     * Retourne un fichier JPEG : SOI, segment APP1 EXIF facultatif, puis le modèle.
+     */
+    private byte[] jpeg(byte[] exif) {
+        if (exif == null) {
+            return modeleJpeg;
+        }
+        ByteArrayOutputStream sortieJpeg = new ByteArrayOutputStream(modeleJpeg.length + exif.length + 16);
+        sortieJpeg.write(0xFF);
+        sortieJpeg.write(0xD8);
+        int longueur = exif.length + 8;
+        sortieJpeg.write(0xFF);
+        sortieJpeg.write(0xE1);
+        sortieJpeg.write(longueur >> 8);
+        sortieJpeg.write(longueur);
+        sortieJpeg.writeBytes("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        sortieJpeg.writeBytes(exif);
+        sortieJpeg.write(modeleJpeg, 2, modeleJpeg.length - 2);
+        return sortieJpeg.toByteArray();
+    }
+
+    /**
+     * Retourne un fichier PNG : le bloc EXIF facultatif est inséré dans un chunk
+     * {@code eXIf} juste après {@code IHDR}.
+     */
+    private byte[] png(byte[] exif) {
+        if (exif == null) {
+            return modelePng;
+        }
+        int finIhdr = 8 + 8 + 13 + 4;
+        ByteArrayOutputStream sortiePng = new ByteArrayOutputStream(modelePng.length + exif.length + 12);
+        sortiePng.write(modelePng, 0, finIhdr);
+        ecrireChunkPng(sortiePng, "eXIf", exif);
+        sortiePng.write(modelePng, finIhdr, modelePng.length - finIhdr);
+        return sortiePng.toByteArray();
+    }
+
+    /**
+     * Retourne un fichier WEBP de 1x1 pixel, au format étendu (VP8X) lorsqu'un bloc
+     * EXIF est présent.
+     */
+    private static byte[] webp(byte[] exif) {
+        ByteArrayOutputStream corps = new ByteArrayOutputStream();
+        corps.writeBytes("WEBP".getBytes(StandardCharsets.ISO_8859_1));
+        if (exif != null) {
+            byte[] vp8x = new byte[10];
+            vp8x[0] = 0x08;
+            ecrireChunkRiff(corps, "VP8X", vp8x);
+        }
+        ecrireChunkRiff(corps, "VP8L", VP8L_1X1);
+        if (exif != null) {
+            ecrireChunkRiff(corps, "EXIF", exif);
+        }
+        ByteArrayOutputStream sortieWebp = new ByteArrayOutputStream(corps.size() + 8);
+        sortieWebp.writeBytes("RIFF".getBytes(StandardCharsets.ISO_8859_1));
+        ecrireEntierLittleEndian(sortieWebp, corps.size());
+        sortieWebp.writeBytes(corps.toByteArray());
+        return sortieWebp.toByteArray();
+    }
+
+    private static void ecrireChunkPng(ByteArrayOutputStream sortiePng, String type, byte[] donnees) {
+        byte[] typeOctets = type.getBytes(StandardCharsets.ISO_8859_1);
+        int n = donnees.length;
+        sortiePng.write(n >>> 24);
+        sortiePng.write(n >>> 16);
+        sortiePng.write(n >>> 8);
+        sortiePng.write(n);
+        sortiePng.writeBytes(typeOctets);
+        sortiePng.writeBytes(donnees);
+        CRC32 crc = new CRC32();
+        crc.update(typeOctets);
+        crc.update(donnees);
+        long valeur = crc.getValue();
+        sortiePng.write((int) (valeur >>> 24));
+        sortiePng.write((int) (valeur >>> 16));
+        sortiePng.write((int) (valeur >>> 8));
+        sortiePng.write((int) valeur);
+    }
+
+    private static void ecrireChunkRiff(ByteArrayOutputStream sortieRiff, String type, byte[] donnees) {
+        sortieRiff.writeBytes(type.getBytes(StandardCharsets.ISO_8859_1));
+        ecrireEntierLittleEndian(sortieRiff, donnees.length);
+        sortieRiff.writeBytes(donnees);
+        if ((donnees.length & 1) != 0) {
+            sortieRiff.write(0);
+        }
+    }
+
+    private static void ecrireEntierLittleEndian(ByteArrayOutputStream sortieRiff, int valeur) {
+        sortieRiff.write(valeur);
+        sortieRiff.write(valeur >>> 8);
+        sortieRiff.write(valeur >>> 16);
+        sortieRiff.write(valeur >>> 24);
+    }
+
+    /**
+     * Encode une petite image de 16x16 pixels qui sert de modèle.
+     */
+    private static byte[] encoder(String format) throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(40, 90, 200));
+        g.fillRect(0, 0, 16, 16);
+        g.dispose();
+        ByteArrayOutputStream sortieImage = new ByteArrayOutputStream();
+        ImageIO.write(image, format, sortieImage);
+        return sortieImage.toByteArray();
+    }
+
+    /**
+     * Construction d'un bloc EXIF minimal au format TIFF gros-boutiste.
+     */
+    static final class ExifSynthetique {
+
+        private static final int ASCII = 2;
+        private static final int SHORT = 3;
+        private static final int LONG = 4;
+        private static final int RATIONAL = 5;
+
+        private ExifSynthetique() {
+            // Classe utilitaire
+        }
+
+        /**
+         * Construit le bloc EXIF.
+         *
+         * @param dpi la résolution, ou 0 pour l'omettre.
+         * @param date la date au format EXIF, ou {@code null} pour l'omettre.
+         * @param latitude la latitude en degrés, ou {@code NaN} pour omettre le GPS.
+         * @param longitude la longitude en degrés.
+         * @return les octets du bloc TIFF.
+         */
+        static byte[] construire(int dpi, String date, double latitude, double longitude) {
+            boolean gps = !Double.isNaN(latitude);
+            int nbEntrees = (dpi > 0 ? 3 : 0) + (date != null ? 1 : 0) + (gps ? 1 : 0);
+            int debutIfd0 = 8;
+            int finIfd0 = debutIfd0 + 2 + nbEntrees * 12 + 4;
+            int debutGps = finIfd0;
+            int finGps = gps ? debutGps + 2 + 4 * 12 + 4 : debutGps;
+
+            ByteBuffer tampon = ByteBuffer.allocate(finGps + 128);
+            ByteBuffer donnees = ByteBuffer.allocate(128);
+            tampon.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(debutIfd0);
+
+            tampon.putShort((short) nbEntrees);
+            if (dpi > 0) {
+                entree(tampon, 0x011A, RATIONAL, 1, finGps + donnees.position());
+                donnees.putInt(dpi).putInt(1);
+                entree(tampon, 0x011B, RATIONAL, 1, finGps + donnees.position());
+                donnees.putInt(dpi).putInt(1);
+                tampon.putShort((short) 0x0128).putShort((short) SHORT).putInt(1).putShort((short) 2).putShort((short) 0);
+            }
+            if (date != null) {
+                entree(tampon, 0x0132, ASCII, 20, finGps + donnees.position());
+                donnees.put(date.getBytes(StandardCharsets.ISO_8859_1)).put((byte) 0);
+            }
+            if (gps) {
+                entree(tampon, 0x8825, LONG, 1, debutGps);
+            }
+            tampon.putInt(0);
+
+            if (gps) {
+                tampon.putShort((short) 4);
+                tampon.putShort((short) 1).putShort((short) ASCII).putInt(2)
+                        .put((byte) (latitude >= 0 ? 'N' : 'S')).put((byte) 0).putShort((short) 0);
+                entree(tampon, 2, RATIONAL, 3, finGps + donnees.position());
+                degresMinutesSecondes(donnees, Math.abs(latitude));
+                tampon.putShort((short) 3).putShort((short) ASCII).putInt(2)
+                        .put((byte) (longitude >= 0 ? 'E' : 'W')).put((byte) 0).putShort((short) 0);
+                entree(tampon, 4, RATIONAL, 3, finGps + donnees.position());
+                degresMinutesSecondes(donnees, Math.abs(longitude));
+                tampon.putInt(0);
+            }
+
+            tampon.put(donnees.array(), 0, donnees.position());
+            byte[] resultat = new byte[tampon.position()];
+            tampon.flip();
+            tampon.get(resultat);
+            return resultat;
+        }
+
+        private static void entree(ByteBuffer tampon, int tag, int type, int nombre, int decalage) {
+            tampon.putShort((short) tag).putShort((short) type).putInt(nombre).putInt(decalage);
+        }
+
+        private static void degresMinutesSecondes(ByteBuffer donnees, double valeur) {
+            int degres = (int) valeur;
+            double resteMinutes = (valeur - degres) * 60;
+            int minutes = (int) resteMinutes;
+            int centiemesSecondes = (int) Math.round((resteMinutes - minutes) * 60 * 100);
+            donnees.putInt(degres).putInt(1).putInt(minutes).putInt(1).putInt(centiemesSecondes).putInt(100);
+        }
+    }
+}
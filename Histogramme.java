@@ -0,0 +1,196 @@
+package application;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * La classe Histogramme enregistre une distribution de valeurs entières positives
+ * (durées, tailles...) dans des classes logarithmiques, à la manière d'un histogramme HDR.
+ *
+ * <p>Chaque puissance de deux est découpée en 32 sous-classes : l'erreur relative
+ * sur un quantile est donc inférieure à 3 %, quelle que soit la valeur. La mémoire
+ * utilisée est constante et deux histogrammes peuvent être fusionnés, ce qui permet
+ * de calculer des quantiles sur un volume quelconque de valeurs.</p>
+ *
+ * <p>Cette classe n'est pas synchronisée.</p>
+ *
+ * @author Binome
+ */
+public class Histogramme {
+
+    private static final int BITS = 5;
+    private static final int SOUS_CLASSES = 1 << BITS;
+    private static final int LINEAIRE = SOUS_CLASSES << 1;
+    private static final int NB_CLASSES = LINEAIRE + (62 - BITS) * SOUS_CLASSES;
+
+    private final long[] comptes = new long[NB_CLASSES];
+    private long nombre;
+    private long total;
+    private long minimum = Long.MAX_VALUE;
+    private long maximum;
+
+    /**
+     * Constructeur par défaut : crée un histogramme vide.
+     */
+    public Histogramme() {
+        // Histogramme vide
+    }
+
+    /**
+     * Enregistre une valeur. Les valeurs négatives sont ramenées à 0.
+     *
+     * @param valeur la valeur à enregistrer.
+     */
+    public void enregistrer(long valeur) {
+        long v = Math.max(0, valeur);
+        comptes[indice(v)]++;
+        nombre++;
+        total += v;
+        minimum = Math.min(minimum, v);
+        maximum = Math.max(maximum, v);
+    }
+
+    /**
+     * Ajoute à cet histogramme toutes les valeurs d'un autre histogramme.
+     *
+     * @param autre l'histogramme à fusionner.
+     */
+    public void fusionner(Histogramme autre) {
+        for (int i = 0; i < NB_CLASSES; i++) {
+            comptes[i] += autre.comptes[i];
+        }
+        nombre += autre.nombre;
+        total += autre.total;
+        minimum = Math.min(minimum, autre.minimum);
+        maximum = Math.max(maximum, autre.maximum);
+    }
+
+    /**
+     * Retourne une estimation du quantile demandé.
+     *
+     * @param q le quantile, entre 0 et 1 (0.5 pour la médiane).
+     * @return la valeur estimée, ou 0 si l'histogramme est vide.
+     */
+    public long quantile(double q) {
+        if (nombre == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(q * nombre));
+        long cumul = 0;
+        for (int i = 0; i < NB_CLASSES; i++) {
+            cumul += comptes[i];
+            if (cumul >= rang) {
+                return Math.min(maximum, Math.max(minimum, milieu(i)));
+            }
+        }
+        return maximum;
+    }
+
+    /**
+     * @return le nombre de valeurs enregistrées.
+     */
+    public long getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return la somme des valeurs enregistrées.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return la plus petite valeur enregistrée, ou 0 si l'histogramme est vide.
+     */
+    public long getMinimum() {
+        return nombre == 0 ? 0 : minimum;
+    }
+
+    /**
+     * @return la plus grande valeur enregistrée.
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return la moyenne des valeurs enregistrées, ou 0 si l'histogramme est vide.
+     */
+    public double getMoyenne() {
+        return nombre == 0 ? 0 : (double) total / nombre;
+    }
+
+    /**
+     * Écrit l'histogramme sous forme compacte (seules les classes non vides sont écrites).
+     *
+     * @param sortie le flux de sortie.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void ecrire(DataOutput sortie) throws IOException {
+        sortie.writeLong(nombre);
+        sortie.writeLong(total);
+        sortie.writeLong(minimum);
+        sortie.writeLong(maximum);
+        int nonVides = 0;
+        for (long compte : comptes) {
+            if (compte != 0) {
+                nonVides++;
+            }
+        }
+        sortie.writeInt(nonVides);
+        for (int i = 0; i < NB_CLASSES; i++) {
+            if (comptes[i] != 0) {
+                sortie.writeShort(i);
+                sortie.writeLong(comptes[i]);
+            }
+        }
+    }
+
+    /**
+     * Lit un histogramme écrit par {@link #ecrire(DataOutput)}.
+     *
+     * @param entree le flux d'entrée.
+     * @return l'histogramme lu.
+     * @throws IOException si la lecture échoue.
+     */
+    public static Histogramme lire(DataInput entree) throws IOException {
+        Histogramme h = new Histogramme();
+        h.nombre = entree.readLong();
+        h.total = entree.readLong();
+        h.minimum = entree.readLong();
+        h.maximum = entree.readLong();
+        int nonVides = entree.readInt();
+        for (int i = 0; i < nonVides; i++) {
+            h.comptes[entree.readUnsignedShort()] = entree.readLong();
+        }
+        return h;
+    }
+
+    /**
+     * Calcule la classe d'une valeur positive.
+     */
+    private static int indice(long v) {
+        if (v < LINEAIRE) {
+            return (int) v;
+        }
+        int exposant = 63 - Long.numberOfLeadingZeros(v);
+        int mantisse = (int) (v >>> (exposant - BITS));
+        return LINEAIRE + (exposant - BITS - 1) * SOUS_CLASSES + (mantisse - SOUS_CLASSES);
+    }
+
+    /**
+     * Retourne la valeur centrale d'une classe.
+     */
+    private static long milieu(int indice) {
+        if (indice < LINEAIRE) {
+            return indice;
+        }
+        int exposant = (indice - LINEAIRE) / SOUS_CLASSES + BITS + 1;
+        long mantisse = (indice - LINEAIRE) % SOUS_CLASSES + SOUS_CLASSES;
+        long bas = mantisse << (exposant - BITS);
+        long largeur = 1L << (exposant - BITS);
+        return bas + largeur / 2;
+    }
+}
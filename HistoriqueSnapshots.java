@@ -0,0 +1,655 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * La classe HistoriqueSnapshots conserve l'historique des états d'un répertoire sous forme
+ * d'une base complète suivie de deltas, sans réécrire la liste complète à chaque snapshot.
+ *
+ * <p>Contenu du dossier de l'historique :</p>
+ * <ul>
+ *     <li>{@code base_<n>.gz} : état complet au snapshot {@code n}, trié par chemin ;</li>
+ *     <li>{@code deltas_<n>.bin} : deltas des snapshots suivant la base {@code n}, ajoutés à la fin
+ *     du fichier, chacun dans un bloc gzip indépendant ;</li>
+ *     <li>{@code index.txt} : une ligne par snapshot (numéro, date, type, base, position et longueur
+ *     du bloc, nombre d'entrées), écrite après le bloc qu'elle décrit.</li>
+ * </ul>
+ *
+ * <p>Chaque entrée est une opération (présent, supprimé, modifié), le chemin codé par rapport au
+ * précédent (longueur du préfixe commun puis suffixe), la taille et la date de modification en
+ * entiers de longueur variable. Une nouvelle base est écrite après {@value #DELTAS_MAX} deltas,
+ * ou lorsque les deltas depuis la base dépassent la moitié de sa taille ou de son nombre d'entrées.</p>
+ *
+ * <p>Les requêtes sont des fusions en flux, triées par chemin : l'état à une date fusionne la base
+ * et les deltas qui la suivent, la différence entre deux dates compare deux de ces états. La mémoire
+ * utilisée dépend du nombre de deltas ouverts, pas du nombre de fichiers.</p>
+ *
+ * @author Binome
+ */
+public final class HistoriqueSnapshots {
+
+    private static final int DELTAS_MAX = 30;
+    private static final byte PRESENT = 0;
+    private static final byte SUPPRIME = 1;
+    private static final byte MODIFIE = 2;
+    private static final byte FIN = (byte) 0xFF;
+    private static final String FORMAT_DATE = "yyyyMMdd_HHmmss";
+
+    /**
+     * Ligne de l'index : un snapshot.
+     */
+    private static final class Snapshot {
+        final int numero;
+        final String date;
+        final boolean base;
+        final int numeroBase;
+        final long position;
+        final long longueur;
+        final long entrees;
+
+        Snapshot(int numero, String date, boolean base, int numeroBase, long position, long longueur, long entrees) {
+            this.numero = numero;
+            this.date = date;
+            this.base = base;
+            this.numeroBase = numeroBase;
+            this.position = position;
+            this.longueur = longueur;
+            this.entrees = entrees;
+        }
+    }
+
+    /**
+     * Une entrée d'un état : chemin, taille et date de modification.
+     */
+    public static final class Entree {
+        private final String chemin;
+        private final long taille;
+        private final long modification;
+
+        Entree(String chemin, long taille, long modification) {
+            this.chemin = chemin;
+            this.taille = taille;
+            this.modification = modification;
+        }
+
+        /**
+         * @return le chemin du fichier.
+         */
+        public String getChemin() {
+            return chemin;
+        }
+
+        /**
+         * @return la taille du fichier en octets.
+         */
+        public long getTaille() {
+            return taille;
+        }
+
+        /**
+         * @return la date de dernière modification, en millisecondes.
+         */
+        public long getModification() {
+            return modification;
+        }
+
+        @Override
+        public String toString() {
+            return chemin + " | " + taille + " octets | " + new Date(modification);
+        }
+    }
+
+    private final Path dossier;
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    /**
+     * Ouvre l'historique contenu dans un dossier, créé au besoin.
+     *
+     * @param dossier le dossier de l'historique.
+     * @throws IOException si l'index ne peut pas être lu.
+     */
+    public HistoriqueSnapshots(Path dossier) throws IOException {
+        this.dossier = dossier;
+        Files.createDirectories(dossier);
+        Path index = dossier.resolve("index.txt");
+        if (Files.exists(index)) {
+            try (BufferedReader lecteur = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+                String ligne;
+                while ((ligne = lecteur.readLine()) != null) {
+                    Snapshot snapshot = lireLigne(ligne);
+                    if (snapshot != null) {
+                        snapshots.add(snapshot);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit une ligne de l'index ; une ligne incomplète (arrêt pendant l'écriture) est ignorée.
+     */
+    private static Snapshot lireLigne(String ligne) {
+        String[] champs = ligne.trim().split(" ");
+        if (champs.length != 7) {
+            return null;
+        }
+        try {
+            return new Snapshot(Integer.parseInt(champs[0]), champs[1], champs[2].equals("B"),
+                    Integer.parseInt(champs[3]), Long.parseLong(champs[4]), Long.parseLong(champs[5]),
+                    Long.parseLong(champs[6]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Enregistre l'état actuel des fichiers listés d'un répertoire, comme base ou comme delta
+     * du dernier état. Les fichiers sont triés par chemin dans le budget mémoire du répertoire
+     * (voir {@link Repertoire#setMemoireMax(long)}).
+     *
+     * @param repertoire le répertoire, déjà listé.
+     * @param date la date du snapshot.
+     * @return une description du snapshot enregistré.
+     * @throws IOException si l'historique ne peut pas être écrit.
+     */
+    public String enregistrer(Repertoire repertoire, Date date) throws IOException {
+        Snapshot snapshot;
+        int numero = snapshots.isEmpty() ? 1 : dernier().numero + 1;
+        String texteDate = new SimpleDateFormat(FORMAT_DATE).format(date);
+        try (TriExterne<Entree> actuel = new TriExterne<>(Comparator.comparing(Entree::getChemin), FORMAT_ENTREE,
+                repertoire.getMemoireMax())) {
+            try {
+                repertoire.parcourirFichiers(f -> actuel.accepter(
+                        new Entree(f.getChemin(), f.getTaille(), f.getDerniereModification())));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            snapshot = nouvelleBaseNecessaire()
+                    ? ecrireBase(numero, texteDate, actuel)
+                    : ecrireDelta(numero, texteDate, actuel);
+        }
+
+        try (BufferedWriter index = Files.newBufferedWriter(dossier.resolve("index.txt"), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            index.write(snapshot.numero + " " + snapshot.date + " " + (snapshot.base ? "B" : "D") + " "
+                    + snapshot.numeroBase + " " + snapshot.position + " " + snapshot.longueur + " "
+                    + snapshot.entrees + "\n");
+        }
+        snapshots.add(snapshot);
+        return "Snapshot " + numero + " (" + texteDate + ") : "
+                + (snapshot.base ? "base de " + snapshot.entrees + " fichiers" : snapshot.entrees + " changements")
+                + ", " + snapshot.longueur + " octets";
+    }
+
+    private boolean nouvelleBaseNecessaire() {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        Snapshot dernier = dernier();
+        long tailleBase = 0;
+        long tailleDeltas = 0;
+        long entreesBase = 0;
+        long changements = 0;
+        int deltas = 0;
+        for (Snapshot s : snapshots) {
+            if (s.numeroBase != dernier.numeroBase) {
+                continue;
+            }
+            if (s.base) {
+                tailleBase = s.longueur;
+                entreesBase = s.entrees;
+            } else {
+                tailleDeltas += s.longueur;
+                changements += s.entrees;
+                deltas++;
+            }
+        }
+        return deltas >= DELTAS_MAX || tailleDeltas > tailleBase / 2 || changements > entreesBase / 2;
+    }
+
+    private Snapshot ecrireBase(int numero, String date, TriExterne<Entree> actuel) throws IOException {
+        Path fichier = dossier.resolve("base_" + numero + ".gz");
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             TriExterne.Lecture<Entree> entrees = actuel.lire()) {
+            Encodeur encodeur = new Encodeur(canal);
+            while (entrees.hasNext()) {
+                encodeur.ecrire(PRESENT, entrees.next());
+            }
+            encodeur.terminer();
+            canal.force(false);
+            return new Snapshot(numero, date, true, numero, 0, canal.size(), actuel.getNombre());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Snapshot ecrireDelta(int numero, String date, TriExterne<Entree> actuel) throws IOException {
+        int numeroBase = dernier().numeroBase;
+        Path fichier = dossier.resolve("deltas_" + numeroBase + ".bin");
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FluxEtat precedent = new FluxEtat(dernier().numero);
+             TriExterne.Lecture<Entree> entrees = actuel.lire()) {
+            // Un bloc incomplet laissé par un arrêt brutal n'est pas référencé par l'index : écrasé.
+            long position = finDernierBloc(numeroBase);
+            canal.truncate(position);
+            canal.position(position);
+            Encodeur encodeur = new Encodeur(canal);
+            long changements = 0;
+            Entree courante = entrees.hasNext() ? entrees.next() : null;
+            boolean suivant = precedent.avancer();
+            while (courante != null || suivant) {
+                int c = courante == null ? 1 : !suivant ? -1 : courante.chemin.compareTo(precedent.chemin);
+                if (c < 0) {
+                    encodeur.ecrire(PRESENT, courante);
+                    changements++;
+                    courante = entrees.hasNext() ? entrees.next() : null;
+                } else if (c > 0) {
+                    encodeur.ecrire(SUPPRIME, new Entree(precedent.chemin, 0, 0));
+                    changements++;
+                    suivant = precedent.avancer();
+                } else {
+                    if (courante.taille != precedent.taille || courante.modification != precedent.modification) {
+                        encodeur.ecrire(MODIFIE, courante);
+                        changements++;
+                    }
+                    courante = entrees.hasNext() ? entrees.next() : null;
+                    suivant = precedent.avancer();
+                }
+            }
+            encodeur.terminer();
+            canal.force(false);
+            return new Snapshot(numero, date, false, numeroBase, position, canal.position() - position, changements);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Format des entrées triées par {@link TriExterne} avant l'enregistrement.
+     */
+    private static final TriExterne.Format<Entree> FORMAT_ENTREE = new TriExterne.Format<>() {
+        @Override
+        public void ecrire(Entree entree, DataOutput sortie) throws IOException {
+            sortie.writeUTF(entree.chemin);
+            sortie.writeLong(entree.taille);
+            sortie.writeLong(entree.modification);
+        }
+
+        @Override
+        public Entree lire(DataInput entree) throws IOException {
+            return new Entree(entree.readUTF(), entree.readLong(), entree.readLong());
+        }
+
+        @Override
+        public long empreinte(Entree entree) {
+            return 80 + 2L * entree.chemin.length();
+        }
+    };
+
+    private long finDernierBloc(int numeroBase) {
+        long fin = 0;
+        for (Snapshot s : snapshots) {
+            if (s.numeroBase == numeroBase && !s.base) {
+                fin = Math.max(fin, s.position + s.longueur);
+            }
+        }
+        return fin;
+    }
+
+    private Snapshot dernier() {
+        return snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * Retourne le numéro du dernier snapshot antérieur ou égal à une date.
+     *
+     * @param date une date {@code yyyyMMdd}, {@code yyyyMMdd_HHmm} ou {@code yyyyMMdd_HHmmss} ;
+     *             une date incomplète désigne la fin de la journée ou de la minute.
+     * @return le numéro du snapshot.
+     * @throws IOException si aucun snapshot n'est antérieur à la date.
+     */
+    public int rechercher(String date) throws IOException {
+        String chiffres = date.replaceAll("[^0-9]", "");
+        if (chiffres.length() == 8) {
+            chiffres += "235959";
+        } else if (chiffres.length() == 12) {
+            chiffres += "59";
+        } else if (chiffres.length() != 14) {
+            throw new IllegalArgumentException("Date invalide : " + date + " (attendu : yyyyMMdd[_HHmm[ss]]).");
+        }
+        String limite = chiffres.substring(0, 8) + "_" + chiffres.substring(8);
+        Snapshot trouve = null;
+        for (Snapshot s : snapshots) {
+            if (s.date.compareTo(limite) <= 0) {
+                trouve = s;
+            }
+        }
+        if (trouve == null) {
+            throw new IOException("Aucun snapshot antérieur au " + date + ".");
+        }
+        return trouve.numero;
+    }
+
+    /**
+     * Parcourt, par ordre de chemin, l'état enregistré par un snapshot.
+     *
+     * @param numero le numéro du snapshot.
+     * @param visiteur le destinataire de chaque entrée.
+     * @throws IOException si l'historique ne peut pas être lu.
+     */
+    public void parcourirEtat(int numero, Consumer<Entree> visiteur) throws IOException {
+        try (FluxEtat etat = new FluxEtat(numero)) {
+            while (etat.avancer()) {
+                visiteur.accept(new Entree(etat.chemin, etat.taille, etat.modification));
+            }
+        }
+    }
+
+    /**
+     * Affiche les fichiers ajoutés, supprimés et modifiés entre deux snapshots.
+     *
+     * @param avant le numéro du premier snapshot.
+     * @param apres le numéro du second snapshot.
+     * @param sortie le flux d'affichage.
+     * @return le nombre de changements.
+     * @throws IOException si l'historique ne peut pas être lu.
+     */
+    public long comparer(int avant, int apres, PrintStream sortie) throws IOException {
+        long changements = 0;
+        try (FluxEtat a = new FluxEtat(avant); FluxEtat b = new FluxEtat(apres)) {
+            boolean suiteA = a.avancer();
+            boolean suiteB = b.avancer();
+            while (suiteA || suiteB) {
+                int c = !suiteA ? 1 : !suiteB ? -1 : a.chemin.compareTo(b.chemin);
+                if (c < 0) {
+                    sortie.println("Fichier supprimé : " + a.chemin);
+                    changements++;
+                    suiteA = a.avancer();
+                } else if (c > 0) {
+                    sortie.println("Fichier ajouté : " + b.chemin);
+                    changements++;
+                    suiteB = b.avancer();
+                } else {
+                    if (a.taille != b.taille || a.modification != b.modification) {
+                        sortie.println("Fichier modifié : " + b.chemin);
+                        changements++;
+                    }
+                    suiteA = a.avancer();
+                    suiteB = b.avancer();
+                }
+            }
+        }
+        return changements;
+    }
+
+    /**
+     * Affiche l'index de l'historique : un snapshot par ligne.
+     *
+     * @param sortie le flux d'affichage.
+     */
+    public void afficherIndex(PrintStream sortie) {
+        sortie.println("Historique : " + dossier + " (" + snapshots.size() + " snapshots)");
+        for (Snapshot s : snapshots) {
+            sortie.println(s.numero + " " + s.date + " " + (s.base ? "base   " : "delta  ")
+                    + (s.base ? s.entrees + " fichiers" : s.entrees + " changements") + ", " + s.longueur + " octets");
+        }
+    }
+
+    /**
+     * @param numero un numéro de snapshot.
+     * @return la date du snapshot ({@code yyyyMMdd_HHmmss}).
+     */
+    public String getDate(int numero) {
+        return snapshot(numero).date;
+    }
+
+    private Snapshot snapshot(int numero) {
+        for (Snapshot s : snapshots) {
+            if (s.numero == numero) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("Snapshot inconnu : " + numero);
+    }
+
+    /**
+     * État d'un snapshot, lu en flux : fusion de sa base et des deltas qui la suivent jusqu'à lui.
+     * Pour chaque chemin, l'opération du bloc le plus récent l'emporte.
+     */
+    private final class FluxEtat implements Closeable {
+        private final List<Decodeur> blocs = new ArrayList<>();
+        String chemin;
+        long taille;
+        long modification;
+
+        FluxEtat(int numero) throws IOException {
+            Snapshot cible = snapshot(numero);
+            try {
+                for (Snapshot s : snapshots) {
+                    if (s.numeroBase != cible.numeroBase || s.numero > cible.numero) {
+                        continue;
+                    }
+                    Path fichier = dossier.resolve(s.base ? "base_" + s.numero + ".gz" : "deltas_" + s.numeroBase + ".bin");
+                    Decodeur decodeur = new Decodeur(fichier, s.position, s.longueur);
+                    blocs.add(decodeur);
+                    decodeur.avancer();
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        boolean avancer() throws IOException {
+            while (true) {
+                String minimum = null;
+                for (Decodeur d : blocs) {
+                    if (d.chemin != null && (minimum == null || d.chemin.compareTo(minimum) < 0)) {
+                        minimum = d.chemin;
+                    }
+                }
+                if (minimum == null) {
+                    return false;
+                }
+                byte operation = SUPPRIME;
+                for (Decodeur d : blocs) {
+                    if (minimum.equals(d.chemin)) {
+                        operation = d.operation;
+                        taille = d.taille;
+                        modification = d.modification;
+                        d.avancer();
+                    }
+                }
+                if (operation != SUPPRIME) {
+                    chemin = minimum;
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Decodeur d : blocs) {
+                d.close();
+            }
+        }
+    }
+
+    /**
+     * Écrit les entrées d'un bloc, compressé en gzip.
+     */
+    private static final class Encodeur {
+        private final GZIPOutputStream gzip;
+        private final DataOutputStream sortie;
+        private String precedent = "";
+
+        Encodeur(FileChannel canal) throws IOException {
+            OutputStream flux = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int debut, int longueur) throws IOException {
+                    ByteBuffer tampon = ByteBuffer.wrap(b, debut, longueur);
+                    while (tampon.hasRemaining()) {
+                        canal.write(tampon);
+                    }
+                }
+            };
+            gzip = new GZIPOutputStream(new BufferedOutputStream(flux, 64 * 1024), 64 * 1024);
+            sortie = new DataOutputStream(gzip);
+        }
+
+        void ecrire(byte operation, Entree entree) throws IOException {
+            int commun = 0;
+            int max = Math.min(precedent.length(), entree.chemin.length());
+            while (commun < max && precedent.charAt(commun) == entree.chemin.charAt(commun)) {
+                commun++;
+            }
+            if (commun > 0 && Character.isHighSurrogate(entree.chemin.charAt(commun - 1))) {
+                // Le préfixe est compté en caractères UTF-16 : une paire de substitution n'est pas coupée,
+                // sinon le suffixe commencerait par un caractère isolé, non codable en UTF-8.
+                commun--;
+            }
+            byte[] suffixe = entree.chemin.substring(commun).getBytes(StandardCharsets.UTF_8);
+            sortie.writeByte(operation);
+            ecrireVariable(sortie, commun);
+            ecrireVariable(sortie, suffixe.length);
+            sortie.write(suffixe);
+            if (operation != SUPPRIME) {
+                ecrireVariable(sortie, entree.taille);
+                ecrireVariable(sortie, entree.modification);
+            }
+            precedent = entree.chemin;
+        }
+
+        void terminer() throws IOException {
+            sortie.writeByte(FIN);
+            gzip.finish();
+            sortie.flush();
+        }
+    }
+
+    /**
+     * Lit les entrées d'un bloc.
+     */
+    private static final class Decodeur implements Closeable {
+        private final FileChannel canal;
+        private final DataInputStream entree;
+        String chemin;
+        byte operation;
+        long taille;
+        long modification;
+
+        Decodeur(Path fichier, long position, long longueur) throws IOException {
+            canal = FileChannel.open(fichier, StandardOpenOption.READ);
+            InputStream borne = new InputStream() {
+                private long restant = longueur;
+                private long courant = position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int debut, int n) throws IOException {
+                    if (restant <= 0) {
+                        return -1;
+                    }
+                    int lus = canal.read(ByteBuffer.wrap(b, debut, (int) Math.min(n, restant)), courant);
+                    if (lus > 0) {
+                        restant -= lus;
+                        courant += lus;
+                    }
+                    return lus;
+                }
+            };
+            entree = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new BufferedInputStream(borne, 64 * 1024), 64 * 1024), 64 * 1024));
+        }
+
+        void avancer() throws IOException {
+            if (chemin == null && operation == FIN) {
+                return;
+            }
+            try {
+                operation = entree.readByte();
+                if (operation == FIN) {
+                    chemin = null;
+                    return;
+                }
+                int commun = (int) lireVariable(entree);
+                byte[] suffixe = new byte[(int) lireVariable(entree)];
+                entree.readFully(suffixe);
+                String precedent = chemin != null ? chemin : "";
+                chemin = precedent.substring(0, commun) + new String(suffixe, StandardCharsets.UTF_8);
+                if (operation != SUPPRIME) {
+                    taille = lireVariable(entree);
+                    modification = lireVariable(entree);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Bloc de l'historique tronqué.", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    private static void ecrireVariable(DataOutputStream sortie, long valeur) throws IOException {
+        long v = valeur;
+        while ((v & ~0x7FL) != 0) {
+            sortie.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        sortie.writeByte((int) v);
+    }
+
+    private static long lireVariable(DataInputStream entree) throws IOException {
+        long valeur = 0;
+        int decalage = 0;
+        while (true) {
+            int octet = entree.readUnsignedByte();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if ((octet & 0x80) == 0) {
+                return valeur;
+            }
+            decalage += 7;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * La classe IndexCouleurs enregistre dans un fichier l'histogramme des couleurs
+ * ({@link CouleursImage}) de chaque image d'une ou plusieurs arborescences, et recherche
+ * les images dont les couleurs sont les plus proches de celles d'une image donnée.
+ *
+ * <p>Chaque image est décrite par son chemin, sa taille, sa date de modification et son
+ * histogramme sur {@value CouleursImage#CLASSES} entiers de 16 bits. Lors d'une mise à jour,
+ * seules les images nouvelles ou modifiées depuis l'enregistrement précédent sont décodées ;
+ * les images disparues du répertoire analysé sont retirées de l'index.</p>
+ *
+ * <p>Avec le {@link Surveillant} du répertoire, le décodage de chaque image est borné dans le
+ * temps et la mise à jour s'arrête sur annulation.</p>
+ *
+ * <p>La recherche compare l'histogramme demandé à tous ceux de l'index (distance L1) :
+ * avec {@value CouleursImage#CLASSES} classes, cela reste rapide pour des centaines de
+ * milliers d'images.</p>
+ *
+ * @author Binome
+ */
+public final class IndexCouleurs {
+
+    private static final int MAGIQUE = 0x49434F55; // "ICOU"
+    private static final int VERSION = 1;
+
+    /**
+     * Une image de l'index.
+     */
+    public static final class Entree {
+        private final String chemin;
+        private final long taille;
+        private final long date;
+        private final CouleursImage couleurs;
+        private float distance;
+
+        private Entree(String chemin, long taille, long date, CouleursImage couleurs) {
+            this.chemin = chemin;
+            this.taille = taille;
+            this.date = date;
+            this.couleurs = couleurs;
+        }
+
+        /**
+         * @return le chemin de l'image.
+         */
+        public String getChemin() {
+            return chemin;
+        }
+
+        /**
+         * @return l'histogramme des couleurs de l'image.
+         */
+        public CouleursImage getCouleurs() {
+            return couleurs;
+        }
+
+        /**
+         * @return la distance à l'image recherchée, après {@link IndexCouleurs#rechercher}.
+         */
+        public float getDistance() {
+            return distance;
+        }
+    }
+
+    private final Map<String, Entree> entrees = new TreeMap<>();
+
+    private IndexCouleurs() {
+        // Voir charger()
+    }
+
+    /**
+     * Charge un index ; un fichier absent donne un index vide.
+     *
+     * @param fichier le fichier de l'index.
+     * @return l'index.
+     * @throws IOException si le fichier existe mais n'est pas un index lisible.
+     */
+    public static IndexCouleurs charger(Path fichier) throws IOException {
+        IndexCouleurs index = new IndexCouleurs();
+        if (!Files.exists(fichier)) {
+            return index;
+        }
+        try (DataInputStream entree = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier)))) {
+            if (entree.readInt() != MAGIQUE || entree.readInt() != VERSION) {
+                throw new IOException("Le fichier n'est pas un index de couleurs : " + fichier);
+            }
+            int nombre = entree.readInt();
+            for (int i = 0; i < nombre; i++) {
+                String chemin = entree.readUTF();
+                long taille = entree.readLong();
+                long date = entree.readLong();
+                index.entrees.put(chemin, new Entree(chemin, taille, date, CouleursImage.lire(entree)));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Enregistre l'index ; l'ancien fichier n'est remplacé qu'une fois le nouveau écrit.
+     *
+     * @param fichier le fichier de l'index.
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    public void enregistrer(Path fichier) throws IOException {
+        Path absolu = fichier.toAbsolutePath();
+        Path temporaire = absolu.resolveSibling(absolu.getFileName() + ".tmp");
+        try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire)))) {
+            sortie.writeInt(MAGIQUE);
+            sortie.writeInt(VERSION);
+            sortie.writeInt(entrees.size());
+            for (Entree entree : entrees.values()) {
+                sortie.writeUTF(entree.chemin);
+                sortie.writeLong(entree.taille);
+                sortie.writeLong(entree.date);
+                entree.couleurs.ecrire(sortie);
+            }
+        }
+        Files.move(temporaire, absolu, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Met à jour l'index avec les images d'un répertoire : les images nouvelles ou modifiées
+     * sont décodées en parallèle, les images de l'index qui ne sont plus dans le répertoire
+     * sont retirées. Les entrées d'archives et les images illisibles ou en quarantaine sont ignorées.
+     *
+     * @param repertoire le répertoire analysé, déjà listé.
+     * @return le bilan de la mise à jour.
+     * @throws IOException si l'analyse d'une image échoue de façon inattendue.
+     * @throws InterruptedException si l'analyse est interrompue.
+     * @throws java.util.concurrent.CancellationException si l'analyse est annulée.
+     */
+    public String mettreAJour(Repertoire repertoire) throws IOException, InterruptedException {
+        // Même forme que les chemins du parcours, absolus même si -d est relatif.
+        String racine = Paths.get(repertoire.getChemin()).toAbsolutePath().toString();
+        String prefixe = racine.endsWith(File.separator) ? racine : racine + File.separator;
+        Map<String, Entree> anciennes = new TreeMap<>();
+        entrees.entrySet().removeIf(e -> {
+            if (e.getKey().startsWith(prefixe)) {
+                anciennes.put(e.getKey(), e.getValue());
+                return true;
+            }
+            return false;
+        });
+
+        Surveillant surveillant = repertoire.getSurveillant();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int[] conservees = new int[1];
+        int illisibles = 0;
+        List<Future<Entree>> taches = new ArrayList<>();
+        try {
+            repertoire.parcourirFichiers(fichier -> {
+                String type = fichier.getTypeMime();
+                if (fichier.getArchive() != null || type == null || !type.startsWith("image")) {
+                    return;
+                }
+                Entree ancienne = anciennes.get(fichier.getChemin());
+                if (ancienne != null && ancienne.taille == fichier.getTaille()
+                        && ancienne.date == fichier.getDerniereModification()) {
+                    entrees.put(ancienne.chemin, ancienne);
+                    conservees[0]++;
+                    return;
+                }
+                taches.add(pool.submit(() -> analyser(fichier, surveillant)));
+            });
+            for (Future<Entree> tache : taches) {
+                try {
+                    Entree entree = surveillant != null ? surveillant.getAnnulation().attendre(tache) : tache.get();
+                    if (entree != null) {
+                        entrees.put(entree.chemin, entree);
+                    } else {
+                        illisibles++;
+                    }
+                } catch (ExecutionException e) {
+                    throw new IOException("Erreur lors de l'analyse des couleurs : " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        int analysees = taches.size() - illisibles;
+        long retirees = anciennes.keySet().stream().filter(chemin -> !entrees.containsKey(chemin)).count();
+        return "Index des couleurs : " + entrees.size() + " images (" + analysees + " analysées, "
+                + conservees[0] + " inchangées, " + illisibles + " illisibles, " + retirees + " retirées)";
+    }
+
+    /**
+     * Décode une image, sous surveillance s'il y a lieu ; une image illisible donne {@code null}.
+     */
+    private static Entree analyser(Fichier fichier, Surveillant surveillant) throws InterruptedException {
+        try {
+            FichierImage image = surveillant == null ? new FichierImage(fichier.getChemin())
+                    : surveillant.executer(fichier, () -> new FichierImage(fichier.getChemin()));
+            return new Entree(image.getChemin(), image.getTaille(), image.getDerniereModification(), image.getCouleurs());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Recherche les images de l'index dont les couleurs sont les plus proches.
+     *
+     * @param couleurs l'histogramme recherché.
+     * @param nombre le nombre maximal d'images ; aucune si {@code nombre <= 0}.
+     * @param exclu un chemin à ne pas retourner (l'image recherchée elle-même), ou {@code null}.
+     * @return les images, de la plus proche à la plus éloignée.
+     */
+    public List<Entree> rechercher(CouleursImage couleurs, int nombre, String exclu) {
+        if (nombre <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Entree> ordre = Comparator.comparingDouble(Entree::getDistance);
+        PriorityQueue<Entree> meilleures = new PriorityQueue<>(ordre.reversed());
+        for (Entree entree : entrees.values()) {
+            if (entree.chemin.equals(exclu)) {
+                continue;
+            }
+            float distance = couleurs.distance(entree.couleurs);
+            if (meilleures.size() < nombre || distance < meilleures.peek().distance) {
+                Entree resultat = new Entree(entree.chemin, entree.taille, entree.date, entree.couleurs);
+                resultat.distance = distance;
+                meilleures.add(resultat);
+                if (meilleures.size() > nombre) {
+                    meilleures.poll();
+                }
+            }
+        }
+        List<Entree> resultats = new ArrayList<>(meilleures);
+        resultats.sort(ordre);
+        return resultats;
+    }
+
+    /**
+     * @return le nombre d'images de l'index.
+     */
+    public int getNombre() {
+        return entrees.size();
+    }
+}
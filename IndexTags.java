@@ -0,0 +1,475 @@
+package application;
+
+import com.drew.metadata.Directory;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifInteropDirectory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.iptc.IptcDirectory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * La classe IndexTags recense l'emplacement de tous les tags EXIF et IPTC d'une image,
+ * sans décoder leurs valeurs.
+ *
+ * <p>Chaque tag est décrit par son répertoire, son identifiant, son type, son nombre de valeurs
+ * et la position de ses valeurs dans le fichier, le tout tenu dans deux {@code long}.
+ * Une valeur n'est lue et décodée que lorsqu'elle est demandée, par exemple
+ * {@code indexTags.valeur("Model")} : il n'est donc pas nécessaire de construire tous les tags
+ * de chaque image pour en interroger un seul.</p>
+ *
+ * <p>Les répertoires indexés sont IFD0, Exif, GPS, Interop, IFD1 (vignette) et les
+ * enregistrements IPTC du segment Photoshop (APP13) des JPEG. Les notes du fabricant
+ * (MakerNote) ne sont pas parcourues.</p>
+ *
+ * @author Binome
+ */
+public final class IndexTags {
+
+    /**
+     * Répertoires de tags indexés. Les noms des tags sont ceux de metadata-extractor.
+     */
+    public enum Dossier {
+        /** Répertoire principal de l'image. */
+        IFD0(new ExifIFD0Directory()),
+        /** Sous-répertoire Exif (prise de vue). */
+        EXIF(new ExifSubIFDDirectory()),
+        /** Sous-répertoire GPS. */
+        GPS(new GpsDirectory()),
+        /** Sous-répertoire d'interopérabilité. */
+        INTEROP(new ExifInteropDirectory()),
+        /** Répertoire de la vignette. */
+        IFD1(new ExifThumbnailDirectory(0)),
+        /** Enregistrements IPTC ; l'identifiant vaut {@code (enregistrement << 8) | jeu de données}. */
+        IPTC(new IptcDirectory());
+
+        private final Directory noms;
+
+        Dossier(Directory noms) {
+            this.noms = noms;
+        }
+
+        /**
+         * @param tag l'identifiant d'un tag.
+         * @return le nom du tag, ou son identifiant en hexadécimal s'il est inconnu.
+         */
+        public String nom(int tag) {
+            return noms.hasTagName(tag) ? noms.getTagName(tag) : String.format(Locale.ROOT, "0x%04X", tag);
+        }
+    }
+
+    private static final Dossier[] DOSSIERS = Dossier.values();
+
+    /** Taille en octets d'une valeur de chaque type TIFF (indice = type) ; 0 pour un type inconnu. */
+    private static final int[] TAILLES = {1, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4};
+    private static final int TYPE_IPTC = 0;
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_UNDEFINED = 7;
+
+    private static final int TAG_EXIF = 0x8769;
+    private static final int TAG_GPS = 0x8825;
+    private static final int TAG_INTEROP = 0xA005;
+    private static final int ENTREES_MAX = 1000;
+    private static final int VALEURS_AFFICHEES = 16;
+    private static final int TAILLE_VALEUR_MAX = 64 * 1024;
+
+    private final Path chemin;
+    private ByteOrder ordre = ByteOrder.BIG_ENDIAN;
+    private long[] entrees = new long[64];
+    private int nombre;
+
+    private IndexTags(Path chemin) {
+        this.chemin = chemin;
+    }
+
+    /**
+     * Construit l'index des tags d'une image JPEG, PNG, WebP ou TIFF.
+     *
+     * @param chemin le chemin de l'image.
+     * @return l'index, vide si l'image n'a ni EXIF ni IPTC.
+     * @throws IOException si le fichier ne peut pas être lu.
+     */
+    public static IndexTags indexer(Path chemin) throws IOException {
+        IndexTags index = new IndexTags(chemin);
+        long debutExif;
+        long debutIptc;
+        int longueurIptc;
+        try (LecteurSegments lecteur = new LecteurSegments(chemin)) {
+            lecteur.localiser();
+            debutExif = lecteur.getDebutExif();
+            debutIptc = lecteur.getDebutIptc();
+            longueurIptc = lecteur.getLongueurIptc();
+        }
+        if (debutExif < 0 && debutIptc < 0) {
+            return index;
+        }
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ)) {
+            try {
+                if (debutExif >= 0) {
+                    index.indexerTiff(canal, debutExif);
+                }
+                if (debutIptc >= 0) {
+                    index.indexerPhotoshop(lire(canal, debutIptc, longueurIptc), debutIptc);
+                }
+            } catch (EOFException e) {
+                // Structure tronquée : les tags déjà indexés restent disponibles.
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Parcourt un bloc TIFF (en-tête, IFD0 et ses sous-répertoires, IFD1).
+     */
+    private void indexerTiff(FileChannel canal, long base) throws IOException {
+        ByteBuffer entete = ByteBuffer.wrap(lire(canal, base, 8));
+        if (entete.get(0) == 'I' && entete.get(1) == 'I') {
+            ordre = ByteOrder.LITTLE_ENDIAN;
+        } else if (entete.get(0) != 'M' || entete.get(1) != 'M') {
+            return;
+        }
+        entete.order(ordre);
+        Set<Long> visites = new HashSet<>();
+        indexerIfd(canal, base, Dossier.IFD0, base + Integer.toUnsignedLong(entete.getInt(4)), visites);
+    }
+
+    private void indexerIfd(FileChannel canal, long base, Dossier dossier, long position, Set<Long> visites)
+            throws IOException {
+        if (!visites.add(position)) {
+            return;
+        }
+        int n = ByteBuffer.wrap(lire(canal, position, 2)).order(ordre).getShort() & 0xFFFF;
+        if (n > ENTREES_MAX) {
+            return;
+        }
+        ByteBuffer ifd = ByteBuffer.wrap(lire(canal, position + 2, 12 * n + 4)).order(ordre);
+        List<long[]> sousRepertoires = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int tag = ifd.getShort(12 * i) & 0xFFFF;
+            int type = ifd.getShort(12 * i + 2) & 0xFFFF;
+            long compte = Integer.toUnsignedLong(ifd.getInt(12 * i + 4));
+            long decalage = Integer.toUnsignedLong(ifd.getInt(12 * i + 8));
+            if (type == 0 || type >= TAILLES.length) {
+                continue;
+            }
+            long valeurs = compte * TAILLES[type] <= 4 ? position + 2 + 12 * i + 8 : base + decalage;
+            ajouter(dossier, tag, type, compte, valeurs);
+            if (dossier == Dossier.IFD0 && tag == TAG_EXIF) {
+                sousRepertoires.add(new long[]{Dossier.EXIF.ordinal(), base + decalage});
+            } else if (dossier == Dossier.IFD0 && tag == TAG_GPS) {
+                sousRepertoires.add(new long[]{Dossier.GPS.ordinal(), base + decalage});
+            } else if (dossier == Dossier.EXIF && tag == TAG_INTEROP) {
+                sousRepertoires.add(new long[]{Dossier.INTEROP.ordinal(), base + decalage});
+            }
+        }
+        for (long[] sousRepertoire : sousRepertoires) {
+            indexerIfd(canal, base, DOSSIERS[(int) sousRepertoire[0]], sousRepertoire[1], visites);
+        }
+        long suivant = Integer.toUnsignedLong(ifd.getInt(12 * n));
+        if (dossier == Dossier.IFD0 && suivant != 0) {
+            indexerIfd(canal, base, Dossier.IFD1, base + suivant, visites);
+        }
+    }
+
+    /**
+     * Parcourt les ressources Photoshop d'un segment APP13 à la recherche du bloc IPTC (0x0404).
+     */
+    private void indexerPhotoshop(byte[] segment, long position) {
+        byte[] preambule = "Photoshop 3.0\0".getBytes(StandardCharsets.US_ASCII);
+        if (segment.length < preambule.length
+                || !Arrays.equals(segment, 0, preambule.length, preambule, 0, preambule.length)) {
+            return;
+        }
+        ByteBuffer ressources = ByteBuffer.wrap(segment);
+        int i = preambule.length;
+        while (i + 12 <= segment.length && segment[i] == '8' && segment[i + 1] == 'B'
+                && segment[i + 2] == 'I' && segment[i + 3] == 'M') {
+            int identifiant = ressources.getShort(i + 4) & 0xFFFF;
+            int nom = segment[i + 6] & 0xFF;
+            // Nom en chaîne Pascal, longueur comprise, complété à une taille paire.
+            int j = i + 6 + ((nom + 2) & ~1);
+            if (j + 4 > segment.length) {
+                return;
+            }
+            int taille = ressources.getInt(j);
+            int debut = j + 4;
+            if (taille < 0 || debut + taille > segment.length) {
+                return;
+            }
+            if (identifiant == 0x0404) {
+                indexerIptc(segment, debut, debut + taille, position);
+            }
+            i = debut + taille + (taille & 1);
+        }
+    }
+
+    private void indexerIptc(byte[] donnees, int debut, int fin, long position) {
+        int i = debut;
+        while (i + 5 <= fin && donnees[i] == 0x1C) {
+            int tag = ((donnees[i + 1] & 0xFF) << 8) | (donnees[i + 2] & 0xFF);
+            int longueur = ((donnees[i + 3] & 0xFF) << 8) | (donnees[i + 4] & 0xFF);
+            if ((longueur & 0x8000) != 0 || i + 5 + longueur > fin) {
+                // Longueur étendue, rare et non prise en charge.
+                return;
+            }
+            ajouter(Dossier.IPTC, tag, TYPE_IPTC, longueur, position + i + 5);
+            i += 5 + longueur;
+        }
+    }
+
+    private void ajouter(Dossier dossier, int tag, int type, long compte, long position) {
+        if (2 * nombre + 2 > entrees.length) {
+            entrees = Arrays.copyOf(entrees, 2 * entrees.length);
+        }
+        entrees[2 * nombre] = ((long) dossier.ordinal() << 56) | ((long) tag << 40) | ((long) type << 32) | compte;
+        entrees[2 * nombre + 1] = position;
+        nombre++;
+    }
+
+    /**
+     * @return le nombre de tags indexés.
+     */
+    public int getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @param i l'indice d'un tag, entre 0 et {@link #getNombre()} exclu.
+     * @return le répertoire du tag.
+     */
+    public Dossier getDossier(int i) {
+        return DOSSIERS[(int) (entrees[2 * i] >>> 56)];
+    }
+
+    /**
+     * @param i l'indice d'un tag.
+     * @return l'identifiant du tag.
+     */
+    public int getTag(int i) {
+        return (int) (entrees[2 * i] >>> 40) & 0xFFFF;
+    }
+
+    /**
+     * @param i l'indice d'un tag.
+     * @return le nom du tag.
+     */
+    public String getNom(int i) {
+        return getDossier(i).nom(getTag(i));
+    }
+
+    /**
+     * @param i l'indice d'un tag.
+     * @return la position des valeurs du tag dans le fichier.
+     */
+    public long getPosition(int i) {
+        return entrees[2 * i + 1];
+    }
+
+    /**
+     * Décode la valeur d'un tag demandé par son nom ({@code Model}, {@code Exposure Time}),
+     * son identifiant ({@code 0x0110}), éventuellement précédés du répertoire ({@code gps:0x0002}).
+     * Les noms sont comparés sans tenir compte de la casse ni des espaces. Les valeurs
+     * des tags répétés (mots-clés IPTC) sont séparées par {@code "; "}.
+     *
+     * @param nom le nom du tag.
+     * @return la valeur décodée, ou {@code null} si le tag est absent.
+     * @throws IOException si la valeur ne peut pas être lue.
+     * @throws IllegalArgumentException si le nom est mal formé (voir {@link #verifier(String)}).
+     */
+    public String valeur(String nom) throws IOException {
+        Demande demande = new Demande(nom);
+
+        StringBuilder valeurs = null;
+        for (int i = 0; i < nombre; i++) {
+            if (demande.dossier != null && getDossier(i) != demande.dossier) {
+                continue;
+            }
+            boolean correspond = demande.identifiant >= 0 ? getTag(i) == demande.identifiant
+                    : normaliser(getNom(i)).equals(demande.normalise);
+            if (correspond) {
+                if (valeurs == null) {
+                    valeurs = new StringBuilder();
+                } else {
+                    valeurs.append("; ");
+                }
+                valeurs.append(decoder(i));
+            }
+        }
+        return valeurs != null ? valeurs.toString() : null;
+    }
+
+    /**
+     * Vérifie qu'un nom de tag est bien formé, avant de parcourir les images : le répertoire
+     * éventuel doit exister et l'identifiant éventuel être un nombre hexadécimal.
+     *
+     * @param nom le nom du tag, sous la forme acceptée par {@link #valeur(String)}.
+     * @throws IllegalArgumentException si le nom est mal formé.
+     */
+    public static void verifier(String nom) {
+        new Demande(nom);
+    }
+
+    /**
+     * Un tag demandé : répertoire éventuel, identifiant ou nom normalisé.
+     */
+    private static final class Demande {
+        final Dossier dossier;
+        final int identifiant;
+        final String normalise;
+
+        Demande(String nom) {
+            String demande = nom.trim();
+            Dossier repertoire = null;
+            int deuxPoints = demande.indexOf(':');
+            if (deuxPoints > 0) {
+                String prefixe = demande.substring(0, deuxPoints).trim();
+                try {
+                    repertoire = Dossier.valueOf(prefixe.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    String connus = Arrays.toString(Dossier.values()).toLowerCase(Locale.ROOT);
+                    throw new IllegalArgumentException("Répertoire de tag inconnu : " + prefixe
+                            + " (" + connus.substring(1, connus.length() - 1) + ").");
+                }
+                demande = demande.substring(deuxPoints + 1).trim();
+            }
+            if (demande.isEmpty()) {
+                throw new IllegalArgumentException("Nom de tag vide : " + nom.trim() + ".");
+            }
+            int tag = -1;
+            if (demande.toLowerCase(Locale.ROOT).startsWith("0x")) {
+                try {
+                    tag = Integer.parseInt(demande.substring(2), 16);
+                } catch (NumberFormatException e) {
+                    tag = -1;
+                }
+                if (tag < 0 || tag > 0xFFFF) {
+                    throw new IllegalArgumentException("Identifiant de tag invalide : " + demande
+                            + " (nombre hexadécimal de 0x0000 à 0xFFFF).");
+                }
+            }
+            this.dossier = repertoire;
+            this.identifiant = tag;
+            this.normalise = normaliser(demande);
+        }
+    }
+
+    /**
+     * Lit et décode la valeur d'un tag.
+     *
+     * @param i l'indice d'un tag.
+     * @return la valeur décodée.
+     * @throws IOException si la valeur ne peut pas être lue.
+     */
+    public String decoder(int i) throws IOException {
+        int type = (int) (entrees[2 * i] >>> 32) & 0xFF;
+        long compte = entrees[2 * i] & 0xFFFFFFFFL;
+        long taille = compte * TAILLES[type];
+        if (taille > TAILLE_VALEUR_MAX) {
+            return "[" + taille + " octets]";
+        }
+        byte[] octets;
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ)) {
+            octets = lire(canal, getPosition(i), (int) taille);
+        }
+        if (type == TYPE_IPTC) {
+            return new String(octets, StandardCharsets.UTF_8).trim();
+        }
+        if (type == TYPE_ASCII || (type == TYPE_UNDEFINED && estImprimable(octets))) {
+            int fin = octets.length;
+            while (fin > 0 && octets[fin - 1] == 0) {
+                fin--;
+            }
+            return new String(octets, 0, fin, StandardCharsets.ISO_8859_1).trim();
+        }
+        if (type == TYPE_UNDEFINED && compte > VALEURS_AFFICHEES) {
+            return "[" + compte + " octets]";
+        }
+        ByteBuffer tampon = ByteBuffer.wrap(octets).order(ordre);
+        StringBuilder sb = new StringBuilder();
+        int affichees = (int) Math.min(compte, VALEURS_AFFICHEES);
+        for (int k = 0; k < affichees; k++) {
+            if (k > 0) {
+                sb.append(' ');
+            }
+            switch (type) {
+                case 1:
+                case 7:
+                    sb.append(tampon.get() & 0xFF);
+                    break;
+                case 3:
+                    sb.append(tampon.getShort() & 0xFFFF);
+                    break;
+                case 4:
+                case 13:
+                    sb.append(Integer.toUnsignedLong(tampon.getInt()));
+                    break;
+                case 5:
+                    sb.append(Integer.toUnsignedLong(tampon.getInt())).append('/')
+                            .append(Integer.toUnsignedLong(tampon.getInt()));
+                    break;
+                case 6:
+                    sb.append(tampon.get());
+                    break;
+                case 8:
+                    sb.append(tampon.getShort());
+                    break;
+                case 9:
+                    sb.append(tampon.getInt());
+                    break;
+                case 10:
+                    sb.append(tampon.getInt()).append('/').append(tampon.getInt());
+                    break;
+                case 11:
+                    sb.append(tampon.getFloat());
+                    break;
+                case 12:
+                    sb.append(tampon.getDouble());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (compte > affichees) {
+            sb.append(" … (").append(compte).append(" valeurs)");
+        }
+        return sb.toString();
+    }
+
+    private static boolean estImprimable(byte[] octets) {
+        for (byte octet : octets) {
+            if (octet != 0 && (octet < 0x20 || octet > 0x7E)) {
+                return false;
+            }
+        }
+        return octets.length > 0;
+    }
+
+    private static String normaliser(String nom) {
+        return nom.replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] lire(FileChannel canal, long position, int longueur) throws IOException {
+        ByteBuffer tampon = ByteBuffer.allocate(longueur);
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return tampon.array();
+    }
+}
@@ -0,0 +1,356 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * La classe Journal consigne l'avancement d'une analyse longue, afin de pouvoir la reprendre
+ * après un arrêt brutal.
+ *
+ * <p>Le journal est un fichier texte où l'on ne fait qu'ajouter des lignes :</p>
+ * <ul>
+ *     <li>{@code F <chemin>} : fichier traité ;</li>
+ *     <li>{@code D <chemin>} : répertoire terminé, c'est-à-dire listé et dont tous les fichiers
+ *     suivis et tous les sous-répertoires sont terminés ;</li>
+ *     <li>{@code C <crc32>} : point de reprise, écrit toutes les {@value #LIGNES_PAR_POINT} lignes
+ *     ou toutes les {@value #SECONDES_PAR_POINT} secondes, puis forcé sur le disque ({@code fsync}).
+ *     Le CRC couvre les octets écrits depuis le point précédent.</li>
+ * </ul>
+ *
+ * <p>À la reprise, seules les lignes validées par un point de reprise sont prises en compte ;
+ * la suite est tronquée. Les chemins traités sont mémorisés sous forme de deux empreintes
+ * de 64 bits dans un {@link EnsembleCles} : le parcours saute alors les répertoires terminés
+ * et les fichiers traités sans relire leurs attributs.</p>
+ *
+ * <p>Les méthodes sont synchronisées : le parcours et la transmission des résultats
+ * s'exécutent sur des threads différents.</p>
+ *
+ * @author Binome
+ */
+public final class Journal implements Closeable {
+
+    private static final int LIGNES_PAR_POINT = 1000;
+    private static final int SECONDES_PAR_POINT = 5;
+
+    /**
+     * Avancement d'un répertoire en cours.
+     */
+    private static final class Etat {
+        final String parent;
+        int enAttente;
+        boolean liste;
+
+        Etat(String parent) {
+            this.parent = parent;
+        }
+    }
+
+    private final FileChannel canal;
+    private final OutputStream sortie;
+    private final CRC32 crc = new CRC32();
+    private final Predicate<Fichier> suivi;
+    private final EnsembleCles fichiersTraites = new EnsembleCles();
+    private final EnsembleCles repertoiresTermines = new EnsembleCles();
+    private final Map<String, Etat> enCours = new HashMap<>();
+    private int lignesDepuisPoint;
+    private long dernierPoint = System.nanoTime();
+    private long fichiersRepris;
+    private long repertoiresRepris;
+
+    private Journal(FileChannel canal, Predicate<Fichier> suivi) {
+        this.canal = canal;
+        this.sortie = new BufferedOutputStream(Channels.newOutputStream(canal), 64 * 1024);
+        this.suivi = suivi;
+    }
+
+    /**
+     * Ouvre un journal.
+     *
+     * @param fichier le fichier du journal.
+     * @param reprendre {@code true} pour reprendre l'analyse consignée dans le journal,
+     *                  {@code false} pour recommencer avec un journal vide.
+     * @param suivi les fichiers dont le traitement est consigné (par exemple les images) ;
+     *              les autres ne retardent pas la fin de leur répertoire.
+     * @return le journal, positionné après le dernier point de reprise valide.
+     * @throws IOException si le journal ne peut pas être lu ou créé.
+     */
+    public static Journal ouvrir(Path fichier, boolean reprendre, Predicate<Fichier> suivi) throws IOException {
+        FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Journal journal = new Journal(canal, suivi);
+        long fin = reprendre && canal.size() > 0 ? journal.relire(fichier) : 0;
+        canal.truncate(fin);
+        canal.position(fin);
+        return journal;
+    }
+
+    /**
+     * Relit le journal jusqu'au dernier point de reprise valide.
+     *
+     * @return la position qui suit ce point de reprise.
+     */
+    private long relire(Path fichier) throws IOException {
+        long position = 0;
+        long valide = 0;
+        CRC32 controle = new CRC32();
+        ByteArrayOutputStream ligne = new ByteArrayOutputStream();
+        List<String> lignes = new ArrayList<>();
+        try (InputStream entree = new BufferedInputStream(Files.newInputStream(fichier), 64 * 1024)) {
+            int octet;
+            while ((octet = entree.read()) >= 0) {
+                position++;
+                if (octet != '\n') {
+                    ligne.write(octet);
+                    continue;
+                }
+                String texte = ligne.toString(StandardCharsets.UTF_8);
+                ligne.reset();
+                if (texte.startsWith("C ")) {
+                    if (!texte.substring(2).equals(Long.toHexString(controle.getValue()))) {
+                        break;
+                    }
+                    for (String consignee : lignes) {
+                        appliquer(consignee);
+                    }
+                    lignes.clear();
+                    controle.reset();
+                    valide = position;
+                } else {
+                    byte[] octets = (texte + "\n").getBytes(StandardCharsets.UTF_8);
+                    controle.update(octets, 0, octets.length);
+                    lignes.add(texte);
+                }
+            }
+        }
+        return valide;
+    }
+
+    private void appliquer(String ligne) {
+        if (ligne.length() < 2) {
+            return;
+        }
+        String chemin = decoder(ligne.substring(2));
+        if (ligne.charAt(0) == 'F') {
+            ajouter(fichiersTraites, chemin);
+            fichiersRepris++;
+        } else if (ligne.charAt(0) == 'D') {
+            ajouter(repertoiresTermines, chemin);
+            repertoiresRepris++;
+        }
+    }
+
+    /**
+     * @param fichier le chemin d'une entrée.
+     * @return {@code true} si le fichier a été traité lors d'une analyse précédente.
+     */
+    public synchronized boolean estTraite(Path fichier) {
+        return contient(fichiersTraites, fichier.toString());
+    }
+
+    /**
+     * @param repertoire le chemin d'un répertoire.
+     * @return {@code true} si le répertoire a été terminé lors d'une analyse précédente.
+     */
+    public synchronized boolean estTermine(Path repertoire) {
+        return contient(repertoiresTermines, repertoire.toString());
+    }
+
+    /**
+     * Signale le début du listage d'un répertoire.
+     *
+     * @param repertoire le répertoire.
+     */
+    public synchronized void entrer(Path repertoire) {
+        Path parent = repertoire.getParent();
+        String cleParent = parent != null && enCours.containsKey(parent.toString()) ? parent.toString() : null;
+        if (cleParent != null) {
+            enCours.get(cleParent).enAttente++;
+        }
+        enCours.put(repertoire.toString(), new Etat(cleParent));
+    }
+
+    /**
+     * Signale un fichier transmis pour traitement ; son répertoire ne sera terminé
+     * qu'après {@link #terminer(Fichier)}.
+     *
+     * @param fichier le fichier transmis.
+     */
+    public synchronized void attendre(Fichier fichier) {
+        if (!suivi.test(fichier)) {
+            return;
+        }
+        Etat etat = enCours.get(parent(fichier));
+        if (etat != null) {
+            etat.enAttente++;
+        }
+    }
+
+    /**
+     * Signale la fin du listage d'un répertoire.
+     *
+     * @param repertoire le répertoire.
+     * @throws IOException si le journal ne peut pas être écrit.
+     */
+    public synchronized void sortir(Path repertoire) throws IOException {
+        String cle = repertoire.toString();
+        Etat etat = enCours.get(cle);
+        if (etat != null) {
+            etat.liste = true;
+            verifier(cle, etat);
+        }
+    }
+
+    /**
+     * Consigne le traitement d'un fichier.
+     *
+     * @param fichier le fichier traité.
+     * @throws IOException si le journal ne peut pas être écrit.
+     */
+    public synchronized void terminer(Fichier fichier) throws IOException {
+        ecrire('F', fichier.getChemin());
+        String cle = parent(fichier);
+        Etat etat = enCours.get(cle);
+        if (etat != null) {
+            etat.enAttente--;
+            verifier(cle, etat);
+        }
+    }
+
+    /**
+     * Consigne un répertoire dès qu'il est listé et que tout son contenu est terminé,
+     * puis remonte vers son parent.
+     */
+    private void verifier(String cle, Etat etat) throws IOException {
+        while (etat != null && etat.liste && etat.enAttente == 0) {
+            ecrire('D', cle);
+            enCours.remove(cle);
+            cle = etat.parent;
+            etat = cle != null ? enCours.get(cle) : null;
+            if (etat != null) {
+                etat.enAttente--;
+            }
+        }
+    }
+
+    private void ecrire(char type, String chemin) throws IOException {
+        byte[] octets = (type + " " + encoder(chemin) + "\n").getBytes(StandardCharsets.UTF_8);
+        sortie.write(octets);
+        crc.update(octets, 0, octets.length);
+        lignesDepuisPoint++;
+        if (lignesDepuisPoint >= LIGNES_PAR_POINT
+                || System.nanoTime() - dernierPoint >= SECONDES_PAR_POINT * 1_000_000_000L) {
+            pointDeReprise();
+        }
+    }
+
+    /**
+     * Écrit un point de reprise et force le journal sur le disque.
+     *
+     * @throws IOException si le journal ne peut pas être écrit.
+     */
+    public synchronized void pointDeReprise() throws IOException {
+        if (lignesDepuisPoint == 0) {
+            return;
+        }
+        sortie.write(("C " + Long.toHexString(crc.getValue()) + "\n").getBytes(StandardCharsets.US_ASCII));
+        sortie.flush();
+        canal.force(false);
+        crc.reset();
+        lignesDepuisPoint = 0;
+        dernierPoint = System.nanoTime();
+    }
+
+    /**
+     * @return le nombre de fichiers traités lors des analyses précédentes.
+     */
+    public long getFichiersRepris() {
+        return fichiersRepris;
+    }
+
+    /**
+     * @return le nombre de répertoires terminés lors des analyses précédentes.
+     */
+    public long getRepertoiresRepris() {
+        return repertoiresRepris;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            pointDeReprise();
+        } finally {
+            canal.close();
+        }
+    }
+
+    /**
+     * Retourne le répertoire dont dépend un fichier ; une entrée d'archive dépend de son archive,
+     * suivie comme un sous-répertoire (voir {@link ParcoursArborescence}).
+     */
+    private static String parent(Fichier fichier) {
+        if (fichier.getArchive() != null) {
+            return fichier.getArchive().toString();
+        }
+        Path parent = Path.of(fichier.getChemin()).getParent();
+        return parent != null ? parent.toString() : "";
+    }
+
+    private static void ajouter(EnsembleCles ensemble, String chemin) {
+        ensemble.ajouter(empreinte(chemin, 0xCBF29CE484222325L), empreinte(chemin, 0x84222325CBF29CE4L));
+    }
+
+    private static boolean contient(EnsembleCles ensemble, String chemin) {
+        return ensemble.contient(empreinte(chemin, 0xCBF29CE484222325L), empreinte(chemin, 0x84222325CBF29CE4L));
+    }
+
+    /**
+     * Empreinte FNV-1a de 64 bits suivie d'un mélange final ; jamais égale à {@link Long#MIN_VALUE},
+     * réservée par {@link EnsembleCles}.
+     */
+    private static long empreinte(String chemin, long graine) {
+        long h = graine;
+        for (int i = 0; i < chemin.length(); i++) {
+            h ^= chemin.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h == Long.MIN_VALUE ? 0 : h;
+    }
+
+    private static String encoder(String chemin) {
+        return chemin.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String decoder(String texte) {
+        StringBuilder sb = new StringBuilder(texte.length());
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c == '\\' && i + 1 < texte.length()) {
+                char suivant = texte.charAt(++i);
+                sb.append(suivant == 'n' ? '\n' : suivant);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
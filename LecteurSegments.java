@@ -0,0 +1,573 @@
+package application;
+
+import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.png.PngMetadataReader;
+import com.drew.imaging.tiff.TiffMetadataReader;
+import com.drew.imaging.webp.WebpMetadataReader;
+import com.drew.lang.BufferBoundsException;
+import com.drew.lang.RandomAccessReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.jpeg.JpegReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * La classe LecteurSegments lit uniquement les segments d'une image utiles à
+ * {@link Metadonnees}, au lieu d'analyser le fichier entier :
+ * <ul>
+ *     <li>JPEG : segments APP1 (EXIF) et SOF (dimensions), jusqu'au début des données compressées ;</li>
+ *     <li>PNG : blocs précédant le premier bloc IDAT ;</li>
+ *     <li>WebP : blocs RIFF hors flux d'image (VP8, VP8L, ALPH, ANMF), sautés par position ;
+ *     seuls les 10 premiers octets des blocs VP8 et VP8L, qui portent les dimensions, sont conservés ;</li>
+ *     <li>TIFF : répertoires IFD lus à la demande, page par page.</li>
+ * </ul>
+ *
+ * <p>Le paquet XMP (segment APP1 XMP, bloc PNG {@code iTXt}, bloc WebP {@code XMP })
+ * est mis de côté sans être transmis à metadata-extractor, qui construirait un arbre DOM :
+ * il est lu en flux par {@link Xmp}.</p>
+ *
+ * <p>Toutes les lectures passent par un {@link FileChannel} à des positions explicites et
+ * sont limitées à {@link #BUDGET} octets par image. Si le format n'est pas reconnu, si la
+ * structure est inattendue ou si le budget est dépassé, {@link #lireMetadonnees()} retourne
+ * {@code null} et l'appelant doit analyser le fichier complet.</p>
+ *
+ * @author Binome
+ */
+public final class LecteurSegments implements Closeable {
+
+    /** Nombre maximal d'octets lus par image. */
+    public static final int BUDGET = 64 * 1024;
+
+    private static final int PAGE_TIFF = 4096;
+    /** En-tête conservé des blocs WebP VP8 et VP8L (balise de trame, code de début, dimensions). */
+    private static final byte ENTETE_VP8 = 10;
+    private static final byte[] SIGNATURE_PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] FIN_PNG = {0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+    private static final byte[] PREAMBULE_XMP_JPEG = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PREAMBULE_EXIF = {'E', 'x', 'i', 'f', 0, 0};
+    private static final byte[] MOT_CLE_XMP_PNG = "XML:com.adobe.xmp\0".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Formats pris en charge par la lecture ciblée.
+     */
+    enum Format {
+        JPEG, PNG, WEBP, TIFF
+    }
+
+    /**
+     * Signale le dépassement du budget de lecture.
+     */
+    private static final class BudgetDepasse extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetDepasse() {
+            super("Budget de lecture dépassé");
+        }
+    }
+
+    /**
+     * Segments extraits d'une image, reconstitués en un fichier réduit
+     * que metadata-extractor peut analyser sans accès au fichier d'origine.
+     */
+    static final class Extrait {
+        private final Format format;
+        private final byte[] donnees;
+        private final byte[] xmp;
+
+        Extrait(Format format, byte[] donnees, byte[] xmp) {
+            this.format = format;
+            this.donnees = donnees;
+            this.xmp = xmp;
+        }
+
+        /**
+         * @return le paquet XMP de l'image, ou {@code null} s'il n'y en a pas.
+         */
+        byte[] getXmp() {
+            return xmp;
+        }
+
+        /**
+         * Analyse les segments extraits.
+         *
+         * @return les métadonnées de l'image.
+         * @throws IOException si les segments ne peuvent pas être lus.
+         * @throws ImageProcessingException si les segments sont invalides.
+         */
+        Metadata analyser() throws IOException, ImageProcessingException {
+            ByteArrayInputStream entree = new ByteArrayInputStream(donnees);
+            switch (format) {
+                case JPEG:
+                    return JpegMetadataReader.readMetadata(entree, Arrays.asList(new JpegReader(), new ExifReader()));
+                case PNG:
+                    return PngMetadataReader.readMetadata(entree);
+                case WEBP:
+                    return WebpMetadataReader.readMetadata(entree);
+                default:
+                    throw new ImageProcessingException("Format non pris en charge : " + format);
+            }
+        }
+    }
+
+    private final FileChannel canal;
+    private final long taille;
+    private long octetsLus;
+    private byte[] xmp;
+    private long debutExif = -1;
+    private long debutIptc = -1;
+    private int longueurIptc;
+
+    /**
+     * Ouvre un fichier image en lecture.
+     *
+     * @param chemin le chemin du fichier.
+     * @throws IOException si le fichier ne peut pas être ouvert.
+     */
+    public LecteurSegments(Path chemin) throws IOException {
+        this.canal = FileChannel.open(chemin, StandardOpenOption.READ);
+        this.taille = canal.size();
+    }
+
+    /**
+     * Lit les métadonnées utiles de l'image.
+     *
+     * @return les métadonnées, ou {@code null} si la lecture ciblée n'est pas possible
+     * et que le fichier complet doit être analysé.
+     * @throws IOException si le fichier ne peut pas être lu.
+     */
+    public Metadata lireMetadonnees() throws IOException {
+        try {
+            Format format = detecter();
+            if (format == Format.TIFF) {
+                LecteurTiff lecteur = new LecteurTiff();
+                Metadata metadata = TiffMetadataReader.readMetadata(lecteur);
+                // metadata-extractor consigne certaines erreurs de lecture au lieu de les propager.
+                return lecteur.depasse ? null : metadata;
+            }
+            Extrait extrait = extraire(format);
+            if (extrait == null) {
+                return null;
+            }
+            xmp = extrait.getXmp();
+            return extrait.analyser();
+        } catch (BudgetDepasse | EOFException | ImageProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extrait les segments utiles d'une image JPEG, PNG ou WebP, sans les analyser.
+     * Utilisé par {@link PipelineMetadonnees} pour séparer la lecture de l'analyse.
+     *
+     * @return les segments extraits, ou {@code null} si le format n'est pas pris en charge,
+     * si la structure est inattendue ou si le budget est dépassé.
+     * @throws IOException si le fichier ne peut pas être lu.
+     */
+    Extrait extraire() throws IOException {
+        try {
+            return extraire(detecter());
+        } catch (BudgetDepasse | EOFException e) {
+            return null;
+        }
+    }
+
+    private Extrait extraire(Format format) throws IOException {
+        if (format == null) {
+            return null;
+        }
+        try {
+            switch (format) {
+                case JPEG:
+                    return extraireJpeg();
+                case PNG:
+                    return extrairePng();
+                case WEBP:
+                    return extraireWebp();
+                default:
+                    return null;
+            }
+        } catch (BudgetDepasse | EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Localise les blocs EXIF et IPTC de l'image, sans les analyser.
+     * Utilisé par {@link IndexTags}.
+     *
+     * @throws IOException si le fichier ne peut pas être lu.
+     */
+    void localiser() throws IOException {
+        try {
+            Format format = detecter();
+            if (format == Format.TIFF) {
+                debutExif = 0;
+            } else {
+                extraire(format);
+            }
+        } catch (BudgetDepasse | EOFException e) {
+            // Les blocs localisés avant l'interruption restent utilisables.
+        }
+    }
+
+    /**
+     * @return la position de l'en-tête TIFF du bloc EXIF, ou -1 si l'image n'en a pas.
+     */
+    long getDebutExif() {
+        return debutExif;
+    }
+
+    /**
+     * @return la position du segment Photoshop (APP13) contenant l'IPTC, ou -1.
+     */
+    long getDebutIptc() {
+        return debutIptc;
+    }
+
+    /**
+     * @return la longueur du segment Photoshop.
+     */
+    int getLongueurIptc() {
+        return longueurIptc;
+    }
+
+    /**
+     * @return le paquet XMP mis de côté par {@link #lireMetadonnees()}, ou {@code null}
+     * si l'image n'en a pas ou s'il a été transmis à metadata-extractor (TIFF).
+     */
+    public byte[] getXmp() {
+        return xmp;
+    }
+
+    /**
+     * @return le nombre d'octets lus dans le fichier.
+     */
+    public long getOctetsLus() {
+        return octetsLus;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Détermine le format à partir des premiers octets du fichier.
+     */
+    private Format detecter() throws IOException {
+        if (taille < 12) {
+            return null;
+        }
+        byte[] entete = lire(0, 12);
+        if (u8(entete, 0) == 0xFF && u8(entete, 1) == 0xD8 && u8(entete, 2) == 0xFF) {
+            return Format.JPEG;
+        }
+        if (Arrays.equals(Arrays.copyOf(entete, 8), SIGNATURE_PNG)) {
+            return Format.PNG;
+        }
+        if (code(entete, 0).equals("RIFF") && code(entete, 8).equals("WEBP")) {
+            return Format.WEBP;
+        }
+        if ((entete[0] == 'I' && entete[1] == 'I' && entete[2] == 42 && entete[3] == 0)
+                || (entete[0] == 'M' && entete[1] == 'M' && entete[2] == 0 && entete[3] == 42)) {
+            return Format.TIFF;
+        }
+        return null;
+    }
+
+    /**
+     * JPEG : conserve les segments APP1 et SOF, dans l'ordre, jusqu'au segment SOS.
+     * Le segment SOF suit les segments APPn : la lecture s'arrête dès qu'il est trouvé.
+     */
+    private Extrait extraireJpeg() throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        byte[] paquet = null;
+        sortie.write(0xFF);
+        sortie.write(0xD8);
+        long position = 2;
+        while (position + 4 <= taille) {
+            byte[] entete = lire(position, 4);
+            if (u8(entete, 0) != 0xFF) {
+                return null;
+            }
+            int marqueur = u8(entete, 1);
+            if (marqueur == 0xFF) {
+                // Octet de remplissage avant un marqueur.
+                position++;
+                continue;
+            }
+            if (marqueur == 0xDA || marqueur == 0xD9) {
+                break;
+            }
+            if (marqueur == 0x01 || (marqueur >= 0xD0 && marqueur <= 0xD7)) {
+                position += 2;
+                continue;
+            }
+            int longueur = u16be(entete, 2);
+            if (longueur < 2) {
+                return null;
+            }
+            boolean sof = estSof(marqueur);
+            if (marqueur == 0xE1 || sof) {
+                byte[] donnees = lire(position + 4, longueur - 2);
+                if (marqueur == 0xE1 && commencePar(donnees, PREAMBULE_XMP_JPEG)) {
+                    paquet = Arrays.copyOfRange(donnees, PREAMBULE_XMP_JPEG.length, donnees.length);
+                } else {
+                    if (marqueur == 0xE1 && debutExif < 0 && commencePar(donnees, PREAMBULE_EXIF)) {
+                        debutExif = position + 4 + PREAMBULE_EXIF.length;
+                    }
+                    sortie.write(entete);
+                    sortie.write(donnees);
+                }
+            }
+            if (marqueur == 0xED && debutIptc < 0) {
+                debutIptc = position + 4;
+                longueurIptc = longueur - 2;
+            }
+            position += 2 + longueur;
+            if (sof) {
+                break;
+            }
+        }
+        sortie.write(0xFF);
+        sortie.write(0xD9);
+        return new Extrait(Format.JPEG, sortie.toByteArray(), paquet);
+    }
+
+    /**
+     * PNG : conserve les blocs précédant le premier bloc IDAT, puis termine par un bloc IEND.
+     */
+    private Extrait extrairePng() throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        byte[] paquet = null;
+        sortie.write(SIGNATURE_PNG);
+        long position = SIGNATURE_PNG.length;
+        while (position + 12 <= taille) {
+            byte[] entete = lire(position, 8);
+            long longueur = u32be(entete, 0);
+            String type = code(entete, 4);
+            if (type.equals("IDAT") || type.equals("IEND")) {
+                break;
+            }
+            if (longueur > BUDGET) {
+                return null;
+            }
+            byte[] donnees = lire(position + 8, (int) longueur + 4);
+            if (type.equals("iTXt") && commencePar(donnees, MOT_CLE_XMP_PNG)) {
+                paquet = texteItxt(donnees, (int) longueur);
+            } else {
+                if (type.equals("eXIf")) {
+                    debutExif = position + 8;
+                }
+                sortie.write(entete);
+                sortie.write(donnees);
+            }
+            position += 12 + longueur;
+        }
+        sortie.write(FIN_PNG);
+        return new Extrait(Format.PNG, sortie.toByteArray(), paquet);
+    }
+
+    /**
+     * WebP : conserve les blocs RIFF autres que le flux d'image, tronque les blocs VP8 et VP8L
+     * à leur en-tête et recalcule la taille RIFF.
+     */
+    private Extrait extraireWebp() throws IOException {
+        ByteArrayOutputStream blocs = new ByteArrayOutputStream();
+        byte[] paquet = null;
+        long fin = Math.min(taille, 8 + u32le(lire(4, 4), 0));
+        long position = 12;
+        while (position + 8 <= fin) {
+            byte[] entete = lire(position, 8);
+            String type = code(entete, 0);
+            long longueur = u32le(entete, 4);
+            long occupe = longueur + (longueur & 1);
+            if ((type.equals("VP8 ") || type.equals("VP8L")) && longueur >= ENTETE_VP8) {
+                blocs.write(entete, 0, 4);
+                blocs.write(new byte[]{ENTETE_VP8, 0, 0, 0});
+                blocs.write(lire(position + 8, ENTETE_VP8));
+            } else if (!type.equals("VP8 ") && !type.equals("VP8L") && !type.equals("ALPH") && !type.equals("ANMF")) {
+                if (longueur > BUDGET) {
+                    return null;
+                }
+                byte[] donnees = lire(position + 8, (int) occupe);
+                if (type.equals("XMP ")) {
+                    paquet = Arrays.copyOf(donnees, (int) longueur);
+                } else {
+                    if (type.equals("EXIF")) {
+                        debutExif = position + 8 + (commencePar(donnees, PREAMBULE_EXIF) ? PREAMBULE_EXIF.length : 0);
+                    }
+                    blocs.write(entete);
+                    blocs.write(donnees);
+                }
+            }
+            position += 8 + occupe;
+        }
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream(12 + blocs.size());
+        sortie.write(new byte[]{'R', 'I', 'F', 'F'});
+        int tailleRiff = 4 + blocs.size();
+        sortie.write(new byte[]{(byte) tailleRiff, (byte) (tailleRiff >>> 8), (byte) (tailleRiff >>> 16),
+                (byte) (tailleRiff >>> 24)});
+        sortie.write(new byte[]{'W', 'E', 'B', 'P'});
+        blocs.writeTo(sortie);
+        return new Extrait(Format.WEBP, sortie.toByteArray(), paquet);
+    }
+
+    /**
+     * Extrait le texte d'un bloc PNG {@code iTXt} : mot-clé, indicateur et méthode de
+     * compression, langue et mot-clé traduit, puis texte éventuellement compressé (zlib).
+     */
+    private static byte[] texteItxt(byte[] donnees, int longueur) throws IOException {
+        int i = MOT_CLE_XMP_PNG.length;
+        boolean compresse = i < longueur && donnees[i] == 1;
+        i += 2;
+        int zeros = 0;
+        while (zeros < 2 && i < longueur) {
+            if (donnees[i++] == 0) {
+                zeros++;
+            }
+        }
+        if (zeros < 2) {
+            return null;
+        }
+        if (!compresse) {
+            return Arrays.copyOfRange(donnees, i, longueur);
+        }
+        try (InflaterInputStream entree = new InflaterInputStream(new ByteArrayInputStream(donnees, i, longueur - i))) {
+            return entree.readNBytes(BUDGET);
+        } catch (ZipException e) {
+            // Paquet XMP illisible : l'image est traitée comme si elle n'en avait pas.
+            return null;
+        }
+    }
+
+    private static boolean commencePar(byte[] donnees, byte[] prefixe) {
+        return donnees.length >= prefixe.length
+                && Arrays.equals(donnees, 0, prefixe.length, prefixe, 0, prefixe.length);
+    }
+
+    /**
+     * Lit des octets à une position donnée, dans la limite du budget.
+     */
+    private byte[] lire(long position, int longueur) throws IOException {
+        if (longueur < 0 || octetsLus + longueur > BUDGET) {
+            throw new BudgetDepasse();
+        }
+        ByteBuffer tampon = ByteBuffer.allocate(longueur);
+        while (tampon.hasRemaining()) {
+            int n = canal.read(tampon, position + tampon.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+            octetsLus += n;
+        }
+        return tampon.array();
+    }
+
+    private static boolean estSof(int marqueur) {
+        return marqueur >= 0xC0 && marqueur <= 0xCF && marqueur != 0xC4 && marqueur != 0xC8 && marqueur != 0xCC;
+    }
+
+    private static int u8(byte[] octets, int i) {
+        return octets[i] & 0xFF;
+    }
+
+    private static int u16be(byte[] octets, int i) {
+        return (u8(octets, i) << 8) | u8(octets, i + 1);
+    }
+
+    private static long u32be(byte[] octets, int i) {
+        return ((long) u16be(octets, i) << 16) | u16be(octets, i + 2);
+    }
+
+    private static long u32le(byte[] octets, int i) {
+        return u8(octets, i) | (u8(octets, i + 1) << 8) | (u8(octets, i + 2) << 16) | ((long) u8(octets, i + 3) << 24);
+    }
+
+    private static String code(byte[] octets, int i) {
+        return new String(octets, i, 4, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Accès aléatoire au fichier pour les images TIFF : les pages de {@value #PAGE_TIFF} octets
+     * sont lues à la demande et conservées, dans la limite du budget.
+     */
+    private final class LecteurTiff extends RandomAccessReader {
+        private final Map<Long, byte[]> pages = new HashMap<>();
+        private boolean depasse;
+
+        @Override
+        public int toUnshiftedOffset(int offset) {
+            return offset;
+        }
+
+        @Override
+        public byte getByte(int index) throws IOException {
+            validateIndex(index, 1);
+            return page(index / PAGE_TIFF)[index % PAGE_TIFF];
+        }
+
+        @Override
+        public byte[] getBytes(int index, int count) throws IOException {
+            validateIndex(index, count);
+            byte[] resultat = new byte[count];
+            int copie = 0;
+            while (copie < count) {
+                long position = (long) index + copie;
+                int decalage = (int) (position % PAGE_TIFF);
+                int n = Math.min(count - copie, PAGE_TIFF - decalage);
+                System.arraycopy(page(position / PAGE_TIFF), decalage, resultat, copie, n);
+                copie += n;
+            }
+            return resultat;
+        }
+
+        @Override
+        public long getLength() {
+            return taille;
+        }
+
+        @Override
+        protected void validateIndex(int index, int count) throws IOException {
+            if (!isValidIndex(index, count)) {
+                throw new BufferBoundsException(index, count, taille);
+            }
+        }
+
+        @Override
+        protected boolean isValidIndex(int index, int count) {
+            return count >= 0 && index >= 0 && (long) index + count <= taille;
+        }
+
+        private byte[] page(long numero) throws IOException {
+            byte[] page = pages.get(numero);
+            if (page == null) {
+                long debut = numero * PAGE_TIFF;
+                try {
+                    page = lire(debut, (int) Math.min(PAGE_TIFF, taille - debut));
+                } catch (BudgetDepasse e) {
+                    depasse = true;
+                    throw e;
+                }
+                pages.put(numero, page);
+            }
+            return page;
+        }
+    }
+}
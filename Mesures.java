@@ -0,0 +1,237 @@
+package application;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * La classe Mesures instrumente les différentes phases d'une analyse
+ * (listage des répertoires, lecture des attributs, détection du type MIME,
+ * lecture des en-têtes, extraction des métadonnées, lecture des dimensions, écriture de la sortie).
+ *
+ * <p>Pour chaque phase, elle enregistre un histogramme des durées, le nombre
+ * d'octets lus et émet un événement JFR {@link EvenementPhase}. Les mesures sont
+ * désactivées par défaut : {@link #debut()} retourne alors 0 et {@link #fin(Phase, long)}
+ * ne fait rien, ce qui rend l'instrumentation pratiquement gratuite.</p>
+ *
+ * <p>Les histogrammes sont tenus par thread puis fusionnés lors du résumé.</p>
+ *
+ * @author Binome
+ */
+public final class Mesures {
+
+    /**
+     * Phases instrumentées d'une analyse.
+     */
+    public enum Phase {
+        /** Listage du contenu d'un répertoire. */
+        LISTAGE,
+        /** Lecture des attributs d'un fichier (taille, date). */
+        ATTRIBUTS,
+        /** Détection du type MIME. */
+        TYPE_MIME,
+        /** Lecture de l'en-tête d'un fichier. */
+        LECTURE,
+        /** Extraction des métadonnées EXIF/XMP. */
+        METADONNEES,
+        /** Lecture des dimensions d'une image. */
+        DIMENSIONS,
+        /** Calcul de l'histogramme des couleurs d'une image. */
+        COULEURS,
+        /** Écriture des résultats. */
+        SORTIE
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LongAdder[] OCTETS = new LongAdder[PHASES.length];
+    private static final Queue<Histogramme[]> TOUS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Histogramme[]> PAR_THREAD = ThreadLocal.withInitial(() -> {
+        Histogramme[] histogrammes = new Histogramme[PHASES.length];
+        for (int i = 0; i < histogrammes.length; i++) {
+            histogrammes[i] = new Histogramme();
+        }
+        TOUS.add(histogrammes);
+        return histogrammes;
+    });
+
+    private static volatile boolean actif;
+
+    static {
+        for (int i = 0; i < OCTETS.length; i++) {
+            OCTETS[i] = new LongAdder();
+        }
+    }
+
+    private Mesures() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Active ou désactive la collecte des mesures.
+     *
+     * @param valeur {@code true} pour activer les mesures.
+     */
+    public static void activer(boolean valeur) {
+        actif = valeur;
+    }
+
+    /**
+     * @return {@code true} si les mesures sont actives.
+     */
+    public static boolean estActif() {
+        return actif;
+    }
+
+    /**
+     * Marque le début d'une phase.
+     *
+     * @return l'instant de début en nanosecondes, ou 0 si les mesures sont désactivées.
+     */
+    public static long debut() {
+        return actif ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Marque la fin d'une phase commencée par {@link #debut()}.
+     *
+     * @param phase la phase mesurée.
+     * @param debut la valeur retournée par {@link #debut()}.
+     */
+    public static void fin(Phase phase, long debut) {
+        fin(phase, debut, 0L);
+    }
+
+    /**
+     * Marque la fin d'une phase et comptabilise les octets lus pendant celle-ci.
+     *
+     * @param phase la phase mesurée.
+     * @param debut la valeur retournée par {@link #debut()}.
+     * @param octets le nombre d'octets lus.
+     */
+    public static void fin(Phase phase, long debut, long octets) {
+        if (debut == 0L || !actif) {
+            return;
+        }
+        long duree = System.nanoTime() - debut;
+        PAR_THREAD.get()[phase.ordinal()].enregistrer(duree);
+        if (octets > 0) {
+            OCTETS[phase.ordinal()].add(octets);
+        }
+        EvenementPhase evenement = new EvenementPhase();
+        if (evenement.isEnabled()) {
+            evenement.phase = phase.name();
+            evenement.duree = duree;
+            evenement.octets = octets;
+            evenement.commit();
+        }
+    }
+
+    /**
+     * Fusionne les histogrammes de tous les threads pour une phase.
+     *
+     * @param phase la phase demandée.
+     * @return l'histogramme des durées (en nanosecondes) de cette phase.
+     */
+    public static Histogramme histogramme(Phase phase) {
+        Histogramme resultat = new Histogramme();
+        for (Histogramme[] histogrammes : TOUS) {
+            resultat.fusionner(histogrammes[phase.ordinal()]);
+        }
+        return resultat;
+    }
+
+    /**
+     * Affiche un tableau récapitulatif des phases mesurées.
+     *
+     * @param sortie le flux sur lequel écrire le tableau.
+     */
+    public static void afficherResume(PrintStream sortie) {
+        sortie.println("Mesures par phase (durées en µs) :");
+        sortie.println(String.format(Locale.ROOT, "%-12s %10s %12s %10s %10s %10s %10s %12s",
+                "phase", "nombre", "total (ms)", "p50", "p95", "p99", "max", "octets lus"));
+        for (Phase phase : PHASES) {
+            Histogramme h = histogramme(phase);
+            if (h.getNombre() == 0) {
+                continue;
+            }
+            sortie.println(String.format(Locale.ROOT, "%-12s %10d %12.1f %10.1f %10.1f %10.1f %10.1f %12d",
+                    phase.name(), h.getNombre(), h.getTotal() / 1e6, h.quantile(0.50) / 1e3,
+                    h.quantile(0.95) / 1e3, h.quantile(0.99) / 1e3, h.getMaximum() / 1e3,
+                    OCTETS[phase.ordinal()].sum()));
+        }
+    }
+
+    /**
+     * Écrit les mesures au format JSON.
+     *
+     * @param fichier le fichier JSON à écrire.
+     * @throws IOException si l'écriture échoue.
+     */
+    public static void ecrireJson(Path fichier) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+            writer.write("{\"phases\":[");
+            boolean premier = true;
+            for (Phase phase : PHASES) {
+                Histogramme h = histogramme(phase);
+                if (!premier) {
+                    writer.write(',');
+                }
+                premier = false;
+                writer.write(String.format(Locale.ROOT,
+                        "{\"phase\":\"%s\",\"nombre\":%d,\"totalNs\":%d,\"p50Ns\":%d,\"p95Ns\":%d,"
+                                + "\"p99Ns\":%d,\"maxNs\":%d,\"octetsLus\":%d}",
+                        phase.name(), h.getNombre(), h.getTotal(), h.quantile(0.50), h.quantile(0.95),
+                        h.quantile(0.99), h.getMaximum(), OCTETS[phase.ordinal()].sum()));
+            }
+            writer.write("]}\n");
+        }
+    }
+
+    /**
+     * Flux d'entrée qui compte les octets lus.
+     */
+    public static final class FluxCompte extends FilterInputStream {
+        private long octets;
+
+        /**
+         * @param entree le flux à envelopper.
+         */
+        public FluxCompte(InputStream entree) {
+            super(entree);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                octets++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                octets += n;
+            }
+            return n;
+        }
+
+        /**
+         * @return le nombre d'octets lus jusqu'ici.
+         */
+        public long getOctets() {
+            return octets;
+        }
+    }
+}
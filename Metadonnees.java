@@ -3,17 +3,27 @@ package application;
 
 import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.GpsDirectory;
 import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.png.PngDirectory;
+import com.drew.metadata.webp.WebpDirectory;
+import com.drew.metadata.xmp.XmpDirectory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * La classe Metadonnees permet d'extraire les informations de métadonnées d'une image.
- * Elle fournit des données telles que les dimensions de l'image, la résolution DPI, et les coordonnées GPS.
+ * Elle fournit des données telles que les dimensions de l'image, la résolution DPI, les coordonnées GPS
+ * et quelques propriétés XMP (voir {@link Xmp}). Les autres tags EXIF et IPTC sont accessibles
+ * à la demande par {@link #getTag(String)}.
  * @author Ouardia
  */
 public class Metadonnees {
@@ -22,28 +32,107 @@ public class Metadonnees {
     private String dimensions;    
     private String dpi;           
     private String coordonneesGPS; 
+    private Integer largeur;
+    private Integer hauteur;
+    private Integer dpiX;
+    private Integer dpiY;
+    private Double latitude;
+    private Double longitude;
+    private long pixels;
+    private Xmp xmp;
+    private String chemin;
+    private IndexTags indexTags;
     /**
      * Constructeur de la classe Metadonnees.
      * Lit les métadonnées d'une image et les initialise dans les attributs.
+     * Seuls les segments utiles sont lus (voir {@link LecteurSegments}) ;
+     * le fichier complet n'est analysé que si cette lecture ciblée échoue.
      *
      * @param cheminImage Chemin absolu ou relatif vers le fichier image.
      * @throws IOException Si le fichier ne peut pas être lu.
      * @throws ImageProcessingException Si une erreur se produit lors de l'analyse des métadonnées.
      */
     public Metadonnees(String cheminImage) throws IOException, ImageProcessingException {
-        File imageFile = new File(cheminImage);
+        this.chemin = cheminImage;
+        lire(new File(cheminImage));
+    }
+
+    /**
+     * Constructeur à partir d'un fichier, qui peut être une entrée d'archive : celle-ci n'a pas
+     * de chemin sur le disque et son contenu complet est analysé au fil de la décompression
+     * (voir {@link Fichier#ouvrir()}).
+     *
+     * @param fichier Le fichier image.
+     * @throws IOException Si le fichier ne peut pas être lu.
+     * @throws ImageProcessingException Si une erreur se produit lors de l'analyse des métadonnées.
+     */
+    public Metadonnees(Fichier fichier) throws IOException, ImageProcessingException {
+        this.chemin = fichier.getChemin();
+        if (fichier.getArchive() == null) {
+            lire(new File(chemin));
+            return;
+        }
+        long debut = Mesures.debut();
+        try (Mesures.FluxCompte flux = new Mesures.FluxCompte(fichier.ouvrir())) {
+            Metadata metadata = ImageMetadataReader.readMetadata(flux, fichier.getTaille());
+            Mesures.fin(Mesures.Phase.METADONNEES, debut, flux.getOctets());
+            initialiser(metadata, null);
+        }
+    }
+
+    /**
+     * Lit les métadonnées d'un fichier du disque : segments utiles, ou à défaut fichier complet.
+     */
+    private void lire(File imageFile) throws IOException, ImageProcessingException {
+        long debut = Mesures.debut();
+        Metadata metadata;
+        byte[] paquetXmp;
+        try (LecteurSegments lecteur = new LecteurSegments(imageFile.toPath())) {
+            metadata = lecteur.lireMetadonnees();
+            paquetXmp = lecteur.getXmp();
+            if (metadata != null) {
+                Mesures.fin(Mesures.Phase.METADONNEES, debut, lecteur.getOctetsLus());
+            }
+        }
+        if (metadata == null) {
+            try (Mesures.FluxCompte flux = new Mesures.FluxCompte(new FileInputStream(imageFile))) {
+                metadata = ImageMetadataReader.readMetadata(flux, imageFile.length());
+                Mesures.fin(Mesures.Phase.METADONNEES, debut, flux.getOctets());
+            }
+        }
+        initialiser(metadata, paquetXmp);
+    }
 
-       
-        Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
+    /**
+     * Constructeur à partir de métadonnées déjà lues, utilisé par
+     * {@link PipelineMetadonnees} qui sépare la lecture de l'analyse.
+     *
+     * @param cheminImage Chemin du fichier image.
+     * @param metadata Métadonnées de l'image.
+     * @param paquetXmp Paquet XMP mis de côté par {@link LecteurSegments}, ou {@code null}.
+     */
+    Metadonnees(String cheminImage, Metadata metadata, byte[] paquetXmp) {
+        this.chemin = cheminImage;
+        initialiser(metadata, paquetXmp);
+    }
 
-      
+    /**
+     * Initialise les attributs à partir des métadonnées.
+     *
+     * @param metadata Métadonnées de l'image.
+     * @param paquetXmp Paquet XMP de l'image, ou {@code null}.
+     */
+    private void initialiser(Metadata metadata, byte[] paquetXmp) {
         this.dimensions = extraireDimensions(metadata);
+        this.pixels = extrairePixels(metadata);
         this.dpi = extraireDPI(metadata);
         this.coordonneesGPS = extraireCoordonneesGPS(metadata);
+        this.xmp = extraireXmp(metadata, paquetXmp);
     }
 
     /**
-     * Extrait les dimensions de l'image à partir des métadonnées.
+     * Extrait les dimensions de l'image à partir des métadonnées ; la largeur et la hauteur
+     * sont aussi conservées sous forme numérique.
      *
      * @param metadata Métadonnées de l'image.
      * @return Dimensions au format "Largeur x Hauteur" ou "Non disponible".
@@ -54,6 +143,8 @@ public class Metadonnees {
             try {
                 int width = jpegDirectory.getImageWidth();
                 int height = jpegDirectory.getImageHeight();
+                this.largeur = width;
+                this.hauteur = height;
                 return width + "x" + height;
             } catch (Exception e) {
                 return "Erreur dimensions JPEG";
@@ -63,7 +154,42 @@ public class Metadonnees {
     }
 
     /**
-     * Extrait la résolution DPI de l'image à partir des métadonnées.
+     * Calcule le nombre de pixels de l'image à partir des dimensions JPEG (SOF), PNG (IHDR),
+     * WebP (VP8, VP8L ou VP8X) ou TIFF (IFD0).
+     *
+     * @param metadata Métadonnées de l'image.
+     * @return Largeur multipliée par hauteur, ou 0 si les dimensions sont inconnues.
+     */
+    private long extrairePixels(Metadata metadata) {
+        long pixels = pixels(metadata.getFirstDirectoryOfType(JpegDirectory.class),
+                JpegDirectory.TAG_IMAGE_WIDTH, JpegDirectory.TAG_IMAGE_HEIGHT);
+        if (pixels == 0) {
+            pixels = pixels(metadata.getFirstDirectoryOfType(PngDirectory.class),
+                    PngDirectory.TAG_IMAGE_WIDTH, PngDirectory.TAG_IMAGE_HEIGHT);
+        }
+        if (pixels == 0) {
+            pixels = pixels(metadata.getFirstDirectoryOfType(WebpDirectory.class),
+                    WebpDirectory.TAG_IMAGE_WIDTH, WebpDirectory.TAG_IMAGE_HEIGHT);
+        }
+        if (pixels == 0) {
+            pixels = pixels(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class),
+                    ExifIFD0Directory.TAG_IMAGE_WIDTH, ExifIFD0Directory.TAG_IMAGE_HEIGHT);
+        }
+        return pixels;
+    }
+
+    private static long pixels(Directory repertoire, int tagLargeur, int tagHauteur) {
+        if (repertoire == null) {
+            return 0;
+        }
+        Integer largeur = repertoire.getInteger(tagLargeur);
+        Integer hauteur = repertoire.getInteger(tagHauteur);
+        return largeur != null && hauteur != null ? Math.max(0L, (long) largeur * hauteur) : 0;
+    }
+
+    /**
+     * Extrait la résolution DPI de l'image à partir des métadonnées ; les deux résolutions
+     * sont aussi conservées sous forme numérique.
      *
      * @param metadata Métadonnées de l'image.
      * @return Résolution au format "dpiX x dpiY" ou "Non disponible".
@@ -74,6 +200,8 @@ public class Metadonnees {
             try {
                 int dpiX = exifDirectory.getInt(ExifIFD0Directory.TAG_X_RESOLUTION);
                 int dpiY = exifDirectory.getInt(ExifIFD0Directory.TAG_Y_RESOLUTION);
+                this.dpiX = dpiX;
+                this.dpiY = dpiY;
                 return dpiX + "x" + dpiY;
             } catch (Exception e) {
                 return "Erreur DPI";
@@ -83,19 +211,46 @@ public class Metadonnees {
     }
 
     /**
-     * Extrait les coordonnées GPS de l'image à partir des métadonnées.
+     * Extrait les coordonnées GPS de l'image à partir des métadonnées ; la latitude et la
+     * longitude sont aussi conservées sous forme numérique.
      *
      * @param metadata Métadonnées de l'image.
      * @return Coordonnées GPS au format "latitude, longitude" ou "Non disponible".
      */
     private String extraireCoordonneesGPS(Metadata metadata) {
         GpsDirectory gpsDirectory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
-        if (gpsDirectory != null && gpsDirectory.getGeoLocation() != null) {
-            return gpsDirectory.getGeoLocation().toString();
+        GeoLocation position = gpsDirectory != null ? gpsDirectory.getGeoLocation() : null;
+        if (position != null) {
+            this.latitude = position.getLatitude();
+            this.longitude = position.getLongitude();
+            return position.toString();
         }
         return "Non disponible";
     }
 
+    /**
+     * Extrait les propriétés XMP de l'image. Le paquet mis de côté est lu en flux ;
+     * à défaut, les propriétés déjà décodées par metadata-extractor sont reprises.
+     *
+     * @param metadata Métadonnées de l'image.
+     * @param paquetXmp Paquet XMP de l'image, ou {@code null}.
+     * @return Propriétés XMP, éventuellement vides.
+     */
+    private Xmp extraireXmp(Metadata metadata, byte[] paquetXmp) {
+        if (paquetXmp != null) {
+            try {
+                return Xmp.lire(paquetXmp);
+            } catch (XMLStreamException e) {
+                return Xmp.VIDE;
+            }
+        }
+        XmpDirectory xmpDirectory = metadata.getFirstDirectoryOfType(XmpDirectory.class);
+        if (xmpDirectory != null) {
+            return Xmp.depuis(xmpDirectory.getXmpProperties());
+        }
+        return Xmp.VIDE;
+    }
+
     /**
      * Génère une représentation sous forme de chaîne de caractères des métadonnées extraites.
      *
@@ -106,7 +261,8 @@ public class Metadonnees {
         return "Métadonnées de l'image :\n" +
                "Dimensions : " + dimensions + "\n" +
                "DPI : " + dpi + "\n" +
-               "Coordonnées GPS : " + coordonneesGPS;
+               "Coordonnées GPS : " + coordonneesGPS +
+               (xmp.estVide() ? "" : "\n" + xmp.toString().trim());
     }
 
    
@@ -117,6 +273,13 @@ public class Metadonnees {
         return dimensions;
     }
 
+    /**
+     * @return Nombre de pixels de l'image (largeur x hauteur), ou 0 s'il est inconnu.
+     */
+    public long getPixels() {
+        return pixels;
+    }
+
     /**
      * @return Résolution DPI de l'image (dpiX x dpiY).
      */
@@ -130,4 +293,69 @@ public class Metadonnees {
     public String getCoordonneesGPS() {
         return coordonneesGPS;
     }
+
+    /**
+     * @return Largeur de l'image en pixels, ou {@code null} si elle est inconnue.
+     */
+    public Integer getLargeur() {
+        return largeur;
+    }
+
+    /**
+     * @return Hauteur de l'image en pixels, ou {@code null} si elle est inconnue.
+     */
+    public Integer getHauteur() {
+        return hauteur;
+    }
+
+    /**
+     * @return Résolution horizontale en DPI, ou {@code null} si elle est inconnue.
+     */
+    public Integer getDpiX() {
+        return dpiX;
+    }
+
+    /**
+     * @return Résolution verticale en DPI, ou {@code null} si elle est inconnue.
+     */
+    public Integer getDpiY() {
+        return dpiY;
+    }
+
+    /**
+     * @return Latitude GPS en degrés décimaux, ou {@code null} si elle est inconnue.
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return Longitude GPS en degrés décimaux, ou {@code null} si elle est inconnue.
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return Propriétés XMP de l'image (note, mots-clés, date de création, créateurs).
+     */
+    public Xmp getXmp() {
+        return xmp;
+    }
+
+    /**
+     * Retourne la valeur d'un tag EXIF ou IPTC quelconque, par exemple {@code Model},
+     * {@code Exposure Time} ou {@code 0x0112}. L'index des tags de l'image est construit
+     * au premier appel ; seule la valeur demandée est ensuite lue et décodée.
+     *
+     * @param nom Nom ou identifiant du tag (voir {@link IndexTags#valeur(String)}).
+     * @return Valeur du tag, ou {@code null} si l'image ne le contient pas.
+     * @throws IOException Si le fichier ne peut pas être lu.
+     */
+    public String getTag(String nom) throws IOException {
+        if (indexTags == null) {
+            indexTags = IndexTags.indexer(Paths.get(chemin));
+        }
+        return indexTags.valeur(nom);
+    }
 }
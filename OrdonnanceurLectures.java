@@ -0,0 +1,314 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * La classe OrdonnanceurLectures trie un lot de lectures en attente selon leur
+ * emplacement sur le disque, afin de limiter les déplacements de tête sur un disque rotatif.
+ *
+ * <p>Deux ordres sont proposés :</p>
+ * <ul>
+ *     <li>{@link Mode#INODE} : par numéro d'inode, obtenu sans appel système à partir de la clé
+ *     de fichier ; sur ext4 et XFS, les inodes proches sont rangés dans les mêmes groupes de blocs ;</li>
+ *     <li>{@link Mode#EXTENT} : par adresse physique du premier bloc de données, obtenue par l'ioctl
+ *     FIEMAP via l'outil {@code filefrag} (e2fsprogs), lancé une fois par lot sur les seuls
+ *     fichiers réguliers des disques rotatifs : sur SSD, l'ordre physique n'apporte rien et
+ *     ces fichiers sont triés par inode. Les fichiers sans adresse connue sont placés à la fin,
+ *     par inode. La nature de chaque périphérique n'est déterminée qu'une fois.</li>
+ * </ul>
+ *
+ * <p>{@code filefrag} ne peut pas retenir l'analyse : sa sortie est lue sur un thread à part,
+ * et le processus est arrêté au bout de {@value #DELAI_FILEFRAG} secondes ou dès que
+ * l'{@link Annulation} est déclenchée ; le lot est alors trié par inode.</p>
+ *
+ * @author Binome
+ */
+public final class OrdonnanceurLectures {
+
+    /**
+     * Ordre des lectures d'un lot.
+     */
+    public enum Mode {
+        /** Ordre de découverte. */
+        AUCUN,
+        /** Ordre des numéros d'inode. */
+        INODE,
+        /** Ordre des adresses physiques (FIEMAP). */
+        EXTENT;
+
+        /**
+         * @param nom le nom du mode, sans tenir compte de la casse.
+         * @return le mode correspondant.
+         * @throws IllegalArgumentException si le nom est inconnu.
+         */
+        public static Mode depuis(String nom) {
+            try {
+                return valueOf(nom.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ordre de lecture inconnu : " + nom + " (aucun, inode ou extent).");
+            }
+        }
+    }
+
+    private static final String FILEFRAG = "filefrag";
+    private static final int DELAI_FILEFRAG = 10;
+    private static volatile Boolean filefragDisponible;
+
+    private final Mode mode;
+    private final Map<Long, Boolean> rotatifs = new ConcurrentHashMap<>();
+
+    /**
+     * @param mode l'ordre des lectures.
+     */
+    public OrdonnanceurLectures(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Choisit l'ordre adapté au périphérique : par adresse physique (ou à défaut par inode)
+     * sur disque rotatif, ordre de découverte sinon.
+     *
+     * @param chemin un chemin du périphérique.
+     * @return l'ordonnanceur.
+     */
+    public static OrdonnanceurLectures pour(Path chemin) {
+        if (!Peripherique.estRotatif(chemin)) {
+            return new OrdonnanceurLectures(Mode.AUCUN);
+        }
+        return new OrdonnanceurLectures(estFilefragDisponible() ? Mode.EXTENT : Mode.INODE);
+    }
+
+    /**
+     * @return l'ordre des lectures.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Trie un lot de lectures.
+     *
+     * @param lot le lot à trier, modifié en place.
+     * @param fichier la fonction donnant le fichier de chaque élément.
+     * @param annulation l'annulation de l'opération en cours, ou {@code null}.
+     * @param <T> le type des éléments du lot.
+     * @throws java.util.concurrent.CancellationException si l'opération est annulée pendant le tri.
+     */
+    public <T> void trier(List<T> lot, Function<T, Fichier> fichier, Annulation annulation) {
+        if (mode == Mode.AUCUN || lot.size() < 2) {
+            return;
+        }
+        int n = lot.size();
+        long[] inodes = new long[n];
+        long[] peripheriques = new long[n];
+        for (int i = 0; i < n; i++) {
+            long[] couple = EnsembleCles.decomposer(fichier.apply(lot.get(i)).getCleFichier());
+            inodes[i] = couple != null ? couple[1] : Long.MAX_VALUE;
+            peripheriques[i] = couple != null ? couple[0] : -1;
+        }
+        long[] extents = null;
+        if (mode == Mode.EXTENT) {
+            // Un tube nommé ou un périphérique bloquerait filefrag à l'ouverture.
+            List<String> chemins = new ArrayList<>(n);
+            List<Integer> indices = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Path emplacement = fichier.apply(lot.get(i)).getEmplacement();
+                if (estRotatif(peripheriques[i], emplacement) && Files.isRegularFile(emplacement)) {
+                    chemins.add(emplacement.toString());
+                    indices.add(i);
+                }
+            }
+            long[] blocs = chemins.isEmpty() ? null : premiersBlocs(chemins, annulation);
+            if (blocs != null) {
+                extents = new long[n];
+                Arrays.fill(extents, Long.MAX_VALUE);
+                for (int j = 0; j < blocs.length; j++) {
+                    extents[indices.get(j)] = blocs[j];
+                }
+            }
+        }
+
+        Integer[] ordre = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ordre[i] = i;
+        }
+        long[] blocs = extents;
+        Comparator<Integer> comparateur = Comparator.comparingLong(i -> inodes[i]);
+        if (blocs != null) {
+            comparateur = Comparator.<Integer>comparingLong(i -> blocs[i]).thenComparing(comparateur);
+        }
+        Arrays.sort(ordre, comparateur);
+
+        List<T> trie = new ArrayList<>(n);
+        for (Integer i : ordre) {
+            trie.add(lot.get(i));
+        }
+        lot.clear();
+        lot.addAll(trie);
+    }
+
+    /**
+     * Indique si un fichier est sur un disque rotatif, en ne consultant {@link Peripherique}
+     * qu'au premier fichier de chaque périphérique.
+     *
+     * @param peripherique le numéro du périphérique, -1 s'il est inconnu.
+     * @param emplacement le chemin du fichier.
+     * @return {@code true} sur disque rotatif ; {@code false} sinon ou si le périphérique est inconnu.
+     */
+    private boolean estRotatif(long peripherique, Path emplacement) {
+        if (peripherique < 0) {
+            return false;
+        }
+        return rotatifs.computeIfAbsent(peripherique, p -> Peripherique.estRotatif(emplacement));
+    }
+
+    /**
+     * Retourne l'adresse physique du premier bloc de chaque fichier, par un seul appel
+     * à {@code filefrag -e}, dans la limite de {@value #DELAI_FILEFRAG} secondes.
+     *
+     * @return les adresses, {@link Long#MAX_VALUE} si inconnues, ou {@code null} si
+     * {@code filefrag} n'a pas pu être lancé ou n'a pas répondu à temps.
+     */
+    private static long[] premiersBlocs(List<String> chemins, Annulation annulation) {
+        long[] blocs = new long[chemins.size()];
+        Arrays.fill(blocs, Long.MAX_VALUE);
+        List<String> commande = new ArrayList<>(chemins.size() + 2);
+        commande.add(FILEFRAG);
+        commande.add("-e");
+        for (String chemin : chemins) {
+            // Un chemin relatif commençant par « - » serait pris pour une option.
+            commande.add(new File(chemin).getAbsolutePath());
+        }
+        Process processus;
+        try {
+            processus = new ProcessBuilder(commande).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException e) {
+            filefragDisponible = false;
+            return null;
+        }
+        Thread lecteur = new Thread(() -> lireSortie(processus, commande, blocs), "filefrag");
+        lecteur.setDaemon(true);
+        lecteur.start();
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(DELAI_FILEFRAG);
+        try {
+            while (true) {
+                lecteur.join(100);
+                if (!lecteur.isAlive()) {
+                    break;
+                }
+                if (annulation != null && annulation.estAnnulee() || System.nanoTime() > fin) {
+                    processus.destroyForcibly();
+                    if (annulation != null) {
+                        annulation.verifier();
+                    }
+                    return null;
+                }
+            }
+            // Sortie fermée : le processus se termine.
+            if (!processus.waitFor(1, TimeUnit.SECONDS)) {
+                processus.destroyForcibly();
+            }
+            return blocs;
+        } catch (InterruptedException e) {
+            processus.destroyForcibly();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Lit la sortie de {@code filefrag -e} jusqu'à sa fermeture, y compris quand le processus
+     * est arrêté, et note l'adresse du premier extent de chaque fichier.
+     */
+    private static void lireSortie(Process processus, List<String> commande, long[] blocs) {
+        try (BufferedReader lecteur = new BufferedReader(
+                new InputStreamReader(processus.getInputStream(), StandardCharsets.UTF_8))) {
+            int courant = -1;
+            boolean premierExtent = false;
+            String ligne;
+            while ((ligne = lecteur.readLine()) != null) {
+                if (ligne.startsWith("File size of ")) {
+                    courant = rechercher(commande, ligne, courant);
+                    premierExtent = courant >= 0;
+                } else if (premierExtent && ligne.trim().startsWith("0:")) {
+                    blocs[courant] = debutPhysique(ligne);
+                    premierExtent = false;
+                }
+            }
+        } catch (IOException e) {
+            // Processus arrêté : les adresses non lues restent inconnues.
+        }
+    }
+
+    /**
+     * Retrouve le fichier décrit par une ligne {@code File size of <chemin> is ...},
+     * en cherchant à partir du fichier précédent (filefrag respecte l'ordre des arguments).
+     */
+    private static int rechercher(List<String> commande, String ligne, int precedent) {
+        for (int i = Math.max(0, precedent + 1); i < commande.size() - 2; i++) {
+            if (ligne.startsWith("File size of " + commande.get(i + 2) + " is ")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lit l'adresse physique d'une ligne d'extent : {@code 0:  0..  10:  1067547..  1067557:  11: ...}.
+     */
+    private static long debutPhysique(String ligne) {
+        String[] champs = ligne.trim().split(":");
+        if (champs.length < 3) {
+            return Long.MAX_VALUE;
+        }
+        String physique = champs[2].trim();
+        int points = physique.indexOf("..");
+        try {
+            return Long.parseLong((points >= 0 ? physique.substring(0, points) : physique).trim());
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return {@code true} si l'outil {@code filefrag} peut être lancé.
+     */
+    static boolean estFilefragDisponible() {
+        Boolean disponible = filefragDisponible;
+        if (disponible == null) {
+            Process processus = null;
+            try {
+                processus = new ProcessBuilder(FILEFRAG, "-V")
+                        .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+                disponible = processus.waitFor(5, TimeUnit.SECONDS) && processus.exitValue() == 0;
+            } catch (IOException e) {
+                disponible = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                disponible = false;
+            } finally {
+                // Un filefrag qui ne répond pas n'est pas laissé en vie.
+                if (processus != null && processus.isAlive()) {
+                    processus.destroyForcibly();
+                }
+            }
+            filefragDisponible = disponible;
+        }
+        return disponible;
+    }
+}
@@ -0,0 +1,431 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * La classe ParcoursArborescence parcourt un répertoire, récursivement ou non, en ne
+ * transmettant chaque fichier physique qu'une seule fois.
+ *
+ * <p>Les clés de fichier ({@link BasicFileAttributes#fileKey()}, soit le périphérique et l'inode)
+ * déjà rencontrées sont mémorisées dans un {@link EnsembleCles} :</p>
+ * <ul>
+ *     <li>un répertoire déjà visité (montage lié, lien symbolique vers un répertoire parcouru,
+ *     boucle de liens) n'est pas reparcouru ;</li>
+ *     <li>un fichier déjà visité sous un autre chemin (lien physique) n'est pas retransmis ;
+ *     les chemins supplémentaires sont regroupés par clé et disponibles par
+ *     {@link #getLiensPhysiques()}.</li>
+ * </ul>
+ *
+ * <p>Les liens symboliques sont suivis par défaut ; sinon ils sont ignorés et comptés.
+ * Le travail est ainsi proportionnel au nombre d'inodes distincts, et non au nombre de chemins.</p>
+ *
+ * <p>Avec un {@link Journal}, les entrées déjà traitées lors d'une analyse interrompue sont
+ * sautées sans lecture de leurs attributs (voir {@link #setJournal(Journal)}).</p>
+ *
+ * <p>Avec {@link #setArchives(boolean)}, une archive ZIP ou JAR d'un parcours récursif est
+ * parcourue comme un répertoire : ses entrées sont transmises sans extraction sur le disque
+ * (voir {@link Archives}). Une archive illisible est transmise comme un fichier.</p>
+ *
+ * <p>Un sous-répertoire peut aussi être cédé à un autre processus au lieu d'être parcouru
+ * (voir {@link #setCession(Predicate)} et {@link Coordinateur}).</p>
+ *
+ * @author Binome
+ */
+public class ParcoursArborescence {
+
+    private final boolean recursif;
+    private final boolean suivreLiens;
+
+    private final EnsembleCles cles = new EnsembleCles();
+    private final Map<Object, List<String>> liensPhysiques = new LinkedHashMap<>();
+    private Map<Object, String> premiersChemins;
+    private long fichiers;
+    private long doublons;
+    private long repertoiresDejaVus;
+    private long boucles;
+    private long liensIgnores;
+    private long repris;
+    private Journal journal;
+    private Predicate<Path> cession;
+    private long cedes;
+    private boolean archives;
+    private long archivesOuvertes;
+    private Annulation annulation;
+    private long debut;
+
+    /**
+     * Constructeur du parcours.
+     *
+     * @param recursif {@code true} pour parcourir aussi les sous-répertoires.
+     * @param suivreLiens {@code true} pour suivre les liens symboliques.
+     */
+    public ParcoursArborescence(boolean recursif, boolean suivreLiens) {
+        this.recursif = recursif;
+        this.suivreLiens = suivreLiens;
+    }
+
+    /**
+     * Associe un journal au parcours : les répertoires terminés et les fichiers traités lors
+     * d'une analyse précédente sont sautés avant toute lecture de leurs attributs, et
+     * l'avancement du parcours est signalé au journal.
+     *
+     * @param journal le journal, ou {@code null}.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Active le parcours des archives ZIP et JAR comme des répertoires (parcours récursif seulement).
+     *
+     * @param archives {@code true} pour parcourir le contenu des archives.
+     */
+    public void setArchives(boolean archives) {
+        this.archives = archives;
+    }
+
+    /**
+     * Conserve le premier chemin des fichiers à plusieurs liens physiques, pour l'afficher avec
+     * les autres chemins dans {@link #afficherBilan()}. Le nombre de liens de chaque fichier est
+     * alors lu en plus de ses attributs : l'option est réservée au bilan des liens physiques.
+     *
+     * @param conserver {@code true} pour conserver les premiers chemins.
+     */
+    public void setPremiersChemins(boolean conserver) {
+        this.premiersChemins = conserver ? new HashMap<>() : null;
+    }
+
+    /**
+     * Associe une annulation au parcours : elle est consultée avant chaque entrée, et le
+     * parcours s'arrête par une {@link java.util.concurrent.CancellationException}.
+     *
+     * @param annulation l'annulation, ou {@code null}.
+     */
+    public void setAnnulation(Annulation annulation) {
+        this.annulation = annulation;
+    }
+
+    /**
+     * Choisit les sous-répertoires cédés : le prédicat est interrogé avant de descendre dans
+     * chaque sous-répertoire non encore visité ; s'il l'accepte, le sous-répertoire n'est pas parcouru.
+     *
+     * @param cession le prédicat, ou {@code null} pour tout parcourir.
+     */
+    public void setCession(Predicate<Path> cession) {
+        this.cession = cession;
+    }
+
+    /**
+     * Parcourt le répertoire et transmet chaque fichier physique au visiteur.
+     * La phase LISTAGE couvre la lecture de chaque entrée et de ses attributs.
+     *
+     * @param racine le répertoire à parcourir.
+     * @param visiteur le destinataire de chaque fichier.
+     * @throws IOException si le répertoire ne peut pas être lu.
+     */
+    public void parcourir(Path racine, Consumer<Fichier> visiteur) throws IOException {
+        if (journal != null && journal.estTermine(racine)) {
+            repris++;
+            return;
+        }
+        BasicFileAttributes attributs = Files.readAttributes(racine, BasicFileAttributes.class);
+        Object cle = attributs.fileKey();
+        if (cle != null && !cles.ajouter(cle)) {
+            repertoiresDejaVus++;
+            return;
+        }
+        debut = Mesures.debut();
+        Deque<Object> ancetres = new ArrayDeque<>();
+        parcourirRepertoire(racine, cle, ancetres, visiteur, true);
+    }
+
+    /**
+     * Parcourt un répertoire en profondeur, dans l'ordre de lecture du système de fichiers.
+     * Les ancêtres permettent de distinguer une boucle de liens d'un répertoire déjà parcouru.
+     */
+    private void parcourirRepertoire(Path repertoire, Object cle, Deque<Object> ancetres,
+                                     Consumer<Fichier> visiteur, boolean racine) throws IOException {
+        DirectoryStream<Path> flux;
+        try {
+            flux = Files.newDirectoryStream(repertoire);
+        } catch (IOException e) {
+            if (racine) {
+                throw e;
+            }
+            // Répertoire illisible (droits, supprimé pendant le parcours) : ignoré.
+            return;
+        }
+        if (journal != null) {
+            journal.entrer(repertoire);
+        }
+        if (cle != null) {
+            ancetres.push(cle);
+        }
+        try (flux) {
+            for (Path entree : flux) {
+                visiter(entree, ancetres, visiteur);
+            }
+        } catch (DirectoryIteratorException e) {
+            if (racine) {
+                throw e.getCause();
+            }
+            // Listage interrompu : le répertoire n'est pas signalé comme terminé.
+            return;
+        } finally {
+            if (cle != null) {
+                ancetres.pop();
+            }
+        }
+        if (journal != null) {
+            journal.sortir(repertoire);
+        }
+    }
+
+    private void visiter(Path entree, Deque<Object> ancetres, Consumer<Fichier> visiteur) throws IOException {
+        if (annulation != null) {
+            annulation.verifier();
+        }
+        if (journal != null && (journal.estTraite(entree) || journal.estTermine(entree))) {
+            repris++;
+            return;
+        }
+        BasicFileAttributes attributs = lireAttributs(entree);
+        if (attributs == null) {
+            // Entrée illisible (droits, fichier supprimé pendant le parcours) : ignorée.
+            return;
+        }
+        if (attributs.isSymbolicLink()) {
+            // Lien non suivi, ou lien cassé.
+            liensIgnores++;
+            return;
+        }
+        Object cle = attributs.fileKey();
+        if (attributs.isDirectory()) {
+            if (!recursif) {
+                // Sous-répertoire d'un parcours non récursif : vu comme une entrée.
+                transmettre(visiteur, new Fichier(entree, attributs));
+            } else if (cle != null && ancetres.contains(cle)) {
+                boucles++;
+            } else if (cle != null && !cles.ajouter(cle)) {
+                repertoiresDejaVus++;
+            } else if (cession != null && cession.test(entree)) {
+                cedes++;
+            } else {
+                parcourirRepertoire(entree, cle, ancetres, visiteur, false);
+            }
+        } else if (cle != null && !cles.ajouter(cle)) {
+            doublons++;
+            liensPhysiques.computeIfAbsent(cle, k -> new ArrayList<>()).add(entree.toString());
+        } else if (archives && recursif && Archives.estArchive(entree) && parcourirArchive(entree, visiteur)) {
+            archivesOuvertes++;
+        } else {
+            fichiers++;
+            if (premiersChemins != null && cle != null && nombreLiens(entree) > 1) {
+                premiersChemins.put(cle, entree.toString());
+            }
+            transmettre(visiteur, new Fichier(entree, attributs));
+        }
+    }
+
+    /**
+     * @return le nombre de liens physiques d'un fichier, ou 0 s'il ne peut pas être lu.
+     */
+    private static int nombreLiens(Path fichier) {
+        try {
+            return (Integer) Files.getAttribute(fichier, "unix:nlink");
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parcourt le contenu d'une archive, sans ouvrir les archives qu'elle contient. Avec un journal,
+     * l'archive est suivie comme un sous-répertoire de son répertoire : celui-ci n'est terminé
+     * qu'après toutes les entrées de l'archive.
+     *
+     * @return {@code false} si l'archive est illisible et doit être transmise comme un fichier.
+     */
+    private boolean parcourirArchive(Path archive, Consumer<Fichier> visiteur) throws IOException {
+        Deque<Path> aParcourir = new ArrayDeque<>();
+        long avant = fichiers;
+        try (Archives.Ouverte ouverte = Archives.ouvrir(archive)) {
+            if (journal != null) {
+                journal.entrer(archive);
+            }
+            for (Path racine : ouverte.getSysteme().getRootDirectories()) {
+                aParcourir.push(racine);
+            }
+            while (!aParcourir.isEmpty()) {
+                try (DirectoryStream<Path> flux = Files.newDirectoryStream(aParcourir.pop())) {
+                    for (Path entree : flux) {
+                        if (annulation != null) {
+                            annulation.verifier();
+                        }
+                        BasicFileAttributes attributs = Files.readAttributes(entree, BasicFileAttributes.class);
+                        if (attributs.isDirectory()) {
+                            aParcourir.push(entree);
+                            continue;
+                        }
+                        Fichier fichier = new Fichier(archive, entree, attributs);
+                        if (journal != null && journal.estTraite(Paths.get(fichier.getChemin()))) {
+                            repris++;
+                            continue;
+                        }
+                        fichiers++;
+                        transmettre(visiteur, fichier);
+                    }
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // Archive corrompue ou d'un autre format : transmise comme un fichier si aucune entrée ne l'a été.
+            // Une archive dont des entrées ont été transmises n'est pas signalée comme terminée au journal.
+            boolean entrees = fichiers != avant;
+            if (journal != null && !entrees) {
+                journal.sortir(archive);
+            }
+            return entrees;
+        }
+        if (journal != null) {
+            journal.sortir(archive);
+        }
+        return true;
+    }
+
+    /**
+     * Lit les attributs d'une entrée, en suivant les liens symboliques si demandé.
+     * Un lien cassé est décrit par ses propres attributs.
+     *
+     * @return les attributs, ou {@code null} si l'entrée est illisible.
+     */
+    private BasicFileAttributes lireAttributs(Path entree) {
+        try {
+            if (suivreLiens) {
+                try {
+                    return Files.readAttributes(entree, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // Lien cassé : relu sans le suivre.
+                }
+            }
+            return Files.readAttributes(entree, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void transmettre(Consumer<Fichier> visiteur, Fichier fichier) {
+        Mesures.fin(Mesures.Phase.LISTAGE, debut);
+        try {
+            if (journal != null) {
+                journal.attendre(fichier);
+            }
+            visiteur.accept(fichier);
+        } finally {
+            debut = Mesures.debut();
+        }
+    }
+
+    /**
+     * @return le nombre d'archives parcourues comme des répertoires.
+     */
+    public long getArchives() {
+        return archivesOuvertes;
+    }
+
+    /**
+     * @return le nombre de sous-répertoires cédés.
+     */
+    public long getCedes() {
+        return cedes;
+    }
+
+    /**
+     * Retourne les chemins supplémentaires des fichiers rencontrés plusieurs fois, regroupés
+     * par clé de fichier. Le premier chemin de chaque fichier, transmis au visiteur, n'y figure pas.
+     *
+     * @return les chemins ignorés, par clé de fichier.
+     */
+    public Map<Object, List<String>> getLiensPhysiques() {
+        return Collections.unmodifiableMap(liensPhysiques);
+    }
+
+    /**
+     * @return le nombre de fichiers distincts transmis au visiteur.
+     */
+    public long getFichiers() {
+        return fichiers;
+    }
+
+    /**
+     * @return le nombre de chemins ignorés car désignant un fichier déjà transmis.
+     */
+    public long getDoublons() {
+        return doublons;
+    }
+
+    /**
+     * @return le nombre de répertoires ignorés car déjà parcourus.
+     */
+    public long getRepertoiresDejaVus() {
+        return repertoiresDejaVus;
+    }
+
+    /**
+     * @return le nombre de boucles de liens symboliques détectées.
+     */
+    public long getBoucles() {
+        return boucles;
+    }
+
+    /**
+     * @return le nombre de liens symboliques ignorés.
+     */
+    public long getLiensIgnores() {
+        return liensIgnores;
+    }
+
+    /**
+     * @return le nombre d'entrées sautées car déjà traitées selon le journal.
+     */
+    public long getRepris() {
+        return repris;
+    }
+
+    /**
+     * Affiche le bilan du parcours et les groupes de liens physiques, avec le chemin conservé
+     * de chaque groupe si {@link #setPremiersChemins(boolean)} l'a demandé.
+     */
+    public void afficherBilan() {
+        System.out.println("Bilan du parcours :");
+        System.out.println("Fichiers distincts : " + fichiers);
+        System.out.println("Chemins déjà vus (liens physiques) : " + doublons);
+        System.out.println("Répertoires déjà parcourus : " + repertoiresDejaVus);
+        System.out.println("Boucles de liens : " + boucles);
+        System.out.println("Liens symboliques ignorés : " + liensIgnores);
+        if (journal != null) {
+            System.out.println("Entrées reprises du journal : " + repris);
+        }
+        for (Map.Entry<Object, List<String>> groupe : liensPhysiques.entrySet()) {
+            String premier = premiersChemins != null ? premiersChemins.get(groupe.getKey()) : null;
+            System.out.println("Fichier " + groupe.getKey() + " : " + (groupe.getValue().size() + 1)
+                    + " chemins ; " + (premier != null ? "conservé : " + premier + " ; " : "")
+                    + "autres chemins : " + String.join(", ", groupe.getValue()));
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package application;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * La classe ParcoursRacines parcourt plusieurs répertoires racines en parallèle et
+ * calcule leurs {@link Statistiques}.
+ *
+ * <p>Chaque périphérique de stockage a sa propre file de répertoires à lister, servie par
+ * {@link Peripherique#threadsLecture(Path)} threads : un seul sur disque rotatif, plusieurs sur SSD.
+ * Les disques travaillent ainsi en même temps, chacun à sa concurrence. Le périphérique d'un
+ * répertoire est celui de sa clé de fichier ({@code dev=...}) : un point de montage rencontré
+ * pendant le parcours est confié à la file de son propre périphérique. Sans clé de fichier,
+ * un répertoire reste dans la file de son parent.</p>
+ *
+ * <p>Comme {@link ParcoursArborescence}, un fichier ou un répertoire accessible par plusieurs
+ * chemins, y compris depuis deux racines, n'est compté qu'une fois. Chaque répertoire est compté
+ * dans ses propres statistiques, fusionnées dans celles de sa racine une fois listé.</p>
+ *
+ * @author Binome
+ */
+public final class ParcoursRacines {
+
+    /**
+     * Une racine et ses statistiques.
+     */
+    private static final class Racine {
+        final Path chemin;
+        final Statistiques statistiques = new Statistiques();
+        final LongAdder repertoires = new LongAdder();
+        FilePeripherique file;
+        boolean doublon;
+
+        Racine(Path chemin) {
+            this.chemin = chemin;
+        }
+    }
+
+    /**
+     * File de répertoires à lister d'un périphérique.
+     */
+    private static final class FilePeripherique {
+        final String nom;
+        final int threads;
+        final ExecutorService executeur;
+        final LongAdder repertoires = new LongAdder();
+
+        FilePeripherique(Path chemin) {
+            String nomStockage;
+            try {
+                nomStockage = Files.getFileStore(chemin).name();
+            } catch (IOException e) {
+                nomStockage = chemin.toString();
+            }
+            this.nom = nomStockage;
+            this.threads = Peripherique.threadsLecture(chemin);
+            AtomicInteger numero = new AtomicInteger();
+            this.executeur = Executors.newFixedThreadPool(threads, tache -> {
+                Thread thread = new Thread(tache, "parcours-" + nom + "-" + numero.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final boolean recursif;
+    private final boolean suivreLiens;
+    private final EnsembleCles cles = new EnsembleCles();
+    private final Map<Long, FilePeripherique> files = new LinkedHashMap<>();
+    private final List<Racine> racines = new ArrayList<>();
+    private final LongAdder illisibles = new LongAdder();
+    private int enCours;
+    private RuntimeException echec;
+
+    /**
+     * Crée un parcours de plusieurs racines.
+     *
+     * @param recursif {@code true} pour parcourir aussi les sous-répertoires.
+     * @param suivreLiens {@code true} pour suivre les liens symboliques.
+     */
+    public ParcoursRacines(boolean recursif, boolean suivreLiens) {
+        this.recursif = recursif;
+        this.suivreLiens = suivreLiens;
+    }
+
+    /**
+     * Parcourt les racines et attend la fin de toutes les files.
+     *
+     * @param chemins les répertoires racines.
+     * @throws IOException si une racine n'existe pas ou n'est pas un répertoire.
+     * @throws InterruptedException si l'attente est interrompue.
+     */
+    public void parcourir(List<Path> chemins) throws IOException, InterruptedException {
+        for (Path chemin : chemins) {
+            Path absolu = chemin.toAbsolutePath();
+            if (!Files.isDirectory(absolu)) {
+                throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide : " + chemin);
+            }
+            BasicFileAttributes attributs = Files.readAttributes(absolu, BasicFileAttributes.class);
+            Racine racine = new Racine(absolu);
+            racine.doublon = !ajouterCle(attributs.fileKey());
+            racine.file = file(attributs, absolu, null);
+            racines.add(racine);
+        }
+        try {
+            for (Racine racine : racines) {
+                if (!racine.doublon) {
+                    soumettre(racine, racine.chemin, racine.file);
+                }
+            }
+            synchronized (this) {
+                while (enCours > 0) {
+                    wait();
+                }
+            }
+        } finally {
+            synchronized (files) {
+                files.values().forEach(f -> f.executeur.shutdownNow());
+            }
+        }
+        if (echec != null) {
+            throw echec;
+        }
+    }
+
+    private void soumettre(Racine racine, Path repertoire, FilePeripherique file) {
+        synchronized (this) {
+            enCours++;
+        }
+        file.executeur.execute(() -> {
+            try {
+                lister(racine, repertoire, file);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (echec == null) {
+                        echec = e;
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    if (--enCours == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Liste un répertoire : ses fichiers sont comptés, ses sous-répertoires confiés à la file
+     * de leur périphérique.
+     */
+    private void lister(Racine racine, Path repertoire, FilePeripherique file) {
+        long debut = Mesures.debut();
+        List<Fichier> fichiers = new ArrayList<>();
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(repertoire)) {
+            for (Path entree : flux) {
+                BasicFileAttributes attributs = lireAttributs(entree);
+                if (attributs == null || attributs.isSymbolicLink()) {
+                    // Entrée illisible, lien non suivi ou lien cassé : ignorés.
+                    continue;
+                }
+                if (attributs.isDirectory() && recursif) {
+                    if (ajouterCle(attributs.fileKey())) {
+                        soumettre(racine, entree, file(attributs, entree, file));
+                    }
+                } else if (attributs.isDirectory() || ajouterCle(attributs.fileKey())) {
+                    fichiers.add(new Fichier(entree, attributs));
+                }
+            }
+        } catch (IOException | DirectoryIteratorException | InvalidPathException e) {
+            // Répertoire illisible (droits, supprimé pendant le parcours) : compté, puis ignoré.
+            illisibles.increment();
+        } finally {
+            Mesures.fin(Mesures.Phase.LISTAGE, debut);
+        }
+        Statistiques statistiques = new Statistiques();
+        fichiers.forEach(statistiques::ajouter);
+        racine.repertoires.increment();
+        file.repertoires.increment();
+        synchronized (racine) {
+            racine.statistiques.fusionner(statistiques);
+        }
+    }
+
+    /**
+     * Retourne la file du périphérique d'un répertoire, créée à sa première rencontre.
+     */
+    private FilePeripherique file(BasicFileAttributes attributs, Path repertoire, FilePeripherique parent) {
+        long[] couple = EnsembleCles.decomposer(attributs.fileKey());
+        if (couple == null && parent != null) {
+            return parent;
+        }
+        synchronized (files) {
+            long peripherique = couple != null ? couple[0] : -1 - files.size();
+            return files.computeIfAbsent(peripherique, p -> new FilePeripherique(repertoire));
+        }
+    }
+
+    private boolean ajouterCle(Object cle) {
+        if (cle == null) {
+            return true;
+        }
+        synchronized (cles) {
+            return cles.ajouter(cle);
+        }
+    }
+
+    private BasicFileAttributes lireAttributs(Path entree) {
+        try {
+            if (suivreLiens) {
+                try {
+                    return Files.readAttributes(entree, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // Lien cassé : relu sans le suivre.
+                }
+            }
+            return Files.readAttributes(entree, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fusionne les statistiques de toutes les racines.
+     *
+     * @return les statistiques réunies.
+     */
+    public Statistiques getTotal() {
+        Statistiques total = new Statistiques();
+        for (Racine racine : racines) {
+            total.fusionner(racine.statistiques);
+        }
+        return total;
+    }
+
+    /**
+     * Affiche le bilan par périphérique et par racine, puis les statistiques réunies.
+     *
+     * @param sortie le flux d'affichage.
+     */
+    public void afficher(PrintStream sortie) {
+        sortie.println("Périphériques : " + files.size());
+        for (FilePeripherique file : files.values()) {
+            sortie.println("  " + file.nom + " : " + file.threads + " thread(s), "
+                    + file.repertoires.sum() + " répertoires listés");
+        }
+        sortie.println("Racines : " + racines.size());
+        for (Racine racine : racines) {
+            if (racine.doublon) {
+                sortie.println("  " + racine.chemin + " : déjà parcourue depuis une autre racine");
+            } else {
+                sortie.println("  " + racine.chemin + " (" + racine.file.nom + ") : "
+                        + racine.statistiques.nbFichiers + " fichiers, " + racine.statistiques.nbImages
+                        + " images, " + racine.repertoires.sum() + " répertoires");
+            }
+        }
+        if (illisibles.sum() > 0) {
+            sortie.println("Répertoires illisibles : " + illisibles.sum());
+        }
+        getTotal().afficher(sortie);
+    }
+}
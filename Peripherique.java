@@ -0,0 +1,71 @@
+package application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * La classe Peripherique donne des informations sur le périphérique de stockage
+ * qui héberge un chemin, afin d'adapter la concurrence des lectures.
+ *
+ * <p>Sous Linux, le caractère rotatif (disque dur) est lu dans
+ * {@code /sys/class/block/<périphérique>/queue/rotational}. Sur les autres
+ * systèmes, ou si l'information est indisponible, le périphérique est
+ * considéré comme non rotatif.</p>
+ *
+ * @author Binome
+ */
+public final class Peripherique {
+
+    private Peripherique() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Indique si le chemin est hébergé par un disque rotatif.
+     *
+     * @param chemin un chemin du système de fichiers.
+     * @return {@code true} si le périphérique est un disque rotatif.
+     */
+    public static boolean estRotatif(Path chemin) {
+        try {
+            FileStore stockage = Files.getFileStore(chemin);
+            String nom = stockage.name();
+            if (!nom.startsWith("/dev/")) {
+                return false;
+            }
+            Path bloc = Paths.get("/sys/class/block", Paths.get(nom).toRealPath().getFileName().toString());
+            if (!Files.exists(bloc)) {
+                return false;
+            }
+            bloc = bloc.toRealPath();
+            Path rotatif = bloc.resolve("queue/rotational");
+            if (!Files.exists(rotatif) && bloc.getParent() != null) {
+                // Partition : l'information est portée par le disque parent.
+                rotatif = bloc.getParent().resolve("queue/rotational");
+            }
+            return Files.exists(rotatif)
+                    && new String(Files.readAllBytes(rotatif), StandardCharsets.US_ASCII).trim().equals("1");
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Retourne le nombre de lectures simultanées conseillé pour un chemin :
+     * une seule sur disque rotatif, pour éviter les déplacements de tête,
+     * et davantage sur SSD, dont les files de commandes profitent du parallélisme.
+     *
+     * @param chemin un chemin du système de fichiers.
+     * @return le nombre de threads de lecture conseillé.
+     */
+    public static int threadsLecture(Path chemin) {
+        if (estRotatif(chemin)) {
+            return 1;
+        }
+        return Math.min(16, 2 * Runtime.getRuntime().availableProcessors());
+    }
+}
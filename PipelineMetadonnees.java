@@ -0,0 +1,517 @@
+package application;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * La classe PipelineMetadonnees extrait les métadonnées de toutes les images
+ * d'un ensemble de fichiers en parallèle, en quatre étapes :
+ * <ol>
+ *     <li>découverte des fichiers images ;</li>
+ *     <li>lecture des segments utiles de chaque fichier sur un pool de threads d'E/S
+ *     (voir {@link LecteurSegments}), ou de son en-tête pour les autres formats ;</li>
+ *     <li>analyse EXIF/XMP de l'en-tête sur un pool de threads de calcul ;</li>
+ *     <li>transmission des résultats, dans l'ordre de découverte ou non.</li>
+ * </ol>
+ *
+ * <p>Les étapes communiquent par des files bornées : lorsqu'une étape est plus lente,
+ * les précédentes sont bloquées, ce qui limite la mémoire utilisée. Avec {@link #pour(Path, boolean)},
+ * le nombre de lectures simultanées s'adapte à chaque périphérique rencontré
+ * (voir {@link Peripherique#threadsLecture(Path)}) : une seule sur disque rotatif, plusieurs sur SSD.</p>
+ *
+ * <p>Sur disque rotatif, la découverte regroupe les lectures par lots de {@value #TAILLE_LOT}
+ * et les trie selon leur emplacement sur le disque (voir {@link OrdonnanceurLectures})
+ * avant de les transmettre aux threads d'E/S.</p>
+ *
+ * <p>Avec un {@link Surveillant} (voir {@link #setSurveillant(Surveillant)}), la lecture et
+ * l'analyse de chaque fichier sont bornées dans le temps : un fichier qui les bloque donne une
+ * erreur et est mis en quarantaine, sans retenir les autres. L'extraction s'arrête dès que
+ * l'{@link Annulation} du surveillant est déclenchée.</p>
+ *
+ * @author Binome
+ */
+public class PipelineMetadonnees {
+
+    /** Taille de l'en-tête lu avant analyse ; le fichier complet est relu si elle ne suffit pas. */
+    private static final int TAILLE_ENTETE = 256 * 1024;
+
+    /** Nombre de lectures triées ensemble par {@link OrdonnanceurLectures}. */
+    private static final int TAILLE_LOT = 256;
+
+    private static final Tache FIN = new Tache(-1, null);
+
+    private final int threadsLecture;
+    private final int threadsCalcul;
+    private final int capacite;
+    private final boolean ordonne;
+    private OrdonnanceurLectures ordonnanceur = new OrdonnanceurLectures(OrdonnanceurLectures.Mode.AUCUN);
+    private boolean lecturesParPeripherique;
+    private final Map<Long, Semaphore> peripheriques = new ConcurrentHashMap<>();
+    private Surveillant surveillant;
+
+    /**
+     * Résultat de l'extraction pour un fichier.
+     */
+    public static final class Resultat {
+        private final Fichier fichier;
+        private final Metadonnees metadonnees;
+        private final String erreur;
+
+        Resultat(Fichier fichier, Metadonnees metadonnees, String erreur) {
+            this.fichier = fichier;
+            this.metadonnees = metadonnees;
+            this.erreur = erreur;
+        }
+
+        /**
+         * @return le fichier analysé.
+         */
+        public Fichier getFichier() {
+            return fichier;
+        }
+
+        /**
+         * @return le chemin du fichier.
+         */
+        public String getChemin() {
+            return fichier.getChemin();
+        }
+
+        /**
+         * @return les métadonnées extraites, ou {@code null} en cas d'erreur.
+         */
+        public Metadonnees getMetadonnees() {
+            return metadonnees;
+        }
+
+        /**
+         * @return le message d'erreur, ou {@code null} si l'extraction a réussi.
+         */
+        public String getErreur() {
+            return erreur;
+        }
+    }
+
+    /**
+     * Source des fichiers à traiter, parcourue par l'étape de découverte.
+     * Par exemple {@code repertoire::parcourir} ou {@code liste::forEach}.
+     */
+    public interface Source {
+        /**
+         * Transmet chaque fichier au visiteur.
+         *
+         * @param visiteur le destinataire des fichiers.
+         * @throws IOException si les fichiers ne peuvent pas être parcourus.
+         */
+        void parcourir(Consumer<Fichier> visiteur) throws IOException;
+    }
+
+    /**
+     * Élément circulant dans le pipeline.
+     */
+    private static final class Tache {
+        final long numero;
+        final Fichier fichier;
+        LecteurSegments.Extrait extrait;
+        byte[] entete;
+        boolean complet;
+        Resultat resultat;
+
+        Tache(long numero, Fichier fichier) {
+            this.numero = numero;
+            this.fichier = fichier;
+        }
+    }
+
+    /**
+     * Constructeur du pipeline.
+     *
+     * @param threadsLecture le nombre de threads de lecture des en-têtes.
+     * @param threadsCalcul le nombre de threads d'analyse.
+     * @param capacite la capacité de chaque file entre deux étapes.
+     * @param ordonne {@code true} pour transmettre les résultats dans l'ordre de découverte.
+     */
+    public PipelineMetadonnees(int threadsLecture, int threadsCalcul, int capacite, boolean ordonne) {
+        this.threadsLecture = Math.max(1, threadsLecture);
+        this.threadsCalcul = Math.max(1, threadsCalcul);
+        this.capacite = Math.max(1, capacite);
+        this.ordonne = ordonne;
+    }
+
+    /**
+     * Crée un pipeline adapté aux périphériques : le nombre de lectures simultanées est
+     * limité pour chaque périphérique rencontré, les lectures sont triées sur disque rotatif,
+     * et un thread d'analyse est créé par cœur.
+     *
+     * @param repertoire le répertoire analysé.
+     * @param ordonne {@code true} pour transmettre les résultats dans l'ordre de découverte.
+     * @return le pipeline.
+     */
+    public static PipelineMetadonnees pour(Path repertoire, boolean ordonne) {
+        int coeurs = Runtime.getRuntime().availableProcessors();
+        PipelineMetadonnees pipeline = new PipelineMetadonnees(Math.min(16, 2 * coeurs), coeurs, 4 * coeurs, ordonne);
+        pipeline.lecturesParPeripherique = true;
+        pipeline.setOrdonnanceur(OrdonnanceurLectures.pour(repertoire));
+        return pipeline;
+    }
+
+    /**
+     * Choisit l'ordre dans lequel les lectures sont transmises aux threads d'E/S.
+     *
+     * @param ordonnanceur l'ordonnanceur des lectures.
+     */
+    public void setOrdonnanceur(OrdonnanceurLectures ordonnanceur) {
+        this.ordonnanceur = ordonnanceur;
+    }
+
+    /**
+     * Borne la durée de la lecture et de l'analyse de chaque fichier, ignore les fichiers
+     * en quarantaine et permet d'annuler l'extraction.
+     *
+     * @param surveillant le surveillant, ou {@code null} pour ne rien borner.
+     */
+    public void setSurveillant(Surveillant surveillant) {
+        this.surveillant = surveillant;
+    }
+
+    /**
+     * Extrait les métadonnées des fichiers images et transmet chaque résultat au consommateur,
+     * depuis le thread appelant. Une exception non vérifiée levée par la source (par exemple
+     * {@link java.io.UncheckedIOException}) ou une erreur qui arrête une étape est relevée ici,
+     * après la transmission des résultats déjà obtenus.
+     *
+     * @param source la source des fichiers ; seuls les fichiers images sont analysés.
+     * @param consommateur le destinataire des résultats.
+     * @throws IOException si la source ne peut pas être parcourue.
+     * @throws InterruptedException si le thread appelant est interrompu.
+     * @throws CancellationException si l'extraction est annulée par le surveillant.
+     */
+    public void executer(Source source, Consumer<Resultat> consommateur) throws IOException, InterruptedException {
+        BlockingQueue<Tache> aLire = new ArrayBlockingQueue<>(capacite);
+        BlockingQueue<Tache> aAnalyser = new ArrayBlockingQueue<>(capacite);
+        BlockingQueue<Tache> termines = new ArrayBlockingQueue<>(capacite);
+        // En mode ordonné, limite le nombre de résultats en attente de réordonnancement.
+        // Un lot complet doit pouvoir être constitué avant d'être transmis.
+        Semaphore enVol = new Semaphore(3 * capacite + threadsLecture + threadsCalcul + TAILLE_LOT);
+
+        ExecutorService pool = Executors.newFixedThreadPool(1 + threadsLecture + threadsCalcul, r -> {
+            Thread thread = new Thread(r, "pipeline-metadonnees");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger lecteursActifs = new AtomicInteger(threadsLecture);
+        AtomicInteger analyseursActifs = new AtomicInteger(threadsCalcul);
+        // Première erreur qui interrompt une étape : parcours de la source, ou erreur inattendue d'un thread.
+        AtomicReference<Throwable> erreur = new AtomicReference<>();
+
+        try {
+            pool.execute(() -> decouvrir(source, aLire, enVol, erreur));
+            for (int i = 0; i < threadsLecture; i++) {
+                pool.execute(() -> lire(aLire, aAnalyser, lecteursActifs, erreur));
+            }
+            for (int i = 0; i < threadsCalcul; i++) {
+                pool.execute(() -> analyser(aAnalyser, termines, analyseursActifs, erreur));
+            }
+            transmettre(termines, enVol, consommateur);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (surveillant != null) {
+            // La découverte s'arrête aussi sur annulation : le parcours n'est alors pas complet.
+            surveillant.getAnnulation().verifier();
+        }
+        Throwable cause = erreur.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Étape 1 : découverte des fichiers images. Une erreur de la source, y compris une exception
+     * non vérifiée levée par le visiteur, arrête la découverte et est relevée par {@link #executer}.
+     */
+    private void decouvrir(Source source, BlockingQueue<Tache> aLire, Semaphore enVol,
+                           AtomicReference<Throwable> erreur) {
+        long[] numero = {0};
+        List<Tache> lot = new ArrayList<>();
+        boolean trier = ordonnanceur.getMode() != OrdonnanceurLectures.Mode.AUCUN;
+        try {
+            try {
+                source.parcourir(fichier -> {
+                    if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image")) {
+                        try {
+                            enVol.acquire();
+                            Tache tache = new Tache(numero[0]++, fichier);
+                            if (!trier) {
+                                aLire.put(tache);
+                                return;
+                            }
+                            lot.add(tache);
+                            if (lot.size() >= TAILLE_LOT) {
+                                transmettreLot(lot, aLire);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new CancellationException();
+                        }
+                    }
+                });
+                transmettreLot(lot, aLire);
+            } catch (CancellationException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                erreur.compareAndSet(null, e);
+                transmettreLot(lot, aLire);
+            } catch (Error e) {
+                erreur.compareAndSet(null, e);
+                throw e;
+            } finally {
+                signalerFin(aLire, threadsLecture);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Transmet la fin du flux aux threads de l'étape suivante. Appelé dans un bloc {@code finally} :
+     * une étape arrêtée par une erreur inattendue ne laisse pas les suivantes bloquées.
+     */
+    private static void signalerFin(BlockingQueue<Tache> file, int destinataires) {
+        try {
+            for (int i = 0; i < destinataires; i++) {
+                file.put(FIN);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Trie un lot de lectures selon leur emplacement sur le disque et le transmet aux threads d'E/S.
+     */
+    private void transmettreLot(List<Tache> lot, BlockingQueue<Tache> aLire) throws InterruptedException {
+        ordonnanceur.trier(lot, tache -> tache.fichier, surveillant != null ? surveillant.getAnnulation() : null);
+        for (Tache tache : lot) {
+            aLire.put(tache);
+        }
+        lot.clear();
+    }
+
+    /**
+     * Retourne le sémaphore limitant les lectures simultanées sur le périphérique d'un fichier,
+     * ou {@code null} si les lectures ne sont pas limitées par périphérique.
+     */
+    private Semaphore limitePeripherique(Fichier fichier) {
+        if (!lecturesParPeripherique) {
+            return null;
+        }
+        long[] couple = EnsembleCles.decomposer(fichier.getCleFichier());
+        long peripherique = couple != null ? couple[0] : -1;
+        return peripheriques.computeIfAbsent(peripherique, p -> new Semaphore(
+                Math.min(threadsLecture, Peripherique.threadsLecture(fichier.getEmplacement()))));
+    }
+
+    /**
+     * Étape 2 : lecture des segments utiles, ou à défaut de l'en-tête, sur le pool d'E/S.
+     */
+    private void lire(BlockingQueue<Tache> aLire, BlockingQueue<Tache> aAnalyser, AtomicInteger actifs,
+                      AtomicReference<Throwable> erreur) {
+        try {
+            Tache tache;
+            while ((tache = aLire.take()) != FIN) {
+                Semaphore limite = limitePeripherique(tache.fichier);
+                if (limite != null) {
+                    limite.acquire();
+                }
+                long debut = Mesures.debut();
+                long octets = 0;
+                try {
+                    Tache lue = tache;
+                    octets = surveillant == null ? lire(lue) : surveillant.executer(lue.fichier, () -> lire(lue));
+                } catch (IOException e) {
+                    tache.resultat = new Resultat(tache.fichier, null, e.getMessage());
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    // Erreur inattendue sur ce fichier (structure non prévue) : n'arrête pas les autres.
+                    tache.resultat = new Resultat(tache.fichier, null, e.toString());
+                } finally {
+                    if (limite != null) {
+                        limite.release();
+                    }
+                }
+                Mesures.fin(Mesures.Phase.LECTURE, debut, octets);
+                aAnalyser.put(tache);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Annulation : relevée par le thread appelant (voir prendre).
+        } catch (RuntimeException | Error e) {
+            erreur.compareAndSet(null, e);
+            throw e;
+        } finally {
+            if (actifs.decrementAndGet() == 0) {
+                signalerFin(aAnalyser, threadsCalcul);
+            }
+        }
+    }
+
+    /**
+     * Lit les segments utiles d'un fichier, ou à défaut son en-tête.
+     *
+     * @return le nombre d'octets lus.
+     */
+    private static long lire(Tache tache) throws IOException {
+        long octets = 0;
+        // Une entrée d'archive n'a pas d'accès direct : seul son en-tête est décompressé.
+        if (tache.fichier.getArchive() == null) {
+            try (LecteurSegments lecteur = new LecteurSegments(tache.fichier.getEmplacement())) {
+                tache.extrait = lecteur.extraire();
+                octets = lecteur.getOctetsLus();
+            }
+        }
+        if (tache.extrait == null) {
+            try (InputStream entree = tache.fichier.ouvrir()) {
+                byte[] tampon = entree.readNBytes(TAILLE_ENTETE);
+                tache.complet = tampon.length < TAILLE_ENTETE || entree.read() < 0;
+                tache.entete = tampon;
+                octets += tampon.length;
+            }
+        }
+        return octets;
+    }
+
+    /**
+     * Étape 3 : analyse des métadonnées sur le pool de calcul. Si les segments extraits
+     * ou l'en-tête tronqué ne suffisent pas, le fichier complet est analysé.
+     */
+    private void analyser(BlockingQueue<Tache> aAnalyser, BlockingQueue<Tache> termines, AtomicInteger actifs,
+                          AtomicReference<Throwable> erreur) {
+        try {
+            Tache tache;
+            while ((tache = aAnalyser.take()) != FIN) {
+                if (tache.resultat == null) {
+                    tache.resultat = analyser(tache);
+                    tache.extrait = null;
+                    tache.entete = null;
+                }
+                termines.put(tache);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Annulation : relevée par le thread appelant (voir prendre).
+        } catch (RuntimeException | Error e) {
+            erreur.compareAndSet(null, e);
+            throw e;
+        } finally {
+            if (actifs.decrementAndGet() == 0) {
+                signalerFin(termines, 1);
+            }
+        }
+    }
+
+    private Resultat analyser(Tache tache) throws InterruptedException {
+        long debut = Mesures.debut();
+        try {
+            Metadata metadata;
+            try {
+                metadata = surveillant == null ? lireMetadonnees(tache)
+                        : surveillant.executer(tache.fichier, () -> lireMetadonnees(tache));
+            } catch (Surveillant.FichierEnQuarantaine | InterruptedException | CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                if (tache.extrait == null && tache.complet) {
+                    throw e;
+                }
+                // En-tête tronqué : le fichier complet est analysé, lui aussi dans le délai accordé.
+                // Une entrée d'archive n'a pas de chemin sur le disque : elle est relue depuis l'archive.
+                Fichier fichier = tache.fichier;
+                return new Resultat(fichier, surveillant == null ? new Metadonnees(fichier)
+                        : surveillant.executer(fichier, () -> new Metadonnees(fichier)), null);
+            }
+            Mesures.fin(Mesures.Phase.METADONNEES, debut);
+            return new Resultat(tache.fichier, new Metadonnees(tache.fichier.getChemin(), metadata,
+                    tache.extrait != null ? tache.extrait.getXmp() : null), null);
+        } catch (InterruptedException | CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            return new Resultat(tache.fichier, null, e.getMessage());
+        }
+    }
+
+    private static Metadata lireMetadonnees(Tache tache) throws Exception {
+        return tache.extrait != null
+                ? tache.extrait.analyser()
+                : ImageMetadataReader.readMetadata(new ByteArrayInputStream(tache.entete), tache.entete.length);
+    }
+
+    /**
+     * Étape 4 : transmission des résultats depuis le thread appelant, avec
+     * réordonnancement si nécessaire.
+     */
+    private void transmettre(BlockingQueue<Tache> termines, Semaphore enVol, Consumer<Resultat> consommateur)
+            throws InterruptedException {
+        Map<Long, Resultat> enAttente = new HashMap<>();
+        long prochain = 0;
+        Tache tache;
+        while ((tache = prendre(termines)) != FIN) {
+            if (!ordonne) {
+                consommateur.accept(tache.resultat);
+                enVol.release();
+                continue;
+            }
+            enAttente.put(tache.numero, tache.resultat);
+            Resultat resultat;
+            while ((resultat = enAttente.remove(prochain)) != null) {
+                consommateur.accept(resultat);
+                enVol.release();
+                prochain++;
+            }
+        }
+    }
+
+    /**
+     * Attend le résultat suivant ; avec un surveillant, l'annulation est consultée au moins
+     * tous les dixièmes de seconde, même si aucun résultat n'arrive.
+     */
+    private Tache prendre(BlockingQueue<Tache> termines) throws InterruptedException {
+        if (surveillant == null) {
+            return termines.take();
+        }
+        Annulation annulation = surveillant.getAnnulation();
+        Tache tache;
+        do {
+            annulation.verifier();
+        } while ((tache = termines.poll(100, TimeUnit.MILLISECONDS)) == null);
+        return tache;
+    }
+}
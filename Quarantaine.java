@@ -0,0 +1,150 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * La classe Quarantaine tient la liste des fichiers dont l'analyse a dépassé le délai
+ * accordé (voir {@link Surveillant}) : ces fichiers sont ensuite ignorés, pour qu'un fichier
+ * tronqué ou malveillant ne ralentisse pas chaque nouvelle analyse.
+ *
+ * <p>La liste peut être enregistrée dans un fichier texte, une ligne par fichier, ajoutée
+ * dès la mise en quarantaine : {@code <taille>\t<date>\t<raison>\t<chemin>}. Un fichier modifié
+ * depuis sa mise en quarantaine (taille ou date différente) est de nouveau analysé. Pour
+ * libérer un fichier, il suffit de retirer sa ligne.</p>
+ *
+ * <p>Les méthodes sont synchronisées : les fichiers sont mis en quarantaine depuis les
+ * threads d'analyse.</p>
+ *
+ * @author Binome
+ */
+public final class Quarantaine implements Closeable {
+
+    /**
+     * Un fichier en quarantaine.
+     */
+    private static final class Entree {
+        final long taille;
+        final long date;
+        final String raison;
+
+        Entree(long taille, long date, String raison) {
+            this.taille = taille;
+            this.date = date;
+            this.raison = raison;
+        }
+    }
+
+    private final Map<String, Entree> entrees = new HashMap<>();
+    private final BufferedWriter sortie;
+
+    /**
+     * Crée une quarantaine en mémoire seulement, oubliée à la fin du programme.
+     */
+    public Quarantaine() {
+        this.sortie = null;
+    }
+
+    private Quarantaine(BufferedWriter sortie) {
+        this.sortie = sortie;
+    }
+
+    /**
+     * Ouvre une quarantaine enregistrée ; le fichier est créé s'il n'existe pas.
+     *
+     * @param fichier le fichier de la liste.
+     * @return la quarantaine, à fermer après usage.
+     * @throws IOException si le fichier ne peut pas être lu ou ouvert en écriture.
+     */
+    public static Quarantaine ouvrir(Path fichier) throws IOException {
+        Map<String, Entree> lues = new HashMap<>();
+        if (Files.exists(fichier)) {
+            try (BufferedReader lecteur = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+                String ligne;
+                while ((ligne = lecteur.readLine()) != null) {
+                    String[] champs = ligne.split("\t", 4);
+                    if (champs.length < 4) {
+                        // Ligne incomplète (arrêt pendant l'écriture) ou commentaire : ignorée.
+                        continue;
+                    }
+                    try {
+                        lues.put(champs[3], new Entree(Long.parseLong(champs[0]), Long.parseLong(champs[1]), champs[2]));
+                    } catch (NumberFormatException e) {
+                        // Ligne modifiée à la main de façon invalide : ignorée.
+                    }
+                }
+            }
+        }
+        Quarantaine quarantaine = new Quarantaine(Files.newBufferedWriter(fichier, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        quarantaine.entrees.putAll(lues);
+        return quarantaine;
+    }
+
+    /**
+     * Indique si un fichier est en quarantaine dans son état actuel.
+     *
+     * @param fichier le fichier.
+     * @return {@code true} si le fichier doit être ignoré.
+     */
+    public synchronized boolean contient(Fichier fichier) {
+        Entree entree = entrees.get(fichier.getChemin());
+        return entree != null && entree.taille == fichier.getTaille()
+                && entree.date == fichier.getDerniereModification();
+    }
+
+    /**
+     * Retourne la raison de la mise en quarantaine d'un fichier.
+     *
+     * @param fichier le fichier.
+     * @return la raison, ou {@code null} si le fichier n'est pas en quarantaine.
+     */
+    public synchronized String getRaison(Fichier fichier) {
+        return contient(fichier) ? entrees.get(fichier.getChemin()).raison : null;
+    }
+
+    /**
+     * Met un fichier en quarantaine et, si la liste est enregistrée, l'ajoute aussitôt au fichier.
+     *
+     * @param fichier le fichier.
+     * @param raison la raison, par exemple le délai dépassé.
+     * @throws IOException si la liste ne peut pas être écrite.
+     */
+    public synchronized void ajouter(Fichier fichier, String raison) throws IOException {
+        String texte = raison.replaceAll("[\\t\\r\\n]", " ");
+        entrees.put(fichier.getChemin(), new Entree(fichier.getTaille(), fichier.getDerniereModification(), texte));
+        if (sortie != null) {
+            sortie.write(fichier.getTaille() + "\t" + fichier.getDerniereModification() + "\t" + texte
+                    + "\t" + fichier.getChemin());
+            sortie.newLine();
+            sortie.flush();
+        }
+    }
+
+    /**
+     * @return le nombre de fichiers en quarantaine.
+     */
+    public synchronized int getNombre() {
+        return entrees.size();
+    }
+
+    /**
+     * Ferme le fichier de la liste.
+     *
+     * @throws IOException en cas d'erreur d'écriture.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (sortie != null) {
+            sortie.close();
+        }
+    }
+}
@@ -1,25 +1,37 @@
 package application;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Classe représentant un répertoire sur le système de fichiers.
  * Cette classe permet de lister les fichiers d'un répertoire, afficher des statistiques,
  * et identifier les fichiers image.
  *
+ * <p>Avec un budget mémoire ({@link #setMemoireMax(long)}), la liste des fichiers et les
+ * ensembles de chemins comparés par {@link #snapshotCompare} ne sont gardés en mémoire que
+ * dans la limite du budget : au-delà, ils sont triés par chemin et écrits dans des fichiers
+ * temporaires, puis relus par fusion (voir {@link TriExterne}). Les fichiers sont alors
+ * restitués par ordre de chemin.</p>
+ *
  * @author Binome
  */
-public class Repertoire {
+public class Repertoire implements Closeable {
 
     /**
      * Chemin absolu du répertoire.
@@ -31,6 +43,61 @@ public class Repertoire {
      */
     private List<Fichier> fichiers;
 
+    /**
+     * Indique si les sous-répertoires sont parcourus.
+     */
+    private boolean recursif;
+
+    /**
+     * Indique si les liens symboliques sont suivis.
+     */
+    private boolean suivreLiens = true;
+
+    /**
+     * Dernier parcours effectué, pour son bilan (liens physiques, répertoires déjà vus).
+     */
+    private ParcoursArborescence dernierParcours;
+
+    /**
+     * Journal de l'analyse en cours, ou {@code null}.
+     */
+    private Journal journal;
+
+    /**
+     * Sous-répertoires cédés à un autre processus au lieu d'être parcourus, ou {@code null}.
+     */
+    private Predicate<Path> cession;
+
+    /**
+     * Parcours des archives ZIP et JAR comme des répertoires.
+     */
+    private boolean archives;
+
+    /**
+     * Conservation du premier chemin des fichiers à plusieurs liens physiques.
+     */
+    private boolean premiersChemins;
+
+    /**
+     * Mémoire maximale de la liste des fichiers et des comparaisons, en octets.
+     */
+    private long memoireMax = TriExterne.SANS_LIMITE;
+
+    /**
+     * Liste des fichiers triée sur disque au-delà du budget mémoire, ou {@code null} sans budget.
+     */
+    private TriExterne<Fichier> catalogue;
+
+    /**
+     * Annulation des parcours, ou {@code null}.
+     */
+    private Annulation annulation;
+
+    /**
+     * Surveillance de l'analyse des fichiers (délai par fichier, quarantaine), ou {@code null}.
+     */
+    private Surveillant surveillant;
+
     /**
      * Constructeur de la classe Repertoire.
      * Initialise le chemin et crée une liste vide pour stocker les fichiers.
@@ -43,26 +110,230 @@ public class Repertoire {
     }
 
     /**
-     * Liste les fichiers contenus dans le répertoire et les ajoute à la liste {@code fichiers}.
+     * Liste les fichiers contenus dans le répertoire et les ajoute à la liste {@code fichiers},
+     * ou, avec un budget mémoire, au catalogue trié sur disque.
      *
      * @throws IOException si le répertoire n'existe pas ou n'est pas valide.
      */
     public void listerFichiers() throws IOException {
-        File repertoire = new File(chemin);
+        if (memoireMax == TriExterne.SANS_LIMITE) {
+            parcourir(fichiers::add);
+            return;
+        }
+        if (catalogue != null) {
+            catalogue.close();
+        }
+        catalogue = new TriExterne<>(Comparator.comparing(Fichier::getChemin), TriExterne.FICHIERS, memoireMax);
+        try {
+            parcourir(catalogue::accepter);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        if (!repertoire.exists() || !repertoire.isDirectory()) {
-            throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide.");
+    /**
+     * Transmet au visiteur les fichiers listés par {@link #listerFichiers()} : dans l'ordre
+     * du parcours, ou par ordre de chemin avec un budget mémoire.
+     *
+     * @param visiteur le destinataire de chaque fichier.
+     * @throws IOException si le catalogue sur disque ne peut pas être relu.
+     */
+    public void parcourirFichiers(Consumer<Fichier> visiteur) throws IOException {
+        Consumer<Fichier> destinataire = annulation == null ? visiteur : fichier -> {
+            annulation.verifier();
+            visiteur.accept(fichier);
+        };
+        if (catalogue != null) {
+            catalogue.parcourir(destinataire);
+        } else {
+            fichiers.forEach(destinataire);
+        }
+    }
+
+    /**
+     * Comme {@link #parcourirFichiers(Consumer)}, pour les méthodes sans exception vérifiée.
+     */
+    private void pourChaqueFichier(Consumer<Fichier> visiteur) {
+        try {
+            parcourirFichiers(visiteur);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        File[] fichiersListe = repertoire.listFiles();
+    /**
+     * Retourne le nombre de fichiers listés.
+     *
+     * @return le nombre de fichiers.
+     */
+    public long getNombreFichiers() {
+        return catalogue != null ? catalogue.getNombre() : fichiers.size();
+    }
 
-        if (fichiersListe != null) {
-            for (File fichier : fichiersListe) {
-                // Créez des objets Fichier avec leur chemin absolu
-                Fichier fichierObjet = new Fichier(fichier.getAbsolutePath());
-                fichiers.add(fichierObjet); // Ajoutez à la liste
-            }
+    /**
+     * Parcourt les fichiers du répertoire un par un sans les conserver en mémoire.
+     * Chaque fichier est transmis au visiteur dès qu'il est lu. Les attributs de chaque
+     * entrée sont lus une seule fois par le parcours et réutilisés par {@link Fichier}.
+     * Un fichier accessible par plusieurs chemins (liens physiques ou symboliques,
+     * montages liés) n'est transmis qu'une fois (voir {@link ParcoursArborescence}).
+     *
+     * @param visiteur le destinataire de chaque fichier.
+     * @throws IOException si le répertoire n'existe pas, n'est pas valide ou ne peut pas être lu.
+     */
+    public void parcourir(Consumer<Fichier> visiteur) throws IOException {
+        parcourir(chemin, visiteur);
+    }
+
+    /**
+     * Parcourt un répertoire avec les options de celui-ci (récursivité, liens, archives, journal...).
+     */
+    private void parcourir(String chemin, Consumer<Fichier> visiteur) throws IOException {
+        Path repertoire = Paths.get(chemin).toAbsolutePath();
+
+        if (!Files.isDirectory(repertoire)) {
+            throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide.");
         }
+
+        dernierParcours = new ParcoursArborescence(recursif, suivreLiens);
+        dernierParcours.setJournal(journal);
+        dernierParcours.setCession(cession);
+        dernierParcours.setArchives(archives);
+        dernierParcours.setPremiersChemins(premiersChemins);
+        dernierParcours.setAnnulation(annulation);
+        dernierParcours.parcourir(repertoire, visiteur);
+    }
+
+    /**
+     * Active ou désactive le parcours des sous-répertoires.
+     *
+     * @param recursif {@code true} pour parcourir aussi les sous-répertoires.
+     */
+    public void setRecursif(boolean recursif) {
+        this.recursif = recursif;
+    }
+
+    /**
+     * Choisit si les liens symboliques sont suivis (par défaut) ou ignorés.
+     *
+     * @param suivreLiens {@code true} pour suivre les liens symboliques.
+     */
+    public void setSuivreLiens(boolean suivreLiens) {
+        this.suivreLiens = suivreLiens;
+    }
+
+    /**
+     * Fixe la mémoire maximale de la liste des fichiers et des ensembles comparés ; au-delà,
+     * ils sont triés sur disque. À appeler avant {@link #listerFichiers()}.
+     *
+     * @param memoireMax le budget en octets, ou {@link TriExterne#SANS_LIMITE} (par défaut).
+     */
+    public void setMemoireMax(long memoireMax) {
+        this.memoireMax = memoireMax;
+    }
+
+    /**
+     * Retourne la mémoire maximale de la liste des fichiers et des ensembles comparés.
+     *
+     * @return le budget en octets, ou {@link TriExterne#SANS_LIMITE}.
+     */
+    public long getMemoireMax() {
+        return memoireMax;
+    }
+
+    /**
+     * Associe un journal aux parcours suivants, pour reprendre une analyse interrompue
+     * (voir {@link Journal}).
+     *
+     * @param journal le journal, ou {@code null} pour un parcours complet.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Active le parcours des archives ZIP et JAR comme des répertoires, lors d'un parcours récursif
+     * (voir {@link Archives}).
+     *
+     * @param archives {@code true} pour parcourir le contenu des archives.
+     */
+    public void setArchives(boolean archives) {
+        this.archives = archives;
+    }
+
+    /**
+     * Conserve, pendant le parcours, le premier chemin des fichiers à plusieurs liens physiques
+     * (voir {@link ParcoursArborescence#setPremiersChemins(boolean)}).
+     *
+     * @param premiersChemins {@code true} pour conserver les premiers chemins.
+     */
+    public void setPremiersChemins(boolean premiersChemins) {
+        this.premiersChemins = premiersChemins;
+    }
+
+    /**
+     * Choisit les sous-répertoires cédés à un autre processus au lieu d'être parcourus
+     * (voir {@link ParcoursArborescence#setCession(Predicate)}).
+     *
+     * @param cession le prédicat, ou {@code null} pour tout parcourir.
+     */
+    public void setCession(Predicate<Path> cession) {
+        this.cession = cession;
+    }
+
+    /**
+     * Associe une annulation aux parcours : {@link #parcourir(Consumer)}, {@link #listerFichiers()}
+     * et {@link #parcourirFichiers(Consumer)} s'arrêtent alors par une
+     * {@link java.util.concurrent.CancellationException} entre deux fichiers.
+     *
+     * @param annulation l'annulation, ou {@code null}.
+     */
+    public void setAnnulation(Annulation annulation) {
+        this.annulation = annulation;
+    }
+
+    /**
+     * Retourne l'annulation associée aux parcours, ou {@code null}.
+     *
+     * @return l'annulation.
+     */
+    public Annulation getAnnulation() {
+        return annulation;
+    }
+
+    /**
+     * Associe un surveillant aux analyses des fichiers du répertoire (métadonnées, couleurs).
+     *
+     * @param surveillant le surveillant, ou {@code null}.
+     */
+    public void setSurveillant(Surveillant surveillant) {
+        this.surveillant = surveillant;
+    }
+
+    /**
+     * Retourne le surveillant des analyses, ou {@code null}.
+     *
+     * @return le surveillant.
+     */
+    public Surveillant getSurveillant() {
+        return surveillant;
+    }
+
+    /**
+     * Retourne le journal associé aux parcours, ou {@code null}.
+     *
+     * @return le journal.
+     */
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Retourne le dernier parcours effectué, ou {@code null} si le répertoire n'a pas encore été parcouru.
+     *
+     * @return le dernier parcours.
+     */
+    public ParcoursArborescence getDernierParcours() {
+        return dernierParcours;
     }
 
     /**
@@ -70,14 +341,32 @@ public class Repertoire {
      * Affiche notamment :
      * - Le nombre total de fichiers.
      * - Le nombre total de fichiers image.
+     * - Les quantiles des tailles par type MIME (voir {@link Statistiques}).
      */
     public void afficherStatistiques() {
-        System.out.println("Statistiques des fichiers du répertoire : ");
-        System.out.println("Total de fichiers : " + fichiers.size());
-        System.out.println("Total de fichiers image : " + compterFichiersImages());
-        System.out.println("Nombre d'images PNG : " + compterFichiersPng());
-        System.out.println("Nombre d'images JPEG : " + compterFichiersJPEG());
-        System.out.println("Nombre d'images WEBP : " + compterFichiersWebp());
+        Statistiques statistiques = new Statistiques();
+        pourChaqueFichier(statistiques::ajouter);
+        statistiques.afficher(System.out);
+    }
+
+    /**
+     * Estime et affiche le nombre de fichiers et le volume de l'arborescence par type MIME,
+     * avec un intervalle de confiance, sans la parcourir entièrement (voir {@link EstimationArborescence}).
+     * L'estimation porte toujours sur toute l'arborescence.
+     *
+     * @param erreurCible l'erreur relative visée (par exemple 0.05 pour 5 %).
+     * @throws IOException si le répertoire n'existe pas, n'est pas valide ou ne peut pas être lu.
+     */
+    public void estimerStatistiques(double erreurCible) throws IOException {
+        Path repertoire = Paths.get(chemin).toAbsolutePath();
+
+        if (!Files.isDirectory(repertoire)) {
+            throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide.");
+        }
+
+        EstimationArborescence estimation = new EstimationArborescence(erreurCible, System.nanoTime());
+        estimation.estimer(repertoire);
+        estimation.afficher(System.out);
     }
 
     /**
@@ -85,14 +374,8 @@ public class Repertoire {
      *
      * @return le nombre de fichiers image.
      */
-    private int compterFichiersImages() {
-        int count = 0;
-        for (Fichier fichier : fichiers) {
-            if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image")) {
-                count++;
-            }
-        }
-        return count;
+    public int compterFichiersImages() {
+        return compter("image");
     }
 
     /**
@@ -101,13 +384,7 @@ public class Repertoire {
      * @return le nombre d'images PNG.
      */
     public int compterFichiersPng() {
-        int png = 0;
-        for (Fichier fichier : fichiers) {
-            if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image/png")) {
-                png++;
-            }
-        }
-        return png;
+        return compter("image/png");
     }
 
     /**
@@ -116,13 +393,7 @@ public class Repertoire {
      * @return le nombre d'images JPEG.
      */
     public int compterFichiersJPEG() {
-        int jpeg = 0;
-        for (Fichier fichier : fichiers) {
-            if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image/jpeg")) {
-                jpeg++;
-            }
-        }
-        return jpeg;
+        return compter("image/jpeg");
     }
 
     /**
@@ -131,13 +402,20 @@ public class Repertoire {
      * @return le nombre d'images WEBP.
      */
     public int compterFichiersWebp() {
-        int webp = 0;
-        for (Fichier fichier : fichiers) {
-            if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image/webp")) {
-                webp++;
+        return compter("image/webp");
+    }
+
+    /**
+     * Compte les fichiers dont le type MIME commence par un préfixe.
+     */
+    private int compter(String prefixe) {
+        int[] nombre = new int[1];
+        pourChaqueFichier(fichier -> {
+            if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith(prefixe)) {
+                nombre[0]++;
             }
-        }
-        return webp;
+        });
+        return nombre[0];
     }
 
     /**
@@ -145,19 +423,24 @@ public class Repertoire {
      */
     public void afficherFichiersImages() {
         System.out.println("Fichiers images trouvés : ");
-        for (Fichier fichier : fichiers) {
+        pourChaqueFichier(fichier -> {
             if (fichier.getTypeMime() != null && fichier.getTypeMime().startsWith("image")) {
                 System.out.println(fichier);
             }
-        }
+        });
     }
 
     /**
-     * Retourne la liste des fichiers présents dans le répertoire.
+     * Retourne la liste des fichiers présents dans le répertoire. Avec un budget mémoire,
+     * la liste n'est pas en mémoire : utiliser {@link #parcourirFichiers(Consumer)}.
      *
      * @return une liste de fichiers.
+     * @throws IllegalStateException si un budget mémoire est fixé.
      */
     public List<Fichier> getFichiers() {
+        if (catalogue != null) {
+            throw new IllegalStateException("Liste des fichiers triée sur disque : utiliser parcourirFichiers().");
+        }
         return fichiers;
     }
 
@@ -198,25 +481,47 @@ public class Repertoire {
         String cheminSnapshot = dossierSnapshots + File.separator + "snapshot_" + dateStr + ".txt";
 
         File fichierSnapshot = new File(cheminSnapshot);
+        long debut = Mesures.debut();
+        // Les quatre compteurs en un seul passage : la liste peut être relue depuis le disque.
+        String[] types = {"image", "image/png", "image/jpeg", "image/webp"};
+        long[] comptes = new long[types.length];
+        parcourirFichiers(fichier -> {
+            String type = fichier.getTypeMime();
+            for (int i = 0; type != null && i < types.length; i++) {
+                if (type.startsWith(types[i])) {
+                    comptes[i]++;
+                }
+            }
+        });
         try (FileWriter writer = new FileWriter(fichierSnapshot)) {
             writer.write("Snapshot du répertoire : " + chemin + "\n");
-            writer.write("Nombre total de fichiers : " + fichiers.size() + "\n");
-            writer.write("Nombre de fichiers image : " + compterFichiersImages() + "\n");
-            writer.write("Nombre d'images PNG : " + compterFichiersPng() + "\n");
-            writer.write("Nombre d'images JPEG : " + compterFichiersJPEG() + "\n");
-            writer.write("Nombre d'images WEBP : " + compterFichiersWebp() + "\n\n");
+            writer.write("Nombre total de fichiers : " + getNombreFichiers() + "\n");
+            writer.write("Nombre de fichiers image : " + comptes[0] + "\n");
+            writer.write("Nombre d'images PNG : " + comptes[1] + "\n");
+            writer.write("Nombre d'images JPEG : " + comptes[2] + "\n");
+            writer.write("Nombre d'images WEBP : " + comptes[3] + "\n\n");
             writer.write("Détails des fichiers :\n");
 
-            for (Fichier fichier : fichiers) {
-                writer.write(fichier.toString() + "\n");
-            }
+            parcourirFichiers(fichier -> {
+                try {
+                    writer.write(fichier.toString() + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        Mesures.fin(Mesures.Phase.SORTIE, debut);
 
         System.out.println("Snapshot enregistré dans : " + cheminSnapshot);
     }
 
     /**
      * Compare l'état actuel du répertoire avec un snapshot existant.
+     * Le répertoire est parcouru comme par {@link #snapshotsave} (récursivité, liens, archives).
+     * Les chemins du répertoire et du snapshot sont triés (sur disque au-delà du budget
+     * mémoire), puis comparés par fusion ; les différences sont affichées par ordre de chemin.
      *
      * @param cheminRepertoire le chemin du répertoire à comparer.
      * @param captureFile le fichier snapshot à comparer.
@@ -228,53 +533,82 @@ public class Repertoire {
             throw new IOException("Le répertoire spécifié n'existe pas ou n'est pas valide.");
         }
 
-        Set<String> currentFilePaths = new HashSet<>();
-        File[] currentFiles = directory.listFiles();
-        if (currentFiles != null) {
-            for (File file : currentFiles) {
-                if (file.isFile()) {
-                    currentFilePaths.add(file.getAbsolutePath());
-                }
+        try (TriExterne<String> currentFilePaths = new TriExterne<>(Comparator.naturalOrder(), TriExterne.CHAINES, memoireMax);
+             TriExterne<String> snapshotFilePaths = new TriExterne<>(Comparator.naturalOrder(), TriExterne.CHAINES, memoireMax)) {
+            try {
+                parcourir(cheminRepertoire, fichier -> currentFilePaths.accepter(fichier.getChemin()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
-        }
-
-        Set<String> snapshotFilePaths = new HashSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(captureFile))) {
-            String line;
-            boolean isInDetailsSection = false;
 
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.startsWith("Détails des fichiers")) {
-                    isInDetailsSection = true;
-                    continue;
-                }
-
-                if (isInDetailsSection && line.startsWith("Chemin :")) {
-                    String chemin = line.substring("Chemin :".length()).trim();
-                    snapshotFilePaths.add(chemin);
+            try (BufferedReader reader = new BufferedReader(new FileReader(captureFile))) {
+                String line;
+                boolean isInDetailsSection = false;
+
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith("Détails des fichiers")) {
+                        isInDetailsSection = true;
+                        continue;
+                    }
+
+                    if (isInDetailsSection && line.startsWith("Chemin :")) {
+                        String chemin = line.substring("Chemin :".length()).trim();
+                        snapshotFilePaths.ajouter(chemin);
+                    }
                 }
             }
-        }
 
-        boolean changesDetected = false;
+            boolean changesDetected = afficherAbsents(snapshotFilePaths, currentFilePaths, "Fichier supprimé : ");
+            changesDetected |= afficherAbsents(currentFilePaths, snapshotFilePaths, "Fichier ajouté : ");
 
-        for (String snapshotPath : snapshotFilePaths) {
-            if (!currentFilePaths.contains(snapshotPath)) {
-                System.out.println("Fichier supprimé : " + snapshotPath);
-                changesDetected = true;
+            if (!changesDetected) {
+                System.out.println("Aucun changement détecté dans le répertoire.");
             }
         }
+    }
 
-        for (String currentPath : currentFilePaths) {
-            if (!snapshotFilePaths.contains(currentPath)) {
-                System.out.println("Fichier ajouté : " + currentPath);
-                changesDetected = true;
+    /**
+     * Affiche les chemins de {@code source} absents de {@code reference}, en parcourant
+     * les deux listes triées en parallèle. Un chemin répété n'est affiché qu'une fois.
+     *
+     * @return {@code true} si au moins un chemin est affiché.
+     */
+    private static boolean afficherAbsents(TriExterne<String> source, TriExterne<String> reference, String libelle)
+            throws IOException {
+        boolean affiche = false;
+        try (TriExterne.Lecture<String> a = source.lire(); TriExterne.Lecture<String> b = reference.lire()) {
+            String precedent = null;
+            String autre = b.hasNext() ? b.next() : null;
+            while (a.hasNext()) {
+                String chemin = a.next();
+                if (chemin.equals(precedent)) {
+                    continue;
+                }
+                precedent = chemin;
+                while (autre != null && autre.compareTo(chemin) < 0) {
+                    autre = b.hasNext() ? b.next() : null;
+                }
+                if (!chemin.equals(autre)) {
+                    System.out.println(libelle + chemin);
+                    affiche = true;
+                }
             }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        return affiche;
+    }
 
-        if (!changesDetected) {
-            System.out.println("Aucun changement détecté dans le répertoire.");
+    /**
+     * Supprime les fichiers temporaires de la liste des fichiers triée sur disque.
+     *
+     * @throws IOException si un fichier temporaire ne peut pas être supprimé.
+     */
+    @Override
+    public void close() throws IOException {
+        if (catalogue != null) {
+            catalogue.close();
         }
     }
 }
@@ -1,5 +1,13 @@
 package application;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * La classe Statistiques permet de stocker et d'afficher des statistiques 
  * concernant des fichiers, notamment des fichiers images et leurs extensions spécifiques.
@@ -8,6 +16,11 @@ package application;
  * - Le nombre total de fichiers images.
  * - Le nombre d'images par type d'extension (PNG, JPEG, WEBP).
  * 
+ * Elle conserve aussi, par type MIME, la distribution des tailles de fichier et du nombre
+ * de pixels des images dans des {@link Histogramme} : la mémoire ne dépend pas du nombre
+ * de fichiers, et les statistiques de plusieurs répertoires se fusionnent
+ * (voir {@link #fusionner(Statistiques)} et {@link StatistiquesArborescence}).
+ * 
  * Cette classe est utilisée pour analyser le contenu des répertoires.
  * 
  * @author Fariza
@@ -20,6 +33,10 @@ public class Statistiques {
     public int nbPNG;     
     public int nbJPEG;      
     public int nbWEBP;      
+
+    private final Map<String, Histogramme> tailles = new TreeMap<>();
+    private final Map<String, Histogramme> pixels = new TreeMap<>();
+
     /**
      * Constructeur par défaut.
      * Initialise tous les compteurs à 0.
@@ -32,6 +49,161 @@ public class Statistiques {
         this.nbWEBP = 0;
     }
 
+    /**
+     * Ajoute un fichier : compteurs et distribution des tailles de son type MIME.
+     *
+     * @param fichier le fichier à compter.
+     */
+    public void ajouter(Fichier fichier) {
+        String typeMime = fichier.getTypeMime();
+        nbFichiers++;
+        if (typeMime != null && typeMime.startsWith("image")) {
+            nbImages++;
+            if (typeMime.startsWith("image/png")) {
+                nbPNG++;
+            } else if (typeMime.startsWith("image/jpeg")) {
+                nbJPEG++;
+            } else if (typeMime.startsWith("image/webp")) {
+                nbWEBP++;
+            }
+        }
+        histogramme(tailles, typeMime).enregistrer(fichier.getTaille());
+    }
+
+    /**
+     * Ajoute le nombre de pixels d'une image à la distribution de son type MIME.
+     *
+     * @param typeMime le type MIME de l'image.
+     * @param nombrePixels la largeur multipliée par la hauteur ; ignoré s'il est nul.
+     */
+    public void ajouterPixels(String typeMime, long nombrePixels) {
+        if (nombrePixels > 0) {
+            histogramme(pixels, typeMime).enregistrer(nombrePixels);
+        }
+    }
+
+    /**
+     * Ajoute à ces statistiques celles d'un autre ensemble de fichiers, par exemple
+     * d'un sous-répertoire.
+     *
+     * @param autre les statistiques à fusionner.
+     */
+    public void fusionner(Statistiques autre) {
+        nbFichiers += autre.nbFichiers;
+        nbImages += autre.nbImages;
+        nbPNG += autre.nbPNG;
+        nbJPEG += autre.nbJPEG;
+        nbWEBP += autre.nbWEBP;
+        for (Map.Entry<String, Histogramme> entree : autre.tailles.entrySet()) {
+            histogramme(tailles, entree.getKey()).fusionner(entree.getValue());
+        }
+        for (Map.Entry<String, Histogramme> entree : autre.pixels.entrySet()) {
+            histogramme(pixels, entree.getKey()).fusionner(entree.getValue());
+        }
+    }
+
+    /**
+     * Écrit les compteurs et les distributions, pour les transmettre à un autre processus
+     * (voir {@link Coordinateur}).
+     *
+     * @param sortie le flux de sortie.
+     * @throws IOException si l'écriture échoue.
+     */
+    public void ecrire(DataOutput sortie) throws IOException {
+        sortie.writeInt(nbFichiers);
+        sortie.writeInt(nbImages);
+        sortie.writeInt(nbPNG);
+        sortie.writeInt(nbJPEG);
+        sortie.writeInt(nbWEBP);
+        ecrire(sortie, tailles);
+        ecrire(sortie, pixels);
+    }
+
+    private static void ecrire(DataOutput sortie, Map<String, Histogramme> distributions) throws IOException {
+        sortie.writeInt(distributions.size());
+        for (Map.Entry<String, Histogramme> entree : distributions.entrySet()) {
+            sortie.writeUTF(entree.getKey());
+            entree.getValue().ecrire(sortie);
+        }
+    }
+
+    /**
+     * Lit des statistiques écrites par {@link #ecrire(DataOutput)}.
+     *
+     * @param entree le flux d'entrée.
+     * @return les statistiques lues.
+     * @throws IOException si la lecture échoue.
+     */
+    public static Statistiques lire(DataInput entree) throws IOException {
+        Statistiques statistiques = new Statistiques();
+        statistiques.nbFichiers = entree.readInt();
+        statistiques.nbImages = entree.readInt();
+        statistiques.nbPNG = entree.readInt();
+        statistiques.nbJPEG = entree.readInt();
+        statistiques.nbWEBP = entree.readInt();
+        lire(entree, statistiques.tailles);
+        lire(entree, statistiques.pixels);
+        return statistiques;
+    }
+
+    private static void lire(DataInput entree, Map<String, Histogramme> distributions) throws IOException {
+        int nombre = entree.readInt();
+        for (int i = 0; i < nombre; i++) {
+            distributions.put(entree.readUTF(), Histogramme.lire(entree));
+        }
+    }
+
+    /**
+     * @return la distribution des tailles de fichier (octets) par type MIME.
+     */
+    public Map<String, Histogramme> getTailles() {
+        return tailles;
+    }
+
+    /**
+     * @return la distribution du nombre de pixels des images par type MIME.
+     */
+    public Map<String, Histogramme> getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Affiche les compteurs, puis les quantiles des tailles (en Ko) et des
+     * mégapixels par type MIME.
+     *
+     * @param sortie le flux d'affichage.
+     */
+    public void afficher(PrintStream sortie) {
+        sortie.println("Statistiques des fichiers du répertoire : ");
+        sortie.println("Total de fichiers : " + nbFichiers);
+        sortie.println("Total de fichiers image : " + nbImages);
+        sortie.println("Nombre d'images PNG : " + nbPNG);
+        sortie.println("Nombre d'images JPEG : " + nbJPEG);
+        sortie.println("Nombre d'images WEBP : " + nbWEBP);
+        afficherDistributions(sortie, "Tailles par type (Ko) :", tailles, 1024.0);
+        afficherDistributions(sortie, "Mégapixels par type :", pixels, 1e6);
+    }
+
+    private static void afficherDistributions(PrintStream sortie, String titre, Map<String, Histogramme> distributions,
+                                              double unite) {
+        if (distributions.isEmpty()) {
+            return;
+        }
+        sortie.println(titre);
+        sortie.println(String.format(Locale.ROOT, "%-28s %10s %10s %10s %10s %10s %10s",
+                "type", "nombre", "moyenne", "p50", "p95", "p99", "max"));
+        for (Map.Entry<String, Histogramme> entree : distributions.entrySet()) {
+            Histogramme h = entree.getValue();
+            sortie.println(String.format(Locale.ROOT, "%-28s %10d %10.2f %10.2f %10.2f %10.2f %10.2f",
+                    entree.getKey(), h.getNombre(), h.getMoyenne() / unite, h.quantile(0.50) / unite,
+                    h.quantile(0.95) / unite, h.quantile(0.99) / unite, h.getMaximum() / unite));
+        }
+    }
+
+    private static Histogramme histogramme(Map<String, Histogramme> distributions, String typeMime) {
+        return distributions.computeIfAbsent(typeMime != null ? typeMime : "inconnu", k -> new Histogramme());
+    }
+
     /**
      * Retourne une représentation textuelle des statistiques.
      * 
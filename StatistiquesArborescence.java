@@ -0,0 +1,92 @@
+package application;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * La classe StatistiquesArborescence calcule les {@link Statistiques} d'une arborescence
+ * au fil de son parcours.
+ *
+ * <p>Chaque répertoire a ses propres statistiques, fusionnées dans celles de son parent
+ * dès que le parcours en sort. Seuls les répertoires de la branche en cours sont en mémoire :
+ * la mémoire dépend de la profondeur de l'arborescence et du nombre de types MIME,
+ * non du nombre de fichiers. Les fichiers peuvent arriver dans n'importe quel ordre ;
+ * le parcours en profondeur limite simplement le nombre de fusions.</p>
+ *
+ * <p>Les méthodes sont synchronisées : le parcours et l'extraction des métadonnées
+ * peuvent s'exécuter sur des threads différents.</p>
+ *
+ * @author Binome
+ */
+public final class StatistiquesArborescence implements Consumer<Fichier> {
+
+    private final Statistiques total = new Statistiques();
+    private final Deque<String> repertoires = new ArrayDeque<>();
+    private final Deque<Statistiques> enCours = new ArrayDeque<>();
+
+    /**
+     * Ajoute un fichier aux statistiques de son répertoire.
+     *
+     * @param fichier le fichier parcouru.
+     */
+    @Override
+    public synchronized void accept(Fichier fichier) {
+        statistiques(fichier).ajouter(fichier);
+    }
+
+    /**
+     * Ajoute le nombre de pixels d'une image aux statistiques de son répertoire.
+     *
+     * @param fichier l'image.
+     * @param nombrePixels la largeur multipliée par la hauteur, ou 0 si elle est inconnue.
+     */
+    public synchronized void ajouterPixels(Fichier fichier, long nombrePixels) {
+        statistiques(fichier).ajouterPixels(fichier.getTypeMime(), nombrePixels);
+    }
+
+    /**
+     * Fusionne les répertoires encore ouverts et retourne les statistiques de toute l'arborescence.
+     *
+     * @return les statistiques totales.
+     */
+    public synchronized Statistiques getTotal() {
+        while (!repertoires.isEmpty()) {
+            fermer();
+        }
+        return total;
+    }
+
+    /**
+     * Retourne les statistiques du répertoire d'un fichier, après avoir fusionné les
+     * répertoires ouverts qui n'en sont pas des ancêtres.
+     */
+    private Statistiques statistiques(Fichier fichier) {
+        Path parent = Path.of(fichier.getChemin()).getParent();
+        String repertoire = parent != null ? parent.toString() : "";
+        while (!repertoires.isEmpty() && !contient(repertoires.peek(), repertoire)) {
+            fermer();
+        }
+        if (repertoires.isEmpty() || !repertoires.peek().equals(repertoire)) {
+            repertoires.push(repertoire);
+            enCours.push(new Statistiques());
+        }
+        return enCours.peek();
+    }
+
+    private void fermer() {
+        repertoires.pop();
+        Statistiques statistiques = enCours.pop();
+        (enCours.isEmpty() ? total : enCours.peek()).fusionner(statistiques);
+    }
+
+    private static boolean contient(String ancetre, String repertoire) {
+        if (repertoire.equals(ancetre)) {
+            return true;
+        }
+        String prefixe = ancetre.endsWith(File.separator) ? ancetre : ancetre + File.separator;
+        return repertoire.startsWith(prefixe);
+    }
+}
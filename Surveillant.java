@@ -0,0 +1,165 @@
+package application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe Surveillant borne la durée de l'analyse de chaque fichier : un fichier tronqué
+ * ou malveillant peut faire boucler ou bloquer {@code ImageMetadataReader} ou {@code ImageIO}.
+ *
+ * <p>Chaque analyse s'exécute sur un thread du surveillant, pendant que l'appelant attend au
+ * plus le délai accordé. Au-delà, l'analyse est interrompue si elle le permet, sinon abandonnée
+ * à son thread (démon, qui ne retient pas la fin du programme) ; l'appelant reprend aussitôt
+ * avec une erreur, et le fichier est mis en {@link Quarantaine} pour les analyses suivantes.
+ * Les fichiers déjà en quarantaine ne sont pas analysés. L'attente s'arrête aussi sur
+ * {@link Annulation}.</p>
+ *
+ * <p>Sans délai, l'analyse s'exécute directement sur le thread appelant : seule la
+ * quarantaine est consultée.</p>
+ *
+ * @author Binome
+ */
+public final class Surveillant implements Closeable {
+
+    /**
+     * Erreur d'un fichier écarté de l'analyse : délai dépassé, ou fichier déjà en quarantaine.
+     */
+    public static final class FichierEnQuarantaine extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FichierEnQuarantaine(String message) {
+            super(message);
+        }
+    }
+
+    private final long delai;
+    private final Quarantaine quarantaine;
+    private final Annulation annulation;
+    private final ExecutorService threads;
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong ignores = new AtomicLong();
+
+    /**
+     * Crée un surveillant.
+     *
+     * @param delai le délai accordé à l'analyse de chaque fichier, en millisecondes ; 0 pour aucun.
+     * @param quarantaine la liste des fichiers à ignorer, complétée par les délais dépassés.
+     * @param annulation l'annulation de l'opération en cours.
+     */
+    public Surveillant(long delai, Quarantaine quarantaine, Annulation annulation) {
+        this.delai = Math.max(0, delai);
+        this.quarantaine = quarantaine;
+        this.annulation = annulation;
+        this.threads = this.delai > 0 ? Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "surveillant-analyse");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Analyse un fichier dans le délai accordé.
+     *
+     * @param fichier le fichier analysé.
+     * @param analyse l'analyse du fichier.
+     * @param <T> le type du résultat.
+     * @return le résultat de l'analyse.
+     * @throws IOException si l'analyse échoue.
+     * @throws FichierEnQuarantaine si l'analyse dépasse le délai ou si le fichier est en quarantaine.
+     * @throws InterruptedException si le thread appelant est interrompu.
+     * @throws CancellationException si l'opération est annulée.
+     */
+    public <T> T executer(Fichier fichier, Callable<T> analyse) throws IOException, InterruptedException {
+        annulation.verifier();
+        String raison = quarantaine.getRaison(fichier);
+        if (raison != null) {
+            ignores.incrementAndGet();
+            throw new FichierEnQuarantaine("Fichier en quarantaine, ignoré (" + raison + ").");
+        }
+        if (threads == null) {
+            try {
+                return analyse.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        Future<T> tache = threads.submit(analyse);
+        try {
+            return annulation.attendre(tache, TimeUnit.MILLISECONDS.toNanos(delai));
+        } catch (TimeoutException e) {
+            tache.cancel(true);
+            expirations.incrementAndGet();
+            String message = "délai de " + delai + " ms dépassé";
+            quarantaine.ajouter(fichier, message);
+            throw new FichierEnQuarantaine("Analyse interrompue : " + message + ", fichier mis en quarantaine.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException | CancellationException e) {
+            tache.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return l'annulation de l'opération surveillée.
+     */
+    public Annulation getAnnulation() {
+        return annulation;
+    }
+
+    /**
+     * @return le nombre de fichiers mis en quarantaine pour délai dépassé.
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * @return le nombre de fichiers ignorés car déjà en quarantaine.
+     */
+    public long getIgnores() {
+        return ignores.get();
+    }
+
+    /**
+     * Retourne le bilan de la surveillance, par exemple
+     * {@code Surveillance : 2 fichiers mis en quarantaine (délai de 500 ms), 3 ignorés}.
+     *
+     * @return le bilan.
+     */
+    public String getBilan() {
+        return "Surveillance : " + expirations.get() + " fichiers mis en quarantaine"
+                + (delai > 0 ? " (délai de " + delai + " ms)" : "") + ", " + ignores.get() + " ignorés";
+    }
+
+    /**
+     * Interrompt les analyses encore en cours, notamment celles abandonnées après un délai dépassé.
+     */
+    @Override
+    public void close() {
+        if (threads != null) {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * La classe Travailleur est le processus lancé par {@link Coordinateur} pour analyser
+ * une partie d'une arborescence.
+ *
+ * <p>Le travailleur reçoit sur son entrée standard des lignes :</p>
+ * <ul>
+ *     <li>{@code UNITE <mode> <chemin>} : répertoire à parcourir récursivement ; avec le mode
+ *     {@code cede}, ses sous-répertoires directs sont tous rendus au coordinateur ;</li>
+ *     <li>{@code FAIM} : un autre travailleur est inactif ; un sous-répertoire est rendu au
+ *     coordinateur au lieu d'être parcouru. Pour rendre un gros sous-arbre plutôt qu'une feuille,
+ *     seuls les sous-répertoires directs de l'unité sont d'abord acceptés, puis la profondeur
+ *     permise augmente d'un niveau toutes les {@value #PALIER_MS} ms d'attente ;</li>
+ *     <li>{@code FIN} : plus aucun travail, les résultats sont écrits.</li>
+ * </ul>
+ *
+ * <p>Il répond sur sa sortie standard par {@code PRET}, {@code CEDE <chemin>} et
+ * {@code TERMINE <fichiers>}. Chaque unité est analysée comme un {@link Repertoire} :
+ * statistiques, liste des fichiers pour le snapshot et, si demandé, catalogue des métadonnées
+ * extraites par {@link PipelineMetadonnees}. Les résultats sont écrits dans le dossier de travail,
+ * suffixés du numéro du travailleur.</p>
+ *
+ * <p>Usage : {@code java -cp cli.jar application.Travailleur <dossier> <numero>
+ * [--sans-liens] [--info] [--export <format>] [--snapshot]}</p>
+ *
+ * @author Binome
+ */
+public final class Travailleur {
+
+    private static final String FIN = "FIN";
+    private static final long PALIER_MS = 20;
+
+    private final Path dossier;
+    private final int numero;
+    private final boolean suivreLiens;
+    private final boolean avecMetadonnees;
+    private final Exportateur.Format format;
+    private final boolean snapshot;
+    private final PrintStream protocole = new PrintStream(new FileOutputStream(FileDescriptor.out), true,
+            StandardCharsets.UTF_8);
+    private final BlockingQueue<String> unites = new LinkedBlockingQueue<>();
+    private final AtomicInteger faim = new AtomicInteger();
+    private volatile long faimDepuis;
+    private final StatistiquesArborescence statistiques = new StatistiquesArborescence();
+
+    private Travailleur(String[] args) {
+        this.dossier = Paths.get(args[0]);
+        this.numero = Integer.parseInt(args[1]);
+        boolean sansLiens = false;
+        boolean info = false;
+        boolean details = false;
+        Exportateur.Format export = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sans-liens":
+                    sansLiens = true;
+                    break;
+                case "--info":
+                    info = true;
+                    break;
+                case "--snapshot":
+                    details = true;
+                    break;
+                case "--export":
+                    export = Exportateur.Format.depuis(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Option inconnue : " + args[i]);
+            }
+        }
+        this.suivreLiens = !sansLiens;
+        this.avecMetadonnees = info;
+        this.format = export;
+        this.snapshot = details;
+    }
+
+    /**
+     * Point d'entrée du processus travailleur.
+     *
+     * @param args le dossier de travail, le numéro du travailleur et les options de l'analyse.
+     */
+    public static void main(String[] args) {
+        try {
+            new Travailleur(args).executer();
+        } catch (Exception e) {
+            System.err.println("Travailleur : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void executer() throws IOException, InterruptedException {
+        Thread lecteur = new Thread(this::lireCommandes, "travailleur-commandes");
+        lecteur.setDaemon(true);
+        lecteur.start();
+
+        try (Writer details = snapshot ? Files.newBufferedWriter(fichier("details", "txt"), StandardCharsets.UTF_8)
+                : null;
+             Exportateur exportateur = format != null ? new Exportateur(format, avecMetadonnees,
+                     new BufferedOutputStream(Files.newOutputStream(fichier("catalogue", "export")))) : null) {
+            protocole.println("PRET");
+            String unite;
+            while (!(unite = unites.take()).equals(FIN)) {
+                int espace = unite.indexOf(' ');
+                boolean cede = unite.substring(0, espace).equals("cede");
+                Path chemin = Paths.get(Coordinateur.decoder(unite.substring(espace + 1)));
+                long fichiers = analyser(chemin, cede, details, exportateur);
+                protocole.println("TERMINE " + fichiers);
+            }
+        }
+        try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(fichier("statistiques", "bin"))))) {
+            statistiques.getTotal().ecrire(sortie);
+        }
+    }
+
+    /**
+     * Lit les commandes du coordinateur ; la fin de l'entrée équivaut à {@code FIN}.
+     */
+    private void lireCommandes() {
+        try (BufferedReader entree = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String ligne;
+            while ((ligne = entree.readLine()) != null) {
+                if (ligne.equals("FAIM")) {
+                    if (faim.getAndIncrement() == 0) {
+                        faimDepuis = System.nanoTime();
+                    }
+                } else if (ligne.startsWith("UNITE ")) {
+                    unites.add(ligne.substring("UNITE ".length()));
+                } else if (ligne.equals(FIN)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Travailleur " + numero + " : " + e.getMessage());
+        }
+        unites.add(FIN);
+    }
+
+    /**
+     * Analyse une unité : parcours, statistiques, snapshot et catalogue.
+     *
+     * @return le nombre de fichiers parcourus.
+     */
+    private long analyser(Path chemin, boolean cede, Writer details, Exportateur exportateur)
+            throws IOException, InterruptedException {
+        Repertoire repertoire = new Repertoire(chemin.toString());
+        repertoire.setRecursif(true);
+        repertoire.setSuivreLiens(suivreLiens);
+        repertoire.setCession(ceder(chemin, cede));
+
+        long[] fichiers = new long[1];
+        Consumer<Fichier> visiteur = statistiques.andThen(fichier -> {
+            fichiers[0]++;
+            if (details != null) {
+                ecrire(() -> details.write(fichier.toString() + "\n"));
+            }
+        });
+        try {
+            if (avecMetadonnees) {
+                PipelineMetadonnees.pour(chemin, false).executer(decouverte -> repertoire.parcourir(visiteur.andThen(decouverte)),
+                        resultat -> {
+                            if (resultat.getMetadonnees() != null) {
+                                statistiques.ajouterPixels(resultat.getFichier(), resultat.getMetadonnees().getPixels());
+                            }
+                            if (exportateur != null) {
+                                ecrire(() -> exportateur.exporter(resultat.getFichier(), resultat.getMetadonnees()));
+                            }
+                        });
+            } else {
+                repertoire.parcourir(exportateur == null ? visiteur
+                        : visiteur.andThen(fichier -> ecrire(() -> exportateur.exporter(fichier))));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return fichiers[0];
+    }
+
+    /**
+     * Sous-répertoires rendus au coordinateur : tous ceux de l'unité en mode {@code cede},
+     * puis un par demande {@code FAIM} reçue, d'une profondeur permise par l'attente.
+     */
+    private Predicate<Path> ceder(Path unite, boolean cede) {
+        return sousRepertoire -> {
+            int profondeur = unite.relativize(sousRepertoire).getNameCount();
+            boolean rendu = cede && profondeur == 1;
+            while (!rendu) {
+                int demandes = faim.get();
+                long attente = (System.nanoTime() - faimDepuis) / 1_000_000;
+                if (demandes == 0 || profondeur > 1 + attente / PALIER_MS) {
+                    return false;
+                }
+                rendu = faim.compareAndSet(demandes, demandes - 1);
+                if (rendu) {
+                    faimDepuis = System.nanoTime();
+                }
+            }
+            protocole.println("CEDE " + Coordinateur.encoder(sousRepertoire.toString()));
+            return true;
+        };
+    }
+
+    private Path fichier(String nom, String extension) {
+        return dossier.resolve(nom + "_" + numero + "." + extension);
+    }
+
+    /**
+     * Écriture depuis un visiteur, qui ne peut pas lever d'exception vérifiée.
+     */
+    private interface Ecriture {
+        void ecrire() throws IOException;
+    }
+
+    private static void ecrire(Ecriture ecriture) {
+        try {
+            ecriture.ecrire();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * La classe TriExterne trie un nombre quelconque d'éléments dans un budget mémoire donné.
+ *
+ * <p>Les éléments ajoutés sont gardés en mémoire tant que leur empreinte estimée reste sous
+ * le budget. Au-delà, ils sont triés et écrits dans un segment trié (fichier temporaire), puis
+ * la mémoire est libérée. À la lecture, les segments sont fusionnés en flux : au plus
+ * {@value #FUSION_MAX} segments sont ouverts à la fois, les segments en surnombre étant
+ * d'abord fusionnés entre eux. Sans segment, les éléments sont simplement triés en mémoire.</p>
+ *
+ * <p>Les éléments peuvent être relus plusieurs fois, jusqu'à la fermeture, qui supprime
+ * les fichiers temporaires. Cette classe n'est pas synchronisée.</p>
+ *
+ * @param <T> le type des éléments.
+ * @author Binome
+ */
+public final class TriExterne<T> implements Closeable {
+
+    /** Budget qui n'est jamais atteint : tri en mémoire. */
+    public static final long SANS_LIMITE = Long.MAX_VALUE;
+
+    private static final int FUSION_MAX = 64;
+    private static final int TAMPON_MAX = 64 * 1024;
+    private static final int TAMPON_MIN = 4 * 1024;
+
+    /**
+     * Écriture, lecture et empreinte mémoire des éléments.
+     *
+     * @param <T> le type des éléments.
+     */
+    public interface Format<T> {
+        /**
+         * Écrit un élément dans un segment.
+         *
+         * @param element l'élément.
+         * @param sortie le flux du segment.
+         * @throws IOException en cas d'erreur d'écriture.
+         */
+        void ecrire(T element, DataOutput sortie) throws IOException;
+
+        /**
+         * Relit un élément écrit par {@link #ecrire}.
+         *
+         * @param entree le flux du segment.
+         * @return l'élément.
+         * @throws IOException en cas d'erreur de lecture.
+         */
+        T lire(DataInput entree) throws IOException;
+
+        /**
+         * Estime la mémoire occupée par un élément, en octets.
+         *
+         * @param element l'élément.
+         * @return l'empreinte estimée.
+         */
+        long empreinte(T element);
+    }
+
+    /** Format des chaînes de caractères. */
+    public static final Format<String> CHAINES = new Format<>() {
+        @Override
+        public void ecrire(String element, DataOutput sortie) throws IOException {
+            sortie.writeUTF(element);
+        }
+
+        @Override
+        public String lire(DataInput entree) throws IOException {
+            return entree.readUTF();
+        }
+
+        @Override
+        public long empreinte(String element) {
+            return 64 + 2L * element.length();
+        }
+    };
+
+    /** Format des fichiers, triés par chemin (voir {@link Fichier#ecrire(DataOutput)}). */
+    public static final Format<Fichier> FICHIERS = new Format<>() {
+        @Override
+        public void ecrire(Fichier element, DataOutput sortie) throws IOException {
+            element.ecrire(sortie);
+        }
+
+        @Override
+        public Fichier lire(DataInput entree) throws IOException {
+            return Fichier.lire(entree);
+        }
+
+        @Override
+        public long empreinte(Fichier element) {
+            return 160 + 2L * (element.getChemin().length() + element.getNom().length());
+        }
+    };
+
+    /**
+     * Segment trié écrit sur disque.
+     */
+    private static final class Segment {
+        final Path fichier;
+        final long nombre;
+
+        Segment(Path fichier, long nombre) {
+            this.fichier = fichier;
+            this.nombre = nombre;
+        }
+    }
+
+    private final Comparator<? super T> ordre;
+    private final Format<T> format;
+    private final long budget;
+    private final int tampon;
+    private final List<T> memoire = new ArrayList<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private long occupation;
+    private long nombre;
+    private Path dossier;
+    private int numero;
+
+    /**
+     * Crée un tri vide.
+     *
+     * @param ordre l'ordre des éléments.
+     * @param format l'écriture et l'empreinte des éléments.
+     * @param budget la mémoire maximale des éléments en attente, en octets, ou {@link #SANS_LIMITE}.
+     */
+    public TriExterne(Comparator<? super T> ordre, Format<T> format, long budget) {
+        this.ordre = ordre;
+        this.format = format;
+        this.budget = budget;
+        this.tampon = (int) Math.max(TAMPON_MIN, Math.min(TAMPON_MAX, budget / (2 * FUSION_MAX)));
+    }
+
+    /**
+     * Ajoute un élément ; si le budget est dépassé, les éléments en mémoire sont écrits
+     * dans un nouveau segment.
+     *
+     * @param element l'élément.
+     * @throws IOException si le segment ne peut pas être écrit.
+     */
+    public void ajouter(T element) throws IOException {
+        memoire.add(element);
+        nombre++;
+        occupation += format.empreinte(element) + 8;
+        if (occupation > budget) {
+            deverser();
+        }
+    }
+
+    /**
+     * Ajoute un élément depuis un visiteur, qui ne peut pas lever d'exception vérifiée.
+     *
+     * @param element l'élément.
+     * @throws UncheckedIOException si le segment ne peut pas être écrit.
+     */
+    public void accepter(T element) {
+        try {
+            ajouter(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return le nombre d'éléments ajoutés.
+     */
+    public long getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return le nombre de segments écrits sur disque depuis la création.
+     */
+    public int getSegments() {
+        return numero;
+    }
+
+    /**
+     * Transmet les éléments triés au visiteur.
+     *
+     * @param visiteur le destinataire de chaque élément.
+     * @throws IOException si un segment ne peut pas être lu.
+     */
+    public void parcourir(Consumer<? super T> visiteur) throws IOException {
+        try (Lecture<T> lecture = lire()) {
+            while (lecture.hasNext()) {
+                visiteur.accept(lecture.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Ouvre une lecture des éléments triés, à fermer après usage. Les éléments ne doivent
+     * plus être ajoutés pendant la lecture.
+     *
+     * @return la lecture.
+     * @throws IOException si un segment ne peut pas être lu.
+     */
+    public Lecture<T> lire() throws IOException {
+        if (segments.isEmpty()) {
+            memoire.sort(ordre);
+            Iterator<T> elements = memoire.iterator();
+            return new Lecture<>(elements::hasNext, elements::next, Collections.emptyList());
+        }
+        deverser();
+        while (segments.size() > FUSION_MAX) {
+            List<Segment> groupe = new ArrayList<>(segments.subList(0, FUSION_MAX));
+            segments.subList(0, FUSION_MAX).clear();
+            Segment fusionne;
+            try (Lecture<T> lecture = fusionner(groupe)) {
+                fusionne = ecrireSegment(lecture);
+            }
+            for (Segment segment : groupe) {
+                Files.deleteIfExists(segment.fichier);
+            }
+            segments.add(fusionne);
+        }
+        return fusionner(segments);
+    }
+
+    private void deverser() throws IOException {
+        if (memoire.isEmpty()) {
+            return;
+        }
+        memoire.sort(ordre);
+        Iterator<T> elements = memoire.iterator();
+        segments.add(ecrireSegment(elements));
+        memoire.clear();
+        occupation = 0;
+    }
+
+    private Segment ecrireSegment(Iterator<T> elements) throws IOException {
+        if (dossier == null) {
+            dossier = Files.createTempDirectory("tri-");
+            dossier.toFile().deleteOnExit();
+        }
+        Path fichier = dossier.resolve("segment_" + (++numero) + ".bin");
+        fichier.toFile().deleteOnExit();
+        long ecrits = 0;
+        try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fichier), tampon))) {
+            while (elements.hasNext()) {
+                format.ecrire(elements.next(), sortie);
+                ecrits++;
+            }
+        }
+        return new Segment(fichier, ecrits);
+    }
+
+    /**
+     * Fusionne des segments triés : une tête par segment, rangées dans une file de priorité.
+     */
+    private Lecture<T> fusionner(List<Segment> aFusionner) throws IOException {
+        final class Tete {
+            final DataInputStream flux;
+            long restants;
+            T courant;
+
+            Tete(DataInputStream flux, long restants) {
+                this.flux = flux;
+                this.restants = restants;
+            }
+
+            boolean avancer() throws IOException {
+                if (restants == 0) {
+                    return false;
+                }
+                restants--;
+                courant = format.lire(flux);
+                return true;
+            }
+        }
+        PriorityQueue<Tete> tetes = new PriorityQueue<>((a, b) -> ordre.compare(a.courant, b.courant));
+        List<Closeable> flux = new ArrayList<>();
+        try {
+            for (Segment segment : aFusionner) {
+                Tete tete = new Tete(new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(segment.fichier), tampon)), segment.nombre);
+                flux.add(tete.flux);
+                if (tete.avancer()) {
+                    tetes.add(tete);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            fermer(flux);
+            throw e;
+        }
+        return new Lecture<>(() -> !tetes.isEmpty(), () -> {
+            Tete tete = tetes.poll();
+            T element = tete.courant;
+            try {
+                if (tete.avancer()) {
+                    tetes.add(tete);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return element;
+        }, flux);
+    }
+
+    private static void fermer(List<Closeable> flux) throws IOException {
+        IOException erreur = null;
+        for (Closeable f : flux) {
+            try {
+                f.close();
+            } catch (IOException e) {
+                erreur = e;
+            }
+        }
+        if (erreur != null) {
+            throw erreur;
+        }
+    }
+
+    /**
+     * Supprime les segments écrits sur disque.
+     *
+     * @throws IOException si un fichier temporaire ne peut pas être supprimé.
+     */
+    @Override
+    public void close() throws IOException {
+        memoire.clear();
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.fichier);
+        }
+        segments.clear();
+        if (dossier != null) {
+            Files.deleteIfExists(dossier);
+            dossier = null;
+        }
+    }
+
+    /**
+     * Lecture des éléments triés ; une erreur de lecture d'un segment est levée en
+     * {@link UncheckedIOException} par {@link #next()}.
+     *
+     * @param <T> le type des éléments.
+     */
+    public static final class Lecture<T> implements Iterator<T>, Closeable {
+
+        private final BooleanSupplier encore;
+        private final Supplier<T> suivant;
+        private final List<Closeable> flux;
+
+        private Lecture(BooleanSupplier encore, Supplier<T> suivant, List<Closeable> flux) {
+            this.encore = encore;
+            this.suivant = suivant;
+            this.flux = flux;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return encore.getAsBoolean();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return suivant.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            fermer(flux);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * La classe TypeMime détermine le type MIME d'un fichier à partir de son extension.
+ *
+ * <p>Les extensions courantes sont résolues par une table interne, ce qui évite de
+ * charger et d'analyser la base {@code mime.types} du système au démarrage.
+ * Les autres extensions sont déléguées à {@link Files#probeContentType(Path)}.</p>
+ *
+ * <p>Pour une entrée d'archive, dont le système ne peut pas sonder le contenu, un type
+ * inconnu d'après l'extension est reconnu à ses premiers octets (signature), voir
+ * {@link #sonder(byte[])}.</p>
+ *
+ * @author Binome
+ */
+public final class TypeMime {
+
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("png", "image/png");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("jpe", "image/jpeg");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("bmp", "image/bmp");
+        TYPES.put("tif", "image/tiff");
+        TYPES.put("tiff", "image/tiff");
+        TYPES.put("heic", "image/heic");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("ico", "image/vnd.microsoft.icon");
+        TYPES.put("txt", "text/plain");
+        TYPES.put("html", "text/html");
+        TYPES.put("htm", "text/html");
+        TYPES.put("csv", "text/csv");
+        TYPES.put("xml", "application/xml");
+        TYPES.put("json", "application/json");
+        TYPES.put("pdf", "application/pdf");
+        TYPES.put("zip", "application/zip");
+        TYPES.put("jar", "application/java-archive");
+    }
+
+    /** Nombre d'octets lus pour reconnaître une signature. */
+    private static final int TAILLE_SIGNATURE = 16;
+
+    /**
+     * Contenu d'un fichier, ouvert seulement si l'extension ne suffit pas.
+     */
+    public interface Contenu {
+        /**
+         * @return le flux du contenu.
+         * @throws IOException si le contenu ne peut pas être ouvert.
+         */
+        InputStream ouvrir() throws IOException;
+    }
+
+    private TypeMime() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Détermine le type MIME d'un fichier.
+     *
+     * @param chemin le chemin du fichier.
+     * @return le type MIME, ou {@code null} s'il ne peut pas être déterminé.
+     * @throws IOException si une erreur d'E/S se produit lors de la détection.
+     */
+    public static String deduire(Path chemin) throws IOException {
+        Path nomFichier = chemin.getFileName();
+        String type = nomFichier != null ? parExtension(nomFichier.toString()) : null;
+        return type != null ? type : Files.probeContentType(chemin);
+    }
+
+    /**
+     * Détermine le type MIME d'après l'extension, puis d'après la signature du contenu.
+     *
+     * @param nom le nom du fichier.
+     * @param contenu le contenu, dont seuls les premiers octets sont lus si l'extension est inconnue.
+     * @return le type MIME, ou {@code null} s'il ne peut pas être déterminé.
+     * @throws IOException si le contenu ne peut pas être lu.
+     */
+    public static String deduire(String nom, Contenu contenu) throws IOException {
+        String type = parExtension(nom);
+        if (type != null) {
+            return type;
+        }
+        try (InputStream entree = contenu.ouvrir()) {
+            return sonder(entree.readNBytes(TAILLE_SIGNATURE));
+        }
+    }
+
+    private static String parExtension(String nom) {
+        int point = nom.lastIndexOf('.');
+        if (point < 0 || point == nom.length() - 1) {
+            return null;
+        }
+        return TYPES.get(nom.substring(point + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Reconnaît un type MIME à la signature des premiers octets d'un fichier.
+     *
+     * @param debut les premiers octets (au moins 12 pour WebP).
+     * @return le type MIME, ou {@code null} si la signature est inconnue.
+     */
+    public static String sonder(byte[] debut) {
+        if (commence(debut, 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')) {
+            return "image/png";
+        }
+        if (commence(debut, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (commence(debut, 0, 'R', 'I', 'F', 'F') && commence(debut, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        if (commence(debut, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (commence(debut, 0, 'I', 'I', 0x2A, 0) || commence(debut, 0, 'M', 'M', 0, 0x2A)) {
+            return "image/tiff";
+        }
+        if (commence(debut, 0, 'B', 'M')) {
+            return "image/bmp";
+        }
+        if (commence(debut, 4, 'f', 't', 'y', 'p')
+                && new String(debut, 8, Math.min(4, debut.length - 8), StandardCharsets.US_ASCII).startsWith("hei")) {
+            return "image/heic";
+        }
+        if (commence(debut, 0, '%', 'P', 'D', 'F')) {
+            return "application/pdf";
+        }
+        if (commence(debut, 0, 'P', 'K', 3, 4)) {
+            return "application/zip";
+        }
+        return null;
+    }
+
+    private static boolean commence(byte[] octets, int position, int... signature) {
+        if (octets.length < position + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((octets[position + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,290 @@
+package application;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * La classe Xmp contient quelques propriétés XMP d'une image : note, mots-clés,
+ * date de création et créateurs.
+ *
+ * <p>Le paquet XMP est parcouru en flux avec StAX, sans construire d'arbre DOM :
+ * seules les propriétés demandées sont conservées, et la lecture s'arrête dès
+ * qu'elles ont toutes été trouvées. Les propriétés peuvent être écrites sous forme
+ * d'éléments ou d'attributs de {@code rdf:Description}.</p>
+ *
+ * @author Binome
+ */
+public final class Xmp {
+
+    /**
+     * Propriétés XMP prises en charge.
+     */
+    public enum Propriete {
+        /** Note de l'image ({@code xmp:Rating}). */
+        NOTE(NS_XMP, "Rating"),
+        /** Mots-clés ({@code dc:subject}). */
+        MOTS_CLES(NS_DC, "subject"),
+        /** Date de création ({@code xmp:CreateDate}). */
+        DATE_CREATION(NS_XMP, "CreateDate"),
+        /** Créateurs ({@code dc:creator}). */
+        CREATEURS(NS_DC, "creator");
+
+        private final String espace;
+        private final String nom;
+
+        Propriete(String espace, String nom) {
+            this.espace = espace;
+            this.nom = nom;
+        }
+    }
+
+    private static final String NS_XMP = "http://ns.adobe.com/xap/1.0/";
+    private static final String NS_DC = "http://purl.org/dc/elements/1.1/";
+    private static final String NS_RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+    private static final Propriete[] PROPRIETES = Propriete.values();
+    private static final XMLInputFactory FABRIQUE = XMLInputFactory.newInstance();
+
+    static {
+        FABRIQUE.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FABRIQUE.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FABRIQUE.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /** Propriétés XMP d'une image sans paquet XMP. */
+    public static final Xmp VIDE = new Xmp();
+
+    private String note;
+    private String dateCreation;
+    private final List<String> motsCles = new ArrayList<>();
+    private final List<String> createurs = new ArrayList<>();
+
+    private Xmp() {
+    }
+
+    /**
+     * Lit toutes les propriétés prises en charge d'un paquet XMP.
+     *
+     * @param paquet le paquet XMP (document RDF/XML).
+     * @return les propriétés lues.
+     * @throws XMLStreamException si le paquet n'est pas un document XML valide.
+     */
+    public static Xmp lire(byte[] paquet) throws XMLStreamException {
+        return lire(paquet, EnumSet.allOf(Propriete.class));
+    }
+
+    /**
+     * Lit les propriétés demandées d'un paquet XMP.
+     *
+     * @param paquet le paquet XMP (document RDF/XML).
+     * @param proprietes les propriétés à lire.
+     * @return les propriétés lues.
+     * @throws XMLStreamException si le paquet n'est pas un document XML valide.
+     */
+    public static Xmp lire(byte[] paquet, Set<Propriete> proprietes) throws XMLStreamException {
+        Xmp xmp = new Xmp();
+        Set<Propriete> restantes = EnumSet.copyOf(proprietes);
+        XMLStreamReader lecteur = FABRIQUE.createXMLStreamReader(new ByteArrayInputStream(paquet, 0, longueur(paquet)));
+        try {
+            Propriete cible = null;
+            int profondeurCible = 0;
+            int profondeur = 0;
+            boolean liste = false;
+            StringBuilder texte = new StringBuilder();
+            while (!restantes.isEmpty() && lecteur.hasNext()) {
+                switch (lecteur.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        profondeur++;
+                        if (cible == null) {
+                            if (estRdf(lecteur, "Description")) {
+                                xmp.lireAttributs(lecteur, restantes);
+                            } else {
+                                cible = propriete(lecteur, restantes);
+                                profondeurCible = profondeur;
+                                liste = false;
+                                texte.setLength(0);
+                            }
+                        } else if (estRdf(lecteur, "li")) {
+                            liste = true;
+                            texte.setLength(0);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (cible != null) {
+                            texte.append(lecteur.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (cible != null) {
+                            if (estRdf(lecteur, "li")) {
+                                xmp.ajouter(cible, texte);
+                                texte.setLength(0);
+                            } else if (profondeur == profondeurCible) {
+                                if (!liste) {
+                                    xmp.ajouter(cible, texte);
+                                }
+                                restantes.remove(cible);
+                                cible = null;
+                            }
+                        }
+                        profondeur--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            lecteur.close();
+        }
+        return xmp;
+    }
+
+    /**
+     * Construit les propriétés à partir des propriétés XMP déjà décodées par
+     * metadata-extractor (par exemple {@code dc:subject[1]}), lorsque le fichier
+     * complet a été analysé.
+     *
+     * @param proprietes les propriétés XMP décodées, indexées par chemin.
+     * @return les propriétés reconnues.
+     */
+    static Xmp depuis(Map<String, String> proprietes) {
+        Xmp xmp = new Xmp();
+        xmp.note = proprietes.get("xmp:Rating");
+        xmp.dateCreation = proprietes.get("xmp:CreateDate");
+        for (int i = 1; proprietes.containsKey("dc:subject[" + i + "]"); i++) {
+            xmp.motsCles.add(proprietes.get("dc:subject[" + i + "]"));
+        }
+        for (int i = 1; proprietes.containsKey("dc:creator[" + i + "]"); i++) {
+            xmp.createurs.add(proprietes.get("dc:creator[" + i + "]"));
+        }
+        return xmp;
+    }
+
+    /**
+     * Lit les propriétés simples écrites sous forme d'attributs de {@code rdf:Description}.
+     */
+    private void lireAttributs(XMLStreamReader lecteur, Set<Propriete> restantes) {
+        for (int i = 0; i < lecteur.getAttributeCount(); i++) {
+            for (Propriete propriete : PROPRIETES) {
+                if (restantes.contains(propriete)
+                        && propriete.espace.equals(lecteur.getAttributeNamespace(i))
+                        && propriete.nom.equals(lecteur.getAttributeLocalName(i))) {
+                    ajouter(propriete, new StringBuilder(lecteur.getAttributeValue(i)));
+                    restantes.remove(propriete);
+                }
+            }
+        }
+    }
+
+    private void ajouter(Propriete propriete, CharSequence valeur) {
+        String texte = valeur.toString().trim();
+        if (texte.isEmpty()) {
+            return;
+        }
+        switch (propriete) {
+            case NOTE:
+                note = texte;
+                break;
+            case DATE_CREATION:
+                dateCreation = texte;
+                break;
+            case MOTS_CLES:
+                motsCles.add(texte);
+                break;
+            case CREATEURS:
+                createurs.add(texte);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Propriete propriete(XMLStreamReader lecteur, Set<Propriete> restantes) {
+        for (Propriete propriete : PROPRIETES) {
+            if (restantes.contains(propriete)
+                    && propriete.espace.equals(lecteur.getNamespaceURI())
+                    && propriete.nom.equals(lecteur.getLocalName())) {
+                return propriete;
+            }
+        }
+        return null;
+    }
+
+    private static boolean estRdf(XMLStreamReader lecteur, String nom) {
+        return NS_RDF.equals(lecteur.getNamespaceURI()) && nom.equals(lecteur.getLocalName());
+    }
+
+    /**
+     * Ignore les octets nuls qui complètent parfois le paquet.
+     */
+    private static int longueur(byte[] paquet) {
+        int fin = paquet.length;
+        while (fin > 0 && paquet[fin - 1] == 0) {
+            fin--;
+        }
+        return fin;
+    }
+
+    /**
+     * @return {@code true} si aucune propriété n'a été trouvée.
+     */
+    public boolean estVide() {
+        return note == null && dateCreation == null && motsCles.isEmpty() && createurs.isEmpty();
+    }
+
+    /**
+     * @return la note de l'image, ou {@code null}.
+     */
+    public String getNote() {
+        return note;
+    }
+
+    /**
+     * @return la date de création, ou {@code null}.
+     */
+    public String getDateCreation() {
+        return dateCreation;
+    }
+
+    /**
+     * @return les mots-clés de l'image.
+     */
+    public List<String> getMotsCles() {
+        return Collections.unmodifiableList(motsCles);
+    }
+
+    /**
+     * @return les créateurs de l'image.
+     */
+    public List<String> getCreateurs() {
+        return Collections.unmodifiableList(createurs);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (note != null) {
+            sb.append("Note : ").append(note).append('\n');
+        }
+        if (!motsCles.isEmpty()) {
+            sb.append("Mots-clés : ").append(String.join(", ", motsCles)).append('\n');
+        }
+        if (dateCreation != null) {
+            sb.append("Date de création : ").append(dateCreation).append('\n');
+        }
+        if (!createurs.isEmpty()) {
+            sb.append("Créateurs : ").append(String.join(", ", createurs)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package application;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Arborescence temporaire utilisée par les bancs d'essai : un répertoire plat
+ * contenant un mélange de fichiers PNG, JPEG, WEBP et texte.
+ *
+ * @author Binome
+ */
+final class Arborescence {
+
+    private Arborescence() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Crée un répertoire temporaire contenant {@code taille} fichiers.
+     * Un fichier sur quatre est respectivement PNG, JPEG, WEBP ou texte.
+     *
+     * @param taille le nombre de fichiers à créer.
+     * @return le chemin du répertoire créé.
+     * @throws IOException si un fichier ne peut pas être écrit.
+     */
+    static Path creer(int taille) throws IOException {
+        Path racine = Files.createTempDirectory("bench-" + taille + "-");
+        byte[] png = image("png", 64, 48);
+        byte[] jpeg = image("jpg", 64, 48);
+        byte[] texte = "fichier texte\n".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < taille; i++) {
+            switch (i % 4) {
+                case 0: Files.write(racine.resolve("image_" + i + ".png"), png); break;
+                case 1: Files.write(racine.resolve("photo_" + i + ".jpg"), jpeg); break;
+                case 2: Files.write(racine.resolve("image_" + i + ".webp"), png); break;
+                default: Files.write(racine.resolve("notes_" + i + ".txt"), texte); break;
+            }
+        }
+        return racine;
+    }
+
+    /**
+     * Encode une image unie dans le format demandé.
+     *
+     * @param format le format ImageIO ("png" ou "jpg").
+     * @param largeur la largeur en pixels.
+     * @param hauteur la hauteur en pixels.
+     * @return les octets de l'image encodée.
+     * @throws IOException si l'encodage échoue.
+     */
+    static byte[] image(String format, int largeur, int hauteur) throws IOException {
+        BufferedImage image = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, largeur, hauteur);
+        g.dispose();
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(image, format, sortie);
+        return sortie.toByteArray();
+    }
+
+    /**
+     * Supprime récursivement un répertoire créé par {@link #creer(int)}.
+     *
+     * @param racine le répertoire à supprimer.
+     * @throws IOException si la suppression échoue.
+     */
+    static void supprimer(Path racine) throws IOException {
+        Files.walkFileTree(racine, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path fichier, BasicFileAttributes attrs) throws IOException {
+                Files.delete(fichier);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path repertoire, IOException exc) throws IOException {
+                Files.delete(repertoire);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package application;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point d'entrée de {@code benchmarks.jar}.
+ *
+ * <p>Accepte les options habituelles de JMH et ajoute par défaut le profileur GC
+ * (taux d'allocation) ainsi qu'un résultat JSON dans {@code jmh-result.json},
+ * afin de pouvoir comparer les résultats d'un commit à l'autre.</p>
+ *
+ * @author Binome
+ */
+public final class LanceurBancs {
+
+    private LanceurBancs() {
+        // Classe utilitaire
+    }
+
+    /**
+     * Lance les bancs d'essai.
+     *
+     * @param args Options JMH (par exemple {@code -p taille=1000 -rff resultat.json}).
+     * @throws Exception si JMH ne peut pas être lancé.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions ligneCommande = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(ligneCommande);
+
+        if (ligneCommande.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!ligneCommande.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!ligneCommande.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bancs d'essai de l'extraction des {@link Metadonnees} et de la lecture
+ * des dimensions par {@link FichierImage}, par format et par taille d'image.
+ *
+ * @author Binome
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadonneesBench {
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"64", "2048"})
+    public int cote;
+
+    private Path image;
+
+    /**
+     * Écrit l'image de test dans un fichier temporaire.
+     *
+     * @throws IOException si l'image ne peut pas être écrite.
+     */
+    @Setup(Level.Trial)
+    public void preparer() throws IOException {
+        image = Files.createTempFile("bench-", "." + format);
+        Files.write(image, Arborescence.image(format, cote, cote));
+    }
+
+    /**
+     * Supprime l'image temporaire.
+     *
+     * @throws IOException si la suppression échoue.
+     */
+    @TearDown(Level.Trial)
+    public void nettoyer() throws IOException {
+        Files.deleteIfExists(image);
+    }
+
+    @Benchmark
+    public Metadonnees extraireMetadonnees() throws Exception {
+        return new Metadonnees(image.toString());
+    }
+
+    @Benchmark
+    public int lireDimensions() throws IOException {
+        FichierImage fichierImage = new FichierImage(image.toString());
+        return fichierImage.getLargeur() * fichierImage.getHauteur();
+    }
+}
@@ -0,0 +1,118 @@
+package application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bancs d'essai du parcours de répertoire : construction des {@link Fichier},
+ * {@link Repertoire#listerFichiers()}, compteurs par format et snapshots,
+ * pour plusieurs tailles d'arborescence.
+ *
+ * @author Binome
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepertoireBench {
+
+    @Param({"100", "1000", "10000"})
+    public int taille;
+
+    private Path racine;
+    private Path dossierSnapshots;
+    private Path snapshot;
+    private List<String> chemins;
+    private Repertoire repertoire;
+    private PrintStream sortieOrigine;
+
+    /**
+     * Crée l'arborescence, le répertoire déjà listé et un snapshot de référence.
+     *
+     * @throws IOException si l'arborescence ne peut pas être créée.
+     */
+    @Setup(Level.Trial)
+    public void preparer() throws IOException {
+        sortieOrigine = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        racine = Arborescence.creer(taille);
+        dossierSnapshots = Files.createTempDirectory("bench-snapshots-");
+        try (Stream<Path> flux = Files.list(racine)) {
+            chemins = flux.map(p -> p.toAbsolutePath().toString()).collect(Collectors.toList());
+        }
+
+        repertoire = new Repertoire(racine.toString());
+        repertoire.listerFichiers();
+        repertoire.snapshotsave(dossierSnapshots.toString());
+        try (Stream<Path> flux = Files.list(dossierSnapshots)) {
+            snapshot = flux.findFirst().orElseThrow();
+        }
+    }
+
+    /**
+     * Supprime les fichiers temporaires et rétablit la sortie standard.
+     *
+     * @throws IOException si la suppression échoue.
+     */
+    @TearDown(Level.Trial)
+    public void nettoyer() throws IOException {
+        System.setOut(sortieOrigine);
+        Arborescence.supprimer(racine);
+        Arborescence.supprimer(dossierSnapshots);
+    }
+
+    @Benchmark
+    public void construireFichiers(Blackhole trou) throws IOException {
+        for (String chemin : chemins) {
+            trou.consume(new Fichier(chemin));
+        }
+    }
+
+    @Benchmark
+    public List<Fichier> listerFichiers() throws IOException {
+        Repertoire r = new Repertoire(racine.toString());
+        r.listerFichiers();
+        return r.getFichiers();
+    }
+
+    @Benchmark
+    public int compterFichiers() {
+        return repertoire.compterFichiersImages() + repertoire.compterFichiersPng() + repertoire.compterFichiersJPEG()
+                + repertoire.compterFichiersWebp();
+    }
+
+    @Benchmark
+    public void snapshotSave() throws IOException {
+        repertoire.snapshotsave(dossierSnapshots.toString());
+    }
+
+    @Benchmark
+    public void snapshotCompare() throws IOException {
+        repertoire.snapshotCompare(racine.toString(), snapshot.toString());
+    }
+}
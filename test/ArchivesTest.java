@@ -0,0 +1,158 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests du parcours des archives ZIP : entrées transmises comme des fichiers, analyse
+ * de leurs métadonnées et suivi par le journal.
+ *
+ * @author Binome
+ */
+class ArchivesTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void entreesTransmisesCommeDesFichiers() throws IOException {
+        Path arbre = creerArbre();
+        List<Fichier> fichiers = parcourir(arbre, null);
+        assertEquals(3, fichiers.size());
+        Fichier entree = trouver(fichiers, "photo.jpg");
+        assertEquals(arbre.resolve("lot.zip"), entree.getArchive());
+        assertEquals(arbre.resolve("lot.zip") + "!/sous/photo.jpg", entree.getChemin());
+        assertTrue(entree.getTypeMime().startsWith("image"));
+    }
+
+    @Test
+    void grandeImageAnalyseeDepuisLArchive() throws IOException, InterruptedException {
+        // L'en-tête de 256 Ko ne suffit pas : le fichier complet est relu depuis l'archive.
+        Path arbre = creerArbre();
+        List<PipelineMetadonnees.Resultat> resultats = new ArrayList<>();
+        new PipelineMetadonnees(2, 2, 8, true).executer(visiteur -> parcours(null).parcourir(arbre, visiteur),
+                resultats::add);
+        assertEquals(3, resultats.size());
+        for (PipelineMetadonnees.Resultat resultat : resultats) {
+            assertNull(resultat.getErreur(), resultat.getChemin());
+            assertNotNull(resultat.getMetadonnees());
+        }
+    }
+
+    @Test
+    void metadonneesDUneEntree() throws Exception {
+        Path arbre = creerArbre();
+        Fichier entree = trouver(parcourir(arbre, null), "photo.jpg");
+        Metadonnees metadonnees = new Metadonnees(entree);
+        assertEquals(16, metadonnees.getLargeur());
+        assertNotNull(new Metadonnees(trouver(parcourir(arbre, null), "grande.png")));
+    }
+
+    @Test
+    void repertoireTermineApresLesEntreesDeSesArchives() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        // Analyse interrompue : seul le fichier hors archive a été traité.
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            for (Fichier fichier : parcourir(arbre, journal)) {
+                if (fichier.getArchive() == null) {
+                    journal.terminer(fichier);
+                }
+            }
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertFalse(journal.estTermine(arbre));
+            assertFalse(journal.estTermine(arbre.resolve("lot.zip")));
+            List<Fichier> restants = parcourir(arbre, journal);
+            assertEquals(2, restants.size());
+            for (Fichier fichier : restants) {
+                assertEquals(arbre.resolve("lot.zip"), fichier.getArchive());
+                journal.terminer(fichier);
+            }
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertTrue(journal.estTermine(arbre.resolve("lot.zip")));
+            assertTrue(journal.estTermine(arbre));
+            assertTrue(parcourir(arbre, journal).isEmpty());
+        }
+    }
+
+    /**
+     * Crée {@code arbre/a.jpg} et {@code arbre/lot.zip}, qui contient {@code sous/photo.jpg}
+     * et une image PNG de plus de 256 Ko.
+     */
+    private Path creerArbre() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        Files.write(arbre.resolve("a.jpg"), ImagesEssai.jpeg(null));
+        byte[] grande = grandePng();
+        assertTrue(grande.length > 256 * 1024);
+        try (OutputStream sortie = Files.newOutputStream(arbre.resolve("lot.zip"));
+             ZipOutputStream zip = new ZipOutputStream(sortie)) {
+            zip.putNextEntry(new ZipEntry("sous/photo.jpg"));
+            zip.write(ImagesEssai.jpeg(null));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("grande.png"));
+            zip.write(grande);
+            zip.closeEntry();
+        }
+        return arbre;
+    }
+
+    /**
+     * @return une image PNG de bruit, peu compressible.
+     */
+    private static byte[] grandePng() throws IOException {
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Random hasard = new Random(1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, hasard.nextInt(1 << 24));
+            }
+        }
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", sortie);
+        return sortie.toByteArray();
+    }
+
+    private static ParcoursArborescence parcours(Journal journal) {
+        ParcoursArborescence parcours = new ParcoursArborescence(true, false);
+        parcours.setArchives(true);
+        parcours.setJournal(journal);
+        return parcours;
+    }
+
+    private static List<Fichier> parcourir(Path arbre, Journal journal) throws IOException {
+        List<Fichier> fichiers = new ArrayList<>();
+        parcours(journal).parcourir(arbre, fichiers::add);
+        return fichiers;
+    }
+
+    private static Fichier trouver(List<Fichier> fichiers, String nom) {
+        for (Fichier fichier : fichiers) {
+            if (fichier.getNom().equals(nom)) {
+                return fichier;
+            }
+        }
+        throw new AssertionError("Fichier absent : " + nom);
+    }
+}
@@ -0,0 +1,69 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link EnsembleCles}.
+ *
+ * @author Binome
+ */
+class EnsembleClesTest {
+
+    @Test
+    void decomposeUneCleUnix() {
+        assertArrayEquals(new long[]{0x803, 1234}, EnsembleCles.decomposer("(dev=803,ino=1234)"));
+        assertArrayEquals(new long[]{-1L, 7}, EnsembleCles.decomposer("(dev=ffffffffffffffff,ino=7)"));
+    }
+
+    @Test
+    void refuseLesAutresCles() {
+        assertNull(EnsembleCles.decomposer(null));
+        assertNull(EnsembleCles.decomposer("dev=803,ino=1234"));
+        assertNull(EnsembleCles.decomposer("(ino=1234,dev=803)"));
+        assertNull(EnsembleCles.decomposer("(dev=xyz,ino=1234)"));
+    }
+
+    @Test
+    void ajouteChaqueCoupleUneSeuleFois() {
+        EnsembleCles ensemble = new EnsembleCles();
+        assertTrue(ensemble.ajouter(1, 2));
+        assertFalse(ensemble.ajouter(1, 2));
+        assertTrue(ensemble.ajouter(2, 1));
+        assertTrue(ensemble.contient(1, 2));
+        assertTrue(ensemble.contient(2, 1));
+        assertFalse(ensemble.contient(1, 1));
+        assertEquals(2, ensemble.getTaille());
+    }
+
+    @Test
+    void conserveLesCouplesApresAgrandissement() {
+        EnsembleCles ensemble = new EnsembleCles();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            assertTrue(ensemble.ajouter(i % 7, i));
+        }
+        for (int i = 0; i < n; i++) {
+            assertFalse(ensemble.ajouter(i % 7, i));
+            assertTrue(ensemble.contient(i % 7, i));
+            assertFalse(ensemble.contient(i % 7 + 7, i));
+        }
+        assertEquals(n, ensemble.getTaille());
+    }
+
+    @Test
+    void accepteLesClesNonUnix() {
+        EnsembleCles ensemble = new EnsembleCles();
+        assertTrue(ensemble.ajouter("(dev=803,ino=1234)"));
+        assertFalse(ensemble.ajouter((Object) "(dev=803,ino=1234)"));
+        assertTrue(ensemble.contient(0x803, 1234));
+        assertTrue(ensemble.ajouter("C:\\fichier"));
+        assertFalse(ensemble.ajouter("C:\\fichier"));
+        assertEquals(2, ensemble.getTaille());
+    }
+}
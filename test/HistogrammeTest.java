@@ -0,0 +1,120 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link Histogramme}.
+ *
+ * @author Binome
+ */
+class HistogrammeTest {
+
+    @Test
+    void histogrammeVide() {
+        Histogramme h = new Histogramme();
+        assertEquals(0, h.getNombre());
+        assertEquals(0, h.quantile(0.5));
+        assertEquals(0.0, h.getMoyenne());
+    }
+
+    @Test
+    void petitesValeursExactes() {
+        Histogramme h = new Histogramme();
+        for (int v = 1; v <= 10; v++) {
+            h.enregistrer(v);
+        }
+        assertEquals(5, h.quantile(0.5));
+        assertEquals(9, h.quantile(0.9));
+        assertEquals(10, h.quantile(1.0));
+        assertEquals(1, h.quantile(0.0));
+        assertEquals(55, h.getTotal());
+        assertEquals(5.5, h.getMoyenne());
+    }
+
+    @Test
+    void valeursNegativesRameneesAZero() {
+        Histogramme h = new Histogramme();
+        h.enregistrer(-5);
+        assertEquals(0, h.getMinimum());
+        assertEquals(0, h.quantile(0.5));
+    }
+
+    @Test
+    void quantilesAMoinsDeTroisPourCent() {
+        Histogramme h = new Histogramme();
+        for (long v = 1; v <= 1_000_000; v++) {
+            h.enregistrer(v);
+        }
+        for (double q : new double[]{0.1, 0.5, 0.9, 0.99, 0.999}) {
+            long attendu = (long) Math.ceil(q * 1_000_000);
+            assertProche(attendu, h.quantile(q));
+        }
+        assertEquals(1, h.getMinimum());
+        assertEquals(1_000_000, h.getMaximum());
+        assertEquals(1_000_000, h.quantile(1.0));
+    }
+
+    @Test
+    void quantilesDeGrandesValeurs() {
+        Histogramme h = new Histogramme();
+        long v = 1L << 40;
+        h.enregistrer(v);
+        h.enregistrer(3 * v);
+        h.enregistrer(5 * v);
+        assertProche(3 * v, h.quantile(0.5));
+    }
+
+    @Test
+    void fusionEquivalenteAUnSeulHistogramme() {
+        Random hasard = new Random(42);
+        Histogramme tout = new Histogramme();
+        Histogramme a = new Histogramme();
+        Histogramme b = new Histogramme();
+        for (int i = 0; i < 10_000; i++) {
+            long v = (long) Math.abs(hasard.nextGaussian() * 1e6);
+            tout.enregistrer(v);
+            (i % 3 == 0 ? a : b).enregistrer(v);
+        }
+        a.fusionner(b);
+        assertEquals(tout.getNombre(), a.getNombre());
+        assertEquals(tout.getTotal(), a.getTotal());
+        assertEquals(tout.getMinimum(), a.getMinimum());
+        assertEquals(tout.getMaximum(), a.getMaximum());
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            assertEquals(tout.quantile(q), a.quantile(q));
+        }
+    }
+
+    @Test
+    void ecritureEtRelecture() throws IOException {
+        Histogramme h = new Histogramme();
+        for (long v = 0; v < 5000; v += 7) {
+            h.enregistrer(v * v);
+        }
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        h.ecrire(new DataOutputStream(octets));
+        Histogramme relu = Histogramme.lire(new DataInputStream(new ByteArrayInputStream(octets.toByteArray())));
+        assertEquals(h.getNombre(), relu.getNombre());
+        assertEquals(h.getTotal(), relu.getTotal());
+        assertEquals(h.getMinimum(), relu.getMinimum());
+        assertEquals(h.getMaximum(), relu.getMaximum());
+        for (double q : new double[]{0.25, 0.5, 0.75, 0.95}) {
+            assertEquals(h.quantile(q), relu.quantile(q));
+        }
+    }
+
+    private static void assertProche(long attendu, long estime) {
+        double erreur = Math.abs(estime - attendu) / (double) attendu;
+        assertTrue(erreur < 0.03, "quantile " + estime + " au lieu de " + attendu);
+    }
+}
@@ -0,0 +1,196 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests de {@link HistoriqueSnapshots} : une base, des deltas, et les états reconstitués
+ * par fusion.
+ *
+ * @author Binome
+ */
+class HistoriqueSnapshotsTest {
+
+    private static final long MODIFICATION = 1_600_000_000_000L;
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void etatsReconstituesDepuisLaBaseEtLesDeltas() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        for (int i = 0; i < 200; i++) {
+            ecrire(arbre.resolve(String.format("f%03d.jpg", i)), 10);
+        }
+        HistoriqueSnapshots historique = new HistoriqueSnapshots(dossier.resolve("historique"));
+        historique.enregistrer(lister(arbre), date(2024, 1, 10));
+        List<String> etat1 = etat(historique, 1);
+
+        // Un fichier modifié, un supprimé, un ajouté.
+        ecrire(arbre.resolve("f003.jpg"), 20);
+        Files.delete(arbre.resolve("f007.jpg"));
+        ecrire(arbre.resolve("g00.jpg"), 5);
+        historique.enregistrer(lister(arbre), date(2024, 1, 11));
+        List<String> etat2 = etat(historique, 2);
+
+        // Retour à l'état initial, hors le fichier ajouté.
+        ecrire(arbre.resolve("f003.jpg"), 10);
+        ecrire(arbre.resolve("f007.jpg"), 10);
+        historique.enregistrer(lister(arbre), date(2024, 1, 12));
+
+        assertTrue(Files.exists(dossier.resolve("historique/base_1.gz")));
+        assertTrue(Files.exists(dossier.resolve("historique/deltas_1.bin")));
+        assertTrue(Files.notExists(dossier.resolve("historique/base_2.gz")));
+
+        assertEquals(200, etat1.size());
+        assertEquals(200, etat2.size());
+        assertTrue(etat2.contains("f003.jpg 20"));
+        assertTrue(etat2.contains("g00.jpg 5"));
+        assertFalse(etat2.contains("f007.jpg 10"));
+        List<String> etat3 = new ArrayList<>(etat1);
+        etat3.add("g00.jpg 5");
+        assertEquals(etat3, etat(historique, 3));
+
+        assertEquals(3, historique.comparer(1, 2, muet()));
+        assertEquals(1, historique.comparer(1, 3, muet()));
+        assertEquals(0, historique.comparer(2, 2, muet()));
+
+        // Relecture de l'index depuis le disque.
+        HistoriqueSnapshots relu = new HistoriqueSnapshots(dossier.resolve("historique"));
+        assertEquals(etat2, etat(relu, 2));
+        assertEquals(etat3, etat(relu, 3));
+    }
+
+    @Test
+    void comparaisonAfficheLesChangements() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        for (int i = 0; i < 10; i++) {
+            ecrire(arbre.resolve("f" + i + ".jpg"), 10);
+        }
+        HistoriqueSnapshots historique = new HistoriqueSnapshots(dossier.resolve("historique"));
+        historique.enregistrer(lister(arbre), date(2024, 1, 10));
+        ecrire(arbre.resolve("f1.jpg"), 11);
+        Files.delete(arbre.resolve("f2.jpg"));
+        ecrire(arbre.resolve("nouveau.jpg"), 1);
+        historique.enregistrer(lister(arbre), date(2024, 1, 11));
+
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        historique.comparer(1, 2, new PrintStream(octets, true, StandardCharsets.UTF_8));
+        String sortie = octets.toString(StandardCharsets.UTF_8);
+        assertTrue(sortie.contains("Fichier modifié : " + arbre.resolve("f1.jpg")));
+        assertTrue(sortie.contains("Fichier supprimé : " + arbre.resolve("f2.jpg")));
+        assertTrue(sortie.contains("Fichier ajouté : " + arbre.resolve("nouveau.jpg")));
+    }
+
+    @Test
+    void nouvelleBaseApresDeNombreuxChangements() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        for (int i = 0; i < 4; i++) {
+            ecrire(arbre.resolve("f" + i + ".jpg"), 10);
+        }
+        HistoriqueSnapshots historique = new HistoriqueSnapshots(dossier.resolve("historique"));
+        historique.enregistrer(lister(arbre), date(2024, 1, 10));
+        for (int i = 0; i < 4; i++) {
+            ecrire(arbre.resolve("f" + i + ".jpg"), 30);
+        }
+        historique.enregistrer(lister(arbre), date(2024, 1, 11));
+        // Le delta 2 modifie tous les fichiers de la base : le snapshot suivant est une base.
+        historique.enregistrer(lister(arbre), date(2024, 1, 12));
+        assertTrue(Files.notExists(dossier.resolve("historique/base_2.gz")));
+        assertTrue(Files.exists(dossier.resolve("historique/base_3.gz")));
+        assertEquals(List.of("f0.jpg 10", "f1.jpg 10", "f2.jpg 10", "f3.jpg 10"), etat(historique, 1));
+        assertEquals(List.of("f0.jpg 30", "f1.jpg 30", "f2.jpg 30", "f3.jpg 30"), etat(historique, 2));
+        assertEquals(etat(historique, 2), etat(historique, 3));
+        assertEquals(0, historique.comparer(2, 3, muet()));
+    }
+
+    @Test
+    void cheminsPartageantUneMoitieDePaireDeSubstitution() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        // U+1F600 et U+1F601 : même premier caractère UTF-16 (\uD83D).
+        Charset noms = Charset.forName(System.getProperty("sun.jnu.encoding", "UTF-8"));
+        assumeTrue(noms.newEncoder().canEncode("\uD83D\uDE00"), "noms de fichiers non Unicode");
+        ecrire(arbre.resolve("\uD83D\uDE00.txt"), 1);
+        ecrire(arbre.resolve("\uD83D\uDE01.txt"), 2);
+        HistoriqueSnapshots historique = new HistoriqueSnapshots(dossier.resolve("historique"));
+        historique.enregistrer(lister(arbre), date(2024, 1, 10));
+        ecrire(arbre.resolve("\uD83D\uDE01.txt"), 3);
+        historique.enregistrer(lister(arbre), date(2024, 1, 11));
+
+        assertEquals(List.of("\uD83D\uDE00.txt 1", "\uD83D\uDE01.txt 2"), etat(historique, 1));
+        assertEquals(List.of("\uD83D\uDE00.txt 1", "\uD83D\uDE01.txt 3"), etat(historique, 2));
+        assertEquals(1, historique.comparer(1, 2, muet()));
+    }
+
+    @Test
+    void rechercheParDate() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre);
+        ecrire(arbre.resolve("a.jpg"), 1);
+        HistoriqueSnapshots historique = new HistoriqueSnapshots(dossier.resolve("historique"));
+        historique.enregistrer(lister(arbre), date(2024, 1, 10));
+        historique.enregistrer(lister(arbre), date(2024, 1, 12));
+
+        assertEquals(1, historique.rechercher("20240110"));
+        assertEquals(1, historique.rechercher("20240111_2359"));
+        assertEquals(2, historique.rechercher("20240112_120000"));
+        assertEquals(2, historique.rechercher("20250101"));
+        assertEquals("20240112_120000", historique.getDate(2));
+        assertThrows(IOException.class, () -> historique.rechercher("20240109"));
+        assertThrows(IllegalArgumentException.class, () -> historique.rechercher("2024"));
+    }
+
+    private static void ecrire(Path fichier, int taille) throws IOException {
+        Files.write(fichier, new byte[taille]);
+        Files.setLastModifiedTime(fichier, FileTime.fromMillis(MODIFICATION + taille));
+    }
+
+    private static Repertoire lister(Path arbre) throws IOException {
+        Repertoire repertoire = new Repertoire(arbre.toString());
+        repertoire.listerFichiers();
+        return repertoire;
+    }
+
+    /**
+     * @return le 12h00 du jour indiqué.
+     */
+    private static Date date(int annee, int mois, int jour) {
+        return new GregorianCalendar(annee, mois - 1, jour, 12, 0).getTime();
+    }
+
+    /**
+     * @return l'état d'un snapshot, une ligne {@code "<nom> <taille>"} par fichier.
+     */
+    private static List<String> etat(HistoriqueSnapshots historique, int numero) throws IOException {
+        List<String> lignes = new ArrayList<>();
+        historique.parcourirEtat(numero, e -> lignes.add(Path.of(e.getChemin()).getFileName() + " " + e.getTaille()));
+        return lignes;
+    }
+
+    private static PrintStream muet() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+}
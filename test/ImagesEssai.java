@@ -0,0 +1,86 @@
+package application;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Construction d'images JPEG de test : une image 16 x 16 encodée par ImageIO, précédée
+ * de segments APPn choisis par le test.
+ *
+ * @author Binome
+ */
+final class ImagesEssai {
+
+    /** Date EXIF des images de test. */
+    static final String DATE = "2021:06:15 10:30:00";
+
+    private ImagesEssai() {
+        // Classe utilitaire
+    }
+
+    /**
+     * @return un JPEG avec un bloc EXIF (300 dpi, {@link #DATE}, position GPS) et, si demandé,
+     * un paquet XMP.
+     */
+    static byte[] jpeg(String xmp) throws IOException {
+        byte[] exif = GenerateurArborescence.ExifSynthetique.construire(300, DATE, 48.8566, -2.3522);
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        sortie.write(0xFF);
+        sortie.write(0xD8);
+        segment(sortie, 0xE1, concatener("Exif\0\0".getBytes(StandardCharsets.US_ASCII), exif));
+        if (xmp != null) {
+            segment(sortie, 0xE1, concatener("http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII),
+                    xmp.getBytes(StandardCharsets.UTF_8)));
+        }
+        byte[] image = image();
+        sortie.write(image, 2, image.length - 2);
+        return sortie.toByteArray();
+    }
+
+    /**
+     * @return un JPEG dont un segment APP2 de {@code octets} octets précède le bloc EXIF.
+     */
+    static byte[] jpegAvecApp2(int octets) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        sortie.write(0xFF);
+        sortie.write(0xD8);
+        segment(sortie, 0xE2, new byte[octets]);
+        byte[] reste = jpeg(null);
+        sortie.write(reste, 2, reste.length - 2);
+        return sortie.toByteArray();
+    }
+
+    /**
+     * Écrit un segment : marqueur, longueur sur deux octets puis données.
+     */
+    static void segment(ByteArrayOutputStream sortie, int marqueur, byte[] donnees) {
+        int longueur = donnees.length + 2;
+        sortie.write(0xFF);
+        sortie.write(marqueur);
+        sortie.write(longueur >> 8);
+        sortie.write(longueur & 0xFF);
+        sortie.write(donnees, 0, donnees.length);
+    }
+
+    private static byte[] image() throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                image.setRGB(x, y, (x * 16) << 16 | (y * 16) << 8);
+            }
+        }
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", sortie);
+        return sortie.toByteArray();
+    }
+
+    private static byte[] concatener(byte[] a, byte[] b) {
+        byte[] resultat = new byte[a.length + b.length];
+        System.arraycopy(a, 0, resultat, 0, a.length);
+        System.arraycopy(b, 0, resultat, a.length, b.length);
+        return resultat;
+    }
+}
@@ -0,0 +1,86 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link IndexTags} : recensement des tags et décodage à la demande.
+ *
+ * @author Binome
+ */
+class IndexTagsTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void recenseLesTagsDeIfd0EtGps() throws IOException {
+        IndexTags index = IndexTags.indexer(image());
+        // IFD0 : résolutions, unité, date et pointeur GPS ; GPS : quatre tags.
+        assertEquals(9, index.getNombre());
+        int gps = 0;
+        for (int i = 0; i < index.getNombre(); i++) {
+            if (index.getDossier(i) == IndexTags.Dossier.GPS) {
+                gps++;
+            }
+        }
+        assertEquals(4, gps);
+    }
+
+    @Test
+    void decodeLesValeursParNomOuIdentifiant() throws IOException {
+        IndexTags index = IndexTags.indexer(image());
+        assertEquals(ImagesEssai.DATE, index.valeur("Date/Time"));
+        assertEquals(ImagesEssai.DATE, index.valeur(" date / time "));
+        assertEquals(ImagesEssai.DATE, index.valeur("0x0132"));
+        assertEquals(ImagesEssai.DATE, index.valeur("ifd0:0x0132"));
+        assertEquals("N", index.valeur("gps:0x0001"));
+        assertEquals("W", index.valeur("GPS Longitude Ref"));
+        assertEquals("2", index.valeur("Resolution Unit"));
+        assertTrue(index.valeur("X Resolution").startsWith("300"));
+    }
+
+    @Test
+    void tagAbsent() throws IOException {
+        IndexTags index = IndexTags.indexer(image());
+        assertNull(index.valeur("Model"));
+        assertNull(index.valeur("exif:0x0132"));
+    }
+
+    @Test
+    void imageSansExif() throws IOException {
+        Path fichier = Files.write(dossier.resolve("notes.txt"), new byte[64]);
+        assertEquals(0, IndexTags.indexer(fichier).getNombre());
+    }
+
+    @Test
+    void verifieLesNomsDeTags() {
+        assertDoesNotThrow(() -> IndexTags.verifier("Model"));
+        assertDoesNotThrow(() -> IndexTags.verifier("gps:0x0002"));
+        assertDoesNotThrow(() -> IndexTags.verifier("IPTC:Keywords"));
+        assertThrows(IllegalArgumentException.class, () -> IndexTags.verifier("gsp:0x0002"));
+        assertThrows(IllegalArgumentException.class, () -> IndexTags.verifier("0xZZ"));
+        assertThrows(IllegalArgumentException.class, () -> IndexTags.verifier("0x10000"));
+        assertThrows(IllegalArgumentException.class, () -> IndexTags.verifier("exif:"));
+    }
+
+    @Test
+    void nomMalFormeRefuseParValeur() throws IOException {
+        IndexTags index = IndexTags.indexer(image());
+        assertThrows(IllegalArgumentException.class, () -> index.valeur("inconnu:Model"));
+    }
+
+    private Path image() throws IOException {
+        return Files.write(dossier.resolve("image.jpg"), ImagesEssai.jpeg(null));
+    }
+}
@@ -0,0 +1,178 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link Journal} : points de reprise et relecture contrôlée par CRC.
+ *
+ * @author Binome
+ */
+class JournalTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void repriseDesFichiersEtRepertoiresTermines() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            analyser(journal, arbre, true);
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertEquals(3, journal.getFichiersRepris());
+            assertEquals(2, journal.getRepertoiresRepris());
+            assertTrue(journal.estTraite(arbre.resolve("a.jpg")));
+            assertTrue(journal.estTraite(arbre.resolve("sous/c.jpg")));
+            assertTrue(journal.estTermine(arbre));
+            assertTrue(journal.estTermine(arbre.resolve("sous")));
+            assertFalse(journal.estTraite(arbre.resolve("inconnu.jpg")));
+        }
+    }
+
+    @Test
+    void repertoireNonTermineTantQueSesFichiersSontEnAttente() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            analyser(journal, arbre, false);
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertEquals(2, journal.getFichiersRepris());
+            assertTrue(journal.estTermine(arbre.resolve("sous")));
+            assertFalse(journal.estTermine(arbre));
+            assertFalse(journal.estTraite(arbre.resolve("b.jpg")));
+        }
+    }
+
+    @Test
+    void lignesSansPointDeRepriseIgnoreesEtTronquees() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            analyser(journal, arbre, true);
+        }
+        long valide = Files.size(fichierJournal);
+        // Arrêt brutal : lignes écrites après le dernier point de reprise.
+        Files.write(fichierJournal, ("F " + arbre.resolve("x.jpg") + "\nF " + arbre.resolve("y")).getBytes(
+                StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertEquals(3, journal.getFichiersRepris());
+            assertFalse(journal.estTraite(arbre.resolve("x.jpg")));
+        }
+        assertEquals(valide, Files.size(fichierJournal));
+    }
+
+    @Test
+    void relectureArreteeAuPremierCrcInvalide() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            Fichier a = fichier(arbre.resolve("a.jpg"));
+            journal.entrer(arbre);
+            journal.attendre(a);
+            journal.terminer(a);
+            journal.pointDeReprise();
+            Fichier b = fichier(arbre.resolve("b.jpg"));
+            journal.attendre(b);
+            journal.terminer(b);
+            journal.pointDeReprise();
+        }
+        List<String> lignes = Files.readAllLines(fichierJournal, StandardCharsets.UTF_8);
+        assertEquals(4, lignes.size());
+        long premierPoint = (lignes.get(0) + "\n" + lignes.get(1) + "\n").getBytes(StandardCharsets.UTF_8).length;
+        // Ligne du second bloc altérée : son CRC ne correspond plus.
+        lignes.set(2, lignes.get(2).replace("b.jpg", "B.jpg"));
+        Files.write(fichierJournal, lignes, StandardCharsets.UTF_8);
+
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertEquals(1, journal.getFichiersRepris());
+            assertTrue(journal.estTraite(arbre.resolve("a.jpg")));
+            assertFalse(journal.estTraite(arbre.resolve("b.jpg")));
+            assertFalse(journal.estTraite(arbre.resolve("B.jpg")));
+        }
+        assertEquals(premierPoint, Files.size(fichierJournal));
+    }
+
+    @Test
+    void nouveauJournalSansReprise() throws IOException {
+        Path arbre = creerArbre();
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            analyser(journal, arbre, true);
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> true)) {
+            assertEquals(0, journal.getFichiersRepris());
+            assertFalse(journal.estTermine(arbre));
+        }
+        assertEquals(0, Files.size(fichierJournal));
+    }
+
+    @Test
+    void fichiersNonSuivisNeRetardentPasLeRepertoire() throws IOException {
+        Path arbre = creerArbre();
+        Files.write(arbre.resolve("notes.txt"), new byte[1]);
+        Path fichierJournal = dossier.resolve("journal.txt");
+        try (Journal journal = Journal.ouvrir(fichierJournal, false, f -> f.getNom().endsWith(".jpg"))) {
+            journal.entrer(arbre);
+            Fichier a = fichier(arbre.resolve("a.jpg"));
+            journal.attendre(a);
+            journal.attendre(fichier(arbre.resolve("notes.txt")));
+            journal.sortir(arbre);
+            journal.terminer(a);
+        }
+        try (Journal journal = Journal.ouvrir(fichierJournal, true, f -> true)) {
+            assertTrue(journal.estTermine(arbre));
+        }
+    }
+
+    /**
+     * Crée {@code arbre/a.jpg}, {@code arbre/b.jpg} et {@code arbre/sous/c.jpg}.
+     */
+    private Path creerArbre() throws IOException {
+        Path arbre = dossier.resolve("arbre");
+        Files.createDirectories(arbre.resolve("sous"));
+        Files.write(arbre.resolve("a.jpg"), new byte[1]);
+        Files.write(arbre.resolve("b.jpg"), new byte[1]);
+        Files.write(arbre.resolve("sous/c.jpg"), new byte[1]);
+        return arbre;
+    }
+
+    /**
+     * Déroule l'analyse de l'arbre comme le parcours ; le fichier {@code b.jpg}
+     * n'est terminé que si {@code complet} est vrai.
+     */
+    private static void analyser(Journal journal, Path arbre, boolean complet) throws IOException {
+        Fichier a = fichier(arbre.resolve("a.jpg"));
+        Fichier b = fichier(arbre.resolve("b.jpg"));
+        Fichier c = fichier(arbre.resolve("sous/c.jpg"));
+        journal.entrer(arbre);
+        journal.attendre(a);
+        journal.attendre(b);
+        journal.entrer(arbre.resolve("sous"));
+        journal.attendre(c);
+        journal.sortir(arbre.resolve("sous"));
+        journal.sortir(arbre);
+        journal.terminer(a);
+        journal.terminer(c);
+        if (complet) {
+            journal.terminer(b);
+        }
+    }
+
+    private static Fichier fichier(Path chemin) throws IOException {
+        return new Fichier(chemin.toString());
+    }
+}
@@ -0,0 +1,144 @@
+package application;
+
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.png.PngDirectory;
+import com.drew.metadata.xmp.XmpDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.xml.stream.XMLStreamException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link LecteurSegments} : lecture ciblée des segments, budget de lecture
+ * et mise de côté du paquet XMP.
+ *
+ * @author Binome
+ */
+class LecteurSegmentsTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void jpegLitExifEtDimensionsSansLesDonneesCompressees() throws IOException {
+        Path image = ecrire("image.jpg", ImagesEssai.jpeg(null));
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            Metadata metadata = lecteur.lireMetadonnees();
+            assertNotNull(metadata);
+            ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            assertEquals(ImagesEssai.DATE, ifd0.getString(ExifIFD0Directory.TAG_DATETIME));
+            assertEquals(300, ifd0.getInteger(ExifIFD0Directory.TAG_X_RESOLUTION));
+            GpsDirectory gps = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+            assertEquals(48.8566, gps.getGeoLocation().getLatitude(), 1e-3);
+            assertEquals(-2.3522, gps.getGeoLocation().getLongitude(), 1e-3);
+            JpegDirectory jpeg = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+            assertEquals(16, jpeg.getInteger(JpegDirectory.TAG_IMAGE_WIDTH));
+            assertEquals(16, jpeg.getInteger(JpegDirectory.TAG_IMAGE_HEIGHT));
+            assertNull(lecteur.getXmp());
+            assertTrue(lecteur.getOctetsLus() < Files.size(image));
+        }
+    }
+
+    @Test
+    void jpegMetDeCoteLePaquetXmp() throws IOException, XMLStreamException {
+        Path image = ecrire("image.jpg", ImagesEssai.jpeg(XmpTest.PAQUET));
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            Metadata metadata = lecteur.lireMetadonnees();
+            assertNotNull(metadata);
+            assertNull(metadata.getFirstDirectoryOfType(XmpDirectory.class));
+            assertNotNull(lecteur.getXmp());
+            assertEquals("4", Xmp.lire(lecteur.getXmp()).getNote());
+        }
+    }
+
+    @Test
+    void segmentsInutilesSautesSansLecture() throws IOException {
+        Path image = ecrire("image.jpg", ImagesEssai.jpegAvecApp2(60_000));
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            assertNotNull(lecteur.lireMetadonnees());
+            assertTrue(lecteur.getOctetsLus() < 4096, lecteur.getOctetsLus() + " octets lus");
+        }
+    }
+
+    @Test
+    void budgetDepasseDemandeLaLectureComplete() throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        sortie.write(0xFF);
+        sortie.write(0xD8);
+        // Deux segments APP1 lus en entier, au-delà du budget de lecture.
+        ImagesEssai.segment(sortie, 0xE1, new byte[40_000]);
+        ImagesEssai.segment(sortie, 0xE1, new byte[40_000]);
+        byte[] reste = ImagesEssai.jpeg(null);
+        sortie.write(reste, 2, reste.length - 2);
+        Path image = ecrire("image.jpg", sortie.toByteArray());
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            assertNull(lecteur.lireMetadonnees());
+            assertTrue(lecteur.getOctetsLus() <= LecteurSegments.BUDGET);
+        }
+    }
+
+    @Test
+    void formatInconnuDemandeLaLectureComplete() throws IOException {
+        Path fichier = ecrire("notes.txt", "pas une image du tout".getBytes());
+        try (LecteurSegments lecteur = new LecteurSegments(fichier)) {
+            assertNull(lecteur.lireMetadonnees());
+        }
+    }
+
+    @Test
+    void structureInattendueDemandeLaLectureComplete() throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        sortie.write(0xFF);
+        sortie.write(0xD8);
+        ImagesEssai.segment(sortie, 0xE1, new byte[10]);
+        // Le segment suivant ne commence pas par un marqueur.
+        sortie.write(new byte[20], 0, 20);
+        Path image = ecrire("image.jpg", sortie.toByteArray());
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            assertNull(lecteur.lireMetadonnees());
+        }
+    }
+
+    @Test
+    void pngLitLesBlocsAvantIdat() throws IOException {
+        BufferedImage tampon = new BufferedImage(24, 8, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(tampon, "png", sortie);
+        Path image = ecrire("image.png", sortie.toByteArray());
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            Metadata metadata = lecteur.lireMetadonnees();
+            assertNotNull(metadata);
+            PngDirectory png = metadata.getFirstDirectoryOfType(PngDirectory.class);
+            assertEquals(24, png.getInteger(PngDirectory.TAG_IMAGE_WIDTH));
+            assertEquals(8, png.getInteger(PngDirectory.TAG_IMAGE_HEIGHT));
+        }
+    }
+
+    @Test
+    void localiseLeBlocExif() throws IOException {
+        Path image = ecrire("image.jpg", ImagesEssai.jpeg(null));
+        try (LecteurSegments lecteur = new LecteurSegments(image)) {
+            lecteur.localiser();
+            // SOI, en-tête du segment APP1, puis « Exif\0\0 ».
+            assertEquals(2 + 4 + 6, lecteur.getDebutExif());
+        }
+    }
+
+    private Path ecrire(String nom, byte[] octets) throws IOException {
+        return Files.write(dossier.resolve(nom), octets);
+    }
+}
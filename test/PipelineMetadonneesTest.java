@@ -0,0 +1,125 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Tests de {@link PipelineMetadonnees} : ordre des résultats et propagation des erreurs.
+ *
+ * @author Binome
+ */
+class PipelineMetadonneesTest {
+
+    private static final Duration DELAI = Duration.ofSeconds(20);
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void resultatsDansLOrdreDeDecouverte() throws IOException {
+        List<Fichier> fichiers = images(50);
+        List<PipelineMetadonnees.Resultat> resultats = executer(fichiers);
+        assertEquals(fichiers.size(), resultats.size());
+        for (int i = 0; i < fichiers.size(); i++) {
+            assertEquals(fichiers.get(i).getChemin(), resultats.get(i).getChemin());
+            assertNull(resultats.get(i).getErreur());
+            assertEquals(16, resultats.get(i).getMetadonnees().getLargeur());
+        }
+    }
+
+    @Test
+    void erreurNonVerifieeDeLaSourceRelevee() throws IOException {
+        List<Fichier> fichiers = images(20);
+        UncheckedIOException attendue = new UncheckedIOException(new IOException("disque plein"));
+        UncheckedIOException levee = assertThrows(UncheckedIOException.class, () -> assertTimeoutPreemptively(DELAI,
+                () -> new PipelineMetadonnees(2, 2, 4, true).executer(visiteur -> {
+                    for (int i = 0; i < fichiers.size(); i++) {
+                        if (i == 10) {
+                            throw attendue;
+                        }
+                        visiteur.accept(fichiers.get(i));
+                    }
+                }, resultat -> { })));
+        assertEquals(attendue, levee);
+    }
+
+    @Test
+    void erreurDeLaSourceRelevee() throws IOException {
+        List<Fichier> fichiers = images(5);
+        assertThrows(IOException.class, () -> assertTimeoutPreemptively(DELAI,
+                () -> new PipelineMetadonnees(2, 2, 4, true).executer(visiteur -> {
+                    fichiers.forEach(visiteur);
+                    throw new IOException("répertoire illisible");
+                }, resultat -> { })));
+    }
+
+    @Test
+    void exceptionInattendueLimiteeAuFichier() throws IOException {
+        List<Fichier> fichiers = images(10);
+        fichiers.set(3, new Defaillant(fichiers.get(3), new IllegalStateException("structure inattendue")));
+        List<PipelineMetadonnees.Resultat> resultats = executer(fichiers);
+        assertEquals(fichiers.size(), resultats.size());
+        assertNotNull(resultats.get(3).getErreur());
+        assertNull(resultats.get(4).getErreur());
+    }
+
+    @Test
+    void erreurDUneEtapeReleveeSansBlocage() throws IOException {
+        List<Fichier> fichiers = images(10);
+        fichiers.set(3, new Defaillant(fichiers.get(3), new StackOverflowError()));
+        assertThrows(StackOverflowError.class, () -> executer(fichiers));
+    }
+
+    private static List<PipelineMetadonnees.Resultat> executer(List<Fichier> fichiers) {
+        List<PipelineMetadonnees.Resultat> resultats = new ArrayList<>();
+        assertTimeoutPreemptively(DELAI,
+                () -> new PipelineMetadonnees(2, 2, 4, true).executer(fichiers::forEach, resultats::add));
+        return resultats;
+    }
+
+    private List<Fichier> images(int nombre) throws IOException {
+        byte[] jpeg = ImagesEssai.jpeg(null);
+        List<Fichier> fichiers = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            Path image = Files.write(dossier.resolve("image" + i + ".jpg"), jpeg);
+            fichiers.add(new Fichier(image, Files.readAttributes(image, BasicFileAttributes.class)));
+        }
+        return fichiers;
+    }
+
+    /**
+     * Fichier dont la lecture lève une exception ou une erreur inattendue.
+     */
+    private static final class Defaillant extends Fichier {
+        private final Throwable defaillance;
+
+        Defaillant(Fichier fichier, Throwable defaillance) throws IOException {
+            super(Path.of(fichier.getChemin()),
+                    Files.readAttributes(Path.of(fichier.getChemin()), BasicFileAttributes.class));
+            this.defaillance = defaillance;
+        }
+
+        @Override
+        public Path getEmplacement() {
+            if (defaillance instanceof Error) {
+                throw (Error) defaillance;
+            }
+            throw (RuntimeException) defaillance;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link TriExterne}.
+ *
+ * @author Binome
+ */
+class TriExterneTest {
+
+    @Test
+    void triEnMemoireSansSegment() throws IOException {
+        try (TriExterne<String> tri = new TriExterne<>(Comparator.naturalOrder(), TriExterne.CHAINES,
+                TriExterne.SANS_LIMITE)) {
+            tri.ajouter("c");
+            tri.ajouter("a");
+            tri.ajouter("b");
+            assertEquals(List.of("a", "b", "c"), trier(tri));
+            assertEquals(0, tri.getSegments());
+        }
+    }
+
+    @Test
+    void fusionDePlusieursSegments() throws IOException {
+        List<String> attendu = melange(5_000, 7);
+        try (TriExterne<String> tri = new TriExterne<>(Comparator.naturalOrder(), TriExterne.CHAINES, 10_000)) {
+            for (String s : attendu) {
+                tri.ajouter(s);
+            }
+            attendu.sort(Comparator.naturalOrder());
+            assertTrue(tri.getSegments() > 1);
+            assertTrue(tri.getSegments() <= 64);
+            assertEquals(attendu.size(), tri.getNombre());
+            assertEquals(attendu, trier(tri));
+        }
+    }
+
+    @Test
+    void fusionEnCascadeAuDelaDeSoixanteQuatreSegments() throws IOException {
+        // Environ 10 chaînes par segment : plus de 64 segments, fusionnés par groupes.
+        List<String> attendu = melange(20_000, 11);
+        try (TriExterne<String> tri = new TriExterne<>(Comparator.reverseOrder(), TriExterne.CHAINES, 1_000)) {
+            for (String s : attendu) {
+                tri.ajouter(s);
+            }
+            attendu.sort(Comparator.reverseOrder());
+            assertTrue(tri.getSegments() > 64 * 2);
+            assertEquals(attendu, trier(tri));
+        }
+    }
+
+    @Test
+    void lectureAvecIterateur() throws IOException {
+        try (TriExterne<String> tri = new TriExterne<>(Comparator.naturalOrder(), TriExterne.CHAINES, 200)) {
+            for (String s : new String[]{"d", "b", "e", "a", "c"}) {
+                tri.ajouter(s);
+            }
+            List<String> lus = new ArrayList<>();
+            try (TriExterne.Lecture<String> lecture = tri.lire()) {
+                while (lecture.hasNext()) {
+                    lus.add(lecture.next());
+                }
+                assertFalse(lecture.hasNext());
+            }
+            assertEquals(List.of("a", "b", "c", "d", "e"), lus);
+        }
+    }
+
+    /**
+     * @return {@code n} chaînes dans le désordre, dont quelques doublons.
+     */
+    private static List<String> melange(int n, long graine) {
+        Random hasard = new Random(graine);
+        List<String> chaines = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            chaines.add(String.format("%06d", hasard.nextInt(n)));
+        }
+        return chaines;
+    }
+
+    private static List<String> trier(TriExterne<String> tri) throws IOException {
+        List<String> lus = new ArrayList<>();
+        tri.parcourir(lus::add);
+        return lus;
+    }
+}
@@ -0,0 +1,104 @@
+package application;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link Xmp}.
+ *
+ * @author Binome
+ */
+class XmpTest {
+
+    /** Paquet XMP complet : propriétés écrites sous forme d'éléments. */
+    static final String PAQUET = "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+            + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+            + " <rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+            + "  <rdf:Description rdf:about=\"\" xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\"\n"
+            + "      xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+            + "   <xmp:Rating>4</xmp:Rating>\n"
+            + "   <xmp:CreateDate>2021-06-15T10:30:00</xmp:CreateDate>\n"
+            + "   <dc:subject><rdf:Bag><rdf:li>plage</rdf:li><rdf:li> été </rdf:li></rdf:Bag></dc:subject>\n"
+            + "   <dc:creator><rdf:Seq><rdf:li>Alice</rdf:li><rdf:li>Bob</rdf:li></rdf:Seq></dc:creator>\n"
+            + "  </rdf:Description>\n"
+            + " </rdf:RDF>\n"
+            + "</x:xmpmeta>\n"
+            + "<?xpacket end=\"w\"?>";
+
+    @Test
+    void litLesProprietesEcritesEnElements() throws XMLStreamException {
+        Xmp xmp = Xmp.lire(PAQUET.getBytes(StandardCharsets.UTF_8));
+        assertEquals("4", xmp.getNote());
+        assertEquals("2021-06-15T10:30:00", xmp.getDateCreation());
+        assertEquals(List.of("plage", "été"), xmp.getMotsCles());
+        assertEquals(List.of("Alice", "Bob"), xmp.getCreateurs());
+        assertFalse(xmp.estVide());
+    }
+
+    @Test
+    void litLesProprietesEcritesEnAttributs() throws XMLStreamException {
+        String paquet = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+                + "<rdf:Description xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\" xmp:Rating=\"5\""
+                + " xmp:CreateDate=\"2020-01-01\"/></rdf:RDF>";
+        Xmp xmp = Xmp.lire(paquet.getBytes(StandardCharsets.UTF_8));
+        assertEquals("5", xmp.getNote());
+        assertEquals("2020-01-01", xmp.getDateCreation());
+        assertTrue(xmp.getMotsCles().isEmpty());
+    }
+
+    @Test
+    void litSeulementLesProprietesDemandees() throws XMLStreamException {
+        Xmp xmp = Xmp.lire(PAQUET.getBytes(StandardCharsets.UTF_8), EnumSet.of(Xmp.Propriete.MOTS_CLES));
+        assertEquals(List.of("plage", "été"), xmp.getMotsCles());
+        assertNull(xmp.getNote());
+        assertTrue(xmp.getCreateurs().isEmpty());
+    }
+
+    @Test
+    void lectureArreteeDesQueLesProprietesSontTrouvees() {
+        // Paquet tronqué après la note : la suite n'est pas lue si seule la note est demandée.
+        String paquet = PAQUET.substring(0, PAQUET.indexOf("<xmp:CreateDate>")) + "<xmp:Create";
+        byte[] octets = paquet.getBytes(StandardCharsets.UTF_8);
+        Xmp xmp = assertDoesNotThrow(() -> Xmp.lire(octets, EnumSet.of(Xmp.Propriete.NOTE)));
+        assertEquals("4", xmp.getNote());
+        assertThrows(XMLStreamException.class, () -> Xmp.lire(octets));
+    }
+
+    @Test
+    void ignoreLesOctetsNulsDeRemplissage() throws XMLStreamException {
+        byte[] paquet = PAQUET.getBytes(StandardCharsets.UTF_8);
+        byte[] complete = new byte[paquet.length + 100];
+        System.arraycopy(paquet, 0, complete, 0, paquet.length);
+        assertEquals("4", Xmp.lire(complete).getNote());
+    }
+
+    @Test
+    void paquetSansProprieteConnue() throws XMLStreamException {
+        String paquet = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+                + "<rdf:Description xmlns:tiff=\"http://ns.adobe.com/tiff/1.0/\" tiff:Make=\"X\"/></rdf:RDF>";
+        assertTrue(Xmp.lire(paquet.getBytes(StandardCharsets.UTF_8)).estVide());
+        assertTrue(Xmp.VIDE.estVide());
+    }
+
+    @Test
+    void depuisLesProprietesDecodees() {
+        Xmp xmp = Xmp.depuis(Map.of("xmp:Rating", "2", "dc:subject[1]", "a", "dc:subject[2]", "b",
+                "dc:creator[1]", "C"));
+        assertEquals("2", xmp.getNote());
+        assertEquals(List.of("a", "b"), xmp.getMotsCles());
+        assertEquals(List.of("C"), xmp.getCreateurs());
+        assertNull(xmp.getDateCreation());
+    }
+}